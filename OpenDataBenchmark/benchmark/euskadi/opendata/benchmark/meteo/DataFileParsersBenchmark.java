@@ -0,0 +1,126 @@
+package euskadi.opendata.benchmark.meteo;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Compares DOM + XPath with a single pass StAX reader extracting the city forecasts
+ * (name, temperatures and symbol description) of the data files (periodData):
+ * met_forecast_today_dataFile.xml and the data files of met_forecast_thin.zip
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=5,time=1)
+@Measurement(iterations=5,time=1)
+@Fork(1)
+public class DataFileParsersBenchmark {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  STATE
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+	static {
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING,Boolean.TRUE);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD,Boolean.FALSE);
+	}
+	/**
+	 * The data file: today (met_forecast_today_dataFile.xml) or the thin zip folder (es_today, es_tomorrow, eu_next...)
+	 */
+	@Param({"today","es_tomorrow","eu_next"})
+	public String dataFile;
+
+	private byte[] _xml;
+
+	@Setup
+	public void setup() throws Exception {
+		_xml = MeteoFixtures.loadDataFiles().get(dataFile);
+		if (_xml == null) throw new IllegalArgumentException("Unknown data file " + dataFile + ": " + MeteoFixtures.loadDataFiles().keySet());
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  BENCHMARKS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Benchmark
+	public List<String[]> domXPath() throws Exception {
+		Document doc = DocumentBuilderFactory.newInstance()
+											 .newDocumentBuilder()
+											 .parse(new ByteArrayInputStream(_xml));
+		XPath xpath = XPathFactory.newInstance().newXPath();
+		NodeList cityNodes = (NodeList)xpath.evaluate("/periodData/cityForecastDataList/cityForecastData",
+													  doc.getDocumentElement(),XPathConstants.NODESET);
+		List<String[]> outCities = new ArrayList<String[]>(cityNodes.getLength());
+		for (int i=0; i < cityNodes.getLength(); i++) {
+			Node cityNode = cityNodes.item(i);
+			outCities.add(new String[] { xpath.evaluate("cityName",cityNode),
+										 xpath.evaluate("tempMax",cityNode),
+										 xpath.evaluate("tempMin",cityNode),
+										 xpath.evaluate("symbol/description",cityNode) });
+		}
+		return outCities;
+	}
+	@Benchmark
+	public List<String[]> stax() throws Exception {
+		List<String[]> outCities = new ArrayList<String[]>();
+		XMLStreamReader xml = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(_xml));
+		try {
+			String[] city = null;
+			boolean inSymbol = false;
+			while (xml.hasNext()) {
+				int event = xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = xml.getLocalName();
+					if ("cityForecastData".equals(name)) {
+						city = new String[4];
+					} else if (city == null) {
+						continue;
+					} else if ("symbol".equals(name)) {
+						inSymbol = true;
+					} else if ("cityName".equals(name)) {
+						city[0] = xml.getElementText().trim();
+					} else if ("tempMax".equals(name)) {
+						city[1] = xml.getElementText().trim();
+					} else if ("tempMin".equals(name)) {
+						city[2] = xml.getElementText().trim();
+					} else if (inSymbol && "description".equals(name)) {
+						city[3] = xml.getElementText().trim();
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					String name = xml.getLocalName();
+					if ("symbol".equals(name)) {
+						inSymbol = false;
+					} else if ("cityForecastData".equals(name)) {
+						outCities.add(city);
+						city = null;
+					}
+				}
+			}
+		} finally {
+			xml.close();
+		}
+		return outCities;
+	}
+}
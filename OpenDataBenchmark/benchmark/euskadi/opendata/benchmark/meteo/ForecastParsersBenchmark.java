@@ -0,0 +1,111 @@
+package euskadi.opendata.benchmark.meteo;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.service.meteo.WeatherForecastParser;
+import r01f.marshalling.Marshaller;
+import r01f.marshalling.Marshaller.MarshallerMappingsSearch;
+import r01f.marshalling.simple.SimpleMarshallerBuilder;
+
+/**
+ * Compares the ways the city forecasts (met_forecast.xml) can be read:
+ * <ul>
+ * 		<li>DOM + XPath: the "hard way" of TestOpenDataMeteoRaw (only the today city temperatures and descriptions)</li>
+ * 		<li>the r01f marshaller built for every parse (as the WeatherForecastParser.MARSHALLER does) and reused</li>
+ * 		<li>every other {@link WeatherForecastParser} (STAX, GENERATED...)</li>
+ * </ul>
+ * Run it with {@link MeteoBenchmarks} to get the allocation rate too
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=5,time=1)
+@Measurement(iterations=5,time=1)
+@Fork(1)
+public class ForecastParsersBenchmark {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  STATE
+/////////////////////////////////////////////////////////////////////////////////////////
+	private byte[] _xml;
+
+	@Setup
+	public void setup() throws Exception {
+		_xml = MeteoFixtures.load(MeteoFixtures.FORECAST);
+	}
+	/**
+	 * The marshaller built once and reused: it's a separate state so it's ONLY built
+	 * if the marshallerReused benchmark is run
+	 */
+	@State(Scope.Benchmark)
+	public static class ReusedMarshallerState {
+		private Marshaller _marshaller;
+
+		@Setup
+		public void setup() {
+			_marshaller = SimpleMarshallerBuilder.createForPackages(MarshallerMappingsSearch.inPackages(Forecast.class.getPackage().getName()))
+												 .getForMultipleUse();
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  BENCHMARKS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Benchmark
+	public Map<String,String[]> domXPath() throws Exception {
+		// as TestOpenDataMeteoRaw._parseData does
+		Document doc = DocumentBuilderFactory.newInstance()
+											 .newDocumentBuilder()
+											 .parse(new ByteArrayInputStream(_xml));
+		XPath xpath = XPathFactory.newInstance().newXPath();
+		NodeList cityNodes = (NodeList)xpath.evaluate("/weatherForecast/forecasts/forecast[@forecastDay='today']/cityForecastDataList/cityForecastData",
+													  doc.getDocumentElement(),XPathConstants.NODESET);
+		Map<String,String[]> outCities = new HashMap<String,String[]>(cityNodes.getLength());
+		for (int i=0; i < cityNodes.getLength(); i++) {
+			Node cityNode = cityNodes.item(i);
+			String cityName = xpath.evaluate("@cityName",cityNode);
+			outCities.put(cityName,new String[] { xpath.evaluate("tempMax",cityNode),
+												  xpath.evaluate("tempMin",cityNode),
+												  xpath.evaluate("symbol/descriptions/es",cityNode),
+												  xpath.evaluate("symbol/descriptions/eu",cityNode) });
+		}
+		return outCities;
+	}
+	@Benchmark
+	public Forecast marshallerSingleUse() throws Exception {
+		return WeatherForecastParser.MARSHALLER.parse(_xml);
+	}
+	@Benchmark
+	public Forecast marshallerReused(final ReusedMarshallerState state) throws Exception {
+		return state._marshaller.beanFromXml(new ByteArrayInputStream(_xml));
+	}
+	@Benchmark
+	public Forecast stax() throws Exception {
+		return WeatherForecastParser.STAX.parse(_xml);
+	}
+	@Benchmark
+	public Forecast generated() throws Exception {
+		return WeatherForecastParser.GENERATED.parse(_xml);
+	}
+}
@@ -0,0 +1,32 @@
+package euskadi.opendata.benchmark.meteo;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the meteo parsing benchmarks reporting the throughput and the allocation rate
+ * (gc profiler: gc.alloc.rate and gc.alloc.rate.norm = bytes allocated per parse)
+ * <pre>
+ * IMPORTANT!	The benchmark classes are generated by the JMH annotation processor (jmh-generator-annprocess):
+ * 				it's at the ivy compile conf and Eclipse runs it if annotation processing is enabled
+ * 				(the generated sources go to .apt_generated)
+ * </pre>
+ * Usage (any JMH command line option is accepted, ie: -p dataFile=es_today or a benchmark regexp):
+ * <pre>
+ * 		java euskadi.opendata.benchmark.meteo.MeteoBenchmarks [ForecastParsersBenchmark]
+ * </pre>
+ */
+public class MeteoBenchmarks {
+	public static void main(final String[] args) throws Exception {
+		CommandLineOptions cmdLine = new CommandLineOptions(args);
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(cmdLine)
+			   .addProfiler(GCProfiler.class);
+		if (cmdLine.getIncludes().isEmpty()) options.include(MeteoBenchmarks.class.getPackage().getName() + ".*");
+		Options opts = options.build();
+		new Runner(opts).run();
+	}
+}
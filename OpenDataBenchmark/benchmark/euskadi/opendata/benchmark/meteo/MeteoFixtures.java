@@ -0,0 +1,81 @@
+package euskadi.opendata.benchmark.meteo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import com.google.common.io.ByteStreams;
+
+import r01f.resources.ResourcesLoaderBuilder;
+
+/**
+ * Loads the offline meteo fixtures of OpenDataTest/resources (linked as the fixtures source folder)
+ * so the benchmarks NEVER hit the network
+ */
+final class MeteoFixtures {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The city forecasts (weatherForecast)
+	 */
+	static final String FORECAST = "met_forecast.xml";
+	/**
+	 * A data file (periodData)
+	 */
+	static final String TODAY_DATA_FILE = "met_forecast_today_dataFile.xml";
+	/**
+	 * The zip with the today / tomorrow / next data files
+	 */
+	static final String THIN_ZIP = "met_forecast_thin.zip";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	private MeteoFixtures() {
+		// no instances
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @param name
+	 * @return the fixture bytes
+	 * @throws IOException
+	 */
+	static byte[] load(final String name) throws IOException {
+		InputStream is = ResourcesLoaderBuilder.createDefaultResourcesLoader()
+											   .getInputStream(name);
+		if (is == null) throw new IOException("The fixture " + name + " was NOT found: is OpenDataTest/resources at the classpath?");
+		try {
+			return ByteStreams.toByteArray(is);
+		} finally {
+			is.close();
+		}
+	}
+	/**
+	 * Loads all the data files (periodData): the today one and the ones at the thin zip
+	 * @return the data files by name (today, es_today, es_tomorrow...)
+	 * @throws IOException
+	 */
+	static Map<String,byte[]> loadDataFiles() throws IOException {
+		Map<String,byte[]> outDataFiles = new TreeMap<String,byte[]>();
+		outDataFiles.put("today",load(TODAY_DATA_FILE));
+		ZipInputStream zis = new ZipInputStream(ResourcesLoaderBuilder.createDefaultResourcesLoader()
+																	  .getInputStream(THIN_ZIP));
+		try {
+			ZipEntry entry = null;
+			while ((entry = zis.getNextEntry()) != null) {
+				// met_forecast/es_next/data/es_r01dpd00131f5f95ec01aaace4c21b5437347de52
+				String[] path = entry.getName().split("/");
+				if (entry.isDirectory() || path.length != 4 || !"data".equals(path[2])) continue;
+				outDataFiles.put(path[1],ByteStreams.toByteArray(zis));
+			}
+		} finally {
+			zis.close();
+		}
+		return outDataFiles;
+	}
+}
@@ -0,0 +1,191 @@
+package euskadi.opendata.internal.meteo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.common.io.ByteStreams;
+
+import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.service.meteo.MeteoMetrics;
+import euskadi.opendata.service.meteo.MeteoModelXmlReader;
+import euskadi.opendata.service.meteo.MeteoModelXmlWriter;
+import euskadi.opendata.util.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import r01f.marshalling.Marshaller;
+import r01f.marshalling.Marshaller.MarshallerMappingsSearch;
+import r01f.marshalling.simple.SimpleMarshallerBuilder;
+
+/**
+ * The model objects {@link Marshaller} bound by {@link MeteoOpenDataBootstrapGuiceModule}
+ * <ul>
+ * 		<li>the meteo model objects are read / written by the generated {@link MeteoModelXmlReader} / {@link MeteoModelXmlWriter}
+ * 			(an xml is read by the generated reader if it's root element is a meteo model one)</li>
+ * 		<li>anything else is delegated to the r01f marshaller that's ONLY built (scanning the model package)
+ * 			the first time it's needed</li>
+ * </ul>
+ * So the startup does NOT scan the model package nor builds the reflective mappings
+ * (the time spent (un)marshalling is recorded at the {@link MeteoMetrics})
+ * <pre>
+ * IMPORTANT!	It's a proxy of the {@link Marshaller} interface: every marshaller method NOT handled
+ * 				here is delegated as is to the r01f marshaller
+ * </pre>
+ */
+@Slf4j
+class MeteoModelObjectsMarshaller
+  implements InvocationHandler {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final XMLInputFactory XML_INPUT_FACTORY;
+	static {
+		XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD,Boolean.FALSE);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,Boolean.FALSE);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The reflective r01f marshaller: built on first use
+	 */
+	private Marshaller _reflectiveMarshaller;
+	/**
+	 * Metrics: the generated writer / reader and the reflective marshaller latencies
+	 */
+	private final LatencyHistogram _generatedWriteLatency;
+	private final LatencyHistogram _generatedReadLatency;
+	private final LatencyHistogram _reflectiveLatency;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR & FACTORY
+/////////////////////////////////////////////////////////////////////////////////////////
+	private MeteoModelObjectsMarshaller(final MeteoMetrics metrics) {
+		String help = "Time to (un)marshall a model object";
+		_generatedWriteLatency = metrics.latency("meteo_marshaller_seconds",help,
+												 "marshaller","generated","operation","xmlFromBean");
+		_generatedReadLatency = metrics.latency("meteo_marshaller_seconds",help,
+												"marshaller","generated","operation","beanFromXml");
+		_reflectiveLatency = metrics.latency("meteo_marshaller_seconds",help,
+											 "marshaller","reflective","operation","any");
+	}
+	static Marshaller create(final MeteoMetrics metrics) {
+		return (Marshaller)Proxy.newProxyInstance(Marshaller.class.getClassLoader(),
+												  new Class<?>[] { Marshaller.class },
+												  new MeteoModelObjectsMarshaller(metrics));
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  InvocationHandler
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public Object invoke(final Object proxy,
+						 final Method method,final Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			if ("equals".equals(method.getName())) return proxy == args[0];
+			if ("hashCode".equals(method.getName())) return System.identityHashCode(proxy);
+			return "generated meteo model objects marshaller";
+		}
+		String name = method.getName();
+		Class<?>[] params = method.getParameterTypes();
+		long start = System.nanoTime();
+		Object[] theArgs = args;
+		if (params.length == 1) {
+			if ("xmlFromBean".equals(name)
+			 && args[0] != null && MeteoModelXmlWriter.canWrite(args[0].getClass())) {
+				String outXml = MeteoModelXmlWriter.xmlFromBean(args[0]);
+				_generatedWriteLatency.recordSince(start);
+				return outXml;
+			}
+			if ("beanFromXml".equals(name) && params[0] == InputStream.class && args[0] != null) {
+				// the bytes are buffered so they can be handed to the reflective marshaller if it's NOT a meteo model xml
+				byte[] xml = _bytes((InputStream)args[0]);
+				if (MeteoModelXmlReader.canReadRoot(_rootElement(new ByteArrayInputStream(xml)))) {
+					Object outBean = _read(new ByteArrayInputStream(xml));		// the encoding is the declared one
+					_generatedReadLatency.recordSince(start);
+					return outBean;
+				}
+				theArgs = new Object[] { new ByteArrayInputStream(xml) };
+			}
+			if ("beanFromXml".equals(name) && params[0] == String.class && args[0] != null) {
+				String xml = (String)args[0];
+				if (MeteoModelXmlReader.canReadRoot(_rootElement(new StringReader(xml)))) {
+					Object outBean = _read(new StringReader(xml));		// already chars: the declared encoding does NOT apply
+					_generatedReadLatency.recordSince(start);
+					return outBean;
+				}
+			}
+		}
+		Marshaller reflectiveMarshaller = _reflectiveMarshaller();
+		start = System.nanoTime();		// do NOT count the first use mappings build
+		try {
+			return method.invoke(reflectiveMarshaller,theArgs);
+		} catch (InvocationTargetException invokeEx) {
+			throw invokeEx.getCause();
+		} finally {
+			_reflectiveLatency.recordSince(start);
+		}
+	}
+	private synchronized Marshaller _reflectiveMarshaller() {
+		if (_reflectiveMarshaller == null) {
+			log.warn("Building the reflective model objects marshaller: an object NOT supported by the generated meteo marshallers was (un)marshalled");
+			_reflectiveMarshaller = SimpleMarshallerBuilder.createForPackages(MarshallerMappingsSearch.inPackages(Forecast.class.getPackage().getName()))
+														   .getForMultipleUse();
+		}
+		return _reflectiveMarshaller;
+	}
+	private static Object _read(final InputStream is) {
+		try {
+			return MeteoModelXmlReader.read(is);
+		} catch (XMLStreamException xmlEx) {
+			throw new IllegalArgumentException("The xml is NOT a valid meteo model object: " + xmlEx.getMessage(),xmlEx);
+		}
+	}
+	private static Object _read(final Reader reader) {
+		try {
+			return MeteoModelXmlReader.read(reader);
+		} catch (XMLStreamException xmlEx) {
+			throw new IllegalArgumentException("The xml is NOT a valid meteo model object: " + xmlEx.getMessage(),xmlEx);
+		}
+	}
+	private static String _rootElement(final InputStream is) {
+		try {
+			return _rootElement(XML_INPUT_FACTORY.createXMLStreamReader(is));
+		} catch (XMLStreamException xmlEx) {
+			return null;		// the reflective marshaller reports the error
+		}
+	}
+	private static String _rootElement(final Reader reader) {
+		try {
+			return _rootElement(XML_INPUT_FACTORY.createXMLStreamReader(reader));
+		} catch (XMLStreamException xmlEx) {
+			return null;		// the reflective marshaller reports the error
+		}
+	}
+	/**
+	 * @return the root element name (only the document prolog is read)
+	 */
+	private static String _rootElement(final XMLStreamReader xml) throws XMLStreamException {
+		try {
+			xml.nextTag();
+			return xml.getLocalName();
+		} finally {
+			xml.close();
+		}
+	}
+	private static byte[] _bytes(final InputStream is) {
+		try {
+			return ByteStreams.toByteArray(is);
+		} catch (IOException ioEx) {
+			throw new IllegalArgumentException("Could NOT read the xml: " + ioEx.getMessage(),ioEx);
+		}
+	}
+}
@@ -0,0 +1,595 @@
+package euskadi.opendata.internal.meteo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import com.google.common.base.Charsets;
+
+import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.model.meteo.ForecastForLocationSummary;
+import r01f.locale.Language;
+import r01f.marshalling.annotations.OidField;
+import r01f.marshalling.annotations.XmlCDATA;
+import r01f.marshalling.annotations.XmlDateFormat;
+import r01f.types.Path;
+
+/**
+ * Generates the reflection-free xml reader and writer of the meteo model objects
+ * (euskadi.opendata.service.meteo.MeteoModelXmlReader / MeteoModelXmlWriter) from the SAME xml
+ * annotations the r01f marshaller uses (@XmlRootElement, @XmlAttribute, @XmlElement, @XmlElementWrapper,
+ * @XmlCDATA, @XmlDateFormat, @OidField)
+ * <pre>
+ * IMPORTANT!	The generated sources are checked in: run this generator again every time the
+ * 				model xml annotations change:
+ * 					java euskadi.opendata.internal.meteo.MeteoModelXmlCodeGenerator OpenDataClasses/src
+ * 				(TestOpenDataMeteoGeneratedSources fails if the checked in sources are NOT the generated ones)
+ * </pre>
+ * A mapping the generated code cannot handle makes the generator fail (it's NEVER silently skipped)
+ */
+public class MeteoModelXmlCodeGenerator {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The root model objects: the objects they reference are also generated
+	 */
+	private static final Class<?>[] ROOTS = { Forecast.class,ForecastForLocationSummary.class };
+	private static final String TARGET_PACKAGE = "euskadi.opendata.service.meteo";
+	private static final String READER = "MeteoModelXmlReader";
+	private static final String WRITER = "MeteoModelXmlWriter";
+	/**
+	 * The only date format supported by the readers / writers (see MeteoStAXReader)
+	 */
+	private static final String DATE_FORMAT = "dd/MM/yyyy";
+	private static final String SEPARATOR = "/////////////////////////////////////////////////////////////////////////////////////////";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  MAIN
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(final String[] args) throws IOException {
+		File srcDir = new File(args.length > 0 ? args[0] : "src");
+		File pkgDir = new File(srcDir,TARGET_PACKAGE.replace('.','/'));
+		if (!pkgDir.isDirectory()) throw new IllegalArgumentException(pkgDir + " does NOT exists: the OpenDataClasses source folder is expected as argument");
+
+		for (Map.Entry<String,String> src : MeteoModelXmlCodeGenerator.generateSources().entrySet()) {
+			_write(new File(srcDir,src.getKey().replace('.','/') + ".java"),src.getValue());
+		}
+	}
+	/**
+	 * Generates the meteo model objects reader & writer sources in memory
+	 * (ie: to check that the checked in sources are the generated ones)
+	 * @return the sources by class name
+	 */
+	public static Map<String,String> generateSources() {
+		MeteoModelXmlCodeGenerator generator = new MeteoModelXmlCodeGenerator(ROOTS);
+		Map<String,String> outSources = new LinkedHashMap<String,String>();
+		outSources.put(TARGET_PACKAGE + "." + READER,generator.generateReader());
+		outSources.put(TARGET_PACKAGE + "." + WRITER,generator.generateWriter());
+		return outSources;
+	}
+	private static void _write(final File file,
+							   final String src) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file),Charsets.UTF_8);
+		try {
+			writer.write(src);
+		} finally {
+			writer.close();
+		}
+		System.out.println("Generated " + file);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The mapped model objects: the roots and all the objects they reference
+	 */
+	private final Map<Class<?>,List<Mapping>> _beans = new LinkedHashMap<Class<?>,List<Mapping>>();
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public MeteoModelXmlCodeGenerator(final Class<?>... roots) {
+		Set<String> rootNames = new LinkedHashSet<String>();
+		for (Class<?> root : roots) _introspect(root);
+		for (Class<?> bean : _beans.keySet()) {
+			if (!rootNames.add(_rootName(bean))) throw new IllegalStateException("Duplicated root element name " + _rootName(bean));
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  MAPPINGS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private enum Kind {
+		ATTRIBUTE,			// <bean name='value'>
+		TEXT,				// <name>value</name>
+		BEAN,				// <name>...bean...</name>
+		LANGUAGE_TEXTS,		// <name><es>...</es><eu>...</eu></name>
+		BEAN_MAP,			// <wrapper><item>...</item>...</wrapper> keyed by the item @OidField
+		BEAN_COLLECTION;	// <wrapper><item>...</item>...</wrapper>
+	}
+	private static class Mapping {
+		Kind kind;
+		Field field;
+		String xmlName;		// the attribute / element / wrapper name
+		String itemName;	// the collection items element name
+		Class<?> type;		// the field type or the collection item type
+		boolean cdata;
+	}
+	private void _introspect(final Class<?> bean) {
+		if (_beans.containsKey(bean)) return;
+		if (bean.getAnnotation(XmlRootElement.class) == null) throw new IllegalStateException(bean + " is NOT annotated with @XmlRootElement");
+		List<Mapping> mappings = new ArrayList<Mapping>();
+		_beans.put(bean,mappings);
+		for (Field field : bean.getDeclaredFields()) {
+			if (Modifier.isStatic(field.getModifiers())) continue;
+			Mapping mapping = _mapping(bean,field);
+			if (mapping == null) continue;
+			mappings.add(mapping);
+			if (mapping.kind == Kind.BEAN || mapping.kind == Kind.BEAN_MAP || mapping.kind == Kind.BEAN_COLLECTION) _introspect(mapping.type);
+		}
+	}
+	private Mapping _mapping(final Class<?> bean,final Field field) {
+		XmlAttribute attr = field.getAnnotation(XmlAttribute.class);
+		XmlElement elem = field.getAnnotation(XmlElement.class);
+		XmlElementWrapper wrapper = field.getAnnotation(XmlElementWrapper.class);
+		if (attr == null && elem == null && wrapper == null) return null;	// NOT mapped
+
+		Mapping outMapping = new Mapping();
+		outMapping.field = field;
+		outMapping.cdata = field.getAnnotation(XmlCDATA.class) != null;
+		outMapping.type = field.getType();
+		XmlDateFormat dateFormat = field.getAnnotation(XmlDateFormat.class);
+		if (field.getType() == Date.class
+		 && (dateFormat == null || !DATE_FORMAT.equals(dateFormat.value()))) throw new IllegalStateException(_where(bean,field) + ": only " + DATE_FORMAT + " dates are supported");
+		if (attr != null) {
+			if (!_isSimple(field.getType())) throw new IllegalStateException(_where(bean,field) + ": an attribute MUST be a simple type");
+			outMapping.kind = Kind.ATTRIBUTE;
+			outMapping.xmlName = attr.name();
+		} else if (wrapper != null) {
+			outMapping.xmlName = wrapper.name();
+			Type[] args = field.getGenericType() instanceof ParameterizedType ? ((ParameterizedType)field.getGenericType()).getActualTypeArguments()
+																				: new Type[0];
+			if (Map.class == field.getType() && args.length == 2 && args[0] == Language.class && args[1] == String.class) {
+				outMapping.kind = Kind.LANGUAGE_TEXTS;
+			} else if (Map.class == field.getType() && args.length == 2 && args[0] == String.class && args[1] instanceof Class) {
+				outMapping.kind = Kind.BEAN_MAP;
+				outMapping.type = (Class<?>)args[1];
+				if (_oidField(outMapping.type) == null) throw new IllegalStateException(_where(bean,field) + ": " + outMapping.type + " has NO @OidField to be used as map key");
+			} else if ((Collection.class == field.getType() || List.class == field.getType()) && args.length == 1 && args[0] instanceof Class) {
+				outMapping.kind = Kind.BEAN_COLLECTION;
+				outMapping.type = (Class<?>)args[0];
+			} else {
+				throw new IllegalStateException(_where(bean,field) + ": unsupported wrapped type " + field.getGenericType());
+			}
+			if (outMapping.kind != Kind.LANGUAGE_TEXTS) {
+				outMapping.itemName = elem != null ? elem.name() : _rootName(outMapping.type);
+			}
+		} else {
+			outMapping.xmlName = elem.name();
+			if (_isSimple(field.getType()) && field.getType() != Date.class) {
+				outMapping.kind = Kind.TEXT;
+			} else if (field.getType().getAnnotation(XmlRootElement.class) != null) {
+				outMapping.kind = Kind.BEAN;
+			} else {
+				throw new IllegalStateException(_where(bean,field) + ": unsupported element type " + field.getGenericType());
+			}
+		}
+		return outMapping;
+	}
+	private static boolean _isSimple(final Class<?> type) {
+		return type == String.class || type == int.class || type == double.class || type == float.class
+			|| type == Path.class || type == Date.class || type.isEnum();
+	}
+	private static Field _oidField(final Class<?> bean) {
+		for (Field field : bean.getDeclaredFields()) {
+			if (field.getAnnotation(OidField.class) != null) return field;
+		}
+		return null;
+	}
+	private static String _rootName(final Class<?> bean) {
+		return bean.getAnnotation(XmlRootElement.class).name();
+	}
+	private static String _where(final Class<?> bean,final Field field) {
+		return bean.getSimpleName() + "." + field.getName();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  NAMES
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The lombok accessor suffix of a _field (@Accessors(prefix="_"))
+	 */
+	private static String _property(final Field field) {
+		String name = field.getName().startsWith("_") ? field.getName().substring(1) : field.getName();
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+	private static String _getter(final String var,final Field field) {
+		return var + ".get" + _property(field) + "()";
+	}
+	private static String _typeName(final Class<?> type) {
+		return type.isPrimitive() ? type.getName() : type.getSimpleName();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  READER
+/////////////////////////////////////////////////////////////////////////////////////////
+	public String generateReader() {
+		Set<String> imports = new TreeSet<String>();
+		imports.add("java.io.InputStream");
+		imports.add("java.io.Reader");
+		imports.add("javax.xml.stream.XMLStreamException");
+		imports.add("javax.xml.stream.XMLStreamReader");
+		Source src = new Source();
+		src.line(0,"/**")
+		   .line(0," * Reads the meteo model objects from xml WITHOUT reflection (no mappings are built at runtime)")
+		   .line(0," * GENERATED by {@link euskadi.opendata.internal.meteo.MeteoModelXmlCodeGenerator} from the model xml annotations: DO NOT EDIT")
+		   .line(0," */")
+		   .line(0,"public class " + READER)
+		   .line(1," extends MeteoStAXReader {")
+		   .section("CONSTRUCTOR")
+		   .line(1,"private " + READER + "(final XMLStreamReader xml) {")
+		   .line(2,"super(xml);")
+		   .line(1,"}");
+		// public api
+		src.section("PUBLIC");
+		src.line(1,"/**")
+		   .line(1," * @param type")
+		   .line(1," * @return true if objects of the given type can be read")
+		   .line(1," */")
+		   .line(1,"public static boolean canRead(final Class<?> type) {");
+		StringBuilder types = new StringBuilder();
+		for (Class<?> bean : _beans.keySet()) {
+			imports.add(bean.getName());
+			types.append(types.length() > 0 ? "\n\t\t\t|| " : "return ").append("type == ").append(bean.getSimpleName()).append(".class");
+		}
+		src.line(2,types.append(";").toString())
+		   .line(1,"}");
+		src.line(1,"/**")
+		   .line(1," * @param root")
+		   .line(1," * @return true if a document with the given root element can be read")
+		   .line(1," */")
+		   .line(1,"public static boolean canReadRoot(final String root) {");
+		StringBuilder roots = new StringBuilder();
+		for (Class<?> bean : _beans.keySet()) {
+			roots.append(roots.length() > 0 ? "\n\t\t\t|| " : "return ").append("\"").append(_rootName(bean)).append("\".equals(root)");
+		}
+		src.line(2,roots.append(";").toString())
+		   .line(1,"}");
+		src.line(1,"/**")
+		   .line(1," * Reads a model object: the type is guessed from the root element")
+		   .line(1," * @param is the xml bytes (the encoding is the declared one)")
+		   .line(1," * @return")
+		   .line(1," * @throws XMLStreamException if the root element is NOT a known one")
+		   .line(1," */")
+		   .line(1,"public static Object read(final InputStream is) throws XMLStreamException {")
+		   .line(2,"return _read(_createXMLStreamReader(is));")
+		   .line(1,"}")
+		   .line(1,"/**")
+		   .line(1," * Reads a model object: the type is guessed from the root element")
+		   .line(1," * @param reader the xml chars (the declared encoding is ignored)")
+		   .line(1," * @return")
+		   .line(1," * @throws XMLStreamException if the root element is NOT a known one")
+		   .line(1," */")
+		   .line(1,"public static Object read(final Reader reader) throws XMLStreamException {")
+		   .line(2,"return _read(_createXMLStreamReader(reader));")
+		   .line(1,"}")
+		   .line(1,"private static Object _read(final XMLStreamReader xml) throws XMLStreamException {")
+		   .line(2,"try {")
+		   .line(3,READER + " reader = new " + READER + "(xml);")
+		   .line(3,"xml.nextTag();")
+		   .line(3,"String root = xml.getLocalName();");
+		for (Class<?> bean : _beans.keySet()) {
+			src.line(3,"if (\"" + _rootName(bean) + "\".equals(root)) return reader._read" + bean.getSimpleName() + "();");
+		}
+		src.line(3,"throw new XMLStreamException(\"Unknown root element \" + root,xml.getLocation());")
+		   .line(2,"} finally {")
+		   .line(3,"xml.close();")
+		   .line(2,"}")
+		   .line(1,"}");
+		for (Class<?> bean : _beans.keySet()) {
+			String name = bean.getSimpleName();
+			src.line(1,"public static " + name + " read" + name + "(final InputStream is) throws XMLStreamException {")
+			   .line(2,"XMLStreamReader xml = _createXMLStreamReader(is);")
+			   .line(2,"try {")
+			   .line(3,READER + " reader = new " + READER + "(xml);")
+			   .line(3,"reader._goToRoot(\"" + _rootName(bean) + "\");")
+			   .line(3,"return reader._read" + name + "();")
+			   .line(2,"} finally {")
+			   .line(3,"xml.close();")
+			   .line(2,"}")
+			   .line(1,"}");
+		}
+		// a method per bean
+		for (Map.Entry<Class<?>,List<Mapping>> me : _beans.entrySet()) {
+			Class<?> bean = me.getKey();
+			src.section(_rootName(bean));
+			src.line(1,"private " + bean.getSimpleName() + " _read" + bean.getSimpleName() + "() throws XMLStreamException {")
+			   .line(2,bean.getSimpleName() + " outBean = new " + bean.getSimpleName() + "();");
+			List<Mapping> elements = new ArrayList<Mapping>();
+			for (Mapping mapping : me.getValue()) {
+				if (mapping.kind == Kind.ATTRIBUTE) {
+					if (mapping.type.isEnum()) imports.add(mapping.type.getName());
+					src.line(2,"outBean.set" + _property(mapping.field) + "(" + _attrReader(mapping) + ");");
+				} else {
+					elements.add(mapping);
+				}
+			}
+			src.line(2,"while (_nextChild()) {");
+			if (!elements.isEmpty()) src.line(3,"String name = _xml.getLocalName();");
+			boolean first = true;
+			for (Mapping mapping : elements) {
+				src.line(3,(first ? "if" : "} else if") + " (\"" + mapping.xmlName + "\".equals(name)) {");
+				first = false;
+				_elementReader(src,mapping,imports);
+			}
+			if (elements.isEmpty()) {
+				src.line(3,"_skip();");
+			} else {
+				src.line(3,"} else {")
+				   .line(4,"_skip();")
+				   .line(3,"}");
+			}
+			src.line(2,"}")
+			   .line(2,"return outBean;")
+			   .line(1,"}");
+		}
+		return _file(imports,src);
+	}
+	private static String _attrReader(final Mapping mapping) {
+		String name = "\"" + mapping.xmlName + "\"";
+		if (mapping.type == String.class) return "_xml.getAttributeValue(null," + name + ")";
+		if (mapping.type == int.class) return "_intAttr(" + name + ")";
+		if (mapping.type == Date.class) return "_dateAttr(" + name + ")";
+		if (mapping.type.isEnum()) return "_enumAttr(" + mapping.type.getSimpleName() + ".class," + name + ")";
+		throw new IllegalStateException(mapping.field + ": unsupported attribute type " + mapping.type);
+	}
+	private void _elementReader(final Source src,
+								final Mapping mapping,
+								final Set<String> imports) {
+		String setter = "outBean.set" + _property(mapping.field);
+		switch(mapping.kind) {
+		case TEXT:
+			src.line(4,setter + "(" + _textReader(mapping,imports) + ");");
+			break;
+		case BEAN:
+			src.line(4,setter + "(_read" + mapping.type.getSimpleName() + "());");
+			break;
+		case LANGUAGE_TEXTS:
+			src.line(4,setter + "(_readLanguageTexts());");
+			break;
+		case BEAN_MAP:
+		case BEAN_COLLECTION:
+			String item = mapping.type.getSimpleName();
+			String var = mapping.field.getName().substring(1);
+			if (mapping.kind == Kind.BEAN_MAP) {
+				imports.add(Map.class.getName());
+				imports.add(LinkedHashMap.class.getName());
+				src.line(4,"Map<String," + item + "> " + var + " = new LinkedHashMap<String," + item + ">();");
+			} else {
+				imports.add(mapping.field.getType().getName());
+				imports.add(ArrayList.class.getName());
+				src.line(4,mapping.field.getType().getSimpleName() + "<" + item + "> " + var + " = new ArrayList<" + item + ">();");
+			}
+			src.line(4,"while (_nextChild()) {")
+			   .line(5,"if (\"" + mapping.itemName + "\".equals(_xml.getLocalName())) {");
+			if (mapping.kind == Kind.BEAN_MAP) {
+				src.line(6,item + " item = _read" + item + "();")
+				   .line(6,var + ".put(" + _getter("item",_oidField(mapping.type)) + ",item);");
+			} else {
+				src.line(6,var + ".add(_read" + item + "());");
+			}
+			src.line(5,"} else {")
+			   .line(6,"_skip();")
+			   .line(5,"}")
+			   .line(4,"}")
+			   .line(4,setter + "(" + var + ");");
+			break;
+		default:
+			throw new IllegalStateException(mapping.field + ": unsupported element " + mapping.kind);
+		}
+	}
+	private static String _textReader(final Mapping mapping,
+									  final Set<String> imports) {
+		if (mapping.type == String.class) return "_xml.getElementText()";
+		if (mapping.type == int.class) return "_intText()";
+		if (mapping.type == double.class) return "_doubleText()";
+		if (mapping.type == float.class) return "_floatText()";
+		if (mapping.type == Path.class) return "_pathText()";
+		if (mapping.type.isEnum()) {
+			imports.add(mapping.type.getName());
+			return "_enumText(" + mapping.type.getSimpleName() + ".class)";
+		}
+		throw new IllegalStateException(mapping.field + ": unsupported element type " + mapping.type);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  WRITER
+/////////////////////////////////////////////////////////////////////////////////////////
+	public String generateWriter() {
+		Set<String> imports = new TreeSet<String>();
+		imports.add("java.io.OutputStream");
+		imports.add("java.io.StringWriter");
+		imports.add("javax.xml.stream.XMLStreamException");
+		imports.add("javax.xml.stream.XMLStreamWriter");
+		Source src = new Source();
+		src.line(0,"/**")
+		   .line(0," * Writes the meteo model objects as xml WITHOUT reflection (no mappings are built at runtime)")
+		   .line(0," * GENERATED by {@link euskadi.opendata.internal.meteo.MeteoModelXmlCodeGenerator} from the model xml annotations: DO NOT EDIT")
+		   .line(0," */")
+		   .line(0,"public class " + WRITER)
+		   .line(1," extends MeteoStAXWriter {")
+		   .section("CONSTRUCTOR")
+		   .line(1,"private " + WRITER + "(final XMLStreamWriter xml) {")
+		   .line(2,"super(xml);")
+		   .line(1,"}");
+		// public api
+		src.section("PUBLIC");
+		src.line(1,"/**")
+		   .line(1," * @param type")
+		   .line(1," * @return true if objects of the given type can be written")
+		   .line(1," */")
+		   .line(1,"public static boolean canWrite(final Class<?> type) {");
+		StringBuilder types = new StringBuilder();
+		for (Class<?> bean : _beans.keySet()) {
+			imports.add(bean.getName());
+			types.append(types.length() > 0 ? "\n\t\t\t|| " : "return ").append("type == ").append(bean.getSimpleName()).append(".class");
+		}
+		src.line(2,types.append(";").toString())
+		   .line(1,"}");
+		src.line(1,"/**")
+		   .line(1," * Writes a model object as an UTF-8 xml document")
+		   .line(1," * @param bean")
+		   .line(1," * @param os")
+		   .line(1," * @throws XMLStreamException")
+		   .line(1," * @throws IllegalArgumentException if the object type is NOT supported (see {@link #canWrite(Class)})")
+		   .line(1," */")
+		   .line(1,"public static void write(final Object bean,")
+		   .line(1,"						 final OutputStream os) throws XMLStreamException {")
+		   .line(2,"XMLStreamWriter xml = _createXMLStreamWriter(os);")
+		   .line(2,"try {")
+		   .line(3,"xml.writeStartDocument(\"UTF-8\",\"1.0\");")
+		   .line(3,"new " + WRITER + "(xml)._write(bean);")
+		   .line(3,"xml.writeEndDocument();")
+		   .line(3,"xml.flush();")
+		   .line(2,"} finally {")
+		   .line(3,"xml.close();")
+		   .line(2,"}")
+		   .line(1,"}")
+		   .line(1,"/**")
+		   .line(1," * Writes a model object as an xml string (without the xml declaration)")
+		   .line(1," * @param bean")
+		   .line(1," * @return")
+		   .line(1," * @throws IllegalArgumentException if the object type is NOT supported (see {@link #canWrite(Class)})")
+		   .line(1," */")
+		   .line(1,"public static String xmlFromBean(final Object bean) {")
+		   .line(2,"StringWriter writer = new StringWriter(1024);")
+		   .line(2,"try {")
+		   .line(3,"XMLStreamWriter xml = _createXMLStreamWriter(writer);")
+		   .line(3,"new " + WRITER + "(xml)._write(bean);")
+		   .line(3,"xml.close();")
+		   .line(2,"} catch (XMLStreamException xmlEx) {")
+		   .line(3,"throw new IllegalStateException(xmlEx);		// cannot happen writing to memory")
+		   .line(2,"}")
+		   .line(2,"return writer.toString();")
+		   .line(1,"}")
+		   .line(1,"private void _write(final Object bean) throws XMLStreamException {")
+		   .line(2,"if (bean == null) throw new IllegalArgumentException(\"Cannot write a null object\");");
+		for (Class<?> bean : _beans.keySet()) {
+			src.line(2,"if (bean.getClass() == " + bean.getSimpleName() + ".class) {")
+			   .line(3,"_write" + bean.getSimpleName() + "(\"" + _rootName(bean) + "\",(" + bean.getSimpleName() + ")bean);")
+			   .line(3,"return;")
+			   .line(2,"}");
+		}
+		src.line(2,"throw new IllegalArgumentException(bean.getClass() + \" is NOT a supported meteo model object\");")
+		   .line(1,"}");
+		// a method per bean
+		for (Map.Entry<Class<?>,List<Mapping>> me : _beans.entrySet()) {
+			Class<?> bean = me.getKey();
+			src.section(_rootName(bean));
+			src.line(1,"private void _write" + bean.getSimpleName() + "(final String elementName,")
+			   .line(1,_spaces(("private void _write" + bean.getSimpleName() + "(").length()) + "final " + bean.getSimpleName() + " bean) throws XMLStreamException {")
+			   .line(2,"if (bean == null) return;")
+			   .line(2,"_xml.writeStartElement(elementName);");
+			// the attributes MUST be written before any child
+			for (Mapping mapping : me.getValue()) {
+				if (mapping.kind == Kind.ATTRIBUTE) src.line(2,"_attr(\"" + mapping.xmlName + "\"," + _getter("bean",mapping.field) + ");");
+			}
+			for (Mapping mapping : me.getValue()) {
+				String getter = _getter("bean",mapping.field);
+				switch(mapping.kind) {
+				case ATTRIBUTE:
+					break;
+				case TEXT:
+					src.line(2,"_text(\"" + mapping.xmlName + "\"," + getter + "," + mapping.cdata + ");");
+					break;
+				case BEAN:
+					src.line(2,"_write" + mapping.type.getSimpleName() + "(\"" + mapping.xmlName + "\"," + getter + ");");
+					break;
+				case LANGUAGE_TEXTS:
+					src.line(2,"_languageTexts(\"" + mapping.xmlName + "\"," + getter + "," + mapping.cdata + ");");
+					break;
+				case BEAN_MAP:
+				case BEAN_COLLECTION:
+					String item = mapping.type.getSimpleName();
+					src.line(2,"if (" + getter + " != null) {")
+					   .line(3,"_xml.writeStartElement(\"" + mapping.xmlName + "\");")
+					   .line(3,"for (" + item + " item : " + getter + (mapping.kind == Kind.BEAN_MAP ? ".values()" : "") + ") {")
+					   .line(4,"_write" + item + "(\"" + mapping.itemName + "\",item);")
+					   .line(3,"}")
+					   .line(3,"_xml.writeEndElement();")
+					   .line(2,"}");
+					break;
+				default:
+					throw new IllegalStateException(mapping.field + ": unsupported mapping " + mapping.kind);
+				}
+			}
+			src.line(2,"_xml.writeEndElement();")
+			   .line(1,"}");
+		}
+		return _file(imports,src);
+	}
+	private static String _spaces(final int count) {
+		StringBuilder sb = new StringBuilder(count);
+		for (int i=0; i < count; i++) sb.append(' ');
+		return sb.toString();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  SOURCE
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static String _file(final Set<String> imports,
+								final Source src) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("package ").append(TARGET_PACKAGE).append(";\n\n");
+		// java, javax and then the others
+		List<String> sorted = new ArrayList<String>();
+		for (String imp : imports) if (imp.startsWith("java.")) sorted.add(imp);
+		for (String imp : imports) if (imp.startsWith("javax.")) sorted.add(imp);
+		for (String imp : imports) if (!imp.startsWith("java.") && !imp.startsWith("javax.")) sorted.add(imp);
+		String group = null;
+		for (String imp : sorted) {
+			if (imp.startsWith(TARGET_PACKAGE + ".") && imp.lastIndexOf('.') == TARGET_PACKAGE.length()) continue;
+			String impGroup = imp.substring(0,imp.indexOf('.'));
+			if (group != null && !group.equals(impGroup)) sb.append("\n");
+			group = impGroup;
+			sb.append("import ").append(imp).append(";\n");
+		}
+		sb.append("\n")
+		  .append(src.toString())
+		  .append("}\n");
+		return sb.toString();
+	}
+	private static class Source {
+		private final StringBuilder _sb = new StringBuilder();
+
+		Source line(final int indent,final String line) {
+			for (int i=0; i < indent; i++) _sb.append('\t');
+			_sb.append(line).append('\n');
+			return this;
+		}
+		Source section(final String title) {
+			_sb.append(SEPARATOR).append("\n")
+			   .append("//  ").append(title).append("\n")
+			   .append(SEPARATOR).append("\n");
+			return this;
+		}
+		@Override
+		public String toString() {
+			return _sb.toString();
+		}
+	}
+}
@@ -1,18 +1,21 @@
 package euskadi.opendata.internal.meteo;
 
-import javax.inject.Singleton;
-
 import r01f.marshalling.Marshaller;
-import r01f.marshalling.Marshaller.MarshallerMappingsSearch;
-import r01f.marshalling.simple.SimpleMarshallerBuilder;
 import r01f.model.annotations.ModelObjectsMarshaller;
 
 import com.google.inject.Binder;
 import com.google.inject.Module;
+import com.google.inject.Singleton;
 
-import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.service.meteo.MeteoFeedEngine;
+import euskadi.opendata.service.meteo.MeteoMetrics;
 import euskadi.opendata.service.meteo.WeatherForecastService;
+import euskadi.opendata.service.meteo.WeatherForecastServiceConfig;
 import euskadi.opendata.service.meteo.WeatherForecastServiceImpl;
+import euskadi.opendata.service.meteo.WeatherTendencyService;
+import euskadi.opendata.service.meteo.WeatherTendencyServiceImpl;
+import euskadi.opendata.service.meteo.WeatherZoneForecastService;
+import euskadi.opendata.service.meteo.WeatherZoneForecastServiceImpl;
 
 public class MeteoOpenDataBootstrapGuiceModule
   implements Module {
@@ -21,23 +24,44 @@ public class MeteoOpenDataBootstrapGuiceModule
 /////////////////////////////////////////////////////////////////////////////////////////
 	@Override
 	public void configure(final Binder binder) {	
+		// the metrics recorded by the feeds, the marshaller and the REST layer
+		MeteoMetrics metrics = new MeteoMetrics();
+		binder.bind(MeteoMetrics.class)
+			  .toInstance(metrics);
+		
 		// do the marshaller bindings
-		_bindModelObjectsMarshaller(binder);
+		_bindModelObjectsMarshaller(binder,
+									metrics);
 		
 		// do the service bindings
+		// (eager: the feeds are refreshed as soon as the injector is created by the SAME shared engine)
+		binder.bind(WeatherForecastServiceConfig.class)
+			  .toInstance(WeatherForecastServiceConfig.fromSystemProperties());
+		binder.bind(MeteoFeedEngine.class)
+			  .asEagerSingleton();
 		binder.bind(WeatherForecastService.class).to(WeatherForecastServiceImpl.class)
-			  .in(Singleton.class);
+			  .asEagerSingleton();
+		
+		// the zone forecast & tendency feeds are opt-in: their xml layouts are NOT checked against
+		// real documents yet so they're NOT polled unless enabled (-Dopendata.meteo.zoneAndTendencyFeeds=true)
+		if (WeatherForecastServiceConfig.zoneAndTendencyFeedsFromSystemProperties()) {
+			binder.bind(WeatherZoneForecastService.class).to(WeatherZoneForecastServiceImpl.class)
+				  .in(Singleton.class);
+			binder.bind(WeatherTendencyService.class).to(WeatherTendencyServiceImpl.class)
+				  .in(Singleton.class);
+		}
 	}
 /////////////////////////////////////////////////////////////////////////////////////////
 // 	COMMON BINDINGS
 /////////////////////////////////////////////////////////////////////////////////////////
 	/**
 	 * bindings for the marshaller
+	 * (the model objects are marshalled by the generated readers / writers: the package is NOT scanned at startup)
 	 */
-	private static void _bindModelObjectsMarshaller(final Binder binder) {
+	private static void _bindModelObjectsMarshaller(final Binder binder,
+													final MeteoMetrics metrics) {
 		// Create the model objects marshaller
-		Marshaller marshaller = SimpleMarshallerBuilder.createForPackages(MarshallerMappingsSearch.inPackages(Forecast.class.getPackage().getName()))	
-											 		   .getForMultipleUse();
+		Marshaller marshaller = MeteoModelObjectsMarshaller.create(metrics);
 		// Bind this instance to the model object's marshaller
 		binder.bind(Marshaller.class).annotatedWith(ModelObjectsMarshaller.class)
 									 .toInstance(marshaller);
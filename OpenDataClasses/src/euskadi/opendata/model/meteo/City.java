@@ -24,6 +24,16 @@ public enum City
 		_label = name;
 	}
 	private static final EnumWithCodeAndLabelWrapper<String,City> WRAPPER = EnumWithCodeAndLabelWrapper.create(City.class);
+	/**
+	 * The cities indexed by their (numeric) code so {@link #fromCode(String)} is a single array access
+	 */
+	private static final City[] BY_CODE;
+	static {
+		int maxCode = 0;
+		for (City city : City.values()) maxCode = Math.max(maxCode,_numericCode(city.getCode()));
+		BY_CODE = new City[maxCode + 1];
+		for (City city : City.values()) BY_CODE[_numericCode(city.getCode())] = city;
+	}
 
 
 	@Override
@@ -39,6 +49,26 @@ public enum City
 		return WRAPPER.canBeFrom(label);
 	}
 	public static City fromCode(final String code) {
-		return WRAPPER.fromCode(code);
+		int numCode = _numericCode(code);
+		City outCity = numCode >= 0 && numCode < BY_CODE.length ? BY_CODE[numCode]
+																: null;
+		if (outCity != null && !outCity.getCode().equals(code)) outCity = null;	// only the canonical code: "02" is NOT "2"
+		return outCity != null ? outCity
+							   : WRAPPER.fromCode(code);	// not a city code: let the wrapper deal with it
+	}
+	/**
+	 * Parses the code without creating any object
+	 * @param code
+	 * @return the code as a number or -1 if it's not a (small) positive number
+	 */
+	private static int _numericCode(final String code) {
+		if (code == null || code.length() == 0 || code.length() > 4) return -1;
+		int outNum = 0;
+		for (int i=0; i < code.length(); i++) {
+			char c = code.charAt(i);
+			if (c < '0' || c > '9') return -1;
+			outNum = outNum * 10 + (c - '0');
+		}
+		return outNum;
 	}
 }
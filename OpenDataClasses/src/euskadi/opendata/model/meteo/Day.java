@@ -1,5 +1,9 @@
 package euskadi.opendata.model.meteo;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import lombok.Getter;
 import lombok.experimental.Accessors;
 import r01f.enums.EnumWithCode;
@@ -20,6 +24,15 @@ public enum Day
 	}
 	
 	private static final EnumWithCodeWrapper<String,Day> WRAPPER = EnumWithCodeWrapper.create(Day.class);
+	/**
+	 * The days by code so {@link #fromCode(String)} does NOT iterate the values
+	 */
+	private static final Map<String,Day> BY_CODE;
+	static {
+		Map<String,Day> byCode = new HashMap<String,Day>(Day.values().length * 2);
+		for (Day day : Day.values()) byCode.put(day.getCode(),day);
+		BY_CODE = Collections.unmodifiableMap(byCode);
+	}
 
 	@Override
 	public boolean isIn(final Day... els) {
@@ -30,7 +43,9 @@ public enum Day
 		return WRAPPER.is(this,el);
 	}
 	public static Day fromCode(final String code) {
-		return WRAPPER.fromCode(code);
+		Day outDay = code != null ? BY_CODE.get(code) : null;
+		return outDay != null ? outDay
+							  : WRAPPER.fromCode(code);	// not a day code: let the wrapper deal with it
 	}
 	public static Day fromName(final String name) {
 		return WRAPPER.fromName(name);
@@ -0,0 +1,77 @@
+package euskadi.opendata.model.meteo;
+
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import r01f.locale.Language;
+import r01f.marshalling.annotations.OidField;
+import r01f.marshalling.annotations.XmlCDATA;
+import r01f.util.types.collections.CollectionUtils;
+
+import com.google.common.collect.Range;
+
+/**
+ * A forecast for a zone (comarca)
+ */
+@XmlRootElement(name="zoneForecastData")
+@Accessors(prefix="_")
+public class ForecastForZone {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The code for the zone
+	 */
+	@XmlAttribute(name="zoneCode") @OidField
+	@Getter @Setter private String _zoneCode;
+	/**
+	 * The zone name
+	 */
+	@XmlAttribute(name="zoneName")
+	@Getter @Setter private String _zoneName;
+	/**
+	 * The forecast for the zone
+	 */
+	@XmlElementWrapper(name="description") @XmlCDATA
+	@Getter @Setter private Map<Language,String> _descriptions;
+	/**
+	 * The max temperature
+	 */
+	@XmlElement(name="tempMax")
+	@Getter @Setter private int _tempMax;
+	/**
+	 * The min temperature
+	 */
+	@XmlElement(name="tempMin")
+	@Getter @Setter private int _tempMin;
+	/**
+	 * The prediction icon (a cloud, a sun, rain, etc)
+	 */
+	@XmlElement(name="symbol")
+	@Getter @Setter private ForecastForLocationSymbol _symbol;
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return a {@link Range} with the temperature
+	 */
+	public Range<Integer> getTemperatureRange() {
+		return Range.closed(_tempMin,_tempMax);
+	}
+	/**
+	 * The description in a given language
+	 * @param lang
+	 * @return
+	 */
+	public String getDescriptionIn(final Language lang) {
+		return CollectionUtils.hasData(_descriptions) ? _descriptions.get(lang)
+													  : null;
+	}
+}
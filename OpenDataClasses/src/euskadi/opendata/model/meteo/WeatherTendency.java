@@ -0,0 +1,35 @@
+package euskadi.opendata.model.meteo;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import r01f.marshalling.annotations.XmlDateFormat;
+
+/**
+ * The weather tendency for the next days: met_tendency.xml
+ */
+@XmlRootElement(name="weatherTendency")
+@Accessors(prefix="_")
+public class WeatherTendency {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The date the prediction was made
+	 */
+	@XmlAttribute(name="doneDate") @XmlDateFormat("dd/MM/yyyy")
+	@Getter @Setter private Date _date;
+	/**
+	 * The tendency for the next days (sorted by date)
+	 */
+	@XmlElementWrapper(name="tendencies") @XmlElement(name="tendency")
+	@Getter @Setter private List<TendencyForDay> _tendencies;
+}
@@ -0,0 +1,48 @@
+package euskadi.opendata.model.meteo;
+
+import java.util.Date;
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import r01f.marshalling.annotations.XmlDateFormat;
+import r01f.util.types.collections.CollectionUtils;
+
+/**
+ * The forecast by zone (comarca): met_forecast_zone.xml
+ */
+@XmlRootElement(name="zoneForecast")
+@Accessors(prefix="_")
+public class ZoneForecast {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The date the prediction was made
+	 */
+	@XmlAttribute(name="doneDate") @XmlDateFormat("dd/MM/yyyy")
+	@Getter @Setter private Date _date;
+	/**
+	 * The forecast for TODAY, TOMORROW and NEXT days
+	 */
+	@XmlElementWrapper(name="forecasts") @XmlElement(name="forecast")
+	@Getter @Setter private Map<String,ZoneForecastForDay> _forecasts;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Returns the forecast for a given day: TODAY, TOMORROW, NEXT days
+	 * @param day
+	 * @return
+	 */
+	public ZoneForecastForDay getDayForecasts(final Day day) {
+		return CollectionUtils.hasData(_forecasts) ? _forecasts.get(day.getCode())
+												   : null;
+	}
+}
@@ -0,0 +1,75 @@
+package euskadi.opendata.model.meteo;
+
+import java.util.Date;
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import r01f.locale.Language;
+import r01f.marshalling.annotations.OidField;
+import r01f.marshalling.annotations.XmlCDATA;
+import r01f.marshalling.annotations.XmlDateFormat;
+import r01f.util.types.collections.CollectionUtils;
+
+/**
+ * A zone forecast for today, tomorrow or next
+ */
+@XmlRootElement(name="zoneForecastForDay")
+@Accessors(prefix="_")
+public class ZoneForecastForDay {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The id of the prediction date
+	 */
+	@XmlAttribute(name="forecastDay") @OidField
+	@Getter @Setter private String _dateId;
+	/**
+	 * The date the prediction refers to
+	 */
+	@XmlAttribute(name="forecastDate") @XmlDateFormat("dd/MM/yyyy")
+	@Getter @Setter private Date _date;
+	/**
+	 * A textual description of the forecast date
+	 */
+	@XmlElement(name="forecastDateText")
+	@Getter @Setter private String _foreCastDateText;
+	/**
+	 * The forecast summary
+	 */
+	@XmlElementWrapper(name="description") @XmlCDATA
+	@Getter @Setter private Map<Language,String> _descriptions;
+	/**
+	 * A list of zones with their forecast
+	 */
+	@XmlElementWrapper(name="zoneForecastDataList") @XmlElement(name="zoneForecastData")
+	@Getter @Setter private Map<String,ForecastForZone> _zones;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Returns the forecast for a zone given it's code
+	 * @param zoneCode
+	 * @return
+	 */
+	public ForecastForZone getForecastForZoneCode(final String zoneCode) {
+		return CollectionUtils.hasData(_zones) ? _zones.get(zoneCode)
+											   : null;
+	}
+	/**
+	 * The description in a given language
+	 * @param lang
+	 * @return
+	 */
+	public String getDescriptionIn(final Language lang) {
+		return CollectionUtils.hasData(_descriptions) ? _descriptions.get(lang)
+													  : null;
+	}
+}
@@ -0,0 +1,107 @@
+package euskadi.opendata.service.meteo;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * Error statistics of the forecasts made some days in advance (a horizon) compared with
+ * the forecast made the same day (the best available reference for the actual weather)
+ * <ul>
+ * 		<li>tempMax / tempMin: mean absolute error, bias (mean signed error) and max absolute error</li>
+ * 		<li>icon: how often the icon forecasted in advance changed at the same day forecast</li>
+ * </ul>
+ * Built by the {@link ForecastAccuracyAnalyzer}; it's NOT thread safe while it's being built
+ */
+@Accessors(prefix="_")
+public class ForecastAccuracy {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final TemperatureError _tempMax = new TemperatureError();
+	@Getter private final TemperatureError _tempMin = new TemperatureError();
+	/**
+	 * The number of compared icons
+	 */
+	@Getter private int _iconCount;
+	/**
+	 * The number of compared icons that changed
+	 */
+	@Getter private int _iconChangeCount;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	void add(final int forecastTempMax,final int referenceTempMax,
+			 final int forecastTempMin,final int referenceTempMin,
+			 final int forecastIcon,final int referenceIcon) {
+		_tempMax.add(forecastTempMax,referenceTempMax);
+		_tempMin.add(forecastTempMin,referenceTempMin);
+		if (forecastIcon != ForecastArchive.NO_VALUE && referenceIcon != ForecastArchive.NO_VALUE) {
+			_iconCount++;
+			if (forecastIcon != referenceIcon) _iconChangeCount++;
+		}
+	}
+	void merge(final ForecastAccuracy other) {
+		_tempMax.merge(other._tempMax);
+		_tempMin.merge(other._tempMin);
+		_iconCount += other._iconCount;
+		_iconChangeCount += other._iconChangeCount;
+	}
+	/**
+	 * @return the ratio (0 to 1) of compared icons that changed
+	 */
+	public double getIconChangeRate() {
+		return _iconCount > 0 ? (double)_iconChangeCount / _iconCount : 0;
+	}
+	@Override
+	public String toString() {
+		return String.format("max[%s] min[%s] icon changes %d/%d (%.1f%%)",
+							 _tempMax,_tempMin,
+							 _iconChangeCount,_iconCount,this.getIconChangeRate() * 100);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  TEMPERATURE
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Accessors(prefix="_")
+	public static class TemperatureError {
+		/**
+		 * The number of compared temperatures
+		 */
+		@Getter private int _count;
+		private long _absoluteErrorSum;
+		private long _errorSum;
+		@Getter private int _maxAbsoluteError;
+
+		void add(final int forecast,final int reference) {
+			if (forecast == ForecastArchive.NO_VALUE || reference == ForecastArchive.NO_VALUE) return;
+			int error = forecast - reference;
+			int absError = Math.abs(error);
+			_count++;
+			_errorSum += error;
+			_absoluteErrorSum += absError;
+			if (absError > _maxAbsoluteError) _maxAbsoluteError = absError;
+		}
+		void merge(final TemperatureError other) {
+			_count += other._count;
+			_errorSum += other._errorSum;
+			_absoluteErrorSum += other._absoluteErrorSum;
+			_maxAbsoluteError = Math.max(_maxAbsoluteError,other._maxAbsoluteError);
+		}
+		/**
+		 * @return the mean absolute error (degrees)
+		 */
+		public double getMeanAbsoluteError() {
+			return _count > 0 ? (double)_absoluteErrorSum / _count : 0;
+		}
+		/**
+		 * @return the mean signed error (degrees): > 0 if the forecasts were too warm
+		 */
+		public double getBias() {
+			return _count > 0 ? (double)_errorSum / _count : 0;
+		}
+		@Override
+		public String toString() {
+			return String.format("n=%d mae=%.2f bias=%+.2f max=%d",
+								 _count,this.getMeanAbsoluteError(),this.getBias(),_maxAbsoluteError);
+		}
+	}
+}
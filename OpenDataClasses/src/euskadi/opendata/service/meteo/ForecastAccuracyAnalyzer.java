@@ -0,0 +1,167 @@
+package euskadi.opendata.service.meteo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import euskadi.opendata.model.meteo.Day;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Computes how accurate the forecasts of a {@link ForecastArchive} were
+ * <ul>
+ * 		<li>every target date is forecasted up to three times: the same day (today), the day before (tomorrow) and two days before (next)</li>
+ * 		<li>the forecasts are joined by target date and the ones made in advance are compared with the same day one
+ * 			(the latest issued one of every period is used)</li>
+ * 		<li>the errors are accumulated per city and horizon (see {@link ForecastAccuracy})</li>
+ * </ul>
+ * Every city is analyzed by an independent task and the partial results are merged at the end:
+ * since the archive rows are sorted by city and date, every task just does a single sequential
+ * pass over it's city rows
+ * <pre class='brush:java'>
+ * 		ForecastAccuracyReport report = new ForecastAccuracyAnalyzer(archive).analyze();
+ * </pre>
+ */
+@Slf4j
+public class ForecastAccuracyAnalyzer {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The horizons that are compared with the same day forecast
+	 */
+	private static final Day[] HORIZONS = { Day.TOMORROW,Day.NEXT };
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private final ForecastArchive _archive;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public ForecastAccuracyAnalyzer(final ForecastArchive archive) {
+		if (archive == null) throw new IllegalArgumentException("The forecast archive is mandatory");
+		_archive = archive;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Analyzes all the archived cities in parallel using as many threads as processors
+	 * @return
+	 */
+	public ForecastAccuracyReport analyze() {
+		int threads = Math.max(1,Math.min(Runtime.getRuntime().availableProcessors(),
+										  _archive.cityCodes().length));
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+																 new ThreadFactoryBuilder().setNameFormat("forecast-accuracy-%d")
+																						   .setDaemon(true)
+																						   .build());
+		try {
+			return this.analyze(executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	/**
+	 * Analyzes all the archived cities: every city is submitted as a task to the given executor
+	 * @param executor
+	 * @return
+	 */
+	public ForecastAccuracyReport analyze(final ExecutorService executor) {
+		long start = System.currentTimeMillis();
+		int[] cityCodes = _archive.cityCodes();
+		List<Future<CityAccuracy>> tasks = new ArrayList<Future<CityAccuracy>>(cityCodes.length);
+		for (final int cityCode : cityCodes) {
+			tasks.add(executor.submit(new Callable<CityAccuracy>() {
+												@Override
+												public CityAccuracy call() {
+													return _analyzeCity(cityCode);
+												}
+									  }));
+		}
+		// merge (in city order so the report does NOT depend on the task completion order)
+		ForecastAccuracyReport outReport = new ForecastAccuracyReport();
+		try {
+			for (Future<CityAccuracy> task : tasks) {
+				CityAccuracy city = task.get();
+				outReport.addCity(city.cityCode,city.accuracy,city.comparedDateCount);
+			}
+		} catch (InterruptedException intEx) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while analyzing the forecast accuracy");
+		} catch (ExecutionException exEx) {
+			throw new IllegalStateException("Could NOT analyze the forecast accuracy: " + exEx.getCause().getMessage(),exEx.getCause());
+		} finally {
+			for (Future<CityAccuracy> task : tasks) task.cancel(true);		// no-op if done
+		}
+		outReport.setElapsedMillis(System.currentTimeMillis() - start);
+		log.info("Forecast accuracy of {} cities analyzed in {} ms",cityCodes.length,outReport.getElapsedMillis());
+		return outReport;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CITY
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Single pass over the city rows (sorted by date, period and issue time): for every date the
+	 * last row of every period is kept and, when the date changes, compared with the today one
+	 * @param cityCode
+	 * @return
+	 */
+	private CityAccuracy _analyzeCity(final int cityCode) {
+		CityAccuracy outAccuracy = new CityAccuracy(cityCode);
+		ForecastArchive.Scan scan = _archive.scan(cityCode);
+
+		int periods = Day.values().length;
+		boolean[] present = new boolean[periods];
+		int[] tempMax = new int[periods];
+		int[] tempMin = new int[periods];
+		int[] icons = new int[periods];
+		int date = 0;
+		while (scan.next()) {
+			if (scan.getDate() != date) {
+				outAccuracy.compare(present,tempMax,tempMin,icons);
+				Arrays.fill(present,false);
+				date = scan.getDate();
+			}
+			int p = scan.getDay().ordinal();
+			present[p] = true;		// the rows are sorted by issue time: the last one wins
+			tempMax[p] = scan.getTempMax();
+			tempMin[p] = scan.getTempMin();
+			icons[p] = scan.getIcon();
+		}
+		outAccuracy.compare(present,tempMax,tempMin,icons);
+		return outAccuracy;
+	}
+	private static class CityAccuracy {
+		final int cityCode;
+		final Map<Day,ForecastAccuracy> accuracy = new EnumMap<Day,ForecastAccuracy>(Day.class);
+		int comparedDateCount;
+
+		CityAccuracy(final int cityCode) {
+			this.cityCode = cityCode;
+			for (Day horizon : HORIZONS) accuracy.put(horizon,new ForecastAccuracy());
+		}
+		void compare(final boolean[] present,
+					 final int[] tempMax,final int[] tempMin,final int[] icons) {
+			int ref = Day.TODAY.ordinal();
+			if (!present[ref]) return;		// nothing to compare with
+			comparedDateCount++;
+			for (Day horizon : HORIZONS) {
+				int h = horizon.ordinal();
+				if (!present[h]) continue;
+				accuracy.get(horizon).add(tempMax[h],tempMax[ref],
+										  tempMin[h],tempMin[ref],
+										  icons[h],icons[ref]);
+			}
+		}
+	}
+}
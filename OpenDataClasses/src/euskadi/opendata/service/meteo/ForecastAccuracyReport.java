@@ -0,0 +1,95 @@
+package euskadi.opendata.service.meteo;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import euskadi.opendata.model.meteo.Day;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * The forecast accuracy per city and horizon computed by the {@link ForecastAccuracyAnalyzer}
+ * (the horizon is the day the forecast was made for: {@link Day#TOMORROW} or {@link Day#NEXT})
+ */
+@Accessors(prefix="_")
+public class ForecastAccuracyReport {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * city code -> horizon -> accuracy
+	 */
+	private final Map<Integer,Map<Day,ForecastAccuracy>> _byCity = new TreeMap<Integer,Map<Day,ForecastAccuracy>>();
+	private final Map<Day,ForecastAccuracy> _overall = new EnumMap<Day,ForecastAccuracy>(Day.class);
+	/**
+	 * The number of dates that had a same day forecast to compare with
+	 */
+	@Getter private int _comparedDateCount;
+	/**
+	 * How long the analysis took
+	 */
+	@Getter private long _elapsedMillis;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  BUILD
+/////////////////////////////////////////////////////////////////////////////////////////
+	void addCity(final int cityCode,
+				 final Map<Day,ForecastAccuracy> accuracy,
+				 final int comparedDateCount) {
+		_byCity.put(cityCode,accuracy);
+		for (Map.Entry<Day,ForecastAccuracy> me : accuracy.entrySet()) {
+			ForecastAccuracy overall = _overall.get(me.getKey());
+			if (overall == null) {
+				overall = new ForecastAccuracy();
+				_overall.put(me.getKey(),overall);
+			}
+			overall.merge(me.getValue());
+		}
+		_comparedDateCount += comparedDateCount;
+	}
+	void setElapsedMillis(final long elapsedMillis) {
+		_elapsedMillis = elapsedMillis;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return the analyzed city codes (sorted)
+	 */
+	public Set<Integer> cityCodes() {
+		return Collections.unmodifiableSet(_byCity.keySet());
+	}
+	/**
+	 * @param cityCode
+	 * @param horizon
+	 * @return the accuracy of the city forecasts made for the given horizon (null if there's none)
+	 */
+	public ForecastAccuracy forCity(final int cityCode,
+									final Day horizon) {
+		Map<Day,ForecastAccuracy> accuracy = _byCity.get(cityCode);
+		return accuracy != null ? accuracy.get(horizon) : null;
+	}
+	/**
+	 * @param horizon
+	 * @return the accuracy of all the forecasts made for the given horizon (null if there's none)
+	 */
+	public ForecastAccuracy overall(final Day horizon) {
+		return _overall.get(horizon);
+	}
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(_byCity.size()).append(" cities, ").append(_comparedDateCount).append(" dates compared in ").append(_elapsedMillis).append(" ms\n");
+		for (Map.Entry<Day,ForecastAccuracy> me : _overall.entrySet()) {
+			sb.append("\t").append(me.getKey()).append(": ").append(me.getValue()).append("\n");
+		}
+		for (Map.Entry<Integer,Map<Day,ForecastAccuracy>> city : _byCity.entrySet()) {
+			for (Map.Entry<Day,ForecastAccuracy> me : city.getValue().entrySet()) {
+				sb.append("\tcity ").append(city.getKey()).append(" ").append(me.getKey()).append(": ").append(me.getValue()).append("\n");
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,365 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+
+import com.google.common.base.Charsets;
+
+import euskadi.opendata.model.meteo.City;
+import euskadi.opendata.model.meteo.Day;
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import r01f.locale.Language;
+
+/**
+ * A memory-mapped columnar archive of the historical city forecasts (ie: data_forecast_ds_2013.zip)
+ * built by the {@link ForecastArchiveIngester}
+ * <ul>
+ * 		<li>every archived forecast is a row: the forecast made at a given time for a city and a day</li>
+ * 		<li>the rows are sorted by city, forecast date, period (today/tomorrow/next) and the time the forecast was made</li>
+ * 		<li>every column is a contiguous primitive array in the file (temperatures, icons, dates...)</li>
+ * 		<li>the texts are dictionary-encoded: the columns just have the text id at the dictionary</li>
+ * </ul>
+ * So a date-range scan for a city is a binary search over the date column plus a sequential read
+ * of the needed columns straight from the mapped file (nothing is loaded into the heap)
+ * <pre>
+ * Format (big endian):
+ * 		header:		magic 'OFCA' | version | rowCount | cityCount | textCount | reserved
+ * 		columns:	issuedAt long[rows] | date int[rows] | symbolDescription int[rows] | description int[rows] (one per language)
+ * 					| tempMax short[rows] | tempMin short[rows] | icon short[rows] | period byte[rows]
+ * 		cities:		(cityCode int | firstRow int | rowCount int)[cities] sorted by city code
+ * 		texts:		offset int[texts + 1] | UTF-8 bytes
+ * </pre>
+ * An archive is immutable and can be scanned by many threads at the same time
+ */
+@Accessors(prefix="_")
+public class ForecastArchive {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	static final int MAGIC = 0x4F464341;		// OFCA
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 6 * 4;
+	/**
+	 * The languages the forecast descriptions are archived in
+	 */
+	static final Language[] LANGUAGES = { Language.SPANISH,Language.BASQUE };
+	/**
+	 * The value of a missing temperature or icon
+	 */
+	public static final int NO_VALUE = Short.MIN_VALUE;
+	/**
+	 * The id of a missing text
+	 */
+	static final int NO_TEXT = -1;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final File _file;
+	@Getter private final int _rowCount;
+	// cities
+	private final int[] _cityCodes;
+	private final int[] _cityFirstRows;
+	private final int[] _cityRowCounts;
+	// columns
+	private final LongBuffer _issuedAt;
+	private final IntBuffer _dates;
+	private final IntBuffer _symbolDescriptions;
+	private final IntBuffer[] _descriptions;
+	private final ShortBuffer _tempMax;
+	private final ShortBuffer _tempMin;
+	private final ShortBuffer _icons;
+	private final ByteBuffer _periods;
+	// dictionary
+	private final IntBuffer _textOffsets;
+	private final ByteBuffer _textBytes;
+	/**
+	 * The decoded texts (a text is decoded the first time it's used)
+	 */
+	private final String[] _texts;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ForecastArchive(final File file,
+							final ByteBuffer buf) throws IOException {
+		_file = file;
+		if (buf.getInt(0) != MAGIC) throw new IOException(file + " is NOT a forecast archive");
+		int version = buf.getInt(4);
+		if (version != VERSION) throw new IOException("Unsupported forecast archive version " + version + " at " + file);
+		int rows = buf.getInt(8);
+		int cities = buf.getInt(12);
+		int texts = buf.getInt(16);
+		_rowCount = rows;
+
+		int pos = HEADER_SIZE;
+		_issuedAt = _slice(buf,pos,rows * 8).asLongBuffer();					pos += rows * 8;
+		_dates = _slice(buf,pos,rows * 4).asIntBuffer();						pos += rows * 4;
+		_symbolDescriptions = _slice(buf,pos,rows * 4).asIntBuffer();			pos += rows * 4;
+		_descriptions = new IntBuffer[LANGUAGES.length];
+		for (int l=0; l < LANGUAGES.length; l++) {
+			_descriptions[l] = _slice(buf,pos,rows * 4).asIntBuffer();			pos += rows * 4;
+		}
+		_tempMax = _slice(buf,pos,rows * 2).asShortBuffer();					pos += rows * 2;
+		_tempMin = _slice(buf,pos,rows * 2).asShortBuffer();					pos += rows * 2;
+		_icons = _slice(buf,pos,rows * 2).asShortBuffer();						pos += rows * 2;
+		_periods = _slice(buf,pos,rows);										pos += rows;
+
+		// the city index is small: it's loaded into the heap
+		_cityCodes = new int[cities];
+		_cityFirstRows = new int[cities];
+		_cityRowCounts = new int[cities];
+		for (int c=0; c < cities; c++) {
+			_cityCodes[c] = buf.getInt(pos);
+			_cityFirstRows[c] = buf.getInt(pos + 4);
+			_cityRowCounts[c] = buf.getInt(pos + 8);
+			pos += 12;
+		}
+		_textOffsets = _slice(buf,pos,(texts + 1) * 4).asIntBuffer();			pos += (texts + 1) * 4;
+		_textBytes = _slice(buf,pos,_textOffsets.get(texts));
+		_texts = new String[texts];
+	}
+	private static ByteBuffer _slice(final ByteBuffer buf,
+									 final int pos,final int length) {
+		ByteBuffer dup = buf.duplicate();
+		dup.position(pos);
+		dup.limit(pos + length);
+		return dup.slice();
+	}
+	/**
+	 * Opens an archive memory-mapping the file
+	 * @param file
+	 * @return
+	 * @throws IOException if the file is NOT a valid archive
+	 */
+	public static ForecastArchive open(final File file) throws IOException {
+		@Cleanup RandomAccessFile raf = new RandomAccessFile(file,"r");
+		ByteBuffer buf = raf.getChannel()
+							.map(FileChannel.MapMode.READ_ONLY,0,raf.length());
+		try {
+			return new ForecastArchive(file,buf);
+		} catch (IndexOutOfBoundsException indexEx) {
+			throw new IOException("The forecast archive " + file + " is truncated");
+		} catch (IllegalArgumentException illArgEx) {
+			throw new IOException("The forecast archive " + file + " is truncated");
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return the codes of the archived cities (sorted)
+	 */
+	public int[] cityCodes() {
+		return _cityCodes.clone();
+	}
+	/**
+	 * Scans all the forecasts for a city
+	 * @param cityCode
+	 * @return
+	 */
+	public Scan scan(final int cityCode) {
+		int c = Arrays.binarySearch(_cityCodes,cityCode);
+		if (c < 0) return new Scan(0,0);
+		return new Scan(_cityFirstRows[c],
+						_cityFirstRows[c] + _cityRowCounts[c]);
+	}
+	/**
+	 * Scans the forecasts for a city between two dates (both included)
+	 * @param city
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public Scan scan(final City city,
+					 final Date from,final Date to) {
+		return this.scan(Integer.parseInt(city.getCode()),
+						 dateKey(from),dateKey(to));
+	}
+	/**
+	 * Scans the forecasts for a city between two dates (both included)
+	 * @param cityCode the city code
+	 * @param fromDate the first date as yyyyMMdd (see {@link #dateKey(Date)})
+	 * @param toDate the last date as yyyyMMdd
+	 * @return a scan over the matching rows (it's empty if there's nothing archived for the city)
+	 */
+	public Scan scan(final int cityCode,
+					 final int fromDate,final int toDate) {
+		int c = Arrays.binarySearch(_cityCodes,cityCode);
+		if (c < 0 || fromDate > toDate) return new Scan(0,0);
+		int first = _cityFirstRows[c];
+		int end = first + _cityRowCounts[c];
+		return new Scan(_lowerBound(first,end,fromDate),
+						_lowerBound(first,end,toDate + 1));
+	}
+	/**
+	 * @return the first row in [from,end) whose date is >= date
+	 */
+	private int _lowerBound(final int from,final int end,
+							final int date) {
+		int lo = from;
+		int hi = end;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (_dates.get(mid) < date) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+	/**
+	 * Returns a dictionary text
+	 * @param id
+	 * @return
+	 */
+	private String _text(final int id) {
+		if (id == NO_TEXT) return null;
+		String outText = _texts[id];
+		if (outText == null) {
+			int start = _textOffsets.get(id);
+			byte[] bytes = new byte[_textOffsets.get(id + 1) - start];
+			ByteBuffer dup = _textBytes.duplicate();
+			dup.position(start);
+			dup.get(bytes);
+			outText = new String(bytes,Charsets.UTF_8);
+			_texts[id] = outText;		// benign race: every thread decodes the same text
+		}
+		return outText;
+	}
+	static int languageIndex(final Language lang) {
+		for (int l=0; l < LANGUAGES.length; l++) {
+			if (LANGUAGES[l] == lang) return l;
+		}
+		return -1;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  DATES
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @param date
+	 * @return the date as a yyyyMMdd int (ie: 20130401) at the default time zone
+	 */
+	public static int dateKey(final Date date) {
+		Calendar cal = Calendar.getInstance();
+		cal.setTime(date);
+		return dateKey(cal.get(Calendar.YEAR),cal.get(Calendar.MONTH) + 1,cal.get(Calendar.DAY_OF_MONTH));
+	}
+	/**
+	 * @param year
+	 * @param month 1 to 12
+	 * @param day 1 to 31
+	 * @return the date as a yyyyMMdd int (ie: 20130401)
+	 */
+	public static int dateKey(final int year,final int month,final int day) {
+		return year * 10000 + month * 100 + day;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  SCAN
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * A cursor over the archived forecasts for a city between two dates:
+	 * <pre class='brush:java'>
+	 * 		ForecastArchive.Scan scan = archive.scan(City.BILBAO,from,to);
+	 * 		while (scan.next()) {
+	 * 			int max = scan.getTempMax();
+	 * 			...
+	 * 		}
+	 * </pre>
+	 * The values are read straight from the mapped columns; a scan is NOT thread safe
+	 * (but any number of scans can be used at the same time)
+	 */
+	public class Scan {
+		private final int _first;
+		private final int _end;
+		private int _row;
+
+		Scan(final int first,final int end) {
+			_first = first;
+			_end = end;
+			_row = first - 1;
+		}
+		/**
+		 * Moves to the next row
+		 * @return false if there are no more rows
+		 */
+		public boolean next() {
+			if (_row + 1 >= _end) return false;
+			_row++;
+			return true;
+		}
+		/**
+		 * Moves back before the first row so the scan can be iterated again
+		 */
+		public void rewind() {
+			_row = _first - 1;
+		}
+		/**
+		 * @return the number of rows
+		 */
+		public int size() {
+			return _end - _first;
+		}
+		/**
+		 * @return the date the forecast refers to as yyyyMMdd
+		 */
+		public int getDate() {
+			return _dates.get(_row);
+		}
+		/**
+		 * @return when the forecast was made (millis)
+		 */
+		public long getIssuedAt() {
+			return _issuedAt.get(_row);
+		}
+		/**
+		 * @return today, tomorrow or next: the forecast was made the same day, the day before or two days before
+		 */
+		public Day getDay() {
+			return Day.values()[_periods.get(_row)];
+		}
+		/**
+		 * @return the max temperature or {@link ForecastArchive#NO_VALUE}
+		 */
+		public int getTempMax() {
+			return _tempMax.get(_row);
+		}
+		/**
+		 * @return the min temperature or {@link ForecastArchive#NO_VALUE}
+		 */
+		public int getTempMin() {
+			return _tempMin.get(_row);
+		}
+		/**
+		 * @return the forecast icon code or {@link ForecastArchive#NO_VALUE}
+		 */
+		public int getIcon() {
+			return _icons.get(_row);
+		}
+		/**
+		 * @return the forecast icon description
+		 */
+		public String getSymbolDescription() {
+			return _text(_symbolDescriptions.get(_row));
+		}
+		/**
+		 * @param lang
+		 * @return the forecast description in the given language (null if it's NOT archived)
+		 */
+		public String getDescriptionIn(final Language lang) {
+			int l = languageIndex(lang);
+			return l >= 0 ? _text(_descriptions[l].get(_row))
+						  : null;
+		}
+	}
+}
@@ -0,0 +1,383 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.common.base.Charsets;
+
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.util.ZipArchiveReader;
+import euskadi.opendata.util.ZipArchiveReader.ZipArchiveEntry;
+import lombok.extern.slf4j.Slf4j;
+import r01f.locale.Language;
+import r01f.util.types.Strings;
+
+/**
+ * Builds a {@link ForecastArchive} from the historical city forecasts
+ * (ie: data_forecast_ds_2013.zip that has a <cityForecast> xml per city and month)
+ * <ul>
+ * 		<li>the zip entries are streamed straight from the zip file (nothing is extracted to disk)</li>
+ * 		<li>every xml is read with a single pass StAX reader into primitive columns</li>
+ * 		<li>the texts are dictionary-encoded as they're read: every distinct text is stored once</li>
+ * </ul>
+ * <pre class='brush:java'>
+ * 		ForecastArchive archive = new ForecastArchiveIngester().ingestZip(new File("data_forecast_ds_2013.zip"))
+ * 															   .writeTo(new File("forecasts_2013.ofca"));
+ * </pre>
+ * <pre>
+ * IMPORTANT!	An ingester is NOT thread safe
+ * </pre>
+ */
+@Slf4j
+public class ForecastArchiveIngester {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private int _rowCount;
+	private int[] _cities = new int[1024];
+	private int[] _dates = new int[1024];
+	private long[] _issuedAt = new long[1024];
+	private byte[] _periods = new byte[1024];
+	private short[] _tempMax = new short[1024];
+	private short[] _tempMin = new short[1024];
+	private short[] _icons = new short[1024];
+	private int[] _symbolDescriptions = new int[1024];
+	private int[][] _descriptions = new int[ForecastArchive.LANGUAGES.length][1024];
+	/**
+	 * The text dictionary: text -> id
+	 */
+	private final Map<String,Integer> _textIds = new HashMap<String,Integer>();
+	private final List<String> _texts = new ArrayList<String>();
+/////////////////////////////////////////////////////////////////////////////////////////
+//  INGEST
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Ingests all the xml entries of a zip
+	 * @param zip
+	 * @return this ingester
+	 * @throws IOException
+	 */
+	public ForecastArchiveIngester ingestZip(final File zip) throws IOException {
+		ZipArchiveReader zipReader = new ZipArchiveReader(zip);
+		int files = 0;
+		for (ZipArchiveEntry entry : zipReader.entries()) {
+			if (entry.isDirectory() || !entry.getName().endsWith(".xml")) continue;
+			InputStream is = zipReader.openStream(entry);
+			try {
+				this.ingestXml(is);
+			} catch (IOException ioEx) {
+				throw new IOException("Could NOT ingest " + entry.getName() + " from " + zip + ": " + ioEx.getMessage(),ioEx);
+			} finally {
+				is.close();
+			}
+			files++;
+		}
+		log.info("{} forecast files ingested from {}: {} rows so far",files,zip,_rowCount);
+		return this;
+	}
+	/**
+	 * Ingests a <cityForecast> xml
+	 * @param is
+	 * @return this ingester
+	 * @throws IOException
+	 */
+	public ForecastArchiveIngester ingestXml(final InputStream is) throws IOException {
+		try {
+			XMLStreamReader xml = MeteoStAXReader._createXMLStreamReader(is);
+			try {
+				new CityForecastStAXReader(xml).read();
+			} finally {
+				xml.close();
+			}
+		} catch (XMLStreamException xmlEx) {
+			throw new IOException(xmlEx.getMessage(),xmlEx);
+		}
+		return this;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  WRITE
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Writes the ingested forecasts to the archive file (replacing it) and opens it
+	 * The rows are sorted by city, date, period and issue time; if the same forecast
+	 * was ingested more than once only one row is kept
+	 * @param file
+	 * @return the written archive
+	 * @throws IOException
+	 */
+	public ForecastArchive writeTo(final File file) throws IOException {
+		int[] rows = _sortedRows();
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could NOT create the " + dir + " folder");
+		File tmp = new File(dir,file.getName() + ".tmp");
+		FileOutputStream fos = new FileOutputStream(tmp);
+		try {
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos,64 * 1024));
+			_write(dos,rows);
+			dos.flush();
+			fos.getFD().sync();		// the data MUST be on disk before the file is renamed
+		} finally {
+			fos.close();
+		}
+		// rename: atomic on the same file system
+		if (!tmp.renameTo(file)) {
+			// some platforms (ie: windows) cannot rename over an existing file
+			if (!file.delete() || !tmp.renameTo(file)) {
+				tmp.delete();
+				throw new IOException("Could NOT rename " + tmp + " to " + file);
+			}
+		}
+		log.info("Forecast archive {} written: {} rows, {} texts",file,rows.length,_texts.size());
+		return ForecastArchive.open(file);
+	}
+	/**
+	 * @return the row indexes sorted by city, date, period and issue time (without duplicates)
+	 */
+	private int[] _sortedRows() {
+		Integer[] sorted = new Integer[_rowCount];
+		for (int i=0; i < _rowCount; i++) sorted[i] = i;
+		Arrays.sort(sorted,new Comparator<Integer>() {
+									@Override
+									public int compare(final Integer r1,final Integer r2) {
+										return _compareKeys(r1,r2);
+									}
+						   });
+		int[] outRows = new int[_rowCount];
+		int count = 0;
+		for (int i=0; i < sorted.length; i++) {
+			if (count > 0 && _compareKeys(outRows[count - 1],sorted[i]) == 0) continue;	// duplicated
+			outRows[count++] = sorted[i];
+		}
+		return Arrays.copyOf(outRows,count);
+	}
+	private int _compareKeys(final int r1,final int r2) {
+		if (_cities[r1] != _cities[r2]) return _cities[r1] < _cities[r2] ? -1 : 1;
+		if (_dates[r1] != _dates[r2]) return _dates[r1] < _dates[r2] ? -1 : 1;
+		if (_periods[r1] != _periods[r2]) return _periods[r1] < _periods[r2] ? -1 : 1;
+		if (_issuedAt[r1] != _issuedAt[r2]) return _issuedAt[r1] < _issuedAt[r2] ? -1 : 1;
+		return 0;
+	}
+	private void _write(final DataOutputStream dos,
+						final int[] rows) throws IOException {
+		// city index
+		List<int[]> cities = new ArrayList<int[]>();	// code, firstRow, rowCount
+		for (int i=0; i < rows.length; i++) {
+			int code = _cities[rows[i]];
+			int[] last = cities.isEmpty() ? null : cities.get(cities.size() - 1);
+			if (last != null && last[0] == code) {
+				last[2]++;
+			} else {
+				cities.add(new int[] {code,i,1});
+			}
+		}
+		// header
+		dos.writeInt(ForecastArchive.MAGIC);
+		dos.writeInt(ForecastArchive.VERSION);
+		dos.writeInt(rows.length);
+		dos.writeInt(cities.size());
+		dos.writeInt(_texts.size());
+		dos.writeInt(0);		// reserved
+		// columns
+		for (int row : rows) dos.writeLong(_issuedAt[row]);
+		for (int row : rows) dos.writeInt(_dates[row]);
+		for (int row : rows) dos.writeInt(_symbolDescriptions[row]);
+		for (int[] column : _descriptions) {
+			for (int row : rows) dos.writeInt(column[row]);
+		}
+		for (int row : rows) dos.writeShort(_tempMax[row]);
+		for (int row : rows) dos.writeShort(_tempMin[row]);
+		for (int row : rows) dos.writeShort(_icons[row]);
+		for (int row : rows) dos.writeByte(_periods[row]);
+		// cities
+		for (int[] city : cities) {
+			dos.writeInt(city[0]);
+			dos.writeInt(city[1]);
+			dos.writeInt(city[2]);
+		}
+		// texts
+		byte[][] textBytes = new byte[_texts.size()][];
+		int offset = 0;
+		for (int i=0; i < textBytes.length; i++) {
+			textBytes[i] = _texts.get(i).getBytes(Charsets.UTF_8);
+			dos.writeInt(offset);
+			offset += textBytes[i].length;
+		}
+		dos.writeInt(offset);
+		for (byte[] bytes : textBytes) dos.write(bytes);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  COLUMNS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private int _addRow() {
+		if (_rowCount == _cities.length) {
+			int capacity = _rowCount * 2;
+			_cities = Arrays.copyOf(_cities,capacity);
+			_dates = Arrays.copyOf(_dates,capacity);
+			_issuedAt = Arrays.copyOf(_issuedAt,capacity);
+			_periods = Arrays.copyOf(_periods,capacity);
+			_tempMax = Arrays.copyOf(_tempMax,capacity);
+			_tempMin = Arrays.copyOf(_tempMin,capacity);
+			_icons = Arrays.copyOf(_icons,capacity);
+			_symbolDescriptions = Arrays.copyOf(_symbolDescriptions,capacity);
+			for (int l=0; l < _descriptions.length; l++) {
+				_descriptions[l] = Arrays.copyOf(_descriptions[l],capacity);
+			}
+		}
+		int row = _rowCount++;
+		_tempMax[row] = (short)ForecastArchive.NO_VALUE;
+		_tempMin[row] = (short)ForecastArchive.NO_VALUE;
+		_icons[row] = (short)ForecastArchive.NO_VALUE;
+		_symbolDescriptions[row] = ForecastArchive.NO_TEXT;
+		for (int[] column : _descriptions) column[row] = ForecastArchive.NO_TEXT;
+		return row;
+	}
+	private int _textId(final String text) {
+		if (Strings.isNullOrEmpty(text)) return ForecastArchive.NO_TEXT;
+		Integer id = _textIds.get(text);
+		if (id == null) {
+			id = _texts.size();
+			_texts.add(text);
+			_textIds.put(text,id);
+		}
+		return id;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  READER
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Reads a <cityForecast> xml appending a row per <forecast>:
+	 * <pre>
+	 * 		<cityForecast cityCode="2" cityName="Bilbao" month="4" year="2013">
+	 * 			<day month='4' day='1' done='01/04/2013 [07:42:15]'>
+	 * 				<forecasts>
+	 * 					<forecast period='today' date='01/04/2013'>
+	 * 						<tempMax>16</tempMax><tempMin>13</tempMin>
+	 * 						<description><es>...</es><eu>...</eu></description>
+	 * 						<symbol><icon>12</icon><description>...</description></symbol>
+	 * 					</forecast>
+	 * 					...
+	 * </pre>
+	 */
+	private class CityForecastStAXReader
+		  extends MeteoStAXReader {
+		private final SimpleDateFormat _doneFormat = new SimpleDateFormat("dd/MM/yyyy [HH:mm:ss]");
+		private int _cityCode;
+
+		CityForecastStAXReader(final XMLStreamReader xml) {
+			super(xml);
+		}
+		void read() throws XMLStreamException {
+			_goToRoot("cityForecast");
+			String cityCode = _xml.getAttributeValue(null,"cityCode");
+			if (Strings.isNullOrEmpty(cityCode)) throw new XMLStreamException("The cityForecast has NO cityCode",_xml.getLocation());
+			_cityCode = Integer.parseInt(cityCode.trim());
+			while (_nextChild()) {
+				if ("day".equals(_xml.getLocalName())) {
+					_readDay();
+				} else {
+					_skip();
+				}
+			}
+		}
+		private void _readDay() throws XMLStreamException {
+			long issuedAt = _doneAttr();
+			while (_nextChild()) {
+				if ("forecasts".equals(_xml.getLocalName())) {
+					while (_nextChild()) {
+						if ("forecast".equals(_xml.getLocalName())) {
+							_readForecast(issuedAt);
+						} else {
+							_skip();
+						}
+					}
+				} else {
+					_skip();
+				}
+			}
+		}
+		private void _readForecast(final long issuedAt) throws XMLStreamException {
+			Day period = Day.fromCode(_xml.getAttributeValue(null,"period"));
+			int date = _dateKeyAttr("date");
+			int row = _addRow();
+			_cities[row] = _cityCode;
+			_dates[row] = date;
+			_issuedAt[row] = issuedAt;
+			_periods[row] = (byte)period.ordinal();
+			while (_nextChild()) {
+				String name = _xml.getLocalName();
+				if ("tempMax".equals(name)) {
+					_tempMax[row] = _shortText();
+				} else if ("tempMin".equals(name)) {
+					_tempMin[row] = _shortText();
+				} else if ("description".equals(name)) {
+					Map<Language,String> texts = _readLanguageTexts();
+					for (int l=0; l < ForecastArchive.LANGUAGES.length; l++) {
+						_descriptions[l][row] = _textId(texts.get(ForecastArchive.LANGUAGES[l]));
+					}
+				} else if ("symbol".equals(name)) {
+					while (_nextChild()) {
+						String symbolChild = _xml.getLocalName();
+						if ("icon".equals(symbolChild)) {
+							_icons[row] = _shortText();
+						} else if ("description".equals(symbolChild)) {
+							_symbolDescriptions[row] = _textId(_xml.getElementText().trim());
+						} else {
+							_skip();
+						}
+					}
+				} else {
+					_skip();
+				}
+			}
+		}
+		private short _shortText() throws XMLStreamException {
+			String text = _xml.getElementText().trim();
+			if (Strings.isNullOrEmpty(text)) return (short)ForecastArchive.NO_VALUE;
+			try {
+				return Short.parseShort(text);
+			} catch (NumberFormatException numEx) {
+				throw new XMLStreamException("Illegal number: " + text,_xml.getLocation(),numEx);
+			}
+		}
+		private long _doneAttr() throws XMLStreamException {
+			String text = _xml.getAttributeValue(null,"done");
+			if (Strings.isNullOrEmpty(text)) throw new XMLStreamException("The forecast day has NO done date",_xml.getLocation());
+			try {
+				return _doneFormat.parse(text.trim()).getTime();
+			} catch (ParseException parseEx) {
+				throw new XMLStreamException("Illegal done date: " + text,_xml.getLocation(),parseEx);
+			}
+		}
+		/**
+		 * Parses a dd/MM/yyyy attribute straight into a yyyyMMdd int (no Date is created)
+		 */
+		private int _dateKeyAttr(final String attrName) throws XMLStreamException {
+			String text = _xml.getAttributeValue(null,attrName);
+			if (text != null) text = text.trim();
+			if (text == null || text.length() != 10 || text.charAt(2) != '/' || text.charAt(5) != '/') throw new XMLStreamException("Illegal " + attrName + " date: " + text,_xml.getLocation());
+			try {
+				return ForecastArchive.dateKey(Integer.parseInt(text.substring(6,10)),
+											   Integer.parseInt(text.substring(3,5)),
+											   Integer.parseInt(text.substring(0,2)));
+			} catch (NumberFormatException numEx) {
+				throw new XMLStreamException("Illegal " + attrName + " date: " + text,_xml.getLocation(),numEx);
+			}
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.common.collect.Maps;
+
+import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.model.meteo.ForecastForDay;
+import euskadi.opendata.model.meteo.ForecastForDayMapSymbol;
+import euskadi.opendata.model.meteo.ForecastForLocation;
+
+/**
+ * Single pass StAX (pull-parser) reader for the met_forecast.xml document:
+ * <pre>
+ * 	<weatherForecast doneDate='dd/MM/yyyy'>
+ * 		<forecasts>
+ * 			<forecast forecastDay='today' forecastDate='dd/MM/yyyy'>
+ * 				<forecastDateText>...</forecastDateText>
+ * 				<imageMap>...</imageMap>
+ * 				<description><es>...</es><eu>...</eu></description>
+ * 				<mapSymbolList><mapSymbol>...</mapSymbol></mapSymbolList>
+ * 				<cityForecastDataList>
+ * 					<cityForecastData cityCode='2' cityName='Bilbao'>
+ * 						<tempMax>..</tempMax><tempMin>..</tempMin>
+ * 						<symbol>
+ * 							<symbolImage>...</symbolImage>
+ * 							<descriptions><es>...</es><eu>...</eu></descriptions>
+ * 						</symbol>
+ * 					</cityForecastData>
+ * 				</cityForecastDataList>
+ * 			</forecast>
+ * 		</forecasts>
+ * 	</weatherForecast>
+ * </pre>
+ * It builds the same objects than the reflective marshaller (see the annotations at
+ * the {@link Forecast} model objects) without building any mapping
+ */
+public class ForecastStAXReader
+	 extends MeteoStAXReader {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ForecastStAXReader(final XMLStreamReader xml) {
+		super(xml);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  PUBLIC METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Reads a {@link Forecast} from the met_forecast.xml stream
+	 * @param is
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	public static Forecast read(final InputStream is) throws XMLStreamException {
+		XMLStreamReader xml = _createXMLStreamReader(is);
+		try {
+			return new ForecastStAXReader(xml)._readForecast();
+		} finally {
+			xml.close();
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  weatherForecast
+/////////////////////////////////////////////////////////////////////////////////////////
+	private Forecast _readForecast() throws XMLStreamException {
+		// go to the root element
+		_goToRoot("weatherForecast");
+
+		Forecast outForecast = new Forecast();
+		outForecast.setDate(_dateAttr("doneDate"));
+		while (_nextChild()) {
+			if ("forecasts".equals(_xml.getLocalName())) {
+				Map<String,ForecastForDay> forecasts = Maps.newLinkedHashMap();
+				while (_nextChild()) {
+					if ("forecast".equals(_xml.getLocalName())) {
+						ForecastForDay dayForecast = _readForecastForDay();
+						forecasts.put(dayForecast.getDateId(),dayForecast);
+					} else {
+						_skip();
+					}
+				}
+				outForecast.setForecasts(forecasts);
+			} else {
+				_skip();
+			}
+		}
+		return outForecast;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  forecast
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ForecastForDay _readForecastForDay() throws XMLStreamException {
+		ForecastForDay outDay = new ForecastForDay();
+		outDay.setDateId(_xml.getAttributeValue(null,"forecastDay"));
+		outDay.setDate(_dateAttr("forecastDate"));
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("forecastDateText".equals(name)) {
+				outDay.setForeCastDateText(_xml.getElementText());
+			} else if ("imageMap".equals(name)) {
+				outDay.setMapImage(_pathText());
+			} else if ("description".equals(name)) {
+				outDay.setDescriptions(_readLanguageTexts());
+			} else if ("mapSymbolList".equals(name)) {
+				Collection<ForecastForDayMapSymbol> mapSymbols = new ArrayList<ForecastForDayMapSymbol>();
+				while (_nextChild()) {
+					if ("mapSymbol".equals(_xml.getLocalName())) {
+						mapSymbols.add(_readMapSymbol());
+					} else {
+						_skip();
+					}
+				}
+				outDay.setMapSymbols(mapSymbols);
+			} else if ("cityForecastDataList".equals(name)) {
+				Map<String,ForecastForLocation> locations = Maps.newLinkedHashMap();
+				while (_nextChild()) {
+					if ("cityForecastData".equals(_xml.getLocalName())) {
+						ForecastForLocation location = _readForecastForLocation();
+						locations.put(location.getLocCode(),location);
+					} else {
+						_skip();
+					}
+				}
+				outDay.setLocations(locations);
+			} else {
+				_skip();
+			}
+		}
+		return outDay;
+	}
+	private ForecastForDayMapSymbol _readMapSymbol() throws XMLStreamException {
+		ForecastForDayMapSymbol outSymbol = new ForecastForDayMapSymbol();
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("positionX".equals(name)) {
+				outSymbol.setPositionX(_doubleText());
+			} else if ("positionY".equals(name)) {
+				outSymbol.setPositionY(_doubleText());
+			} else if ("width".equals(name)) {
+				outSymbol.setWidth((float)_doubleText());
+			} else if ("heigth".equals(name)) {
+				outSymbol.setHeight((float)_doubleText());
+			} else if ("symbolImage".equals(name)) {
+				outSymbol.setImagePath(_pathText());
+			} else {
+				_skip();
+			}
+		}
+		return outSymbol;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  cityForecastData
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ForecastForLocation _readForecastForLocation() throws XMLStreamException {
+		ForecastForLocation outLocation = new ForecastForLocation();
+		outLocation.setLocCode(_xml.getAttributeValue(null,"cityCode"));
+		outLocation.setLocName(_xml.getAttributeValue(null,"cityName"));
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("tempMax".equals(name)) {
+				outLocation.setTempMax(_intText());
+			} else if ("tempMin".equals(name)) {
+				outLocation.setTempMin(_intText());
+			} else if ("symbol".equals(name)) {
+				outLocation.setSymbol(_readLocationSymbol());
+			} else {
+				_skip();
+			}
+		}
+		return outLocation;
+	}
+}
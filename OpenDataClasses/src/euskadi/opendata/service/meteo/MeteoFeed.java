@@ -0,0 +1,482 @@
+package euskadi.opendata.service.meteo;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.hash.HashCode;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import euskadi.opendata.util.CircuitBreaker;
+import euskadi.opendata.util.ConditionalHttpFetcher;
+import euskadi.opendata.util.ConditionalHttpFetcher.FetchResult;
+import euskadi.opendata.util.LatencyHistogram;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A meteo xml feed that's periodically fetched, parsed and published as an immutable snapshot
+ * The feed is refreshed by the shared {@link MeteoFeedEngine}; the subclasses only have to parse the feed xml
+ * <ul>
+ * 		<li>readers just get the published snapshot reference: they NEVER wait for a refresh</li>
+ * 		<li>the xml is only downloaded / parsed if it has changed (see {@link ConditionalHttpFetcher})</li>
+ * 		<li>if the load fails the previous snapshot is kept (served as stale) and the load is retried with
+ * 			a jittered exponential backoff</li>
+ * 		<li>after some consecutive failures the feed circuit opens: the opendata server is NOT called
+ * 			for a while (see {@link CircuitBreaker})</li>
+ * 		<li>if nothing was loaded yet, all the concurrent callers share the same single load</li>
+ * </ul>
+ * @param <S> the snapshot type
+ */
+@Slf4j
+@Accessors(prefix="_")
+public abstract class MeteoFeed<S extends MeteoFeedSnapshot> {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The feed name (used at the logs)
+	 */
+	@Getter private final String _name;
+	@Getter private final URL _url;
+	private final MeteoFeedEngine _engine;
+	private final long _refreshIntervalMillis;
+	private final long _refreshJitterMillis;
+	private final long _retryBackoffMillis;
+	private final Random _jitterRandom = new Random();
+	/**
+	 * When the next scheduled refresh will run
+	 */
+	private volatile long _nextRefreshTimeStamp;
+	/**
+	 * Fetches the feed xml only if it has changed
+	 */
+	private final ConditionalHttpFetcher _fetcher;
+	/**
+	 * Stops calling the opendata server while it's failing
+	 */
+	private final CircuitBreaker _circuit;
+	/**
+	 * When the last refresh failed after a successful one (0 if the last refresh succeeded):
+	 * while it's NOT zero the published snapshot is stale
+	 */
+	private volatile long _staleSinceTimeStamp;
+	/**
+	 * The last successfully loaded snapshot: readers just get the reference
+	 * while the refresher builds a new snapshot and swaps it
+	 */
+	private final AtomicReference<S> _snapshot = new AtomicReference<S>();
+	/**
+	 * Serializes the scheduled and the forced refreshes (readers NEVER use it)
+	 */
+	private final Object _refreshLock = new Object();
+	/**
+	 * Notified when a new snapshot is published
+	 */
+	private final List<MeteoFeedListener<S>> _listeners = new CopyOnWriteArrayList<MeteoFeedListener<S>>();
+	/**
+	 * The cold load (nothing loaded yet) every concurrent caller waits for
+	 */
+	private final AtomicReference<SettableFuture<S>> _pendingLoad = new AtomicReference<SettableFuture<S>>();
+	/**
+	 * Metrics: how long the download and the parse take and how many refreshes failed
+	 */
+	private final LatencyHistogram _fetchLatency;
+	private final LatencyHistogram _parseLatency;
+	private final AtomicLong _refreshFailures;
+	private final AtomicLong _shortCircuited;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	protected MeteoFeed(final String name,final String url,
+						final MeteoFeedEngine engine,
+						final WeatherForecastServiceConfig config) {
+		_name = name;
+		try {
+			_url = new URL(url);
+		} catch (MalformedURLException urlEx) {
+			throw new IllegalStateException(urlEx);
+		}
+		_engine = engine;
+		_refreshIntervalMillis = config.getRefreshIntervalMillis();
+		_refreshJitterMillis = config.getRefreshJitterMillis();
+		_retryBackoffMillis = config.getRetryBackoffMillis();
+		_fetcher = new ConditionalHttpFetcher(_url,
+											  config.getConnectTimeoutMillis(),config.getReadTimeoutMillis());
+		_circuit = new CircuitBreaker(config.getCircuitFailureThreshold(),config.getCircuitOpenMillis());
+		_fetchLatency = engine.metrics().latency("meteo_feed_fetch_seconds","Time to download the feed xml (or to be answered it's NOT modified)",
+												 "feed",name);
+		_parseLatency = engine.metrics().latency("meteo_feed_parse_seconds","Time to parse the feed xml into a snapshot",
+												 "feed",name);
+		_refreshFailures = engine.metrics().counter("meteo_feed_refresh_failures_total","Refreshes that could NOT load the feed (the previous snapshot is kept)",
+													"feed",name);
+		_shortCircuited = engine.metrics().counter("meteo_feed_short_circuited_total","Refreshes NOT done because the feed circuit was open",
+												   "feed",name);
+		_registerGauges(engine.metrics());
+	}
+	private void _registerGauges(final MeteoMetrics metrics) {
+		metrics.gauge("meteo_feed_snapshot_age_seconds","Time since the published snapshot was loaded (NaN if nothing was loaded yet)",
+					  new MeteoMetrics.Gauge() {
+							@Override
+							public double value() {
+								S snapshot = _snapshot.get();
+								return snapshot != null ? (System.currentTimeMillis() - snapshot.getLoadTimeStamp()) / 1000.0
+														: Double.NaN;
+							}
+					  },
+					  "feed",_name);
+		metrics.gauge("meteo_feed_conditional_hit_ratio","Fetches NOT parsed because the feed had NOT changed (304 or same hash) / all the fetches",
+					  new MeteoMetrics.Gauge() {
+							@Override
+							public double value() {
+								long notParsed = _fetcher.getNotModifiedCount() + _fetcher.getUnchangedHashCount();
+								long all = notParsed + _fetcher.getModifiedCount();
+								return all > 0 ? (double)notParsed / all
+											   : Double.NaN;
+							}
+					  },
+					  "feed",_name);
+		metrics.gauge("meteo_feed_circuit_state","The feed circuit state: 0 closed, 1 half open (trial refresh), 2 open (the opendata server is NOT called)",
+					  new MeteoMetrics.Gauge() {
+							@Override
+							public double value() {
+								return _circuit.getState().ordinal();
+							}
+					  },
+					  "feed",_name);
+		metrics.gauge("meteo_feed_stale","1 if the last refresh failed and the previous snapshot is served",
+					  new MeteoMetrics.Gauge() {
+							@Override
+							public double value() {
+								return MeteoFeed.this.isStale() ? 1 : 0;
+							}
+					  },
+					  "feed",_name);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  PARSE
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Parses the feed xml and builds the snapshot to be published
+	 * @param xml
+	 * @param loadTimeStamp
+	 * @param contentHash
+	 * @return
+	 * @throws Exception
+	 */
+	protected abstract S parse(final byte[] xml,
+							   final long loadTimeStamp,final String contentHash) throws Exception;
+	/**
+	 * Called at the refresher thread once a new snapshot has been published and AFTER
+	 * the listeners are notified (ie: to save the snapshot); an error here is just logged
+	 * @param snapshot
+	 * @param fetched
+	 */
+	protected void published(final S snapshot,
+							 final FetchResult fetched) {
+		// nothing by default
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  LIFECYCLE
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Publishes a snapshot loaded by a previous run (ie: saved to a file) and the validators it was
+	 * loaded with, so the first refresh is answered with a 304 / unchanged hash if the feed did NOT change
+	 * MUST be called before {@link #start()}
+	 * @param snapshot
+	 * @param eTag
+	 * @param lastModified
+	 */
+	public void restore(final S snapshot,
+						final String eTag,final String lastModified) {
+		_snapshot.set(snapshot);
+		_fetcher.restoreProcessed(eTag,lastModified,
+								  HashCode.fromString(snapshot.getContentHash()));
+	}
+	/**
+	 * Starts the feed: it's loaded as soon as possible and then periodically refreshed
+	 */
+	public void start() {
+		_engine.start(this);
+		_scheduleRefresh(0);
+	}
+	/**
+	 * Called by the engine when it's stopped
+	 */
+	void stopped() {
+		_completePendingLoad();		// do NOT leave anyone waiting for a load that will never run
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  REFRESH
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Forces a feed reload (the scheduled refresh keeps running)
+	 * If the feed has NOT changed it's NOT parsed again and if the load fails the previous snapshot is kept
+	 * @return true if the published snapshot is up to date, false if it could NOT be loaded
+	 */
+	public boolean refresh() {
+		boolean outRefreshed = false;
+		synchronized(_refreshLock) {
+			outRefreshed = _doRefresh();
+		}
+		_completePendingLoad();
+		return outRefreshed;
+	}
+	/**
+	 * @return when the next scheduled refresh will run (the feed won't change before)
+	 */
+	public long nextRefreshTimeStamp() {
+		return _nextRefreshTimeStamp;
+	}
+	/**
+	 * @return true if a snapshot is published but the last refresh failed (or the circuit is open):
+	 * 		   the served snapshot might NOT be the latest one
+	 */
+	public boolean isStale() {
+		return _staleSinceTimeStamp > 0 && _snapshot.get() != null;
+	}
+	/**
+	 * @return when the refreshes started failing (0 if the last refresh succeeded)
+	 */
+	public long staleSinceTimeStamp() {
+		return _staleSinceTimeStamp;
+	}
+	/**
+	 * @return counters about the feed loads
+	 */
+	public WeatherForecastLoadStats loadStats() {
+		return new WeatherForecastLoadStats(_fetcher.getNotModifiedCount(),
+											_fetcher.getUnchangedHashCount(),
+											_fetcher.getModifiedCount());
+	}
+	/**
+	 * Schedules the next refresh after the given delay plus a random jitter
+	 * @param delayMillis
+	 */
+	private void _scheduleRefresh(final long delayMillis) {
+		long jitter = _refreshJitterMillis > 0 ? (long)(_jitterRandom.nextDouble() * _refreshJitterMillis)
+											   : 0;
+		_scheduleRefreshIn(delayMillis + jitter);
+	}
+	/**
+	 * Schedules a retry of a failed refresh: the backoff doubles with every consecutive failure
+	 * (up to the refresh interval) and a random jitter (half the backoff) is applied so the
+	 * nodes do NOT retry at the same time
+	 * If the circuit is open the retry is NOT scheduled before the trial refresh is allowed
+	 */
+	private void _scheduleRetry() {
+		int failures = Math.max(1,_circuit.getConsecutiveFailures());
+		long backoff = Math.min(_refreshIntervalMillis,
+								_retryBackoffMillis << Math.min(failures - 1,20));
+		long delay = backoff / 2 + (long)(_jitterRandom.nextDouble() * (backoff / 2));
+		_scheduleRefreshIn(Math.max(delay,_circuit.millisUntilHalfOpen()));
+	}
+	private void _scheduleRefreshIn(final long delayMillis) {
+		if (_engine.isStopped()) return;
+		_nextRefreshTimeStamp = System.currentTimeMillis() + delayMillis;
+		try {
+			_engine.schedule(new Runnable() {
+										@Override
+										public void run() {
+											boolean refreshed = false;
+											try {
+												refreshed = MeteoFeed.this.refresh();
+											} finally {
+												if (refreshed) {
+													_scheduleRefresh(_refreshIntervalMillis);
+												} else {
+													_scheduleRetry();
+												}
+											}
+										}
+							 },
+							 delayMillis);
+		} catch (RejectedExecutionException rejEx) {
+			log.debug("The meteo feed engine is stopped: {} will NOT be refreshed anymore",_name);
+		}
+	}
+	/**
+	 * Loads the feed and publishes a new snapshot if it has changed
+	 * MUST be called holding the refresh lock
+	 * @return true if the published snapshot is up to date
+	 */
+	private boolean _doRefresh() {
+		// the opendata server is failing: do NOT call it (the previous snapshot is served as stale)
+		if (!_circuit.allowRequest()) {
+			_shortCircuited.incrementAndGet();
+			_markStale();
+			log.debug("The {} circuit is open: NOT refreshed ({} millis to the next trial)",
+					  _name,_circuit.millisUntilHalfOpen());
+			return false;
+		}
+		boolean loaded = false;
+		try {
+			// Download the xml only if it has changed
+			FetchResult fetched = null;
+			long fetchStart = System.nanoTime();
+			try {
+				fetched = _fetcher.fetch();
+			} finally {
+				_fetchLatency.recordSince(fetchStart);		// the failed downloads too (ie: timeouts)
+			}
+			if (!fetched.isModified() && _snapshot.get() != null) {
+				_fetcher.markAsProcessed(fetched);		// the validators might have changed
+				_loaded();
+				log.debug("{} at {} NOT changed ({})",_name,_url,fetched.getStatus());
+				return true;
+			}
+			if (fetched.getContent() == null) throw new IllegalStateException("The " + _name + " was NOT modified but there's no previous one");
+
+			// Parse
+			S snapshot = null;
+			long parseStart = System.nanoTime();
+			try {
+				snapshot = this.parse(fetched.getContent(),
+									  System.currentTimeMillis(),
+									  fetched.getContentHash().toString());
+			} finally {
+				_parseLatency.recordSince(parseStart);		// the failed parses too
+			}
+			if (snapshot == null) throw new IllegalStateException("The loaded " + _name + " is null");
+			_snapshot.set(snapshot);
+			_fetcher.markAsProcessed(fetched);
+			_loaded();
+			loaded = true;
+			log.info("{} loaded from {}",_name,_url);
+
+			// the listeners first: the snapshot is already being served so the listeners (ie: the pre-rendered
+			// responses) MUST be updated even if the published hook (ie: saving it to a file) fails
+			_notifySnapshotPublished(snapshot);
+			try {
+				this.published(snapshot,fetched);
+			} catch (Throwable th) {
+				log.error("Error in the published hook of the {} loaded from {}: {}",
+						  _name,_url,th.getMessage(),th);
+			}
+			return true;
+		} catch (Throwable th) {
+			if (loaded) {
+				log.error("Error publishing the {} loaded from {}: {}",		// it's published anyway
+						  _name,_url,th.getMessage(),th);
+				return true;
+			}
+			_refreshFailures.incrementAndGet();
+			_circuit.onFailure();
+			_markStale();
+			log.error("Could NOT refresh the {} from {}; the previous one is kept ({} consecutive failures, circuit {}): {}",
+					  _name,_url,_circuit.getConsecutiveFailures(),_circuit.getState(),th.getMessage(),th);
+		}
+		return false;
+	}
+	private void _loaded() {
+		_circuit.onSuccess();
+		_staleSinceTimeStamp = 0;
+	}
+	private void _markStale() {
+		if (_staleSinceTimeStamp == 0) _staleSinceTimeStamp = System.currentTimeMillis();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  LISTENERS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Registers a listener that's notified every time a new snapshot is published
+	 * (if a snapshot was already published the listener is notified with it right away)
+	 * @param listener
+	 */
+	public void addSnapshotListener(final MeteoFeedListener<S> listener) {
+		_listeners.add(listener);
+		// a listener registered after the first load is notified with the current snapshot
+		S snapshot = _snapshot.get();
+		if (snapshot != null) listener.onSnapshotPublished(snapshot);
+	}
+	/**
+	 * Notifies the listeners (a failing listener does NOT prevent the others from being notified)
+	 * @param snapshot
+	 */
+	private void _notifySnapshotPublished(final S snapshot) {
+		for (MeteoFeedListener<S> listener : _listeners) {
+			try {
+				listener.onSnapshotPublished(snapshot);
+			} catch (Throwable th) {
+				log.error("Error notifying a new {} snapshot to {}: {}",
+						  _name,listener,th.getMessage(),th);
+			}
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  SNAPSHOT
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Returns the current snapshot
+	 * If nothing was loaded yet (ie: the node has just started) the caller waits for the load
+	 * @return
+	 */
+	public S currentSnapshot() {
+		S snapshot = _snapshot.get();
+		if (snapshot != null) return snapshot;
+		try {
+			return this.currentSnapshotAsync()
+					   .get();
+		} catch (InterruptedException intEx) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the " + _name + " to be loaded");
+		} catch (ExecutionException exEx) {
+			throw new IllegalStateException("Could NOT load the " + _name + " from OpenData euskadi!!!",exEx.getCause());
+		}
+	}
+	/**
+	 * Non-blocking version of {@link #currentSnapshot()}
+	 * If nothing was loaded yet, the load is started (all the concurrent callers share
+	 * the same single load) and the returned future completes when it finishes
+	 * @return
+	 */
+	public ListenableFuture<S> currentSnapshotAsync() {
+		S snapshot = _snapshot.get();
+		if (snapshot != null) return Futures.immediateFuture(snapshot);
+
+		// single-flight: only the first caller starts the load; the others wait for it
+		SettableFuture<S> pending = _pendingLoad.get();
+		if (pending != null) return pending;
+		SettableFuture<S> newPending = SettableFuture.create();
+		if (!_pendingLoad.compareAndSet(null,newPending)) return this.currentSnapshotAsync();	// another caller started the load at the same time
+		try {
+			_engine.execute(new Runnable() {
+									@Override
+									public void run() {
+										if (_snapshot.get() == null) {
+											MeteoFeed.this.refresh();
+										} else {
+											_completePendingLoad();		// loaded by the scheduled refresh
+										}
+									}
+							});
+		} catch (RejectedExecutionException rejEx) {
+			_pendingLoad.compareAndSet(newPending,null);
+			newPending.setException(new IllegalStateException("The " + _name + " feed is stopped"));
+		}
+		return newPending;
+	}
+	/**
+	 * Completes the cold load the callers might be waiting for
+	 * If the load failed the callers get the error and the next caller starts a new load
+	 */
+	private void _completePendingLoad() {
+		SettableFuture<S> pending = _pendingLoad.getAndSet(null);
+		if (pending == null) return;
+		S snapshot = _snapshot.get();
+		if (snapshot != null) {
+			pending.set(snapshot);
+		} else {
+			pending.setException(new IllegalStateException("Could NOT load the " + _name + " from OpenData euskadi!!!"));
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package euskadi.opendata.service.meteo;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs ALL the meteo feeds (city forecast, zone forecast, tendency...):
+ * <ul>
+ * 		<li>a single scheduler thread that just triggers the feed refreshes</li>
+ * 		<li>a small bounded pool shared by all the feeds where the feeds are downloaded, parsed and published</li>
+ * </ul>
+ * So adding a feed does NOT add another refresher thread nor another blocking download path
+ * <pre>
+ * IMPORTANT!	The feeds are fetched from the same opendata server: the http connections are
+ * 				kept alive and reused by the feeds (see {@link euskadi.opendata.util.ConditionalHttpFetcher})
+ * </pre>
+ */
+@Slf4j
+@Singleton
+public class MeteoFeedEngine {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Triggers the refreshes (it NEVER runs a refresh itself)
+	 */
+	private final ScheduledExecutorService _scheduler;
+	/**
+	 * Downloads, parses and publishes the feeds
+	 */
+	private final ExecutorService _workers;
+	/**
+	 * The started feeds
+	 */
+	private final List<MeteoFeed<?>> _feeds = new CopyOnWriteArrayList<MeteoFeed<?>>();
+	/**
+	 * Where the feeds record the fetch / parse latencies
+	 */
+	private final MeteoMetrics _metrics;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	public MeteoFeedEngine(final WeatherForecastServiceConfig config,
+						   final MeteoMetrics metrics) {
+		_metrics = metrics;
+		_scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("meteo-feed-scheduler-%d")
+																						 .setDaemon(true)
+																						 .build());
+		_workers = Executors.newFixedThreadPool(config.getFeedThreads(),
+												new ThreadFactoryBuilder().setNameFormat("meteo-feed-refresher-%d")
+																		  .setDaemon(true)
+																		  .build());
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Starts refreshing a feed
+	 * @param feed
+	 */
+	void start(final MeteoFeed<?> feed) {
+		_feeds.add(feed);
+		log.info("Meteo feed {} started ({})",feed.getName(),feed.getUrl());
+	}
+	/**
+	 * Stops all the feeds: the pending refreshes are cancelled and the callers waiting
+	 * for a feed to be loaded get an error
+	 */
+	public void stop() {
+		_scheduler.shutdownNow();
+		_workers.shutdownNow();
+		for (MeteoFeed<?> feed : _feeds) {
+			feed.stopped();
+		}
+	}
+	/**
+	 * @return the metrics the feeds record into
+	 */
+	MeteoMetrics metrics() {
+		return _metrics;
+	}
+	/**
+	 * @return true if the engine was stopped
+	 */
+	public boolean isStopped() {
+		return _workers.isShutdown();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Runs the task at the shared pool after the given delay
+	 * @param task
+	 * @param delayMillis
+	 * @throws RejectedExecutionException if the engine is stopped
+	 */
+	void schedule(final Runnable task,
+				  final long delayMillis) {
+		_scheduler.schedule(new Runnable() {
+									@Override
+									public void run() {
+										try {
+											_workers.execute(task);
+										} catch (RejectedExecutionException rejEx) {
+											log.debug("The meteo feed engine is stopped: a scheduled refresh is discarded");
+										}
+									}
+							},
+							delayMillis,TimeUnit.MILLISECONDS);
+	}
+	/**
+	 * Runs the task at the shared pool as soon as possible
+	 * @param task
+	 * @throws RejectedExecutionException if the engine is stopped
+	 */
+	void execute(final Runnable task) {
+		_workers.execute(task);
+	}
+}
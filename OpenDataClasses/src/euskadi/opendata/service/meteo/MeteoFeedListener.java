@@ -0,0 +1,17 @@
+package euskadi.opendata.service.meteo;
+
+/**
+ * Notified every time a {@link MeteoFeed} publishes a new snapshot
+ * <pre>
+ * IMPORTANT!	The listeners are called at the feed refresher thread (NOT at the request path)
+ * 				but they delay the next refresh so they should NOT block
+ * </pre>
+ * @param <S> the snapshot type
+ */
+public interface MeteoFeedListener<S extends MeteoFeedSnapshot> {
+	/**
+	 * Called when a new snapshot has been published
+	 * @param snapshot
+	 */
+	public void onSnapshotPublished(final S snapshot);
+}
@@ -0,0 +1,44 @@
+package euskadi.opendata.service.meteo;
+
+import java.util.Date;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * The data loaded from a meteo feed as published to the readers
+ * A snapshot is NEVER modified once published: a refresh builds a new snapshot
+ * and swaps it atomically (see {@link MeteoFeed})
+ */
+@Accessors(prefix="_")
+public abstract class MeteoFeedSnapshot {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * When the feed was loaded
+	 */
+	@Getter private final long _loadTimeStamp;
+	/**
+	 * A hash of the loaded feed content: two snapshots with the same content have the same hash
+	 * (it's used to build the http validators)
+	 */
+	@Getter private final String _contentHash;
+	/**
+	 * When the feed was last modified: the load time (the feed done date has no time)
+	 * but never before the feed done date
+	 */
+	@Getter private final long _lastModified;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	protected MeteoFeedSnapshot(final long loadTimeStamp,
+								final String contentHash,
+								final Date doneDate) {
+		if (contentHash == null) throw new IllegalArgumentException("The feed content hash is mandatory");
+		_loadTimeStamp = loadTimeStamp;
+		_contentHash = contentHash;
+		_lastModified = doneDate != null ? Math.max(doneDate.getTime(),loadTimeStamp)
+										 : loadTimeStamp;
+	}
+}
@@ -0,0 +1,260 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+import euskadi.opendata.util.LatencyHistogram;
+
+/**
+ * The meteo service metrics: counters, gauges and latency histograms
+ * (feeds fetch and parse, marshalling, rendering, requests...) written in the
+ * prometheus text format so they can be polled by a scraper
+ * <ul>
+ * 		<li>the metrics are registered once (ie: when a feed is started) and the returned
+ * 			counter / histogram is kept by the caller: the hot path NEVER looks up a metric</li>
+ * 		<li>recording is lock-free (atomic increments): NO contention at the request path</li>
+ * 		<li>the histograms are written as summaries (quantiles in seconds) plus a _max gauge</li>
+ * </ul>
+ * <pre>
+ * IMPORTANT!	The labels are given as name / value pairs: latency("meteo_feed_fetch_seconds","...","feed","weather forecast")
+ * 				Do NOT use unbounded label values (ie: the city codes): every distinct value is a new series
+ * </pre>
+ */
+@Singleton
+public class MeteoMetrics {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The prometheus text exposition format content type
+	 */
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	private static final double[] QUANTILES = new double[] {0.5,0.9,0.99,0.999};
+	private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The metric families by name (sorted so the output is stable)
+	 */
+	private final ConcurrentMap<String,MetricFamily> _families = new ConcurrentSkipListMap<String,MetricFamily>();
+/////////////////////////////////////////////////////////////////////////////////////////
+//  REGISTER
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Returns the latency histogram with the given name and labels (it's created if it does NOT exist)
+	 * @param name
+	 * @param help
+	 * @param labels label name / value pairs
+	 * @return
+	 */
+	public LatencyHistogram latency(final String name,final String help,
+									final String... labels) {
+		return (LatencyHistogram)_family(name,help,MetricType.SUMMARY).metricFor(_labels(labels),new LatencyHistogram());
+	}
+	/**
+	 * Returns the counter with the given name and labels (it's created if it does NOT exist)
+	 * @param name
+	 * @param help
+	 * @param labels label name / value pairs
+	 * @return
+	 */
+	public AtomicLong counter(final String name,final String help,
+							  final String... labels) {
+		return (AtomicLong)_family(name,help,MetricType.COUNTER).metricFor(_labels(labels),new AtomicLong());
+	}
+	/**
+	 * Registers a gauge: its value is got every time the metrics are written
+	 * (a gauge with the same name and labels is replaced)
+	 * @param name
+	 * @param help
+	 * @param gauge
+	 * @param labels label name / value pairs
+	 */
+	public void gauge(final String name,final String help,
+					  final Gauge gauge,
+					  final String... labels) {
+		if (gauge == null) throw new IllegalArgumentException("The gauge is mandatory");
+		_family(name,help,MetricType.GAUGE).replaceMetric(_labels(labels),gauge);
+	}
+	/**
+	 * A value computed when the metrics are written (ie: the snapshot age)
+	 */
+	public interface Gauge {
+		/**
+		 * @return the current value (NaN if it's NOT available)
+		 */
+		public double value();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  WRITE
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return the metrics in the prometheus text format
+	 */
+	public String asText() {
+		StringWriter writer = new StringWriter(4096);
+		try {
+			this.writeTo(writer);
+		} catch (IOException ioEx) {
+			throw new IllegalStateException(ioEx);		// cannot happen writing to memory
+		}
+		return writer.toString();
+	}
+	/**
+	 * Writes the metrics in the prometheus text format
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void writeTo(final Writer writer) throws IOException {
+		for (MetricFamily family : _families.values()) {
+			switch(family._type) {
+			case COUNTER:
+				_writeHeader(writer,family._name,family._help,"counter");
+				for (Map.Entry<String,Object> me : family._metrics.entrySet()) {
+					_writeSample(writer,family._name,me.getKey(),null,
+								 ((AtomicLong)me.getValue()).get());
+				}
+				break;
+			case GAUGE:
+				_writeHeader(writer,family._name,family._help,"gauge");
+				for (Map.Entry<String,Object> me : family._metrics.entrySet()) {
+					_writeSample(writer,family._name,me.getKey(),null,
+								 ((Gauge)me.getValue()).value());
+				}
+				break;
+			case SUMMARY:
+				_writeSummary(writer,family);
+				break;
+			default:
+				throw new IllegalStateException("Unsupported metric type " + family._type);
+			}
+		}
+	}
+	private static void _writeSummary(final Writer writer,
+									  final MetricFamily family) throws IOException {
+		// take the snapshots once: the max is written with the same values as the quantiles
+		Map<String,LatencyHistogram.Snapshot> snapshots = new TreeMap<String,LatencyHistogram.Snapshot>();
+		for (Map.Entry<String,Object> me : family._metrics.entrySet()) {
+			snapshots.put(me.getKey(),((LatencyHistogram)me.getValue()).snapshot());
+		}
+		_writeHeader(writer,family._name,family._help,"summary");
+		for (Map.Entry<String,LatencyHistogram.Snapshot> me : snapshots.entrySet()) {
+			LatencyHistogram.Snapshot snapshot = me.getValue();
+			for (double quantile : QUANTILES) {
+				_writeSample(writer,family._name,me.getKey(),"quantile=\"" + quantile + "\"",
+							 snapshot.valueAtPercentile(quantile * 100) / NANOS_PER_SECOND);
+			}
+			_writeSample(writer,family._name + "_sum",me.getKey(),null,
+						 snapshot.getSumNanos() / NANOS_PER_SECOND);
+			_writeSample(writer,family._name + "_count",me.getKey(),null,
+						 snapshot.getCount());
+		}
+		_writeHeader(writer,family._name + "_max",family._help + " (max)","gauge");
+		for (Map.Entry<String,LatencyHistogram.Snapshot> me : snapshots.entrySet()) {
+			_writeSample(writer,family._name + "_max",me.getKey(),null,
+						 me.getValue().getMaxNanos() / NANOS_PER_SECOND);
+		}
+	}
+	private static void _writeHeader(final Writer writer,
+									 final String name,final String help,final String type) throws IOException {
+		writer.write("# HELP ");
+		writer.write(name);
+		writer.write(' ');
+		writer.write(help.replace("\\","\\\\").replace("\n","\\n"));
+		writer.write("\n# TYPE ");
+		writer.write(name);
+		writer.write(' ');
+		writer.write(type);
+		writer.write('\n');
+	}
+	private static void _writeSample(final Writer writer,
+									 final String name,final String labels,final String extraLabel,
+									 final double value) throws IOException {
+		writer.write(name);
+		if (!labels.isEmpty() || extraLabel != null) {
+			writer.write('{');
+			writer.write(labels);
+			if (!labels.isEmpty() && extraLabel != null) writer.write(',');
+			if (extraLabel != null) writer.write(extraLabel);
+			writer.write('}');
+		}
+		writer.write(' ');
+		if (Double.isInfinite(value)) {
+			writer.write(value > 0 ? "+Inf" : "-Inf");
+		} else if (value == (long)value) {
+			writer.write(Long.toString((long)value));
+		} else {
+			writer.write(Double.toString(value));		// NaN is written as NaN
+		}
+		writer.write('\n');
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FAMILIES
+/////////////////////////////////////////////////////////////////////////////////////////
+	private MetricFamily _family(final String name,final String help,
+								 final MetricType type) {
+		if (name == null || !name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*")) throw new IllegalArgumentException("Not a valid metric name: " + name);
+		MetricFamily family = _families.get(name);
+		if (family == null) {
+			MetricFamily newFamily = new MetricFamily(name,help != null ? help : name,type);
+			family = _families.putIfAbsent(name,newFamily);
+			if (family == null) family = newFamily;
+		}
+		if (family._type != type) throw new IllegalStateException("The metric " + name + " is a " + family._type + " NOT a " + type);
+		return family;
+	}
+	/**
+	 * Builds the labels text: name1="value1",name2="value2"
+	 */
+	private static String _labels(final String... labels) {
+		if (labels == null || labels.length == 0) return "";
+		if (labels.length % 2 != 0) throw new IllegalArgumentException("The labels MUST be name / value pairs");
+		StringBuilder outLabels = new StringBuilder();
+		for (int i=0; i < labels.length; i += 2) {
+			if (i > 0) outLabels.append(',');
+			outLabels.append(labels[i])
+					 .append("=\"")
+					 .append(labels[i+1].replace("\\","\\\\").replace("\"","\\\"").replace("\n","\\n"))
+					 .append('"');
+		}
+		return outLabels.toString();
+	}
+	private static enum MetricType {
+		COUNTER,
+		GAUGE,
+		SUMMARY;
+	}
+	/**
+	 * All the series of a metric (one by labels)
+	 */
+	private static class MetricFamily {
+		private final String _name;
+		private final String _help;
+		private final MetricType _type;
+		private final ConcurrentMap<String,Object> _metrics = new ConcurrentSkipListMap<String,Object>();
+
+		MetricFamily(final String name,final String help,
+					 final MetricType type) {
+			_name = name;
+			_help = help;
+			_type = type;
+		}
+		Object metricFor(final String labels,final Object newMetric) {
+			Object metric = _metrics.putIfAbsent(labels,newMetric);
+			return metric != null ? metric : newMetric;
+		}
+		void replaceMetric(final String labels,final Object metric) {
+			_metrics.put(labels,metric);
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import euskadi.opendata.model.meteo.City;
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.model.meteo.ForecastForDay;
+import euskadi.opendata.model.meteo.ForecastForDayMapSymbol;
+import euskadi.opendata.model.meteo.ForecastForLocation;
+import euskadi.opendata.model.meteo.ForecastForLocationSummary;
+import euskadi.opendata.model.meteo.ForecastForLocationSymbol;
+
+/**
+ * Reads the meteo model objects from xml WITHOUT reflection (no mappings are built at runtime)
+ * GENERATED by {@link euskadi.opendata.internal.meteo.MeteoModelXmlCodeGenerator} from the model xml annotations: DO NOT EDIT
+ */
+public class MeteoModelXmlReader
+	 extends MeteoStAXReader {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	private MeteoModelXmlReader(final XMLStreamReader xml) {
+		super(xml);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  PUBLIC
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @param type
+	 * @return true if objects of the given type can be read
+	 */
+	public static boolean canRead(final Class<?> type) {
+		return type == Forecast.class
+			|| type == ForecastForDay.class
+			|| type == ForecastForDayMapSymbol.class
+			|| type == ForecastForLocation.class
+			|| type == ForecastForLocationSymbol.class
+			|| type == ForecastForLocationSummary.class;
+	}
+	/**
+	 * @param root
+	 * @return true if a document with the given root element can be read
+	 */
+	public static boolean canReadRoot(final String root) {
+		return "weatherForecast".equals(root)
+			|| "forecast".equals(root)
+			|| "mapSymbol".equals(root)
+			|| "cityForecastData".equals(root)
+			|| "symbol".equals(root)
+			|| "forecastForLocation".equals(root);
+	}
+	/**
+	 * Reads a model object: the type is guessed from the root element
+	 * @param is the xml bytes (the encoding is the declared one)
+	 * @return
+	 * @throws XMLStreamException if the root element is NOT a known one
+	 */
+	public static Object read(final InputStream is) throws XMLStreamException {
+		return _read(_createXMLStreamReader(is));
+	}
+	/**
+	 * Reads a model object: the type is guessed from the root element
+	 * @param reader the xml chars (the declared encoding is ignored)
+	 * @return
+	 * @throws XMLStreamException if the root element is NOT a known one
+	 */
+	public static Object read(final Reader reader) throws XMLStreamException {
+		return _read(_createXMLStreamReader(reader));
+	}
+	private static Object _read(final XMLStreamReader xml) throws XMLStreamException {
+		try {
+			MeteoModelXmlReader reader = new MeteoModelXmlReader(xml);
+			xml.nextTag();
+			String root = xml.getLocalName();
+			if ("weatherForecast".equals(root)) return reader._readForecast();
+			if ("forecast".equals(root)) return reader._readForecastForDay();
+			if ("mapSymbol".equals(root)) return reader._readForecastForDayMapSymbol();
+			if ("cityForecastData".equals(root)) return reader._readForecastForLocation();
+			if ("symbol".equals(root)) return reader._readForecastForLocationSymbol();
+			if ("forecastForLocation".equals(root)) return reader._readForecastForLocationSummary();
+			throw new XMLStreamException("Unknown root element " + root,xml.getLocation());
+		} finally {
+			xml.close();
+		}
+	}
+	public static Forecast readForecast(final InputStream is) throws XMLStreamException {
+		XMLStreamReader xml = _createXMLStreamReader(is);
+		try {
+			MeteoModelXmlReader reader = new MeteoModelXmlReader(xml);
+			reader._goToRoot("weatherForecast");
+			return reader._readForecast();
+		} finally {
+			xml.close();
+		}
+	}
+	public static ForecastForDay readForecastForDay(final InputStream is) throws XMLStreamException {
+		XMLStreamReader xml = _createXMLStreamReader(is);
+		try {
+			MeteoModelXmlReader reader = new MeteoModelXmlReader(xml);
+			reader._goToRoot("forecast");
+			return reader._readForecastForDay();
+		} finally {
+			xml.close();
+		}
+	}
+	public static ForecastForDayMapSymbol readForecastForDayMapSymbol(final InputStream is) throws XMLStreamException {
+		XMLStreamReader xml = _createXMLStreamReader(is);
+		try {
+			MeteoModelXmlReader reader = new MeteoModelXmlReader(xml);
+			reader._goToRoot("mapSymbol");
+			return reader._readForecastForDayMapSymbol();
+		} finally {
+			xml.close();
+		}
+	}
+	public static ForecastForLocation readForecastForLocation(final InputStream is) throws XMLStreamException {
+		XMLStreamReader xml = _createXMLStreamReader(is);
+		try {
+			MeteoModelXmlReader reader = new MeteoModelXmlReader(xml);
+			reader._goToRoot("cityForecastData");
+			return reader._readForecastForLocation();
+		} finally {
+			xml.close();
+		}
+	}
+	public static ForecastForLocationSymbol readForecastForLocationSymbol(final InputStream is) throws XMLStreamException {
+		XMLStreamReader xml = _createXMLStreamReader(is);
+		try {
+			MeteoModelXmlReader reader = new MeteoModelXmlReader(xml);
+			reader._goToRoot("symbol");
+			return reader._readForecastForLocationSymbol();
+		} finally {
+			xml.close();
+		}
+	}
+	public static ForecastForLocationSummary readForecastForLocationSummary(final InputStream is) throws XMLStreamException {
+		XMLStreamReader xml = _createXMLStreamReader(is);
+		try {
+			MeteoModelXmlReader reader = new MeteoModelXmlReader(xml);
+			reader._goToRoot("forecastForLocation");
+			return reader._readForecastForLocationSummary();
+		} finally {
+			xml.close();
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  weatherForecast
+/////////////////////////////////////////////////////////////////////////////////////////
+	private Forecast _readForecast() throws XMLStreamException {
+		Forecast outBean = new Forecast();
+		outBean.setDate(_dateAttr("doneDate"));
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("forecasts".equals(name)) {
+				Map<String,ForecastForDay> forecasts = new LinkedHashMap<String,ForecastForDay>();
+				while (_nextChild()) {
+					if ("forecast".equals(_xml.getLocalName())) {
+						ForecastForDay item = _readForecastForDay();
+						forecasts.put(item.getDateId(),item);
+					} else {
+						_skip();
+					}
+				}
+				outBean.setForecasts(forecasts);
+			} else {
+				_skip();
+			}
+		}
+		return outBean;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  forecast
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ForecastForDay _readForecastForDay() throws XMLStreamException {
+		ForecastForDay outBean = new ForecastForDay();
+		outBean.setDateId(_xml.getAttributeValue(null,"forecastDay"));
+		outBean.setDate(_dateAttr("forecastDate"));
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("forecastDateText".equals(name)) {
+				outBean.setForeCastDateText(_xml.getElementText());
+			} else if ("imageMap".equals(name)) {
+				outBean.setMapImage(_pathText());
+			} else if ("description".equals(name)) {
+				outBean.setDescriptions(_readLanguageTexts());
+			} else if ("mapSymbolList".equals(name)) {
+				Collection<ForecastForDayMapSymbol> mapSymbols = new ArrayList<ForecastForDayMapSymbol>();
+				while (_nextChild()) {
+					if ("mapSymbol".equals(_xml.getLocalName())) {
+						mapSymbols.add(_readForecastForDayMapSymbol());
+					} else {
+						_skip();
+					}
+				}
+				outBean.setMapSymbols(mapSymbols);
+			} else if ("cityForecastDataList".equals(name)) {
+				Map<String,ForecastForLocation> locations = new LinkedHashMap<String,ForecastForLocation>();
+				while (_nextChild()) {
+					if ("cityForecastData".equals(_xml.getLocalName())) {
+						ForecastForLocation item = _readForecastForLocation();
+						locations.put(item.getLocCode(),item);
+					} else {
+						_skip();
+					}
+				}
+				outBean.setLocations(locations);
+			} else {
+				_skip();
+			}
+		}
+		return outBean;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  mapSymbol
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ForecastForDayMapSymbol _readForecastForDayMapSymbol() throws XMLStreamException {
+		ForecastForDayMapSymbol outBean = new ForecastForDayMapSymbol();
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("positionX".equals(name)) {
+				outBean.setPositionX(_doubleText());
+			} else if ("positionY".equals(name)) {
+				outBean.setPositionY(_doubleText());
+			} else if ("width".equals(name)) {
+				outBean.setWidth(_floatText());
+			} else if ("heigth".equals(name)) {
+				outBean.setHeight(_floatText());
+			} else if ("symbolImage".equals(name)) {
+				outBean.setImagePath(_pathText());
+			} else {
+				_skip();
+			}
+		}
+		return outBean;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  cityForecastData
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ForecastForLocation _readForecastForLocation() throws XMLStreamException {
+		ForecastForLocation outBean = new ForecastForLocation();
+		outBean.setLocCode(_xml.getAttributeValue(null,"cityCode"));
+		outBean.setLocName(_xml.getAttributeValue(null,"cityName"));
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("tempMax".equals(name)) {
+				outBean.setTempMax(_intText());
+			} else if ("tempMin".equals(name)) {
+				outBean.setTempMin(_intText());
+			} else if ("symbol".equals(name)) {
+				outBean.setSymbol(_readForecastForLocationSymbol());
+			} else {
+				_skip();
+			}
+		}
+		return outBean;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  symbol
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ForecastForLocationSymbol _readForecastForLocationSymbol() throws XMLStreamException {
+		ForecastForLocationSymbol outBean = new ForecastForLocationSymbol();
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("symbolImage".equals(name)) {
+				outBean.setImagePath(_xml.getElementText());
+			} else if ("descriptions".equals(name)) {
+				outBean.setDescriptions(_readLanguageTexts());
+			} else {
+				_skip();
+			}
+		}
+		return outBean;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  forecastForLocation
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ForecastForLocationSummary _readForecastForLocationSummary() throws XMLStreamException {
+		ForecastForLocationSummary outBean = new ForecastForLocationSummary();
+		outBean.setDay(_enumAttr(Day.class,"day"));
+		outBean.setDate(_dateAttr("date"));
+		outBean.setCity(_enumAttr(City.class,"city"));
+		outBean.setTempMax(_intAttr("tempMax"));
+		outBean.setTempMin(_intAttr("tempMin"));
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("summary".equals(name)) {
+				outBean.setSummary(_xml.getElementText());
+			} else if ("symbolPath".equals(name)) {
+				outBean.setSymbolPath(_pathText());
+			} else if ("symbolDescription".equals(name)) {
+				outBean.setSymbolDescription(_xml.getElementText());
+			} else {
+				_skip();
+			}
+		}
+		return outBean;
+	}
+}
@@ -0,0 +1,208 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.OutputStream;
+import java.io.StringWriter;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.model.meteo.ForecastForDay;
+import euskadi.opendata.model.meteo.ForecastForDayMapSymbol;
+import euskadi.opendata.model.meteo.ForecastForLocation;
+import euskadi.opendata.model.meteo.ForecastForLocationSummary;
+import euskadi.opendata.model.meteo.ForecastForLocationSymbol;
+
+/**
+ * Writes the meteo model objects as xml WITHOUT reflection (no mappings are built at runtime)
+ * GENERATED by {@link euskadi.opendata.internal.meteo.MeteoModelXmlCodeGenerator} from the model xml annotations: DO NOT EDIT
+ */
+public class MeteoModelXmlWriter
+	 extends MeteoStAXWriter {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	private MeteoModelXmlWriter(final XMLStreamWriter xml) {
+		super(xml);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  PUBLIC
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @param type
+	 * @return true if objects of the given type can be written
+	 */
+	public static boolean canWrite(final Class<?> type) {
+		return type == Forecast.class
+			|| type == ForecastForDay.class
+			|| type == ForecastForDayMapSymbol.class
+			|| type == ForecastForLocation.class
+			|| type == ForecastForLocationSymbol.class
+			|| type == ForecastForLocationSummary.class;
+	}
+	/**
+	 * Writes a model object as an UTF-8 xml document
+	 * @param bean
+	 * @param os
+	 * @throws XMLStreamException
+	 * @throws IllegalArgumentException if the object type is NOT supported (see {@link #canWrite(Class)})
+	 */
+	public static void write(final Object bean,
+							 final OutputStream os) throws XMLStreamException {
+		XMLStreamWriter xml = _createXMLStreamWriter(os);
+		try {
+			xml.writeStartDocument("UTF-8","1.0");
+			new MeteoModelXmlWriter(xml)._write(bean);
+			xml.writeEndDocument();
+			xml.flush();
+		} finally {
+			xml.close();
+		}
+	}
+	/**
+	 * Writes a model object as an xml string (without the xml declaration)
+	 * @param bean
+	 * @return
+	 * @throws IllegalArgumentException if the object type is NOT supported (see {@link #canWrite(Class)})
+	 */
+	public static String xmlFromBean(final Object bean) {
+		StringWriter writer = new StringWriter(1024);
+		try {
+			XMLStreamWriter xml = _createXMLStreamWriter(writer);
+			new MeteoModelXmlWriter(xml)._write(bean);
+			xml.close();
+		} catch (XMLStreamException xmlEx) {
+			throw new IllegalStateException(xmlEx);		// cannot happen writing to memory
+		}
+		return writer.toString();
+	}
+	private void _write(final Object bean) throws XMLStreamException {
+		if (bean == null) throw new IllegalArgumentException("Cannot write a null object");
+		if (bean.getClass() == Forecast.class) {
+			_writeForecast("weatherForecast",(Forecast)bean);
+			return;
+		}
+		if (bean.getClass() == ForecastForDay.class) {
+			_writeForecastForDay("forecast",(ForecastForDay)bean);
+			return;
+		}
+		if (bean.getClass() == ForecastForDayMapSymbol.class) {
+			_writeForecastForDayMapSymbol("mapSymbol",(ForecastForDayMapSymbol)bean);
+			return;
+		}
+		if (bean.getClass() == ForecastForLocation.class) {
+			_writeForecastForLocation("cityForecastData",(ForecastForLocation)bean);
+			return;
+		}
+		if (bean.getClass() == ForecastForLocationSymbol.class) {
+			_writeForecastForLocationSymbol("symbol",(ForecastForLocationSymbol)bean);
+			return;
+		}
+		if (bean.getClass() == ForecastForLocationSummary.class) {
+			_writeForecastForLocationSummary("forecastForLocation",(ForecastForLocationSummary)bean);
+			return;
+		}
+		throw new IllegalArgumentException(bean.getClass() + " is NOT a supported meteo model object");
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  weatherForecast
+/////////////////////////////////////////////////////////////////////////////////////////
+	private void _writeForecast(final String elementName,
+	                            final Forecast bean) throws XMLStreamException {
+		if (bean == null) return;
+		_xml.writeStartElement(elementName);
+		_attr("doneDate",bean.getDate());
+		if (bean.getForecasts() != null) {
+			_xml.writeStartElement("forecasts");
+			for (ForecastForDay item : bean.getForecasts().values()) {
+				_writeForecastForDay("forecast",item);
+			}
+			_xml.writeEndElement();
+		}
+		_xml.writeEndElement();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  forecast
+/////////////////////////////////////////////////////////////////////////////////////////
+	private void _writeForecastForDay(final String elementName,
+	                                  final ForecastForDay bean) throws XMLStreamException {
+		if (bean == null) return;
+		_xml.writeStartElement(elementName);
+		_attr("forecastDay",bean.getDateId());
+		_attr("forecastDate",bean.getDate());
+		_text("forecastDateText",bean.getForeCastDateText(),false);
+		_text("imageMap",bean.getMapImage(),true);
+		_languageTexts("description",bean.getDescriptions(),true);
+		if (bean.getMapSymbols() != null) {
+			_xml.writeStartElement("mapSymbolList");
+			for (ForecastForDayMapSymbol item : bean.getMapSymbols()) {
+				_writeForecastForDayMapSymbol("mapSymbol",item);
+			}
+			_xml.writeEndElement();
+		}
+		if (bean.getLocations() != null) {
+			_xml.writeStartElement("cityForecastDataList");
+			for (ForecastForLocation item : bean.getLocations().values()) {
+				_writeForecastForLocation("cityForecastData",item);
+			}
+			_xml.writeEndElement();
+		}
+		_xml.writeEndElement();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  mapSymbol
+/////////////////////////////////////////////////////////////////////////////////////////
+	private void _writeForecastForDayMapSymbol(final String elementName,
+	                                           final ForecastForDayMapSymbol bean) throws XMLStreamException {
+		if (bean == null) return;
+		_xml.writeStartElement(elementName);
+		_text("positionX",bean.getPositionX(),false);
+		_text("positionY",bean.getPositionY(),false);
+		_text("width",bean.getWidth(),false);
+		_text("heigth",bean.getHeight(),false);
+		_text("symbolImage",bean.getImagePath(),false);
+		_xml.writeEndElement();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  cityForecastData
+/////////////////////////////////////////////////////////////////////////////////////////
+	private void _writeForecastForLocation(final String elementName,
+	                                       final ForecastForLocation bean) throws XMLStreamException {
+		if (bean == null) return;
+		_xml.writeStartElement(elementName);
+		_attr("cityCode",bean.getLocCode());
+		_attr("cityName",bean.getLocName());
+		_text("tempMax",bean.getTempMax(),false);
+		_text("tempMin",bean.getTempMin(),false);
+		_writeForecastForLocationSymbol("symbol",bean.getSymbol());
+		_xml.writeEndElement();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  symbol
+/////////////////////////////////////////////////////////////////////////////////////////
+	private void _writeForecastForLocationSymbol(final String elementName,
+	                                             final ForecastForLocationSymbol bean) throws XMLStreamException {
+		if (bean == null) return;
+		_xml.writeStartElement(elementName);
+		_text("symbolImage",bean.getImagePath(),false);
+		_languageTexts("descriptions",bean.getDescriptions(),false);
+		_xml.writeEndElement();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  forecastForLocation
+/////////////////////////////////////////////////////////////////////////////////////////
+	private void _writeForecastForLocationSummary(final String elementName,
+	                                              final ForecastForLocationSummary bean) throws XMLStreamException {
+		if (bean == null) return;
+		_xml.writeStartElement(elementName);
+		_attr("day",bean.getDay());
+		_attr("date",bean.getDate());
+		_attr("city",bean.getCity());
+		_attr("tempMax",bean.getTempMax());
+		_attr("tempMin",bean.getTempMin());
+		_text("summary",bean.getSummary(),true);
+		_text("symbolPath",bean.getSymbolPath(),false);
+		_text("symbolDescription",bean.getSymbolDescription(),true);
+		_xml.writeEndElement();
+	}
+}
@@ -0,0 +1,197 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import euskadi.opendata.model.meteo.ForecastForLocationSymbol;
+import r01f.locale.Language;
+import r01f.locale.Languages;
+import r01f.types.Path;
+import r01f.util.types.Strings;
+
+/**
+ * Base for the single pass StAX (pull-parser) readers of the meteo feeds
+ * (met_forecast.xml, met_forecast_zone.xml, met_tendency.xml...): all the feeds share
+ * the same conventions (dd/MM/yyyy dates, <es>...</es><eu>...</eu> texts, symbols...)
+ * <pre>
+ * IMPORTANT!	A reader is NOT thread safe: it's used to read a single document
+ * </pre>
+ */
+abstract class MeteoStAXReader {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final XMLInputFactory XML_INPUT_FACTORY;
+	static {
+		XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING,Boolean.TRUE);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD,Boolean.FALSE);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,Boolean.FALSE);
+	}
+	private static final String DATE_FORMAT = "dd/MM/yyyy";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	protected final XMLStreamReader _xml;
+	private final SimpleDateFormat _dateFormat = new SimpleDateFormat(DATE_FORMAT);	// NOT thread safe: a reader is used only once
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	protected MeteoStAXReader(final XMLStreamReader xml) {
+		_xml = xml;
+	}
+	/**
+	 * Creates a stream reader for the given xml
+	 * @param is
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	protected static XMLStreamReader _createXMLStreamReader(final InputStream is) throws XMLStreamException {
+		return XML_INPUT_FACTORY.createXMLStreamReader(is);
+	}
+	/**
+	 * Creates a stream reader for the given xml chars (the encoding declared by the xml is ignored)
+	 * @param reader
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	protected static XMLStreamReader _createXMLStreamReader(final Reader reader) throws XMLStreamException {
+		return XML_INPUT_FACTORY.createXMLStreamReader(reader);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  ROOT
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Moves the cursor to the document root element
+	 * @param rootName the expected root element name
+	 * @throws XMLStreamException if the root element is NOT the expected one
+	 */
+	protected void _goToRoot(final String rootName) throws XMLStreamException {
+		if (_xml.nextTag() != XMLStreamConstants.START_ELEMENT
+		 || !rootName.equals(_xml.getLocalName())) throw new XMLStreamException("The document root is NOT a " + rootName + " element",_xml.getLocation());
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  symbol
+/////////////////////////////////////////////////////////////////////////////////////////
+	protected ForecastForLocationSymbol _readLocationSymbol() throws XMLStreamException {
+		ForecastForLocationSymbol outSymbol = new ForecastForLocationSymbol();
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("symbolImage".equals(name)) {
+				outSymbol.setImagePath(_xml.getElementText());
+			} else if ("descriptions".equals(name)) {
+				outSymbol.setDescriptions(_readLanguageTexts());
+			} else {
+				_skip();
+			}
+		}
+		return outSymbol;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  <es>...</es><eu>...</eu>
+/////////////////////////////////////////////////////////////////////////////////////////
+	protected Map<Language,String> _readLanguageTexts() throws XMLStreamException {
+		Map<Language,String> outTexts = new EnumMap<Language,String>(Language.class);
+		while (_nextChild()) {
+			Language lang = Languages.fromLanguageCode(_xml.getLocalName());
+			if (lang != null) {
+				outTexts.put(lang,_xml.getElementText());
+			} else {
+				_skip();
+			}
+		}
+		return outTexts;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CURSOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Moves the cursor to the next child element of the current element
+	 * Every child MUST be fully consumed (up to it's END_ELEMENT) before calling this method again
+	 * @return false if the END_ELEMENT of the current element was reached
+	 */
+	protected boolean _nextChild() throws XMLStreamException {
+		while (_xml.hasNext()) {
+			int event = _xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) return true;
+			if (event == XMLStreamConstants.END_ELEMENT) return false;
+		}
+		return false;
+	}
+	/**
+	 * Skips the current element (and all it's children)
+	 */
+	protected void _skip() throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0 && _xml.hasNext()) {
+			int event = _xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  VALUES
+/////////////////////////////////////////////////////////////////////////////////////////
+	protected int _intText() throws XMLStreamException {
+		String text = _xml.getElementText().trim();
+		return Strings.isNullOrEmpty(text) ? 0 : Integer.parseInt(text);
+	}
+	protected double _doubleText() throws XMLStreamException {
+		String text = _xml.getElementText().trim();
+		return Strings.isNullOrEmpty(text) ? 0 : Double.parseDouble(text);
+	}
+	protected Path _pathText() throws XMLStreamException {
+		String text = _xml.getElementText().trim();
+		return Strings.isNullOrEmpty(text) ? null : Path.of(text);
+	}
+	protected float _floatText() throws XMLStreamException {
+		return (float)_doubleText();
+	}
+	protected <E extends Enum<E>> E _enumText(final Class<E> enumType) throws XMLStreamException {
+		return _enum(enumType,_xml.getElementText());
+	}
+	protected int _intAttr(final String attrName) throws XMLStreamException {
+		String text = _xml.getAttributeValue(null,attrName);
+		if (Strings.isNullOrEmpty(text)) return 0;
+		try {
+			return Integer.parseInt(text.trim());
+		} catch (NumberFormatException numEx) {
+			throw new XMLStreamException("Illegal " + attrName + " number: " + text,_xml.getLocation(),numEx);
+		}
+	}
+	protected <E extends Enum<E>> E _enumAttr(final Class<E> enumType,
+											  final String attrName) throws XMLStreamException {
+		return _enum(enumType,_xml.getAttributeValue(null,attrName));
+	}
+	private <E extends Enum<E>> E _enum(final Class<E> enumType,
+										final String text) throws XMLStreamException {
+		if (Strings.isNullOrEmpty(text)) return null;
+		try {
+			return Enum.valueOf(enumType,text.trim());
+		} catch (IllegalArgumentException illArgEx) {
+			throw new XMLStreamException("Illegal " + enumType.getSimpleName() + ": " + text,_xml.getLocation(),illArgEx);
+		}
+	}
+	protected Date _dateAttr(final String attrName) throws XMLStreamException {
+		String text = _xml.getAttributeValue(null,attrName);
+		if (Strings.isNullOrEmpty(text)) return null;
+		try {
+			return _dateFormat.parse(text.trim());
+		} catch (ParseException parseEx) {
+			throw new XMLStreamException("Illegal " + attrName + " date: " + text,_xml.getLocation(),parseEx);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import r01f.locale.Language;
+import r01f.locale.Languages;
+
+/**
+ * Base for the StAX writers of the meteo model objects: the counterpart of {@link MeteoStAXReader}
+ * (dd/MM/yyyy dates, <es>...</es><eu>...</eu> texts...)
+ * <pre>
+ * IMPORTANT!	A writer is NOT thread safe: it's used to write a single document
+ * </pre>
+ */
+abstract class MeteoStAXWriter {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+	private static final String DATE_FORMAT = "dd/MM/yyyy";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	protected final XMLStreamWriter _xml;
+	private final SimpleDateFormat _dateFormat = new SimpleDateFormat(DATE_FORMAT);	// NOT thread safe: a writer is used only once
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	protected MeteoStAXWriter(final XMLStreamWriter xml) {
+		_xml = xml;
+	}
+	/**
+	 * Creates a stream writer that writes UTF-8 to the given stream
+	 * @param os
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	protected static XMLStreamWriter _createXMLStreamWriter(final OutputStream os) throws XMLStreamException {
+		return XML_OUTPUT_FACTORY.createXMLStreamWriter(os,"UTF-8");
+	}
+	/**
+	 * Creates a stream writer that writes to the given writer
+	 * @param writer
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	protected static XMLStreamWriter _createXMLStreamWriter(final Writer writer) throws XMLStreamException {
+		return XML_OUTPUT_FACTORY.createXMLStreamWriter(writer);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  VALUES
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Writes an attribute (nothing is written if the value is null)
+	 */
+	protected void _attr(final String name,
+						 final Object value) throws XMLStreamException {
+		if (value == null) return;
+		_xml.writeAttribute(name,_asString(value));
+	}
+	/**
+	 * Writes an element with a text (nothing is written if the value is null)
+	 */
+	protected void _text(final String name,
+						 final Object value,
+						 final boolean cdata) throws XMLStreamException {
+		if (value == null) return;
+		_xml.writeStartElement(name);
+		_characters(_asString(value),cdata);
+		_xml.writeEndElement();
+	}
+	/**
+	 * Writes a <wrapper><es>...</es><eu>...</eu></wrapper> element (nothing is written if the texts are null)
+	 */
+	protected void _languageTexts(final String wrapperName,
+								  final Map<Language,String> texts,
+								  final boolean cdata) throws XMLStreamException {
+		if (texts == null) return;
+		_xml.writeStartElement(wrapperName);
+		for (Map.Entry<Language,String> me : texts.entrySet()) {
+			if (me.getValue() == null) continue;
+			_xml.writeStartElement(Languages.getLanguageCode(me.getKey()));
+			_characters(me.getValue(),cdata);
+			_xml.writeEndElement();
+		}
+		_xml.writeEndElement();
+	}
+	private void _characters(final String text,
+							 final boolean cdata) throws XMLStreamException {
+		if (cdata && !text.contains("]]>")) {
+			_xml.writeCData(text);
+		} else {
+			_xml.writeCharacters(text);
+		}
+	}
+	private String _asString(final Object value) {
+		if (value instanceof Date) return _dateFormat.format((Date)value);
+		if (value instanceof Enum) return ((Enum<?>)value).name();
+		return value.toString();
+	}
+}
@@ -0,0 +1,108 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import euskadi.opendata.model.meteo.TendencyForDay;
+import euskadi.opendata.model.meteo.WeatherTendency;
+
+/**
+ * Single pass StAX (pull-parser) reader for the met_tendency.xml document:
+ * <pre>
+ * 	<weatherTendency doneDate='dd/MM/yyyy'>
+ * 		<tendencies>
+ * 			<tendency tendencyDate='dd/MM/yyyy'>
+ * 				<tendencyDateText>...</tendencyDateText>
+ * 				<description><es>...</es><eu>...</eu></description>
+ * 				<tempMax>..</tempMax><tempMin>..</tempMin>
+ * 				<symbol>
+ * 					<symbolImage>...</symbolImage>
+ * 					<descriptions><es>...</es><eu>...</eu></descriptions>
+ * 				</symbol>
+ * 			</tendency>
+ * 		</tendencies>
+ * 	</weatherTendency>
+ * </pre>
+ * IMPORTANT!	This layout mirrors the met_forecast.xml one and it has NOT been checked against a real
+ * 				met_tendency.xml document yet (neither has the bundled test fixture): the feed is NOT started
+ * 				unless it's enabled with -Dopendata.meteo.zoneAndTendencyFeeds=true
+ */
+public class TendencyStAXReader
+	 extends MeteoStAXReader {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	private TendencyStAXReader(final XMLStreamReader xml) {
+		super(xml);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  PUBLIC METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Reads a {@link WeatherTendency} from the met_tendency.xml stream
+	 * @param is
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	public static WeatherTendency read(final InputStream is) throws XMLStreamException {
+		XMLStreamReader xml = _createXMLStreamReader(is);
+		try {
+			return new TendencyStAXReader(xml)._readTendency();
+		} finally {
+			xml.close();
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  weatherTendency
+/////////////////////////////////////////////////////////////////////////////////////////
+	private WeatherTendency _readTendency() throws XMLStreamException {
+		_goToRoot("weatherTendency");
+
+		WeatherTendency outTendency = new WeatherTendency();
+		outTendency.setDate(_dateAttr("doneDate"));
+		while (_nextChild()) {
+			if ("tendencies".equals(_xml.getLocalName())) {
+				List<TendencyForDay> tendencies = new ArrayList<TendencyForDay>();
+				while (_nextChild()) {
+					if ("tendency".equals(_xml.getLocalName())) {
+						tendencies.add(_readTendencyForDay());
+					} else {
+						_skip();
+					}
+				}
+				outTendency.setTendencies(tendencies);
+			} else {
+				_skip();
+			}
+		}
+		return outTendency;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  tendency
+/////////////////////////////////////////////////////////////////////////////////////////
+	private TendencyForDay _readTendencyForDay() throws XMLStreamException {
+		TendencyForDay outDay = new TendencyForDay();
+		outDay.setDate(_dateAttr("tendencyDate"));
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("tendencyDateText".equals(name)) {
+				outDay.setTendencyDateText(_xml.getElementText());
+			} else if ("description".equals(name)) {
+				outDay.setDescriptions(_readLanguageTexts());
+			} else if ("tempMax".equals(name)) {
+				outDay.setTempMax(_intText());
+			} else if ("tempMin".equals(name)) {
+				outDay.setTempMin(_intText());
+			} else if ("symbol".equals(name)) {
+				outDay.setSymbol(_readLocationSymbol());
+			} else {
+				_skip();
+			}
+		}
+		return outDay;
+	}
+}
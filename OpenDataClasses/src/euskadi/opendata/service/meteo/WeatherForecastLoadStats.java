@@ -0,0 +1,48 @@
+package euskadi.opendata.service.meteo;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import r01f.debug.Debuggable;
+import r01f.util.types.Strings;
+
+/**
+ * Counters about the forecast loads: how many times the forecast xml was NOT downloaded or
+ * parsed because it had NOT changed
+ */
+@Accessors(prefix="_")
+public class WeatherForecastLoadStats
+  implements Debuggable {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The server answered 304 Not Modified
+	 */
+	@Getter private final long _notModified;
+	/**
+	 * The server sent the xml again but it's hash was the same
+	 */
+	@Getter private final long _unchangedHash;
+	/**
+	 * The xml was parsed
+	 */
+	@Getter private final long _reparsed;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public WeatherForecastLoadStats(final long notModified,final long unchangedHash,final long reparsed) {
+		_notModified = notModified;
+		_unchangedHash = unchangedHash;
+		_reparsed = reparsed;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  DEBUG
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public String debugInfo() {
+		return Strings.create().add("  Not modified: ").addLine(Long.toString(_notModified))
+							   .add("Unchanged hash: ").addLine(Long.toString(_unchangedHash))
+							   .add("      Reparsed: ").add(Long.toString(_reparsed))
+							   .asString();
+	}
+}
@@ -0,0 +1,53 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.ByteArrayInputStream;
+
+import r01f.marshalling.Marshaller;
+import r01f.marshalling.simple.SimpleMarshallerBuilder;
+import euskadi.opendata.model.meteo.Forecast;
+
+/**
+ * The ways the met_forecast.xml can be parsed
+ */
+public enum WeatherForecastParser {
+	/**
+	 * The reflective r01f marshaller
+	 */
+	MARSHALLER {
+		@Override
+		public Forecast parse(final byte[] xml) throws Exception {
+			Marshaller marshaller = SimpleMarshallerBuilder.createForPackages(Forecast.class.getPackage().getName())
+														   .getForSingleUse();
+			return marshaller.beanFromXml(new ByteArrayInputStream(xml));
+		}
+	},
+	/**
+	 * The single pass {@link ForecastStAXReader}
+	 */
+	STAX {
+		@Override
+		public Forecast parse(final byte[] xml) throws Exception {
+			return ForecastStAXReader.read(new ByteArrayInputStream(xml));
+		}
+	},
+	/**
+	 * The {@link MeteoModelXmlReader} generated from the model xml annotations
+	 * (the same mappings as the r01f marshaller but no reflection at runtime)
+	 */
+	GENERATED {
+		@Override
+		public Forecast parse(final byte[] xml) throws Exception {
+			return MeteoModelXmlReader.readForecast(new ByteArrayInputStream(xml));
+		}
+	};
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Parses the met_forecast.xml
+	 * @param xml
+	 * @return
+	 * @throws Exception
+	 */
+	public abstract Forecast parse(final byte[] xml) throws Exception;
+}
@@ -1,5 +1,7 @@
 package euskadi.opendata.service.meteo;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import euskadi.opendata.model.meteo.City;
 import euskadi.opendata.model.meteo.Day;
 import euskadi.opendata.model.meteo.Forecast;
@@ -34,4 +36,50 @@ public interface WeatherForecastService {
 	public ForecastForLocationSummary forecastSumaryFor(final City city,
 														final Day day,
 														final Language lang);
+	/**
+	 * Forces a forecast reload (the scheduled refresh keeps running)
+	 * If the forecast has NOT changed it's NOT parsed again and if the load fails the previous forecast is kept
+	 * @return true if the forecast is up to date, false if it could NOT be loaded
+	 */
+	public boolean refresh();
+	/**
+	 * @return when the next scheduled forecast refresh will run (the forecast won't change before)
+	 */
+	public long nextRefreshTimeStamp();
+	/**
+	 * @return true if the last forecast refresh failed (or the opendata server circuit is open)
+	 * 		   so the served forecast might NOT be the latest one
+	 */
+	public boolean isStale();
+	/**
+	 * @return counters about the forecast loads
+	 */
+	public WeatherForecastLoadStats loadStats();
+	/**
+	 * @return the currently published forecast snapshot (it's loaded if no forecast was loaded yet)
+	 */
+	public WeatherForecastSnapshot currentSnapshot();
+	/**
+	 * Non-blocking version of {@link #currentSnapshot()}
+	 * If no forecast was loaded yet, the load is started (all the concurrent callers share
+	 * the same single load) and the returned future completes when it finishes
+	 * @return a future for the currently published forecast snapshot
+	 */
+	public ListenableFuture<WeatherForecastSnapshot> currentSnapshotAsync();
+	/**
+	 * Non-blocking version of {@link #forecastSumaryFor(City, Day, Language)}
+	 * @param city
+	 * @param day
+	 * @param lang
+	 * @return
+	 */
+	public ListenableFuture<ForecastForLocationSummary> forecastSumaryForAsync(final City city,
+																			   final Day day,
+																			   final Language lang);
+	/**
+	 * Registers a listener that's notified every time a new forecast snapshot is published
+	 * (if a snapshot was already published the listener is notified with it right away)
+	 * @param listener
+	 */
+	public void addSnapshotListener(final WeatherForecastSnapshotListener listener);
 }
@@ -0,0 +1,145 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * Meteo feeds configuration ({@link WeatherForecastServiceImpl}, {@link WeatherZoneForecastServiceImpl}
+ * and {@link WeatherTendencyServiceImpl} share the same {@link MeteoFeedEngine})
+ * The values can be overridden using system properties (ie: -Dopendata.meteo.refreshIntervalSeconds=300)
+ * The zone forecast & tendency feeds are NOT bound (so they're NOT refreshed) unless they're enabled
+ * with -Dopendata.meteo.zoneAndTendencyFeeds=true (their xml layouts are NOT checked against real documents yet)
+ */
+@Accessors(prefix="_")
+public class WeatherForecastServiceConfig {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static final String REFRESH_INTERVAL_PROPERTY = "opendata.meteo.refreshIntervalSeconds";
+	public static final String REFRESH_JITTER_PROPERTY = "opendata.meteo.refreshJitterSeconds";
+	public static final String PARSER_PROPERTY = "opendata.meteo.parser";
+	public static final String SNAPSHOT_FILE_PROPERTY = "opendata.meteo.snapshotFile";
+	public static final String FEED_THREADS_PROPERTY = "opendata.meteo.feedThreads";
+	public static final String CONNECT_TIMEOUT_PROPERTY = "opendata.meteo.connectTimeoutSeconds";
+	public static final String READ_TIMEOUT_PROPERTY = "opendata.meteo.readTimeoutSeconds";
+	public static final String RETRY_BACKOFF_PROPERTY = "opendata.meteo.retryBackoffSeconds";
+	public static final String CIRCUIT_FAILURE_THRESHOLD_PROPERTY = "opendata.meteo.circuitFailureThreshold";
+	public static final String CIRCUIT_OPEN_PROPERTY = "opendata.meteo.circuitOpenSeconds";
+	public static final String ZONE_AND_TENDENCY_FEEDS_PROPERTY = "opendata.meteo.zoneAndTendencyFeeds";
+
+	private static final long DEFAULT_REFRESH_INTERVAL_SECONDS = TimeUnit.MINUTES.toSeconds(15);
+	private static final long DEFAULT_REFRESH_JITTER_SECONDS = 60;
+	private static final WeatherForecastParser DEFAULT_PARSER = WeatherForecastParser.STAX;
+	private static final int DEFAULT_FEED_THREADS = 2;
+	private static final long DEFAULT_CONNECT_TIMEOUT_SECONDS = 5;
+	private static final long DEFAULT_READ_TIMEOUT_SECONDS = 15;
+	private static final long DEFAULT_RETRY_BACKOFF_SECONDS = 10;
+	private static final int DEFAULT_CIRCUIT_FAILURE_THRESHOLD = 3;
+	private static final long DEFAULT_CIRCUIT_OPEN_SECONDS = TimeUnit.MINUTES.toSeconds(5);
+	private static final String DEFAULT_SNAPSHOT_FILE = new File(System.getProperty("java.io.tmpdir"),"opendata-meteo-forecast.bin").getAbsolutePath();
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Time between two forecast refreshes
+	 */
+	@Getter private final long _refreshIntervalMillis;
+	/**
+	 * Max random delay added to every refresh interval so not every node in the
+	 * fleet hits the opendata server at the same time
+	 */
+	@Getter private final long _refreshJitterMillis;
+	/**
+	 * How the forecast xml is parsed
+	 */
+	@Getter private final WeatherForecastParser _parser;
+	/**
+	 * Where the last good forecast is saved so a restarted node can serve it immediately
+	 * (null if it's NOT saved)
+	 */
+	@Getter private final File _snapshotFile;
+	/**
+	 * The number of threads shared by ALL the meteo feeds to download, parse and publish
+	 * (the feeds are refreshed at the same time at most by this number of threads)
+	 */
+	@Getter private final int _feedThreads;
+	/**
+	 * Max time to connect to the opendata server
+	 */
+	@Getter private final long _connectTimeoutMillis;
+	/**
+	 * Max time waiting for data once connected
+	 */
+	@Getter private final long _readTimeoutMillis;
+	/**
+	 * The delay before retrying a failed refresh: it doubles with every consecutive failure
+	 * (with a random jitter) up to the refresh interval
+	 */
+	@Getter private final long _retryBackoffMillis;
+	/**
+	 * The consecutive failed refreshes that open a feed circuit: while it's open the opendata server
+	 * is NOT called and the last loaded snapshot is served as stale
+	 */
+	@Getter private final int _circuitFailureThreshold;
+	/**
+	 * How long the circuit stays open before a trial refresh is allowed
+	 */
+	@Getter private final long _circuitOpenMillis;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public WeatherForecastServiceConfig(final long refreshInterval,final long refreshJitter,
+										final TimeUnit timeUnit,
+										final WeatherForecastParser parser,
+										final File snapshotFile,
+										final int feedThreads,
+										final long connectTimeout,final long readTimeout,
+										final long retryBackoff,
+										final int circuitFailureThreshold,final long circuitOpen) {
+		if (refreshInterval <= 0) throw new IllegalArgumentException("The forecast refresh interval MUST be greater than zero");
+		if (refreshJitter < 0) throw new IllegalArgumentException("The forecast refresh jitter CANNOT be negative");
+		if (connectTimeout <= 0 || readTimeout <= 0) throw new IllegalArgumentException("The connect and read timeouts MUST be greater than zero");
+		if (retryBackoff <= 0) throw new IllegalArgumentException("The retry backoff MUST be greater than zero");
+		if (circuitFailureThreshold <= 0 || circuitOpen < 0) throw new IllegalArgumentException("The circuit failure threshold MUST be greater than zero and the open time CANNOT be negative");
+		_refreshIntervalMillis = timeUnit.toMillis(refreshInterval);
+		_refreshJitterMillis = timeUnit.toMillis(refreshJitter);
+		_parser = parser != null ? parser : DEFAULT_PARSER;
+		_snapshotFile = snapshotFile;
+		_feedThreads = feedThreads > 0 ? feedThreads : DEFAULT_FEED_THREADS;
+		_connectTimeoutMillis = timeUnit.toMillis(connectTimeout);
+		_readTimeoutMillis = timeUnit.toMillis(readTimeout);
+		_retryBackoffMillis = Math.min(timeUnit.toMillis(retryBackoff),_refreshIntervalMillis);
+		_circuitFailureThreshold = circuitFailureThreshold;
+		_circuitOpenMillis = timeUnit.toMillis(circuitOpen);
+	}
+	/**
+	 * @return a config using the system properties or the default values if not set
+	 * 		   (the forecast is NOT saved if the snapshot file property is set to an empty value)
+	 */
+	public static WeatherForecastServiceConfig fromSystemProperties() {
+		return new WeatherForecastServiceConfig(Long.getLong(REFRESH_INTERVAL_PROPERTY,DEFAULT_REFRESH_INTERVAL_SECONDS),
+												Long.getLong(REFRESH_JITTER_PROPERTY,DEFAULT_REFRESH_JITTER_SECONDS),
+												TimeUnit.SECONDS,
+												WeatherForecastParser.valueOf(System.getProperty(PARSER_PROPERTY,DEFAULT_PARSER.name())),
+												_fileOrNull(System.getProperty(SNAPSHOT_FILE_PROPERTY,DEFAULT_SNAPSHOT_FILE)),
+												Integer.getInteger(FEED_THREADS_PROPERTY,DEFAULT_FEED_THREADS),
+												Long.getLong(CONNECT_TIMEOUT_PROPERTY,DEFAULT_CONNECT_TIMEOUT_SECONDS),
+												Long.getLong(READ_TIMEOUT_PROPERTY,DEFAULT_READ_TIMEOUT_SECONDS),
+												Long.getLong(RETRY_BACKOFF_PROPERTY,DEFAULT_RETRY_BACKOFF_SECONDS),
+												Integer.getInteger(CIRCUIT_FAILURE_THRESHOLD_PROPERTY,DEFAULT_CIRCUIT_FAILURE_THRESHOLD),
+												Long.getLong(CIRCUIT_OPEN_PROPERTY,DEFAULT_CIRCUIT_OPEN_SECONDS));
+	}
+	/**
+	 * @return true if the zone forecast & tendency feeds are enabled (they're NOT by default)
+	 */
+	public static boolean zoneAndTendencyFeedsFromSystemProperties() {
+		return Boolean.getBoolean(ZONE_AND_TENDENCY_FEEDS_PROPERTY);
+	}
+	private static File _fileOrNull(final String path) {
+		return path != null && path.trim().length() > 0 ? new File(path.trim())
+														: null;
+	}
+}
@@ -1,23 +1,26 @@
 package euskadi.opendata.service.meteo;
 
-import java.io.InputStream;
+import java.io.IOException;
+import java.util.Date;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 import euskadi.opendata.model.meteo.City;
 import euskadi.opendata.model.meteo.Day;
 import euskadi.opendata.model.meteo.Forecast;
-import euskadi.opendata.model.meteo.ForecastForDay;
 import euskadi.opendata.model.meteo.ForecastForLocation;
 import euskadi.opendata.model.meteo.ForecastForLocationSummary;
-import lombok.Cleanup;
-import r01f.httpclient.HttpClient;
+import euskadi.opendata.service.meteo.WeatherForecastSnapshotFile.StoredSnapshot;
+import euskadi.opendata.util.ConditionalHttpFetcher.FetchResult;
+import lombok.extern.slf4j.Slf4j;
 import r01f.locale.Language;
-import r01f.marshalling.Marshaller;
-import r01f.marshalling.simple.SimpleMarshallerBuilder;
-import r01f.patterns.Memoized;
-import r01f.types.Path;
 
+@Slf4j
 @Singleton
 public class WeatherForecastServiceImpl 
   implements WeatherForecastService {
@@ -26,61 +29,68 @@ public class WeatherForecastServiceImpl
 /////////////////////////////////////////////////////////////////////////////////////////
 	private static final String DATA_URL = "http://opendata.euskadi.eus/contenidos/prevision_tiempo/met_forecast/opendata/met_forecast.xml";
 /////////////////////////////////////////////////////////////////////////////////////////
-//  
+//  FIELDS
 /////////////////////////////////////////////////////////////////////////////////////////
 	/**
-	 * A memoized forecast
+	 * The met_forecast.xml feed (refreshed by the shared {@link MeteoFeedEngine})
+	 */
+	private final MeteoFeed<WeatherForecastSnapshot> _feed;
+	/**
+	 * Where the last good forecast is saved (null if it's NOT saved)
 	 */
-	private Memoized<Forecast> _forecast = new Memoized<Forecast>() {
-													@Override @SuppressWarnings("resource")
-													protected Forecast supply() {
-														try {
-															// load the data xml using an http connection
-															@Cleanup InputStream xmlIs = HttpClient.forUrl(DATA_URL)
-																	  					  		   .GET()
-																	  					  		   .getResponse()
-																	  					  		   .loadAsStream();
-															
-															// marshall the xml to java objects
-															Marshaller marshaller = SimpleMarshallerBuilder.createForPackages(Forecast.class.getPackage().getName())
-																											.getForSingleUse();
-															Forecast outForecast = marshaller.beanFromXml(xmlIs);
-															return outForecast;
-														} catch (Throwable th) {
-															th.printStackTrace(System.out);
-														}
-														return null;
-													}
-										   };
+	private final WeatherForecastSnapshotFile _snapshotFile;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	public WeatherForecastServiceImpl(final WeatherForecastServiceConfig config,
+									  final MeteoFeedEngine engine) {
+		_snapshotFile = config.getSnapshotFile() != null ? new WeatherForecastSnapshotFile(config.getSnapshotFile())
+														 : null;
+		final WeatherForecastParser parser = config.getParser();
+		_feed = new MeteoFeed<WeatherForecastSnapshot>("weather forecast",DATA_URL,
+													   engine,config) {
+						@Override
+						protected WeatherForecastSnapshot parse(final byte[] xml,
+																final long loadTimeStamp,final String contentHash) throws Exception {
+							Forecast forecast = parser.parse(xml);
+							if (forecast == null) throw new IllegalStateException("The loaded forecast is null");
+							return new WeatherForecastSnapshot(forecast,
+															   loadTimeStamp,contentHash);
+						}
+						@Override
+						protected void published(final WeatherForecastSnapshot snapshot,
+												 final FetchResult fetched) {
+							_saveSnapshot(snapshot,fetched);
+						}
+				};
+		// serve the last saved forecast (if any) while the live one is loaded in the background
+		_restoreSnapshot();
+		
+		// load the forecast as soon as possible
+		_feed.start();
+	}
 /////////////////////////////////////////////////////////////////////////////////////////
 //  
 /////////////////////////////////////////////////////////////////////////////////////////
 	@Override
 	public Forecast forecast() {
-		return _forecast.get();
+		return this.currentSnapshot().getForecast();
 	}
 	@Override
 	public ForecastForLocation forecastFor(final City city,
 										   final Day day) {
 		if (city == null || day == null) throw new IllegalArgumentException("Either the city code or the day are NOT valid");
 		
-		// Get the forecast for the given day
-		ForecastForDay dayForecast = _forecastAt(day);
-		
-		// Get the city forecast
-		ForecastForLocation locationForecast = dayForecast.getForecastForCity(city);
-		if (locationForecast == null) throw new IllegalArgumentException("There's NO forecast for " + city);
-		
-		return locationForecast;
+		return this.currentSnapshot()
+				   .forecastFor(city,day);
 	}
 	@Override
 	public String summaryAt(final Day day,final Language lang) {
 		if (day == null || lang == null) throw new IllegalArgumentException("Either the day or the language are NOT valid");
 		
-		// Get the forecast for the given day
-		ForecastForDay dayForecast = _forecastAt(day);
-		
-		return dayForecast.getDescriptionIn(lang);
+		return this.currentSnapshot()
+				   .summaryAt(day,lang);
 	}
 	@Override
 	public ForecastForLocationSummary forecastSumaryFor(final City city,
@@ -88,45 +98,93 @@ public class WeatherForecastServiceImpl
 														final Language lang) {
 		if (city == null || day == null || lang == null) throw new IllegalArgumentException("Either the city code or the day or the language are NOT valid");
 		
-		// Get the forecast for the given day
-		ForecastForDay dayForecast = _forecastAt(day);
+		return this.currentSnapshot()
+				   .forecastSumaryFor(city,day,lang);
+	}
+	@Override
+	public ListenableFuture<ForecastForLocationSummary> forecastSumaryForAsync(final City city,
+																			   final Day day,
+																			   final Language lang) {
+		if (city == null || day == null || lang == null) throw new IllegalArgumentException("Either the city code or the day or the language are NOT valid");
 		
-		// Get the forecast for the given location at the given day
-		ForecastForLocation locForecast = this.forecastFor(city,
-														   day);
-
-		// ... mix both
-		ForecastForLocationSummary outForecast = new ForecastForLocationSummary();
-		outForecast.setCity(locForecast.getCity());
-		outForecast.setDate(dayForecast.getDate());
-		outForecast.setDay(day);
-		outForecast.setSummary(dayForecast.getDescriptionIn(lang));
-		outForecast.setTempMin(locForecast.getTempMin());
-		outForecast.setTempMax(locForecast.getTempMax());
-		if (locForecast.getSymbol() != null) {
-			outForecast.setSymbolPath(Path.of(locForecast.getSymbol().getImagePath()));
-			outForecast.setSymbolDescription(locForecast.getSymbol().getDescriptionIn(lang));
+		return Futures.transform(this.currentSnapshotAsync(),
+								 new Function<WeatherForecastSnapshot,ForecastForLocationSummary>() {
+										@Override
+										public ForecastForLocationSummary apply(final WeatherForecastSnapshot snapshot) {
+											return snapshot.forecastSumaryFor(city,day,lang);
+										}
+								 });
+	}
+	@Override
+	public void addSnapshotListener(final WeatherForecastSnapshotListener listener) {
+		_feed.addSnapshotListener(listener);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  REFRESH
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public boolean refresh() {
+		return _feed.refresh();
+	}
+	@Override
+	public long nextRefreshTimeStamp() {
+		return _feed.nextRefreshTimeStamp();
+	}
+	@Override
+	public boolean isStale() {
+		return _feed.isStale();
+	}
+	@Override
+	public WeatherForecastLoadStats loadStats() {
+		return _feed.loadStats();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  SNAPSHOT FILE
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Publishes the snapshot saved by a previous run (if any)
+	 */
+	private void _restoreSnapshot() {
+		if (_snapshotFile == null) return;
+		StoredSnapshot stored = _snapshotFile.read();
+		if (stored == null) return;
+		
+		// the first refresh will be answered with a 304 / unchanged hash if the forecast did NOT change
+		_feed.restore(stored.getSnapshot(),
+					  stored.getETag(),stored.getLastModified());
+		log.info("Weather forecast restored from {} (loaded at {})",
+				 _snapshotFile.getFile(),new Date(stored.getSnapshot().getLoadTimeStamp()));
+	}
+	/**
+	 * Saves the snapshot so a restarted node can serve it immediately
+	 * (a failure is just logged: the snapshot is already published)
+	 * @param snapshot
+	 * @param fetched
+	 */
+	private void _saveSnapshot(final WeatherForecastSnapshot snapshot,
+							   final FetchResult fetched) {
+		if (_snapshotFile == null) return;
+		try {
+			_snapshotFile.write(snapshot,
+								fetched.getETag(),fetched.getLastModified());
+		} catch (IOException ioEx) {
+			log.warn("Could NOT save the weather forecast to {}: {}",_snapshotFile.getFile(),ioEx.getMessage());
 		}
-		return outForecast;
 	}
 /////////////////////////////////////////////////////////////////////////////////////////
-//  
+//  SNAPSHOT
 /////////////////////////////////////////////////////////////////////////////////////////
 	/**
-	 * Returns the forecast at a given day
-	 * @param day
+	 * Returns the current snapshot
+	 * If no forecast was loaded yet (ie: the node has just started) the caller waits for the load
 	 * @return
 	 */
-	private ForecastForDay _forecastAt(final Day day) {
-		// Get the forecast
-		Forecast forecast = _forecast.get();
-		if (forecast == null) throw new IllegalStateException("Could NOT load the forecast from OpenData euskadi!!!");
-		
-		// Get the day forecast
-		ForecastForDay dayForecast = forecast.getDayForecasts(day);
-		if (dayForecast == null) throw new IllegalArgumentException("There's NO forecast for " + day);
-		
-		return dayForecast;
+	@Override
+	public WeatherForecastSnapshot currentSnapshot() {
+		return _feed.currentSnapshot();
+	}
+	@Override
+	public ListenableFuture<WeatherForecastSnapshot> currentSnapshotAsync() {
+		return _feed.currentSnapshotAsync();
 	}
-
 }
@@ -0,0 +1,199 @@
+package euskadi.opendata.service.meteo;
+
+import java.util.Date;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import r01f.locale.Language;
+import r01f.types.Path;
+import euskadi.opendata.model.meteo.City;
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.model.meteo.ForecastForDay;
+import euskadi.opendata.model.meteo.ForecastForLocation;
+import euskadi.opendata.model.meteo.ForecastForLocationSummary;
+import euskadi.opendata.model.meteo.ForecastForLocationSymbol;
+
+/**
+ * A loaded {@link Forecast} as published to the readers
+ * A snapshot is NEVER modified once published: a refresh builds a new snapshot
+ * and swaps it atomically
+ * <pre>
+ * The forecast is flattened ONCE when the snapshot is built into arrays indexed by
+ * {@link Day#ordinal()}, {@link City#ordinal()} and {@link Language#ordinal()} so a lookup
+ * is just a few array accesses (no String-keyed maps, no boxing)
+ * </pre>
+ */
+@Accessors(prefix="_")
+public class WeatherForecastSnapshot
+	 extends MeteoFeedSnapshot {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final int DAYS = Day.values().length;
+	private static final int CITIES = City.values().length;
+	private static final int LANGS = Language.values().length;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The forecast
+	 */
+	@Getter private final Forecast _forecast;
+
+	// [day]
+	private final ForecastForDay[] _days = new ForecastForDay[DAYS];
+	private final Date[] _dates = new Date[DAYS];
+	// [day][lang]
+	private final String[][] _descriptions = new String[DAYS][LANGS];
+	// [day][city]
+	private final ForecastForLocation[][] _locations = new ForecastForLocation[DAYS][CITIES];
+	private final int[][] _tempMin = new int[DAYS][CITIES];
+	private final int[][] _tempMax = new int[DAYS][CITIES];
+	private final Path[][] _symbolPaths = new Path[DAYS][CITIES];
+	// [day][city][lang]
+	private final String[][][] _symbolDescriptions = new String[DAYS][CITIES][LANGS];
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public WeatherForecastSnapshot(final Forecast forecast,
+								   final long loadTimeStamp,
+								   final String contentHash) {
+		super(loadTimeStamp,
+			  contentHash,
+			  forecast.getDate());
+		_forecast = forecast;
+		for (Day day : Day.values()) {
+			ForecastForDay dayForecast = forecast.getDayForecasts(day);
+			if (dayForecast == null) continue;
+
+			int d = day.ordinal();
+			_days[d] = dayForecast;
+			_dates[d] = dayForecast.getDate();
+			_indexByLanguage(dayForecast.getDescriptions(),
+							 _descriptions[d]);
+			for (City city : City.values()) {
+				ForecastForLocation locForecast = dayForecast.getForecastForCity(city);
+				if (locForecast == null) continue;
+
+				int c = city.ordinal();
+				_locations[d][c] = locForecast;
+				_tempMin[d][c] = locForecast.getTempMin();
+				_tempMax[d][c] = locForecast.getTempMax();
+				ForecastForLocationSymbol symbol = locForecast.getSymbol();
+				if (symbol != null) {
+					if (symbol.getImagePath() != null) _symbolPaths[d][c] = Path.of(symbol.getImagePath());
+					_indexByLanguage(symbol.getDescriptions(),
+									 _symbolDescriptions[d][c]);
+				}
+			}
+		}
+	}
+	private static void _indexByLanguage(final Map<Language,String> texts,
+										 final String[] byLang) {
+		if (texts == null) return;
+		for (Map.Entry<Language,String> me : texts.entrySet()) {
+			if (me.getKey() != null) byLang[me.getKey().ordinal()] = me.getValue();
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Returns the forecast at a given day
+	 * @param day
+	 * @return
+	 */
+	public ForecastForDay forecastAt(final Day day) {
+		ForecastForDay dayForecast = _days[day.ordinal()];
+		if (dayForecast == null) throw new IllegalArgumentException("There's NO forecast for " + day);
+		return dayForecast;
+	}
+	/**
+	 * Returns the forecast for a location on a given day
+	 * @param city
+	 * @param day
+	 * @return
+	 */
+	public ForecastForLocation forecastFor(final City city,
+										   final Day day) {
+		this.forecastAt(day);
+		ForecastForLocation locationForecast = _locations[day.ordinal()][city.ordinal()];
+		if (locationForecast == null) throw new IllegalArgumentException("There's NO forecast for " + city);
+		return locationForecast;
+	}
+	/**
+	 * Returns the forecast summary at a given day in a given language
+	 * @param day
+	 * @param lang
+	 * @return the summary or null if there's no summary in the given language
+	 */
+	public String summaryAt(final Day day,
+							final Language lang) {
+		this.forecastAt(day);
+		return _descriptions[day.ordinal()][lang.ordinal()];
+	}
+	/**
+	 * @param city
+	 * @param day
+	 * @return true if there's a forecast for the location on the given day
+	 */
+	public boolean hasForecastFor(final City city,
+								  final Day day) {
+		return _locations[day.ordinal()][city.ordinal()] != null;
+	}
+	/**
+	 * Returns the min temperature forecast for a location on a given day
+	 * @param city
+	 * @param day
+	 * @return
+	 */
+	public int tempMin(final City city,
+					   final Day day) {
+		this.forecastFor(city,day);
+		return _tempMin[day.ordinal()][city.ordinal()];
+	}
+	/**
+	 * Returns the max temperature forecast for a location on a given day
+	 * @param city
+	 * @param day
+	 * @return
+	 */
+	public int tempMax(final City city,
+					   final Day day) {
+		this.forecastFor(city,day);
+		return _tempMax[day.ordinal()][city.ordinal()];
+	}
+	/**
+	 * Returns a "mix" of the {@link ForecastForLocation} and the {@link ForecastForDay} summary
+	 * @param city
+	 * @param day
+	 * @param lang
+	 * @return
+	 */
+	public ForecastForLocationSummary forecastSumaryFor(final City city,
+														final Day day,
+														final Language lang) {
+		// Check there's a forecast for the given location at the given day
+		this.forecastFor(city,
+						 day);
+
+		// ... mix the day and location forecasts
+		int d = day.ordinal();
+		int c = city.ordinal();
+		int l = lang.ordinal();
+		ForecastForLocationSummary outForecast = new ForecastForLocationSummary();
+		outForecast.setCity(city);
+		outForecast.setDate(_dates[d]);
+		outForecast.setDay(day);
+		outForecast.setSummary(_descriptions[d][l]);
+		outForecast.setTempMin(_tempMin[d][c]);
+		outForecast.setTempMax(_tempMax[d][c]);
+		if (_locations[d][c].getSymbol() != null) {
+			outForecast.setSymbolPath(_symbolPaths[d][c]);
+			outForecast.setSymbolDescription(_symbolDescriptions[d][c][l]);
+		}
+		return outForecast;
+	}
+}
@@ -0,0 +1,310 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+
+import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.model.meteo.ForecastForDay;
+import euskadi.opendata.model.meteo.ForecastForDayMapSymbol;
+import euskadi.opendata.model.meteo.ForecastForLocation;
+import euskadi.opendata.model.meteo.ForecastForLocationSymbol;
+import euskadi.opendata.util.AtomicFiles;
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import r01f.locale.Language;
+import r01f.types.Path;
+
+/**
+ * The last good forecast saved to a compact binary file so a (re)started node can serve
+ * the forecast immediately, without waiting for the (maybe slow or down) opendata server
+ * <ul>
+ * 		<li>The file is written to a temp file that's renamed when complete so a reader
+ * 			never sees a half-written file</li>
+ * 		<li>The file is memory-mapped and decoded straight from the mapped buffer</li>
+ * </ul>
+ * <pre>
+ * Format (big endian):
+ * 		magic 'OMFS' | version | loadTimeStamp | contentHash | eTag | lastModified | forecast
+ * 		strings are written as an int length (-1 for null) followed by the UTF-8 bytes
+ * 		dates are written as a long (-1 for null)
+ * 		languages are written as their name
+ * A file with a different version is NOT read: the forecast is loaded from the opendata server
+ * </pre>
+ */
+@Slf4j
+@Accessors(prefix="_")
+public class WeatherForecastSnapshotFile {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final int MAGIC = 0x4F4D4653;	// OMFS
+	private static final int VERSION = 1;		// increment it whenever the format changes
+	private static final Map<String,Language> LANGUAGES_BY_NAME;
+	static {
+		Map<String,Language> byName = new HashMap<String,Language>(Language.values().length * 2);
+		for (Language lang : Language.values()) byName.put(lang.name(),lang);
+		LANGUAGES_BY_NAME = Collections.unmodifiableMap(byName);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final File _file;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public WeatherForecastSnapshotFile(final File file) {
+		_file = file;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  WRITE
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Saves the snapshot (and the http validators it was downloaded with) replacing the previous file
+	 * @param snapshot
+	 * @param eTag
+	 * @param lastModified
+	 * @throws IOException
+	 */
+	public void write(final WeatherForecastSnapshot snapshot,
+					  final String eTag,final String lastModified) throws IOException {
+		AtomicFiles.write(_file,
+						  new AtomicFiles.ContentWriter() {
+									@Override
+									public void writeTo(final OutputStream os) throws IOException {
+										DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+										dos.writeInt(MAGIC);
+										dos.writeInt(VERSION);
+										dos.writeLong(snapshot.getLoadTimeStamp());
+										_writeString(dos,snapshot.getContentHash());
+										_writeString(dos,eTag);
+										_writeString(dos,lastModified);
+										_writeForecast(dos,snapshot.getForecast());
+										dos.flush();
+									}
+						  });
+	}
+	private static void _writeForecast(final DataOutputStream dos,
+									   final Forecast forecast) throws IOException {
+		_writeDate(dos,forecast.getDate());
+		Map<String,ForecastForDay> days = forecast.getForecasts();
+		dos.writeInt(days != null ? days.size() : 0);
+		if (days == null) return;
+		for (Map.Entry<String,ForecastForDay> me : days.entrySet()) {
+			_writeString(dos,me.getKey());
+			_writeDay(dos,me.getValue());
+		}
+	}
+	private static void _writeDay(final DataOutputStream dos,
+								  final ForecastForDay day) throws IOException {
+		_writeString(dos,day.getDateId());
+		_writeDate(dos,day.getDate());
+		_writeString(dos,day.getForeCastDateText());
+		_writePath(dos,day.getMapImage());
+		_writeLanguageTexts(dos,day.getDescriptions());
+		Collection<ForecastForDayMapSymbol> mapSymbols = day.getMapSymbols();
+		dos.writeInt(mapSymbols != null ? mapSymbols.size() : 0);
+		if (mapSymbols != null) {
+			for (ForecastForDayMapSymbol symbol : mapSymbols) {
+				dos.writeDouble(symbol.getPositionX());
+				dos.writeDouble(symbol.getPositionY());
+				dos.writeFloat(symbol.getWidth());
+				dos.writeFloat(symbol.getHeight());
+				_writePath(dos,symbol.getImagePath());
+			}
+		}
+		Map<String,ForecastForLocation> locations = day.getLocations();
+		dos.writeInt(locations != null ? locations.size() : 0);
+		if (locations != null) {
+			for (Map.Entry<String,ForecastForLocation> me : locations.entrySet()) {
+				ForecastForLocation location = me.getValue();
+				_writeString(dos,me.getKey());
+				_writeString(dos,location.getLocCode());
+				_writeString(dos,location.getLocName());
+				dos.writeInt(location.getTempMax());
+				dos.writeInt(location.getTempMin());
+				ForecastForLocationSymbol symbol = location.getSymbol();
+				dos.writeBoolean(symbol != null);
+				if (symbol != null) {
+					_writeString(dos,symbol.getImagePath());
+					_writeLanguageTexts(dos,symbol.getDescriptions());
+				}
+			}
+		}
+	}
+	private static void _writeLanguageTexts(final DataOutputStream dos,
+											final Map<Language,String> texts) throws IOException {
+		dos.writeInt(texts != null ? texts.size() : 0);
+		if (texts == null) return;
+		for (Map.Entry<Language,String> me : texts.entrySet()) {
+			_writeString(dos,me.getKey().name());		// NOT the ordinal: it changes if a language is added to the enum
+			_writeString(dos,me.getValue());
+		}
+	}
+	private static void _writePath(final DataOutputStream dos,
+								   final Path path) throws IOException {
+		_writeString(dos,path != null ? path.asAbsoluteString() : null);
+	}
+	private static void _writeDate(final DataOutputStream dos,
+								   final Date date) throws IOException {
+		dos.writeLong(date != null ? date.getTime() : -1);
+	}
+	private static void _writeString(final DataOutputStream dos,
+									 final String str) throws IOException {
+		if (str == null) {
+			dos.writeInt(-1);
+			return;
+		}
+		byte[] bytes = str.getBytes(Charsets.UTF_8);
+		dos.writeInt(bytes.length);
+		dos.write(bytes);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  READ
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Reads the saved snapshot memory-mapping the file
+	 * @return the saved snapshot or null if there's no file or it's NOT valid
+	 */
+	public StoredSnapshot read() {
+		if (!_file.isFile()) return null;
+		try {
+			@Cleanup RandomAccessFile raf = new RandomAccessFile(_file,"r");
+			ByteBuffer buf = raf.getChannel()
+								.map(FileChannel.MapMode.READ_ONLY,0,raf.length());
+			if (buf.getInt() != MAGIC) throw new IOException("NOT a forecast snapshot file");
+			int version = buf.getInt();
+			if (version != VERSION) throw new IOException("Unsupported forecast snapshot file version " + version);
+			long loadTimeStamp = buf.getLong();
+			String contentHash = _readString(buf);
+			String eTag = _readString(buf);
+			String lastModified = _readString(buf);
+			Forecast forecast = _readForecast(buf);
+			return new StoredSnapshot(new WeatherForecastSnapshot(forecast,
+																  loadTimeStamp,
+																  contentHash),
+									  eTag,lastModified);
+		} catch (IOException ioEx) {
+			log.warn("Could NOT read the forecast snapshot file {}: {}",_file,ioEx.getMessage());
+		} catch (BufferUnderflowException bufEx) {
+			log.warn("The forecast snapshot file {} is truncated",_file);
+		} catch (RuntimeException rtEx) {
+			log.warn("The forecast snapshot file {} is NOT valid: {}",_file,rtEx.getMessage());
+		}
+		return null;
+	}
+	private static Forecast _readForecast(final ByteBuffer buf) {
+		Forecast outForecast = new Forecast();
+		outForecast.setDate(_readDate(buf));
+		int dayCount = buf.getInt();
+		Map<String,ForecastForDay> days = new LinkedHashMap<String,ForecastForDay>(dayCount * 2);
+		for (int i=0; i < dayCount; i++) {
+			String dayId = _readString(buf);
+			days.put(dayId,_readDay(buf));
+		}
+		outForecast.setForecasts(days);
+		return outForecast;
+	}
+	private static ForecastForDay _readDay(final ByteBuffer buf) {
+		ForecastForDay outDay = new ForecastForDay();
+		outDay.setDateId(_readString(buf));
+		outDay.setDate(_readDate(buf));
+		outDay.setForeCastDateText(_readString(buf));
+		outDay.setMapImage(_readPath(buf));
+		outDay.setDescriptions(_readLanguageTexts(buf));
+		int symbolCount = buf.getInt();
+		Collection<ForecastForDayMapSymbol> mapSymbols = new ArrayList<ForecastForDayMapSymbol>(symbolCount);
+		for (int i=0; i < symbolCount; i++) {
+			ForecastForDayMapSymbol symbol = new ForecastForDayMapSymbol();
+			symbol.setPositionX(buf.getDouble());
+			symbol.setPositionY(buf.getDouble());
+			symbol.setWidth(buf.getFloat());
+			symbol.setHeight(buf.getFloat());
+			symbol.setImagePath(_readPath(buf));
+			mapSymbols.add(symbol);
+		}
+		outDay.setMapSymbols(mapSymbols);
+		int locationCount = buf.getInt();
+		Map<String,ForecastForLocation> locations = new LinkedHashMap<String,ForecastForLocation>(locationCount * 2);
+		for (int i=0; i < locationCount; i++) {
+			String key = _readString(buf);
+			ForecastForLocation location = new ForecastForLocation();
+			location.setLocCode(_readString(buf));
+			location.setLocName(_readString(buf));
+			location.setTempMax(buf.getInt());
+			location.setTempMin(buf.getInt());
+			if (buf.get() != 0) {
+				ForecastForLocationSymbol symbol = new ForecastForLocationSymbol();
+				symbol.setImagePath(_readString(buf));
+				symbol.setDescriptions(_readLanguageTexts(buf));
+				location.setSymbol(symbol);
+			}
+			locations.put(key,location);
+		}
+		outDay.setLocations(locations);
+		return outDay;
+	}
+	private static Map<Language,String> _readLanguageTexts(final ByteBuffer buf) {
+		int count = buf.getInt();
+		Map<Language,String> outTexts = new EnumMap<Language,String>(Language.class);
+		for (int i=0; i < count; i++) {
+			Language lang = LANGUAGES_BY_NAME.get(_readString(buf));
+			String text = _readString(buf);
+			if (lang != null) outTexts.put(lang,text);		// a language NOT known anymore is ignored
+		}
+		return outTexts;
+	}
+	private static Path _readPath(final ByteBuffer buf) {
+		String path = _readString(buf);
+		return path != null ? Path.of(path) : null;
+	}
+	private static Date _readDate(final ByteBuffer buf) {
+		long time = buf.getLong();
+		return time >= 0 ? new Date(time) : null;
+	}
+	private static String _readString(final ByteBuffer buf) {
+		int length = buf.getInt();
+		if (length < 0) return null;
+		if (length > buf.remaining()) throw new BufferUnderflowException();
+		byte[] bytes = new byte[length];
+		buf.get(bytes);
+		return new String(bytes,Charsets.UTF_8);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * A snapshot read from the file with the http validators it was downloaded with
+	 */
+	@Accessors(prefix="_")
+	public static class StoredSnapshot {
+		@Getter private final WeatherForecastSnapshot _snapshot;
+		@Getter private final String _eTag;
+		@Getter private final String _lastModified;
+
+		StoredSnapshot(final WeatherForecastSnapshot snapshot,
+					   final String eTag,final String lastModified) {
+			_snapshot = snapshot;
+			_eTag = eTag;
+			_lastModified = lastModified;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package euskadi.opendata.service.meteo;
+
+/**
+ * Notified every time a new {@link WeatherForecastSnapshot} is published
+ * <pre>
+ * IMPORTANT!	The listeners are called at the refresher thread (NOT at the request path)
+ * 				but they delay the next refresh so they should NOT block
+ * </pre>
+ */
+public interface WeatherForecastSnapshotListener
+	 extends MeteoFeedListener<WeatherForecastSnapshot> {
+	/**
+	 * Called when a new snapshot has been published
+	 * @param snapshot
+	 */
+	@Override
+	public void onSnapshotPublished(final WeatherForecastSnapshot snapshot);
+}
@@ -0,0 +1,61 @@
+package euskadi.opendata.service.meteo;
+
+import java.util.Date;
+import java.util.List;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import euskadi.opendata.model.meteo.TendencyForDay;
+import euskadi.opendata.model.meteo.WeatherTendency;
+
+/**
+ * The weather tendency for the next days
+ */
+public interface WeatherTendencyService {
+	/**
+	 * @return the full weather tendency
+	 */
+	public WeatherTendency tendency();
+	/**
+	 * @return the tendency for the next days
+	 */
+	public List<TendencyForDay> tendencies();
+	/**
+	 * Returns the tendency for a given date
+	 * @param date
+	 * @return
+	 */
+	public TendencyForDay tendencyFor(final Date date);
+	/**
+	 * Forces a tendency reload (the scheduled refresh keeps running)
+	 * @return true if the tendency is up to date, false if it could NOT be loaded
+	 */
+	public boolean refresh();
+	/**
+	 * @return when the next scheduled tendency refresh will run (the tendency won't change before)
+	 */
+	public long nextRefreshTimeStamp();
+	/**
+	 * @return true if the last tendency refresh failed (or the opendata server circuit is open)
+	 * 		   so the served tendency might NOT be the latest one
+	 */
+	public boolean isStale();
+	/**
+	 * @return counters about the tendency loads
+	 */
+	public WeatherForecastLoadStats loadStats();
+	/**
+	 * @return the currently published tendency snapshot (it's loaded if nothing was loaded yet)
+	 */
+	public WeatherTendencySnapshot currentSnapshot();
+	/**
+	 * Non-blocking version of {@link #currentSnapshot()}
+	 * @return a future for the currently published tendency snapshot
+	 */
+	public ListenableFuture<WeatherTendencySnapshot> currentSnapshotAsync();
+	/**
+	 * Registers a listener that's notified every time a new tendency snapshot is published
+	 * @param listener
+	 */
+	public void addSnapshotListener(final MeteoFeedListener<WeatherTendencySnapshot> listener);
+}
@@ -0,0 +1,99 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.ByteArrayInputStream;
+import java.util.Date;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import euskadi.opendata.model.meteo.TendencyForDay;
+import euskadi.opendata.model.meteo.WeatherTendency;
+
+@Singleton
+public class WeatherTendencyServiceImpl
+  implements WeatherTendencyService {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String DATA_URL = "http://opendata.euskadi.eus/contenidos/tendencias/met_tendency/opendata/met_tendency.xml";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The met_tendency.xml feed (refreshed by the shared {@link MeteoFeedEngine})
+	 */
+	private final MeteoFeed<WeatherTendencySnapshot> _feed;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	public WeatherTendencyServiceImpl(final WeatherForecastServiceConfig config,
+									  final MeteoFeedEngine engine) {
+		_feed = new MeteoFeed<WeatherTendencySnapshot>("weather tendency",DATA_URL,
+													   engine,config) {
+						@Override
+						protected WeatherTendencySnapshot parse(final byte[] xml,
+																final long loadTimeStamp,final String contentHash) throws Exception {
+							WeatherTendency tendency = TendencyStAXReader.read(new ByteArrayInputStream(xml));
+							return new WeatherTendencySnapshot(tendency,
+															   loadTimeStamp,contentHash);
+						}
+				};
+		_feed.start();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public WeatherTendency tendency() {
+		return this.currentSnapshot().getTendency();
+	}
+	@Override
+	public List<TendencyForDay> tendencies() {
+		return this.currentSnapshot().tendencies();
+	}
+	@Override
+	public TendencyForDay tendencyFor(final Date date) {
+		if (date == null) throw new IllegalArgumentException("The date is NOT valid");
+
+		return this.currentSnapshot()
+				   .tendencyFor(date);
+	}
+	@Override
+	public void addSnapshotListener(final MeteoFeedListener<WeatherTendencySnapshot> listener) {
+		_feed.addSnapshotListener(listener);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  REFRESH
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public boolean refresh() {
+		return _feed.refresh();
+	}
+	@Override
+	public long nextRefreshTimeStamp() {
+		return _feed.nextRefreshTimeStamp();
+	}
+	@Override
+	public boolean isStale() {
+		return _feed.isStale();
+	}
+	@Override
+	public WeatherForecastLoadStats loadStats() {
+		return _feed.loadStats();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  SNAPSHOT
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public WeatherTendencySnapshot currentSnapshot() {
+		return _feed.currentSnapshot();
+	}
+	@Override
+	public ListenableFuture<WeatherTendencySnapshot> currentSnapshotAsync() {
+		return _feed.currentSnapshotAsync();
+	}
+}
@@ -0,0 +1,69 @@
+package euskadi.opendata.service.meteo;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import euskadi.opendata.model.meteo.TendencyForDay;
+import euskadi.opendata.model.meteo.WeatherTendency;
+
+/**
+ * A loaded {@link WeatherTendency} as published to the readers
+ */
+@Accessors(prefix="_")
+public class WeatherTendencySnapshot
+	 extends MeteoFeedSnapshot {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The tendency
+	 */
+	@Getter private final WeatherTendency _tendency;
+	/**
+	 * The tendency for the next days
+	 */
+	private final List<TendencyForDay> _tendencies;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public WeatherTendencySnapshot(final WeatherTendency tendency,
+								   final long loadTimeStamp,
+								   final String contentHash) {
+		super(loadTimeStamp,
+			  contentHash,
+			  tendency.getDate());
+		_tendency = tendency;
+		_tendencies = tendency.getTendencies() != null ? Collections.unmodifiableList(tendency.getTendencies())
+													   : Collections.<TendencyForDay>emptyList();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return the tendency for the next days
+	 */
+	public List<TendencyForDay> tendencies() {
+		return _tendencies;
+	}
+	/**
+	 * Returns the tendency for a given date
+	 * @param date
+	 * @return
+	 */
+	public TendencyForDay tendencyFor(final Date date) {
+		Calendar wanted = Calendar.getInstance();
+		wanted.setTime(date);
+		Calendar other = Calendar.getInstance();
+		for (TendencyForDay tendency : _tendencies) {
+			if (tendency.getDate() == null) continue;
+			other.setTime(tendency.getDate());
+			if (other.get(Calendar.YEAR) == wanted.get(Calendar.YEAR)
+			 && other.get(Calendar.DAY_OF_YEAR) == wanted.get(Calendar.DAY_OF_YEAR)) return tendency;
+		}
+		throw new IllegalArgumentException("There's NO tendency for " + date);
+	}
+}
@@ -0,0 +1,64 @@
+package euskadi.opendata.service.meteo;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.model.meteo.ForecastForZone;
+import euskadi.opendata.model.meteo.ZoneForecast;
+import euskadi.opendata.model.meteo.ZoneForecastForDay;
+
+/**
+ * The forecast by zone (comarca)
+ */
+public interface WeatherZoneForecastService {
+	/**
+	 * @return the full zone forecast
+	 */
+	public ZoneForecast zoneForecast();
+	/**
+	 * Returns the zone forecast at a given day
+	 * @param day
+	 * @return
+	 */
+	public ZoneForecastForDay forecastAt(final Day day);
+	/**
+	 * Returns the forecast for a zone on a given day
+	 * @param zoneCode
+	 * @param day
+	 * @return
+	 */
+	public ForecastForZone forecastFor(final String zoneCode,
+									   final Day day);
+	/**
+	 * Forces a zone forecast reload (the scheduled refresh keeps running)
+	 * @return true if the zone forecast is up to date, false if it could NOT be loaded
+	 */
+	public boolean refresh();
+	/**
+	 * @return when the next scheduled zone forecast refresh will run (the zone forecast won't change before)
+	 */
+	public long nextRefreshTimeStamp();
+	/**
+	 * @return true if the last zone forecast refresh failed (or the opendata server circuit is open)
+	 * 		   so the served zone forecast might NOT be the latest one
+	 */
+	public boolean isStale();
+	/**
+	 * @return counters about the zone forecast loads
+	 */
+	public WeatherForecastLoadStats loadStats();
+	/**
+	 * @return the currently published zone forecast snapshot (it's loaded if nothing was loaded yet)
+	 */
+	public ZoneForecastSnapshot currentSnapshot();
+	/**
+	 * Non-blocking version of {@link #currentSnapshot()}
+	 * @return a future for the currently published zone forecast snapshot
+	 */
+	public ListenableFuture<ZoneForecastSnapshot> currentSnapshotAsync();
+	/**
+	 * Registers a listener that's notified every time a new zone forecast snapshot is published
+	 * @param listener
+	 */
+	public void addSnapshotListener(final MeteoFeedListener<ZoneForecastSnapshot> listener);
+}
@@ -0,0 +1,103 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.ByteArrayInputStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.model.meteo.ForecastForZone;
+import euskadi.opendata.model.meteo.ZoneForecast;
+import euskadi.opendata.model.meteo.ZoneForecastForDay;
+
+@Singleton
+public class WeatherZoneForecastServiceImpl
+  implements WeatherZoneForecastService {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String DATA_URL = "http://opendata.euskadi.eus/contenidos/prevision_tiempo/met_forecast_zone/opendata/met_forecast_zone.xml";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The met_forecast_zone.xml feed (refreshed by the shared {@link MeteoFeedEngine})
+	 */
+	private final MeteoFeed<ZoneForecastSnapshot> _feed;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	public WeatherZoneForecastServiceImpl(final WeatherForecastServiceConfig config,
+										  final MeteoFeedEngine engine) {
+		_feed = new MeteoFeed<ZoneForecastSnapshot>("zone forecast",DATA_URL,
+													engine,config) {
+						@Override
+						protected ZoneForecastSnapshot parse(final byte[] xml,
+															 final long loadTimeStamp,final String contentHash) throws Exception {
+							ZoneForecast zoneForecast = ZoneForecastStAXReader.read(new ByteArrayInputStream(xml));
+							return new ZoneForecastSnapshot(zoneForecast,
+															loadTimeStamp,contentHash);
+						}
+				};
+		_feed.start();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public ZoneForecast zoneForecast() {
+		return this.currentSnapshot().getZoneForecast();
+	}
+	@Override
+	public ZoneForecastForDay forecastAt(final Day day) {
+		if (day == null) throw new IllegalArgumentException("The day is NOT valid");
+
+		return this.currentSnapshot()
+				   .forecastAt(day);
+	}
+	@Override
+	public ForecastForZone forecastFor(final String zoneCode,
+									   final Day day) {
+		if (zoneCode == null || day == null) throw new IllegalArgumentException("Either the zone code or the day are NOT valid");
+
+		return this.currentSnapshot()
+				   .forecastFor(zoneCode,day);
+	}
+	@Override
+	public void addSnapshotListener(final MeteoFeedListener<ZoneForecastSnapshot> listener) {
+		_feed.addSnapshotListener(listener);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  REFRESH
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public boolean refresh() {
+		return _feed.refresh();
+	}
+	@Override
+	public long nextRefreshTimeStamp() {
+		return _feed.nextRefreshTimeStamp();
+	}
+	@Override
+	public boolean isStale() {
+		return _feed.isStale();
+	}
+	@Override
+	public WeatherForecastLoadStats loadStats() {
+		return _feed.loadStats();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  SNAPSHOT
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public ZoneForecastSnapshot currentSnapshot() {
+		return _feed.currentSnapshot();
+	}
+	@Override
+	public ListenableFuture<ZoneForecastSnapshot> currentSnapshotAsync() {
+		return _feed.currentSnapshotAsync();
+	}
+}
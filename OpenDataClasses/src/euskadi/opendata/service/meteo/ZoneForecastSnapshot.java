@@ -0,0 +1,67 @@
+package euskadi.opendata.service.meteo;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.model.meteo.ForecastForZone;
+import euskadi.opendata.model.meteo.ZoneForecast;
+import euskadi.opendata.model.meteo.ZoneForecastForDay;
+
+/**
+ * A loaded {@link ZoneForecast} as published to the readers
+ * (the day forecasts are indexed by {@link Day#ordinal()})
+ */
+@Accessors(prefix="_")
+public class ZoneForecastSnapshot
+	 extends MeteoFeedSnapshot {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The zone forecast
+	 */
+	@Getter private final ZoneForecast _zoneForecast;
+
+	// [day]
+	private final ZoneForecastForDay[] _days = new ZoneForecastForDay[Day.values().length];
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public ZoneForecastSnapshot(final ZoneForecast zoneForecast,
+								final long loadTimeStamp,
+								final String contentHash) {
+		super(loadTimeStamp,
+			  contentHash,
+			  zoneForecast.getDate());
+		_zoneForecast = zoneForecast;
+		for (Day day : Day.values()) {
+			_days[day.ordinal()] = zoneForecast.getDayForecasts(day);
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Returns the zone forecast at a given day
+	 * @param day
+	 * @return
+	 */
+	public ZoneForecastForDay forecastAt(final Day day) {
+		ZoneForecastForDay dayForecast = _days[day.ordinal()];
+		if (dayForecast == null) throw new IllegalArgumentException("There's NO zone forecast for " + day);
+		return dayForecast;
+	}
+	/**
+	 * Returns the forecast for a zone on a given day
+	 * @param zoneCode
+	 * @param day
+	 * @return
+	 */
+	public ForecastForZone forecastFor(final String zoneCode,
+									   final Day day) {
+		ForecastForZone zoneForecast = this.forecastAt(day)
+										   .getForecastForZoneCode(zoneCode);
+		if (zoneForecast == null) throw new IllegalArgumentException("There's NO forecast for zone " + zoneCode);
+		return zoneForecast;
+	}
+}
@@ -0,0 +1,145 @@
+package euskadi.opendata.service.meteo;
+
+import java.io.InputStream;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.common.collect.Maps;
+
+import euskadi.opendata.model.meteo.ForecastForZone;
+import euskadi.opendata.model.meteo.ZoneForecast;
+import euskadi.opendata.model.meteo.ZoneForecastForDay;
+
+/**
+ * Single pass StAX (pull-parser) reader for the met_forecast_zone.xml document:
+ * <pre>
+ * 	<zoneForecast doneDate='dd/MM/yyyy'>
+ * 		<forecasts>
+ * 			<forecast forecastDay='today' forecastDate='dd/MM/yyyy'>
+ * 				<forecastDateText>...</forecastDateText>
+ * 				<description><es>...</es><eu>...</eu></description>
+ * 				<zoneForecastDataList>
+ * 					<zoneForecastData zoneCode='1' zoneName='Litoral'>
+ * 						<description><es>...</es><eu>...</eu></description>
+ * 						<tempMax>..</tempMax><tempMin>..</tempMin>
+ * 						<symbol>
+ * 							<symbolImage>...</symbolImage>
+ * 							<descriptions><es>...</es><eu>...</eu></descriptions>
+ * 						</symbol>
+ * 					</zoneForecastData>
+ * 				</zoneForecastDataList>
+ * 			</forecast>
+ * 		</forecasts>
+ * 	</zoneForecast>
+ * </pre>
+ * IMPORTANT!	This layout mirrors the met_forecast.xml one and it has NOT been checked against a real
+ * 				met_forecast_zone.xml document yet (neither has the bundled test fixture): the feed is NOT started
+ * 				unless it's enabled with -Dopendata.meteo.zoneAndTendencyFeeds=true
+ */
+public class ZoneForecastStAXReader
+	 extends MeteoStAXReader {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ZoneForecastStAXReader(final XMLStreamReader xml) {
+		super(xml);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  PUBLIC METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Reads a {@link ZoneForecast} from the met_forecast_zone.xml stream
+	 * @param is
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	public static ZoneForecast read(final InputStream is) throws XMLStreamException {
+		XMLStreamReader xml = _createXMLStreamReader(is);
+		try {
+			return new ZoneForecastStAXReader(xml)._readZoneForecast();
+		} finally {
+			xml.close();
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  zoneForecast
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ZoneForecast _readZoneForecast() throws XMLStreamException {
+		_goToRoot("zoneForecast");
+
+		ZoneForecast outForecast = new ZoneForecast();
+		outForecast.setDate(_dateAttr("doneDate"));
+		while (_nextChild()) {
+			if ("forecasts".equals(_xml.getLocalName())) {
+				Map<String,ZoneForecastForDay> forecasts = Maps.newLinkedHashMap();
+				while (_nextChild()) {
+					if ("forecast".equals(_xml.getLocalName())) {
+						ZoneForecastForDay dayForecast = _readZoneForecastForDay();
+						forecasts.put(dayForecast.getDateId(),dayForecast);
+					} else {
+						_skip();
+					}
+				}
+				outForecast.setForecasts(forecasts);
+			} else {
+				_skip();
+			}
+		}
+		return outForecast;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  forecast
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ZoneForecastForDay _readZoneForecastForDay() throws XMLStreamException {
+		ZoneForecastForDay outDay = new ZoneForecastForDay();
+		outDay.setDateId(_xml.getAttributeValue(null,"forecastDay"));
+		outDay.setDate(_dateAttr("forecastDate"));
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("forecastDateText".equals(name)) {
+				outDay.setForeCastDateText(_xml.getElementText());
+			} else if ("description".equals(name)) {
+				outDay.setDescriptions(_readLanguageTexts());
+			} else if ("zoneForecastDataList".equals(name)) {
+				Map<String,ForecastForZone> zones = Maps.newLinkedHashMap();
+				while (_nextChild()) {
+					if ("zoneForecastData".equals(_xml.getLocalName())) {
+						ForecastForZone zone = _readForecastForZone();
+						zones.put(zone.getZoneCode(),zone);
+					} else {
+						_skip();
+					}
+				}
+				outDay.setZones(zones);
+			} else {
+				_skip();
+			}
+		}
+		return outDay;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  zoneForecastData
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ForecastForZone _readForecastForZone() throws XMLStreamException {
+		ForecastForZone outZone = new ForecastForZone();
+		outZone.setZoneCode(_xml.getAttributeValue(null,"zoneCode"));
+		outZone.setZoneName(_xml.getAttributeValue(null,"zoneName"));
+		while (_nextChild()) {
+			String name = _xml.getLocalName();
+			if ("description".equals(name)) {
+				outZone.setDescriptions(_readLanguageTexts());
+			} else if ("tempMax".equals(name)) {
+				outZone.setTempMax(_intText());
+			} else if ("tempMin".equals(name)) {
+				outZone.setTempMin(_intText());
+			} else if ("symbol".equals(name)) {
+				outZone.setSymbol(_readLocationSymbol());
+			} else {
+				_skip();
+			}
+		}
+		return outZone;
+	}
+}
@@ -0,0 +1,167 @@
+package euskadi.opendata.service.procurements;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import euskadi.opendata.model.ProcurementData;
+import r01f.util.types.Strings;
+
+/**
+ * Single pass StAX (pull-parser) reader of a procurement data file:
+ * <pre>
+ * 		<record>
+ * 			<item name='contratacion'>
+ * 				<value>
+ * 					<item name='contratacion_titulo_contrato'><value>...</value></item>
+ * 					<item name='contratacion_presupuesto_contrato_cab'><value>1.234,56</value></item>
+ * 					...
+ * 				</value>
+ * 			</item>
+ * 		</record>
+ * </pre>
+ * Only the title and the budget are extracted (same as the xpaths
+ * /record/item[@name='contratacion']/value/item[@name='...']/value) and the reading stops as soon
+ * as both are found
+ * <pre>
+ * IMPORTANT!	It's thread safe: the XMLInputFactory is shared but every file is read by its own stream reader
+ * </pre>
+ */
+public class ProcurementDataFileReader {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final XMLInputFactory XML_INPUT_FACTORY;
+	static {
+		XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING,Boolean.TRUE);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD,Boolean.FALSE);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,Boolean.FALSE);
+	}
+	public static final String CONTRACT_ITEM = "contratacion";
+	public static final String TITLE_ITEM = "contratacion_titulo_contrato";
+	public static final String BUDGET_ITEM = "contratacion_presupuesto_contrato_cab";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Reads the procurement title and budget from a data file
+	 * @param contentName
+	 * @param dataFileUrl
+	 * @param xml the data file
+	 * @return the procurement data (zero value if the data file has NO budget)
+	 * @throws IOException if the xml is NOT valid or the budget is NOT a number
+	 */
+	public ProcurementData read(final String contentName,final String dataFileUrl,
+								final byte[] xml) throws IOException {
+		XMLStreamReader reader = null;
+		try {
+			reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+			String[] titleAndBudget = _readTitleAndBudget(reader);
+			ProcurementData outData = new ProcurementData();
+			outData.setContentName(contentName);
+			outData.setDataFileXMLUrl(dataFileUrl);
+			outData.setTituloContrato(titleAndBudget[0]);
+			outData.setValue(parseValue(titleAndBudget[1]));
+			return outData;
+		} catch (XMLStreamException xmlEx) {
+			throw new IOException("The procurement " + contentName + " data file is NOT a valid xml: " + xmlEx.getMessage(),
+								  xmlEx);
+		} catch (NumberFormatException numEx) {
+			throw new IOException("The procurement " + contentName + " budget is NOT a number: " + numEx.getMessage(),
+								  numEx);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException xmlEx) {
+					// ignored
+				}
+			}
+		}
+	}
+	/**
+	 * Parses a budget formatted as 1.234,56
+	 * @param value
+	 * @return the value or zero if it's null or empty
+	 */
+	public static double parseValue(final String value) {
+		if (Strings.isNullOrEmpty(value)) return 0;
+		return Double.parseDouble(value.trim()
+									   .replace(".","")
+									   .replace(",","."));
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  READ
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Walks the document keeping track of the path: record / item[contratacion] / value / item[X] / value
+	 * @return the title and the budget
+	 */
+	private static String[] _readTitleAndBudget(final XMLStreamReader xml) throws XMLStreamException {
+		String[] outTitleAndBudget = new String[2];
+		String[] path = new String[4];		// the ancestors of a wanted value
+		int depth = 0;
+		while (xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+				continue;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT) continue;
+
+			String name = xml.getLocalName();
+			if (depth == 4 && "value".equals(name)
+			 && "record".equals(path[0]) && CONTRACT_ITEM.equals(path[1]) && "value".equals(path[2])) {
+				if (TITLE_ITEM.equals(path[3])) {
+					outTitleAndBudget[0] = _text(xml);
+				} else if (BUDGET_ITEM.equals(path[3])) {
+					outTitleAndBudget[1] = _text(xml);
+				} else {
+					_skip(xml);
+				}
+				if (outTitleAndBudget[0] != null && outTitleAndBudget[1] != null) break;	// the rest of the file is NOT needed
+				continue;		// the value END_ELEMENT was consumed
+			}
+			if (depth < path.length) {
+				path[depth] = "item".equals(name) ? xml.getAttributeValue(null,"name")
+												  : name;
+			}
+			depth++;
+		}
+		return outTitleAndBudget;
+	}
+	/**
+	 * Returns the text of the current element and it's children (as the xpath string value does)
+	 */
+	private static String _text(final XMLStreamReader xml) throws XMLStreamException {
+		StringBuilder outText = new StringBuilder();
+		int depth = 1;
+		while (depth > 0 && xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			} else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+				outText.append(xml.getText());
+			}
+		}
+		return outText.toString().trim();
+	}
+	private static void _skip(final XMLStreamReader xml) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0 && xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+}
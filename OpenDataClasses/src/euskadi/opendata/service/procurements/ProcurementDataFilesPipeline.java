@@ -0,0 +1,292 @@
+package euskadi.opendata.service.procurements;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import euskadi.opendata.model.ProcurementData;
+import euskadi.opendata.util.DiskHttpCache;
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Downloads and reads many procurement data files in a pipeline:
+ * <ul>
+ * 		<li>download: at most maxConcurrentDownloads data files are downloaded at the same time</li>
+ * 		<li>parse: the downloaded files are read by a pool of parser threads (as many as cores by default)
+ * 			using the thread safe {@link ProcurementDataFileReader} (StAX: no DOM is built)</li>
+ * 		<li>aggregate: every procurement is handed to the {@link ProcurementDataHandler} from the parser threads
+ * 			(see {@link ProcurementsAggregator})</li>
+ * </ul>
+ * The downloads and the parsing overlap: while a file is being read the next ones are being downloaded.
+ * The downloaded files waiting to be read are bounded (twice the parser threads): if the parsers can NOT
+ * keep up the downloads wait so the files are NOT piled up in memory
+ * <pre>
+ * IMPORTANT!	A failed data file (download error, not valid xml or budget) does NOT stop the pipeline:
+ * 				it's logged and returned in the summary
+ * </pre>
+ * Usage:
+ * <pre class='brush:java'>
+ * 		ProcurementsAggregator aggregator = new ProcurementsAggregator();
+ * 		new ProcurementDataFilesPipeline(16,DiskHttpCache.getDefault()).run(procurementDataUrls,
+ * 																			aggregator);
+ * 		... aggregator.getMin() / getMax() / getTotal() ...
+ * </pre>
+ */
+@Slf4j
+@Accessors(prefix="_")
+public class ProcurementDataFilesPipeline {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final int _maxConcurrentDownloads;
+	@Getter private final int _parserThreads;
+	@Getter private final int _connectTimeoutMillis;
+	@Getter private final int _readTimeoutMillis;
+	/**
+	 * The data files are downloaded through this cache (if any)
+	 */
+	@Getter private final DiskHttpCache _httpCache;
+
+	private final ProcurementDataFileReader _reader = new ProcurementDataFileReader();
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public ProcurementDataFilesPipeline(final int maxConcurrentDownloads,
+										final long connectTimeoutMillis,final long readTimeoutMillis) {
+		this(maxConcurrentDownloads,Runtime.getRuntime().availableProcessors(),
+			 connectTimeoutMillis,readTimeoutMillis);
+	}
+	public ProcurementDataFilesPipeline(final int maxConcurrentDownloads,final int parserThreads,
+										final long connectTimeoutMillis,final long readTimeoutMillis) {
+		if (maxConcurrentDownloads <= 0) throw new IllegalArgumentException("The max concurrent downloads MUST be greater than zero");
+		if (parserThreads <= 0) throw new IllegalArgumentException("The parser threads MUST be greater than zero");
+		if (connectTimeoutMillis <= 0 || readTimeoutMillis <= 0) throw new IllegalArgumentException("The connect and read timeouts MUST be greater than zero");
+		_maxConcurrentDownloads = maxConcurrentDownloads;
+		_parserThreads = parserThreads;
+		_connectTimeoutMillis = (int)Math.min(connectTimeoutMillis,Integer.MAX_VALUE);
+		_readTimeoutMillis = (int)Math.min(readTimeoutMillis,Integer.MAX_VALUE);
+		_httpCache = null;
+	}
+	/**
+	 * Creates a pipeline that downloads the data files through a cache (the cache timeouts are used)
+	 * @param maxConcurrentDownloads
+	 * @param httpCache
+	 */
+	public ProcurementDataFilesPipeline(final int maxConcurrentDownloads,
+										final DiskHttpCache httpCache) {
+		this(maxConcurrentDownloads,Runtime.getRuntime().availableProcessors(),
+			 httpCache);
+	}
+	/**
+	 * Creates a pipeline that downloads the data files through a cache (the cache timeouts are used)
+	 * @param maxConcurrentDownloads
+	 * @param parserThreads
+	 * @param httpCache
+	 */
+	public ProcurementDataFilesPipeline(final int maxConcurrentDownloads,final int parserThreads,
+										final DiskHttpCache httpCache) {
+		if (maxConcurrentDownloads <= 0) throw new IllegalArgumentException("The max concurrent downloads MUST be greater than zero");
+		if (parserThreads <= 0) throw new IllegalArgumentException("The parser threads MUST be greater than zero");
+		if (httpCache == null) throw new IllegalArgumentException("The http cache is mandatory");
+		_maxConcurrentDownloads = maxConcurrentDownloads;
+		_parserThreads = parserThreads;
+		_connectTimeoutMillis = httpCache.getConnectTimeoutMillis();
+		_readTimeoutMillis = httpCache.getReadTimeoutMillis();
+		_httpCache = httpCache;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  RUN
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Downloads and reads every procurement data file
+	 * @param dataFileUrlsByContentName the data file url of every procurement content
+	 * @param handler receives the procurements (concurrently)
+	 * @return the pipeline summary
+	 * @throws InterruptedIOException if the calling thread is interrupted while waiting
+	 */
+	public PipelineSummary run(final Map<String,String> dataFileUrlsByContentName,
+							   final ProcurementDataHandler handler) throws InterruptedIOException {
+		return this.run(dataFileUrlsByContentName,
+						handler,
+						null);
+	}
+	/**
+	 * Downloads every procurement data file but only reads the ones that changed since they were
+	 * last read (ie: by a previous crawl: see {@link euskadi.opendata.service.search.SearchCrawlState})
+	 * @param dataFileUrlsByContentName the data file url of every procurement content
+	 * @param handler receives the new or changed procurements (concurrently)
+	 * @param dataFileHashes content name > hash of the data file last read; it's updated with the read data files
+	 * @return the pipeline summary
+	 * @throws InterruptedIOException if the calling thread is interrupted while waiting
+	 */
+	public PipelineSummary run(final Map<String,String> dataFileUrlsByContentName,
+							   final ProcurementDataHandler handler,
+							   final ConcurrentMap<String,String> dataFileHashes) throws InterruptedIOException {
+		long start = System.currentTimeMillis();
+		if (dataFileUrlsByContentName == null || dataFileUrlsByContentName.isEmpty()) return new PipelineSummary(0,0,0,0,Collections.<String,String>emptyMap(),0);
+
+		final CountDownLatch pending = new CountDownLatch(dataFileUrlsByContentName.size());
+		final Semaphore parseSlots = new Semaphore(_parserThreads * 2);
+		final AtomicInteger handled = new AtomicInteger();
+		final AtomicInteger unchanged = new AtomicInteger();
+		final AtomicLong downloadedBytes = new AtomicLong();
+		final Map<String,String> failures = new ConcurrentHashMap<String,String>();
+
+		final ExecutorService downloaders = Executors.newFixedThreadPool(Math.min(_maxConcurrentDownloads,dataFileUrlsByContentName.size()),
+																		 new ThreadFactoryBuilder().setNameFormat("procurement-downloader-%d")
+																		 						   .setDaemon(true)
+																		 						   .build());
+		final ExecutorService parsers = Executors.newFixedThreadPool(_parserThreads,
+																	 new ThreadFactoryBuilder().setNameFormat("procurement-parser-%d")
+																	 						   .setDaemon(true)
+																	 						   .build());
+		try {
+			for (Map.Entry<String,String> dataFile : dataFileUrlsByContentName.entrySet()) {
+				final String contentName = dataFile.getKey();
+				final String dataFileUrl = dataFile.getValue();
+				downloaders.execute(new Runnable() {
+											@Override
+											public void run() {
+												boolean handedOver = false;
+												try {
+													// [1] - download
+													final byte[] xml = ProcurementDataFilesPipeline.this.fetch(new URL(dataFileUrl));
+													downloadedBytes.addAndGet(xml.length);
+													final String hash = dataFileHashes != null ? Hashing.sha1().hashBytes(xml).toString()
+																							   : null;
+													if (hash != null && hash.equals(dataFileHashes.get(contentName))) {
+														unchanged.incrementAndGet();		// already read: NOT parsed again
+														return;
+													}
+
+													// [2] - parse & aggregate (waits if the parsers are NOT keeping up)
+													parseSlots.acquire();
+													parsers.execute(new Runnable() {
+																			@Override
+																			public void run() {
+																				try {
+																					ProcurementData procurement = _reader.read(contentName,dataFileUrl,
+																															   xml);
+																					handler.onProcurement(procurement);
+																					if (hash != null) dataFileHashes.put(contentName,hash);
+																					handled.incrementAndGet();
+																				} catch (Throwable th) {
+																					_failed(contentName,dataFileUrl,th,failures);
+																				} finally {
+																					parseSlots.release();
+																					pending.countDown();
+																				}
+																			}
+																	});
+													handedOver = true;
+												} catch (InterruptedException intEx) {
+													Thread.currentThread().interrupt();
+												} catch (Throwable th) {
+													_failed(contentName,dataFileUrl,th,failures);
+												} finally {
+													if (!handedOver) pending.countDown();
+												}
+											}
+									});
+			}
+			pending.await();
+		} catch (InterruptedException intEx) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while reading the procurement data files");
+		} finally {
+			downloaders.shutdownNow();
+			parsers.shutdownNow();
+		}
+		PipelineSummary outSummary = new PipelineSummary(dataFileUrlsByContentName.size(),
+														 handled.get(),unchanged.get(),
+														 downloadedBytes.get(),
+														 failures,
+														 System.currentTimeMillis() - start);
+		log.info("Read {} of {} procurement data files ({} bytes, {} unchanged, {} failed) in {} millis",
+				 outSummary.getHandled(),outSummary.getDataFiles(),outSummary.getDownloadedBytes(),outSummary.getUnchanged(),outSummary.getFailures().size(),outSummary.getElapsedMillis());
+		return outSummary;
+	}
+	private static void _failed(final String contentName,final String dataFileUrl,
+								final Throwable th,
+								final Map<String,String> failures) {
+		log.warn("Could NOT read the procurement {} data file {}: {}",contentName,dataFileUrl,th.getMessage());
+		failures.put(contentName,th.getMessage() != null ? th.getMessage() : th.getClass().getName());
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FETCH
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Downloads a data file (through the http cache if the pipeline has one)
+	 * @param url
+	 * @return the data file xml
+	 * @throws IOException
+	 */
+	protected byte[] fetch(final URL url) throws IOException {
+		if (_httpCache != null) return _httpCache.get(url).getBody();
+
+		HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+		conn.setConnectTimeout(_connectTimeoutMillis);
+		conn.setReadTimeout(_readTimeoutMillis);
+		try {
+			int status = conn.getResponseCode();
+			if (status != HttpURLConnection.HTTP_OK) throw new IOException("HTTP " + status + " fetching " + url);
+			@Cleanup InputStream is = conn.getInputStream();
+			return ByteStreams.toByteArray(is);
+		} catch (IOException ioEx) {
+			conn.disconnect();		// the connection state is unknown: do NOT reuse it
+			throw ioEx;
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  SUMMARY
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Accessors(prefix="_")
+	public static class PipelineSummary {
+		@Getter private final int _dataFiles;
+		/**
+		 * The procurements actually handed to the handler
+		 */
+		@Getter private final int _handled;
+		/**
+		 * The data files NOT read because they're the same as the last time they were read
+		 */
+		@Getter private final int _unchanged;
+		@Getter private final long _downloadedBytes;
+		/**
+		 * The failed data files: content name > error
+		 */
+		@Getter private final Map<String,String> _failures;
+		@Getter private final long _elapsedMillis;
+
+		PipelineSummary(final int dataFiles,final int handled,final int unchanged,
+						final long downloadedBytes,
+						final Map<String,String> failures,
+						final long elapsedMillis) {
+			_dataFiles = dataFiles;
+			_handled = handled;
+			_unchanged = unchanged;
+			_downloadedBytes = downloadedBytes;
+			_failures = Collections.unmodifiableMap(failures);
+			_elapsedMillis = elapsedMillis;
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package euskadi.opendata.service.procurements;
+
+import euskadi.opendata.model.ProcurementData;
+
+/**
+ * Receives the procurements read by the {@link ProcurementDataFilesPipeline}
+ * <pre>
+ * IMPORTANT!	It's called concurrently from the parser threads: it MUST be thread safe
+ * </pre>
+ */
+public interface ProcurementDataHandler {
+	/**
+	 * Called for every procurement data file read
+	 * @param procurement
+	 */
+	public void onProcurement(final ProcurementData procurement);
+}
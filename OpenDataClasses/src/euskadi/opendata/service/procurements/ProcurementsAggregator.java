@@ -0,0 +1,64 @@
+package euskadi.opendata.service.procurements;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import euskadi.opendata.model.ProcurementData;
+
+/**
+ * Computes the min, max and total budget of the procurements handed by the {@link ProcurementDataFilesPipeline}
+ * <pre>
+ * IMPORTANT!	It's called concurrently from the parser threads: a procurement is only counted once
+ * 				(by content name) and the min / max / total are updated under a lock that only guards
+ * 				a few comparisons (the download and parsing are done outside)
+ * </pre>
+ */
+public class ProcurementsAggregator
+  implements ProcurementDataHandler {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private final ConcurrentMap<String,ProcurementData> _procurements = new ConcurrentHashMap<String,ProcurementData>();
+
+	private ProcurementData _min;
+	private ProcurementData _max;
+	private double _total;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  ProcurementDataHandler
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public void onProcurement(final ProcurementData procurement) {
+		if (_procurements.putIfAbsent(procurement.getContentName(),procurement) != null) return;	// duplicated
+		synchronized(this) {
+			if (_min == null || procurement.getValue() < _min.getValue()) _min = procurement;
+			if (_max == null || procurement.getValue() > _max.getValue()) _max = procurement;
+			_total += procurement.getValue();
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  RESULTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	public int getCount() {
+		return _procurements.size();
+	}
+	/**
+	 * @return the procurement with the lowest budget or null if there's none
+	 */
+	public synchronized ProcurementData getMin() {
+		return _min;
+	}
+	/**
+	 * @return the procurement with the highest budget or null if there's none
+	 */
+	public synchronized ProcurementData getMax() {
+		return _max;
+	}
+	public synchronized double getTotal() {
+		return _total;
+	}
+	public Collection<ProcurementData> getProcurements() {
+		return Collections.unmodifiableCollection(_procurements.values());
+	}
+}
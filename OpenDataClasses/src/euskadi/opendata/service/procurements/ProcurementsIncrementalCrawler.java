@@ -0,0 +1,310 @@
+package euskadi.opendata.service.procurements;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import euskadi.opendata.service.procurements.ProcurementDataFilesPipeline.PipelineSummary;
+import euskadi.opendata.service.search.SearchCrawlState;
+import euskadi.opendata.service.search.SearchCrawlStateStore;
+import euskadi.opendata.service.search.SearchResultItem;
+import euskadi.opendata.service.search.SearchSessionCrawler;
+import euskadi.opendata.service.search.SearchSessionCrawler.CrawlSummary;
+import euskadi.opendata.service.search.SearchSessionPage;
+import euskadi.opendata.service.search.SearchSessionPageHandler;
+import euskadi.opendata.service.search.SearchSessionStAXPageParser;
+import euskadi.opendata.util.DiskHttpCache;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import r01f.util.types.Strings;
+
+/**
+ * Crawls the procurements incrementally: every run only reads the procurements that are new or changed since the last run
+ * <ul>
+ * 		<li>the search asks only for the procurements created since the newest documentCreateDate seen by the last
+ * 			completed crawl (the first crawl starts at firstDate)</li>
+ * 		<li>the data files of several pages (at most maxConcurrentPages) are downloaded and read at the same time</li>
+ * 		<li>the {@link SearchCrawlState} records the highest page completed along with every page before it:
+ * 			if the process crashes the next run resumes the crawl after that page</li>
+ * 		<li>a data file with the same hash as the last time it was read is NOT parsed again (the hashes of
+ * 			the read data files are appended to the state as soon as their page is read)</li>
+ * </ul>
+ * Usage:
+ * <pre class='brush:java'>
+ * 		ProcurementsAggregator aggregator = new ProcurementsAggregator();
+ * 		new ProcurementsIncrementalCrawler(ProcurementsIncrementalCrawler.SEARCH_URL,ProcurementsIncrementalCrawler.CONTENIDOS_URL,
+ * 										   "01/01/2015",
+ * 										   8,16,
+ * 										   DiskHttpCache.getDefault(),SearchCrawlStateStore.getDefault())
+ * 				.crawl(aggregator);
+ * </pre>
+ * <pre>
+ * IMPORTANT!	The results are sorted by documentCreateDate ASC (NOT by publication date): the newly created procurements
+ * 				are appended at the end so the completed pages do NOT change while a failed crawl is resumed
+ * </pre>
+ */
+@Slf4j
+@Accessors(prefix="_")
+public class ProcurementsIncrementalCrawler {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static final String SEARCH_URL = "http://opendata.euskadi.eus/r01htSearchResultWAR/r01hPresentationXML.jsp";
+	public static final String CONTENIDOS_URL = "http://opendata.euskadi.eus/contenidos";
+	private static final String QUERY_FILTER = "r01kQry=tC:euskadi;tF:procedimientos_administrativos;tT:anuncio_contratacion;";
+	private static final String QUERY_ORDER = "o:documentCreateDate.ASC;" +
+											  "pp:r01PageSize.10&r01kSrchSrcId=contenidos.inter";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final String _searchUrl;
+	@Getter private final String _contenidosUrl;
+	/**
+	 * The query without the date window: the id of the crawl state
+	 */
+	@Getter private final String _queryId;
+	/**
+	 * The documentCreateDate the first crawl starts at (dd/MM/yyyy)
+	 */
+	@Getter private final String _firstDate;
+	@Getter private final int _maxConcurrentPages;
+	@Getter private final int _maxConcurrentDownloads;
+	@Getter private final DiskHttpCache _httpCache;
+	@Getter private final SearchCrawlStateStore _stateStore;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public ProcurementsIncrementalCrawler(final String searchUrl,final String contenidosUrl,
+										  final String firstDate,
+										  final int maxConcurrentPages,final int maxConcurrentDownloads,
+										  final DiskHttpCache httpCache,final SearchCrawlStateStore stateStore) {
+		if (Strings.isNullOrEmpty(searchUrl) || Strings.isNullOrEmpty(contenidosUrl)) throw new IllegalArgumentException("The search and contenidos urls are mandatory");
+		if (Strings.isNullOrEmpty(firstDate)) throw new IllegalArgumentException("The first date is mandatory");
+		if (httpCache == null || stateStore == null) throw new IllegalArgumentException("The http cache and the crawl state store are mandatory");
+		_searchUrl = searchUrl;
+		_contenidosUrl = contenidosUrl;
+		_queryId = searchUrl + "?" + QUERY_FILTER + QUERY_ORDER;
+		_firstDate = firstDate;
+		_maxConcurrentPages = maxConcurrentPages;
+		_maxConcurrentDownloads = maxConcurrentDownloads;
+		_httpCache = httpCache;
+		_stateStore = stateStore;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CRAWL
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Crawls the procurements new or changed since the last crawl (or resumes the last crawl if it failed)
+	 * @param handler receives the new or changed procurements (concurrently)
+	 * @return the crawl summary
+	 * @throws IOException if a page or a data file could NOT be read: the crawl is resumed by the next call
+	 */
+	public IncrementalCrawlSummary crawl(final ProcurementDataHandler handler) throws IOException {
+		long start = System.currentTimeMillis();
+
+		// [1] - The crawl state: resume the crawl in progress or start a new one since the newest date seen
+		final SearchCrawlState state = _stateStore.load(_queryId);
+		if (!state.isCrawlInProgress()) {
+			state.startCrawl(state.getNewestDate() != null ? state.getNewestDate() : _firstDate,
+							 new SimpleDateFormat("dd/MM/yyyy").format(new Date()));
+			_stateStore.save(state);
+		}
+		int fromPage = state.getResumePage();
+		String queryUrl = _searchUrl + "?" + QUERY_FILTER +
+										   "m:documentCreateDate.BETWEEN." + state.getCrawlFromDate() + "," + state.getCrawlToDate() + ",documentLanguage.EQ.es;" +
+										   QUERY_ORDER;
+		log.info("Crawling the procurements created between {} and {} from page {}",
+				 state.getCrawlFromDate(),state.getCrawlToDate(),fromPage);
+
+		// [2] - Every page: the new or changed data files of several pages are read at the same time; the crawl
+		//		 state records the highest page completed along with every page before it
+		//		 (the downloads & parser threads are shared out between the pages read at the same time)
+		final ProcurementDataFilesPipeline pipeline = new ProcurementDataFilesPipeline(Math.max(1,_maxConcurrentDownloads / _maxConcurrentPages),
+																					   Math.max(1,Runtime.getRuntime().availableProcessors() / _maxConcurrentPages),
+																					   _httpCache);
+		final CompletedPages completedPages = new CompletedPages(state,fromPage - 1);
+		final AtomicInteger handled = new AtomicInteger();
+		final AtomicInteger unchanged = new AtomicInteger();
+		final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+		final Semaphore pagesInProgress = new Semaphore(_maxConcurrentPages);
+		final ExecutorService pageReaders = Executors.newFixedThreadPool(_maxConcurrentPages,
+																		 new ThreadFactoryBuilder().setNameFormat("procurement-page-reader-%d")
+																		 						   .setDaemon(true)
+																		 						   .build());
+		CrawlSummary crawlSummary = null;
+		try {
+			SearchSessionCrawler crawler = new SearchSessionCrawler(queryUrl,
+																	_maxConcurrentPages,
+																	_httpCache);
+			crawlSummary = crawler.crawl(new SearchSessionStAXPageParser(),
+										 new SearchSessionPageHandler<SearchResultItem>() {
+													@Override
+													public void onPage(final SearchSessionPage<SearchResultItem> page) throws Exception {
+														if (failure.get() != null) throw failure.get();		// stop crawling
+														pagesInProgress.acquire();		// waits if the pages are NOT being read as fast as they're fetched
+														pageReaders.execute(new Runnable() {
+																					@Override
+																					public void run() {
+																						try {
+																							PipelineSummary pageSummary = _readPage(page,
+																																	pipeline,handler,
+																																	state);
+																							handled.addAndGet(pageSummary.getHandled());
+																							unchanged.addAndGet(pageSummary.getUnchanged());
+																							completedPages.completed(page.getPageNumber());
+																						} catch (Throwable th) {
+																							failure.compareAndSet(null,th instanceof IOException ? (IOException)th
+																																				 : new IOException(th));
+																						} finally {
+																							pagesInProgress.release();
+																						}
+																					}
+																			});
+													}
+										 },
+										 fromPage);
+		} finally {
+			// the pages in progress are completed (and recorded) even if the crawl failed
+			pageReaders.shutdown();
+			try {
+				pageReaders.awaitTermination(Long.MAX_VALUE,TimeUnit.MILLISECONDS);
+			} catch (InterruptedException intEx) {
+				pageReaders.shutdownNow();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while reading the procurements pages");
+			}
+		}
+		if (failure.get() != null) throw failure.get();
+
+		// [3] - Done: the next crawl starts from the newest date seen
+		String fromDate = state.getCrawlFromDate();
+		String toDate = state.getCrawlToDate();
+		state.crawlCompleted();
+		_stateStore.save(state);
+
+		IncrementalCrawlSummary outSummary = new IncrementalCrawlSummary(fromDate,toDate,
+																		 fromPage,crawlSummary.getPages(),
+																		 crawlSummary.getItems(),
+																		 handled.get(),unchanged.get(),
+																		 System.currentTimeMillis() - start);
+		log.info("Crawled the procurements created between {} and {}: {} items, {} procurements read, {} unchanged in {} millis",
+				 fromDate,toDate,outSummary.getItems(),outSummary.getHandled(),outSummary.getUnchanged(),outSummary.getElapsedMillis());
+		return outSummary;
+	}
+	/**
+	 * Reads the new or changed data files of a page and appends their hashes to the crawl state
+	 * @return the page pipeline summary
+	 * @throws IOException if a data file could NOT be read
+	 */
+	private PipelineSummary _readPage(final SearchSessionPage<SearchResultItem> page,
+									  final ProcurementDataFilesPipeline pipeline,final ProcurementDataHandler handler,
+									  final SearchCrawlState state) throws IOException {
+		Map<String,String> dataFileUrls = new LinkedHashMap<String,String>();
+		for (SearchResultItem item : page.getItems()) {
+			String dataFileUrl = item.mainDataFileUrl(_contenidosUrl);
+			if (dataFileUrl != null) dataFileUrls.put(item.getContentName(),dataFileUrl);
+		}
+		Map<String,String> previousHashes = new HashMap<String,String>(dataFileUrls.size());
+		for (String contentName : dataFileUrls.keySet()) previousHashes.put(contentName,state.getDataFileHashes().get(contentName));
+
+		PipelineSummary outSummary = pipeline.run(dataFileUrls,
+												  handler,
+												  state.getDataFileHashes());
+
+		// the hashes of the data files read (even if others failed: they're NOT read again when the page is resumed)
+		Map<String,String> readHashes = new HashMap<String,String>();
+		for (String contentName : dataFileUrls.keySet()) {
+			String hash = state.getDataFileHashes().get(contentName);
+			if (hash != null && !hash.equals(previousHashes.get(contentName))) readHashes.put(contentName,hash);
+		}
+		_stateStore.saveDataFileHashes(state,readHashes);
+		if (!outSummary.getFailures().isEmpty()) throw new IOException(outSummary.getFailures().size() + " data files of the page " + page.getPageNumber() + " could NOT be read: " + outSummary.getFailures());
+		for (SearchResultItem item : page.getItems()) state.itemSeen(item.getDocumentCreateDate());
+		return outSummary;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  COMPLETED PAGES
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The pages are completed in any order but the crawl state records the highest page completed along with
+	 * every page before it (a resumed crawl starts after it)
+	 */
+	private class CompletedPages {
+		private final SearchCrawlState _state;
+		private final SortedSet<Integer> _pending = new TreeSet<Integer>();		// completed after a NOT completed one
+		private int _lastContiguous;
+
+		CompletedPages(final SearchCrawlState state,final int lastCompletedPage) {
+			_state = state;
+			_lastContiguous = lastCompletedPage;
+		}
+		synchronized void completed(final int page) throws IOException {
+			_pending.add(page);
+			int lastContiguous = _lastContiguous;
+			while (!_pending.isEmpty() && _pending.first() == lastContiguous + 1) {
+				lastContiguous = _pending.first();
+				_pending.remove(lastContiguous);
+			}
+			if (lastContiguous == _lastContiguous) return;
+			_lastContiguous = lastContiguous;
+			_state.pageCompleted(lastContiguous);
+			_stateStore.save(_state);
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  SUMMARY
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Accessors(prefix="_")
+	public static class IncrementalCrawlSummary {
+		/**
+		 * The documentCreateDate window of the crawl (dd/MM/yyyy)
+		 */
+		@Getter private final String _fromDate;
+		@Getter private final String _toDate;
+		/**
+		 * The first page crawled by this run (greater than 1 if a failed crawl was resumed)
+		 */
+		@Getter private final int _fromPage;
+		@Getter private final int _pages;
+		@Getter private final int _items;
+		/**
+		 * The new or changed procurements handed to the handler
+		 */
+		@Getter private final int _handled;
+		/**
+		 * The data files NOT read because they did NOT change
+		 */
+		@Getter private final int _unchanged;
+		@Getter private final long _elapsedMillis;
+
+		IncrementalCrawlSummary(final String fromDate,final String toDate,
+								final int fromPage,final int pages,
+								final int items,
+								final int handled,final int unchanged,
+								final long elapsedMillis) {
+			_fromDate = fromDate;
+			_toDate = toDate;
+			_fromPage = fromPage;
+			_pages = pages;
+			_items = items;
+			_handled = handled;
+			_unchanged = unchanged;
+			_elapsedMillis = elapsedMillis;
+		}
+	}
+}
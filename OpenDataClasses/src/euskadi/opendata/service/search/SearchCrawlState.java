@@ -0,0 +1,163 @@
+package euskadi.opendata.service.search;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import r01f.util.types.Strings;
+
+/**
+ * The state of the incremental crawls of a search query (persisted by the {@link SearchCrawlStateStore}):
+ * <ul>
+ * 		<li>the newest documentCreateDate seen by the completed crawls: the next crawl only asks for the
+ * 			items created since that date</li>
+ * 		<li>the crawl in progress (if any): it's date window and the last completed page, so a crawl that
+ * 			failed (ie: the process crashed) is resumed after the last completed page with the same query</li>
+ * 		<li>the hash of every item data file: a data file with the same hash is NOT parsed again</li>
+ * </ul>
+ * Usage:
+ * <pre class='brush:java'>
+ * 		SearchCrawlState state = store.load("procurements");
+ * 		if (!state.isCrawlInProgress()) state.startCrawl(state.getNewestDate() != null ? state.getNewestDate() : "01/01/2015",
+ * 														 today);
+ * 		crawler.crawl(parser,
+ * 					  ... for every page: state.itemSeen(item.getDocumentCreateDate()) ... store.saveDataFileHashes(state,pageHashes)
+ * 					  ... once the page and every page before it are completed: state.pageCompleted(page) ... store.save(state),
+ * 					  state.getResumePage());
+ * 		state.crawlCompleted();
+ * 		store.save(state);
+ * </pre>
+ * <pre>
+ * IMPORTANT!	It's thread safe: the data file hashes are updated from the parser threads
+ * </pre>
+ */
+@Accessors(prefix="_")
+public class SearchCrawlState {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String DATE_FORMAT = "dd/MM/yyyy";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final String _queryId;
+	/**
+	 * The newest documentCreateDate seen by the completed crawls (dd/MM/yyyy)
+	 */
+	@Getter private String _newestDate;
+	/**
+	 * The date window of the crawl in progress (dd/MM/yyyy): null if there's none
+	 */
+	@Getter private String _crawlFromDate;
+	@Getter private String _crawlToDate;
+	/**
+	 * The newest documentCreateDate seen by the crawl in progress
+	 */
+	@Getter private String _crawlNewestDate;
+	@Getter private int _lastCompletedPage;
+	/**
+	 * content name > data file hash (see {@link euskadi.opendata.service.procurements.ProcurementDataFilesPipeline})
+	 * (they're NOT saved with the state but appended by {@link SearchCrawlStateStore#saveDataFileHashes(SearchCrawlState, java.util.Map)})
+	 */
+	@Getter private final ConcurrentMap<String,String> _dataFileHashes = new ConcurrentHashMap<String,String>();
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public SearchCrawlState(final String queryId) {
+		if (Strings.isNullOrEmpty(queryId)) throw new IllegalArgumentException("The query id is mandatory");
+		_queryId = queryId;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CRAWL
+/////////////////////////////////////////////////////////////////////////////////////////
+	public synchronized boolean isCrawlInProgress() {
+		return _crawlFromDate != null;
+	}
+	/**
+	 * @return the first page to be crawled: the one after the last completed page of the crawl in progress
+	 */
+	public synchronized int getResumePage() {
+		return _lastCompletedPage + 1;
+	}
+	/**
+	 * Starts a new crawl
+	 * @param fromDate the documentCreateDate window start (dd/MM/yyyy)
+	 * @param toDate the documentCreateDate window end (dd/MM/yyyy)
+	 */
+	public synchronized void startCrawl(final String fromDate,final String toDate) {
+		if (this.isCrawlInProgress()) throw new IllegalStateException("There's a crawl in progress for the query " + _queryId + ": it MUST be resumed");
+		_parseDate(fromDate);
+		_parseDate(toDate);
+		_crawlFromDate = fromDate;
+		_crawlToDate = toDate;
+		_crawlNewestDate = null;
+		_lastCompletedPage = 0;
+	}
+	/**
+	 * Records an item seen by the crawl in progress
+	 * @param documentCreateDate the item create date (dd/MM/yyyy)
+	 */
+	public synchronized void itemSeen(final String documentCreateDate) {
+		if (Strings.isNullOrEmpty(documentCreateDate)) return;
+		if (_crawlNewestDate == null
+		 || _parseDate(documentCreateDate) > _parseDate(_crawlNewestDate)) _crawlNewestDate = documentCreateDate;
+	}
+	/**
+	 * Records that a page of the crawl in progress and every page before it were completely handled
+	 * (the pages can be handled concurrently: the crawl is resumed after the highest contiguous completed page)
+	 * @param page
+	 */
+	public synchronized void pageCompleted(final int page) {
+		if (!this.isCrawlInProgress()) throw new IllegalStateException("There's NO crawl in progress for the query " + _queryId);
+		_lastCompletedPage = page;
+	}
+	/**
+	 * Records that the crawl in progress was completed: the next crawl starts from the newest date seen
+	 */
+	public synchronized void crawlCompleted() {
+		if (!this.isCrawlInProgress()) throw new IllegalStateException("There's NO crawl in progress for the query " + _queryId);
+		if (_crawlNewestDate != null
+		 && (_newestDate == null || _parseDate(_crawlNewestDate) > _parseDate(_newestDate))) _newestDate = _crawlNewestDate;
+		_crawlFromDate = null;
+		_crawlToDate = null;
+		_crawlNewestDate = null;
+		_lastCompletedPage = 0;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  PERSISTENCE
+/////////////////////////////////////////////////////////////////////////////////////////
+	synchronized Properties toProperties() {
+		Properties outProps = new Properties();
+		outProps.setProperty("queryId",_queryId);
+		if (_newestDate != null) outProps.setProperty("newestDate",_newestDate);
+		if (_crawlFromDate != null) {
+			outProps.setProperty("crawlFromDate",_crawlFromDate);
+			outProps.setProperty("crawlToDate",_crawlToDate);
+			outProps.setProperty("lastCompletedPage",Integer.toString(_lastCompletedPage));
+			if (_crawlNewestDate != null) outProps.setProperty("crawlNewestDate",_crawlNewestDate);
+		}
+		return outProps;
+	}
+	static SearchCrawlState fromProperties(final Properties props) {
+		SearchCrawlState outState = new SearchCrawlState(props.getProperty("queryId"));
+		outState._newestDate = props.getProperty("newestDate");
+		outState._crawlFromDate = props.getProperty("crawlFromDate");
+		outState._crawlToDate = props.getProperty("crawlToDate");
+		outState._crawlNewestDate = props.getProperty("crawlNewestDate");
+		outState._lastCompletedPage = Integer.parseInt(props.getProperty("lastCompletedPage","0"));
+		return outState;
+	}
+	private static long _parseDate(final String date) {
+		try {
+			SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT);		// NOT thread safe
+			format.setLenient(false);
+			return format.parse(date.trim()).getTime();
+		} catch (ParseException parseEx) {
+			throw new IllegalArgumentException("The date " + date + " is NOT a valid " + DATE_FORMAT + " date");
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package euskadi.opendata.service.search;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import euskadi.opendata.util.AtomicFiles;
+
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * Persists the {@link SearchCrawlState} of every query in a directory:
+ * <ul>
+ * 		<li>{dir}/{sha1 of the query id}.properties: the crawl dates and the last completed page</li>
+ * 		<li>{dir}/{sha1 of the query id}.hashes: the data file hashes, one "content name TAB hash" line per
+ * 			read data file; the new hashes are appended (the last line of a content name wins) so saving
+ * 			a page does NOT rewrite the hashes of every page read before</li>
+ * </ul>
+ * The default store directory is configured with the opendata.crawlState.dir system property
+ * (default {java.io.tmpdir}/opendata-crawl-state)
+ * <pre>
+ * IMPORTANT!	The state is written to a temp file that replaces the previous one: a crash while saving
+ * 				does NOT leave a half written state
+ * 				A crash while appending the hashes can leave a half written last line: it's ignored or it
+ * 				just makes the data file to be read again
+ * </pre>
+ */
+@Accessors(prefix="_")
+public class SearchCrawlStateStore {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String EXT = ".properties";
+	private static final String HASHES_EXT = ".hashes";
+	/**
+	 * The hashes file is compacted when it has this many times more lines than hashes
+	 */
+	private static final int HASHES_COMPACT_RATIO = 2;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final File _dir;
+
+	private static SearchCrawlStateStore DEFAULT;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public SearchCrawlStateStore(final File dir) {
+		if (dir == null) throw new IllegalArgumentException("The crawl state directory is mandatory");
+		if (!dir.isDirectory() && !dir.mkdirs()) throw new IllegalStateException("Could NOT create the crawl state directory " + dir.getAbsolutePath());
+		_dir = dir;
+	}
+	/**
+	 * @return the store configured with the opendata.crawlState.dir system property
+	 */
+	public static synchronized SearchCrawlStateStore getDefault() {
+		if (DEFAULT == null) {
+			DEFAULT = new SearchCrawlStateStore(new File(System.getProperty("opendata.crawlState.dir",
+																			new File(System.getProperty("java.io.tmpdir"),"opendata-crawl-state").getAbsolutePath())));
+		}
+		return DEFAULT;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Loads the state of a query (and compacts it's hashes file if too many hashes were replaced)
+	 * @param queryId
+	 * @return the stored state or a new one if the query was never crawled
+	 * @throws IOException if the stored state could NOT be read
+	 */
+	public synchronized SearchCrawlState load(final String queryId) throws IOException {
+		File file = _fileOf(queryId,EXT);
+		SearchCrawlState outState = null;
+		if (file.isFile()) {
+			Properties props = new Properties();
+			@Cleanup InputStream is = new FileInputStream(file);
+			props.load(is);
+			if (!queryId.equals(props.getProperty("queryId"))) throw new IOException("The crawl state " + file.getAbsolutePath() + " is NOT the " + queryId + " query one");
+			try {
+				outState = SearchCrawlState.fromProperties(props);
+			} catch (IllegalArgumentException illArgEx) {
+				throw new IOException("The crawl state " + file.getAbsolutePath() + " is NOT valid: " + illArgEx.getMessage(),
+									  illArgEx);
+			}
+		} else {
+			outState = new SearchCrawlState(queryId);
+		}
+		int lines = _loadHashes(_fileOf(queryId,HASHES_EXT),
+								outState.getDataFileHashes());
+		if (lines > HASHES_COMPACT_RATIO * Math.max(1,outState.getDataFileHashes().size())) _compactHashes(outState);
+		return outState;
+	}
+	/**
+	 * Saves the state of a query (NOT the data file hashes: see {@link #saveDataFileHashes(SearchCrawlState, Map)})
+	 * @param state
+	 * @throws IOException
+	 */
+	public synchronized void save(final SearchCrawlState state) throws IOException {
+		AtomicFiles.write(_fileOf(state.getQueryId(),EXT),
+						  new AtomicFiles.ContentWriter() {
+									@Override
+									public void writeTo(final OutputStream os) throws IOException {
+										state.toProperties()
+											 .store(os,state.getQueryId());
+									}
+						  });
+	}
+	/**
+	 * Appends the hashes of the data files read since they were last saved
+	 * @param state
+	 * @param hashes content name > data file hash
+	 * @throws IOException
+	 */
+	public synchronized void saveDataFileHashes(final SearchCrawlState state,
+												final Map<String,String> hashes) throws IOException {
+		if (hashes == null || hashes.isEmpty()) return;
+		FileOutputStream fos = new FileOutputStream(_fileOf(state.getQueryId(),HASHES_EXT),
+													true);		// append
+		try {
+			fos.write(_hashLines(hashes));		// a single write
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+	}
+	private void _compactHashes(final SearchCrawlState state) throws IOException {
+		AtomicFiles.write(_fileOf(state.getQueryId(),HASHES_EXT),
+						  _hashLines(state.getDataFileHashes()));
+	}
+	private static int _loadHashes(final File hashesFile,
+								   final Map<String,String> hashes) throws IOException {
+		if (!hashesFile.isFile()) return 0;
+		int outLines = 0;
+		@Cleanup BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(hashesFile),Charsets.UTF_8));
+		for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+			outLines++;
+			int tab = line.indexOf('\t');
+			if (tab <= 0 || tab == line.length() - 1) continue;		// a half written line
+			hashes.put(line.substring(0,tab),line.substring(tab + 1));
+		}
+		return outLines;
+	}
+	private static byte[] _hashLines(final Map<String,String> hashes) {
+		StringBuilder lines = new StringBuilder(hashes.size() * 64);
+		for (Map.Entry<String,String> hash : hashes.entrySet()) {
+			lines.append(hash.getKey()).append('\t').append(hash.getValue()).append('\n');
+		}
+		return lines.toString().getBytes(Charsets.UTF_8);
+	}
+	private File _fileOf(final String queryId,final String ext) {
+		return new File(_dir,Hashing.sha1().hashString(queryId,Charsets.UTF_8).toString() + ext);
+	}
+}
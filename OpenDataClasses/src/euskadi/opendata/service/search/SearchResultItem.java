@@ -0,0 +1,88 @@
+package euskadi.opendata.service.search;
+
+import java.util.Collections;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * A search session result item (/searchSession/searchResultsBySource/searchSourceResults/results/item)
+ * with the data the opendata clients use
+ * <pre>
+ * IMPORTANT!	The texts are trimmed (the search engine breaks some of them with new lines)
+ * </pre>
+ */
+@Accessors(prefix="_")
+public class SearchResultItem {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final String _contentName;
+	@Getter private final String _documentName;
+	@Getter private final String _documentLanguage;
+	/**
+	 * ie: ayuda_subvencion/ayudas_gabon/es_ifm
+	 */
+	@Getter private final String _documentWorkAreaRelativePath;
+	/**
+	 * dd/MM/yyyy
+	 */
+	@Getter private final String _documentCreateDate;
+	/**
+	 * The data files oids and their generated files
+	 * ie: <documentDataFilesGeneratedFilesDocumentRelativePaths>
+	 * 			<r01dpd013df33e2a9d2297f8b31cce8e306c43a96><![CDATA[procedimiento_ayuda;main:ayudas_gabon.html]]></r01dpd013df33e2a9d2297f8b31cce8e306c43a96>
+	 * 	   </documentDataFilesGeneratedFilesDocumentRelativePaths>
+	 * (the keys are the element names: some searches prefix the oid with datafileOid.)
+	 */
+	@Getter private final Map<String,String> _dataFilesGeneratedFiles;
+	/**
+	 * The reusable assets by name: ie: zip > /opendata/ayudas_gabon.zip,0,
+	 */
+	@Getter private final Map<String,String> _rispDocuments;
+	/**
+	 * The content type dependent metadata: ie: procedureStatus > 16
+	 */
+	@Getter private final Map<String,String> _metaData;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public SearchResultItem(final String contentName,final String documentName,
+							final String documentLanguage,
+							final String documentWorkAreaRelativePath,
+							final String documentCreateDate,
+							final Map<String,String> dataFilesGeneratedFiles,
+							final Map<String,String> rispDocuments,
+							final Map<String,String> metaData) {
+		_contentName = contentName;
+		_documentName = documentName;
+		_documentLanguage = documentLanguage;
+		_documentWorkAreaRelativePath = documentWorkAreaRelativePath;
+		_documentCreateDate = documentCreateDate;
+		_dataFilesGeneratedFiles = Collections.unmodifiableMap(dataFilesGeneratedFiles);
+		_rispDocuments = Collections.unmodifiableMap(rispDocuments);
+		_metaData = Collections.unmodifiableMap(metaData);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return the oid of the first data file (without the datafileOid. prefix) or null if the item has NO data files
+	 */
+	public String getMainDataFileOid() {
+		if (_dataFilesGeneratedFiles.isEmpty()) return null;
+		return _dataFilesGeneratedFiles.keySet().iterator().next()
+									   .replace("datafileOid.","");
+	}
+	/**
+	 * Returns the url of the xml file that contains the content-type dependent metadata (the data file)
+	 * @param contenidosBaseUrl ie: http://opendata.euskadi.eus/contenidos
+	 * @return the url or null if the item has NO data files
+	 */
+	public String mainDataFileUrl(final String contenidosBaseUrl) {
+		String dataFileOid = this.getMainDataFileOid();
+		if (dataFileOid == null) return null;
+		return contenidosBaseUrl + "/" + _documentWorkAreaRelativePath + "/data/" + _documentLanguage + "_" + dataFileOid;
+	}
+}
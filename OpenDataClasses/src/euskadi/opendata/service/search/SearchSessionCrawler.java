@@ -0,0 +1,303 @@
+package euskadi.opendata.service.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import euskadi.opendata.util.DiskHttpCache;
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import r01f.util.types.Strings;
+
+/**
+ * Crawls every page of a search engine pseudo-REST query (r01hPresentationXML.jsp)
+ * <ul>
+ * 		<li>the first page is fetched to get the number of pages (searchSourceResults numberOfPages / numberOfResults)</li>
+ * 		<li>the remaining pages are fetched and parsed concurrently (at most maxConcurrentPages at the same time)</li>
+ * 		<li>the pages are handed to the {@link SearchSessionPageHandler} in page order as soon as they're available</li>
+ * 		<li>the fetched pages waiting to be handled are bounded (twice the concurrency) so a slow handler does NOT
+ * 			make the crawler keep thousands of pages in memory</li>
+ * 		<li>a failed page fetch is retried; if it keeps on failing the crawl stops</li>
+ * </ul>
+ * Usage:
+ * <pre class='brush:java'>
+ * 		SearchSessionCrawler crawler = new SearchSessionCrawler("http://opendata.euskadi.eus/r01hSearchResultWar/r01hPresentationXML.jsp?r01kQry=...",
+ * 																8,
+ * 																5000,30000);
+ * 		crawler.crawl(new SearchSessionDOMPageParser(),
+ * 					  new SearchSessionPageHandler<Element>() {
+ * 							@Override
+ * 							public void onPage(final SearchSessionPage<Element> page) {
+ * 								... the page items ...
+ * 							}
+ * 					  });
+ * </pre>
+ * <pre>
+ * IMPORTANT!	The search engine does NOT keep a snapshot of the results: if the results change while crawling
+ * 				an item can be skipped or seen twice (the number of pages change is logged)
+ * </pre>
+ */
+@Slf4j
+@Accessors(prefix="_")
+public class SearchSessionCrawler {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The query string param with the page to be returned
+	 */
+	public static final String TARGET_PAGE_PARAM = "r01kTgtPg";
+	private static final Pattern TARGET_PAGE_PATTERN = Pattern.compile("([?&]" + TARGET_PAGE_PARAM + "=)[0-9]*");
+	private static final int MAX_ATTEMPTS = 3;
+	private static final long RETRY_BACKOFF_MILLIS = 500;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The search query url (with or without the target page param)
+	 */
+	@Getter private final String _queryUrl;
+	@Getter private final int _maxConcurrentPages;
+	@Getter private final int _connectTimeoutMillis;
+	@Getter private final int _readTimeoutMillis;
+	/**
+	 * The pages are fetched through this cache (if any)
+	 */
+	@Getter private final DiskHttpCache _httpCache;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public SearchSessionCrawler(final String queryUrl,
+								final int maxConcurrentPages,
+								final long connectTimeoutMillis,final long readTimeoutMillis) {
+		if (Strings.isNullOrEmpty(queryUrl)) throw new IllegalArgumentException("The search query url is mandatory");
+		if (maxConcurrentPages <= 0) throw new IllegalArgumentException("The max concurrent pages MUST be greater than zero");
+		if (connectTimeoutMillis <= 0 || readTimeoutMillis <= 0) throw new IllegalArgumentException("The connect and read timeouts MUST be greater than zero");
+		_queryUrl = queryUrl;
+		_maxConcurrentPages = maxConcurrentPages;
+		_connectTimeoutMillis = (int)Math.min(connectTimeoutMillis,Integer.MAX_VALUE);
+		_readTimeoutMillis = (int)Math.min(readTimeoutMillis,Integer.MAX_VALUE);
+		_httpCache = null;
+	}
+	/**
+	 * Creates a crawler that fetches the pages through a cache (the cache timeouts are used)
+	 * @param queryUrl
+	 * @param maxConcurrentPages
+	 * @param httpCache
+	 */
+	public SearchSessionCrawler(final String queryUrl,
+								final int maxConcurrentPages,
+								final DiskHttpCache httpCache) {
+		if (Strings.isNullOrEmpty(queryUrl)) throw new IllegalArgumentException("The search query url is mandatory");
+		if (maxConcurrentPages <= 0) throw new IllegalArgumentException("The max concurrent pages MUST be greater than zero");
+		if (httpCache == null) throw new IllegalArgumentException("The http cache is mandatory");
+		_queryUrl = queryUrl;
+		_maxConcurrentPages = maxConcurrentPages;
+		_connectTimeoutMillis = httpCache.getConnectTimeoutMillis();
+		_readTimeoutMillis = httpCache.getReadTimeoutMillis();
+		_httpCache = httpCache;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CRAWL
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Crawls every page of the search
+	 * @param parser the page parser (it's called concurrently)
+	 * @param handler receives the pages in page order
+	 * @return the crawl summary
+	 * @throws IOException if a page could NOT be fetched or parsed or the handler failed
+	 */
+	public <I> CrawlSummary crawl(final SearchSessionPageParser<I> parser,
+								  final SearchSessionPageHandler<I> handler) throws IOException {
+		return this.crawl(parser,handler,
+						  1);
+	}
+	/**
+	 * Crawls the pages of the search starting from a given page (ie: to resume a crawl that failed
+	 * after handling some pages)
+	 * @param parser the page parser (it's called concurrently)
+	 * @param handler receives the pages in page order
+	 * @param fromPage the first page to be crawled (1 to crawl every page)
+	 * @return the crawl summary
+	 * @throws IOException if a page could NOT be fetched or parsed or the handler failed
+	 */
+	public <I> CrawlSummary crawl(final SearchSessionPageParser<I> parser,
+								  final SearchSessionPageHandler<I> handler,
+								  final int fromPage) throws IOException {
+		if (fromPage < 1) throw new IllegalArgumentException("The first page to be crawled MUST be greater than zero");
+		long start = System.currentTimeMillis();
+
+		// [1] - The first page: how many pages are there?
+		SearchSessionPage<I> firstPage = _fetchPage(fromPage,parser);
+		int numberOfPages = firstPage.getNumberOfPages();
+		int items = _handle(handler,firstPage);
+		log.info("Crawling {} results in {} pages from page {} (at most {} pages at the same time): {}",
+				 firstPage.getNumberOfResults(),numberOfPages,fromPage,_maxConcurrentPages,_queryUrl);
+
+		// [2] - The remaining pages: fetched concurrently and handed in page order
+		if (numberOfPages > fromPage) {
+			ExecutorService fetchers = Executors.newFixedThreadPool(Math.min(_maxConcurrentPages,numberOfPages - fromPage),
+																	new ThreadFactoryBuilder().setNameFormat("search-page-fetcher-%d")
+																							  .setDaemon(true)
+																							  .build());
+			try {
+				Deque<Future<SearchSessionPage<I>>> window = new ArrayDeque<Future<SearchSessionPage<I>>>();
+				int windowSize = _maxConcurrentPages * 2;
+				int nextPage = fromPage + 1;
+				while (nextPage <= numberOfPages && window.size() < windowSize) {
+					window.add(fetchers.submit(_pageFetch(nextPage++,parser)));
+				}
+				while (!window.isEmpty()) {
+					SearchSessionPage<I> page = _get(window.poll());
+					if (nextPage <= numberOfPages) window.add(fetchers.submit(_pageFetch(nextPage++,parser)));		// keep the fetchers busy while the page is handled
+					if (page.getNumberOfPages() != numberOfPages) {
+						log.warn("The search results changed while crawling: page {} says there're {} pages (there were {})",
+								 page.getPageNumber(),page.getNumberOfPages(),numberOfPages);
+					}
+					items += _handle(handler,page);
+				}
+			} finally {
+				fetchers.shutdownNow();		// a failed crawl does NOT wait for the pending pages
+			}
+		}
+		CrawlSummary outSummary = new CrawlSummary(numberOfPages,firstPage.getNumberOfResults(),
+												   items,
+												   System.currentTimeMillis() - start);
+		log.info("Crawled {} items in {} pages in {} millis",
+				 outSummary.getItems(),outSummary.getPages(),outSummary.getElapsedMillis());
+		return outSummary;
+	}
+	/**
+	 * Returns the url of a page of the search
+	 * @param queryUrl the search query url (with or without the target page param)
+	 * @param page
+	 * @return
+	 */
+	public static String pageUrl(final String queryUrl,
+								 final int page) {
+		Matcher m = TARGET_PAGE_PATTERN.matcher(queryUrl);
+		if (m.find()) return queryUrl.substring(0,m.start()) + m.group(1) + page + queryUrl.substring(m.end());
+		return queryUrl + (queryUrl.indexOf('?') >= 0 ? "&" : "?") + TARGET_PAGE_PARAM + "=" + page;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FETCH
+/////////////////////////////////////////////////////////////////////////////////////////
+	private <I> Callable<SearchSessionPage<I>> _pageFetch(final int pageNumber,
+														  final SearchSessionPageParser<I> parser) {
+		return new Callable<SearchSessionPage<I>>() {
+						@Override
+						public SearchSessionPage<I> call() throws IOException {
+							return _fetchPage(pageNumber,parser);
+						}
+			   };
+	}
+	private <I> SearchSessionPage<I> _fetchPage(final int pageNumber,
+												final SearchSessionPageParser<I> parser) throws IOException {
+		URL url = new URL(pageUrl(_queryUrl,pageNumber));
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return parser.parse(pageNumber,
+									this.fetch(url));
+			} catch (InterruptedIOException intIOEx) {
+				throw intIOEx;
+			} catch (IOException ioEx) {
+				if (attempt >= MAX_ATTEMPTS) throw new IOException("Could NOT fetch the search page " + pageNumber + " after " + attempt + " attempts: " + ioEx.getMessage(),
+																   ioEx);
+				log.warn("Error fetching the search page {} (attempt {} of {}): {}",pageNumber,attempt,MAX_ATTEMPTS,ioEx.getMessage());
+				try {
+					Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+				} catch (InterruptedException intEx) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting to retry the search page " + pageNumber);
+				}
+			}
+		}
+	}
+	/**
+	 * Fetches a search page (through the http cache if the crawler has one)
+	 * @param url
+	 * @return the page xml
+	 * @throws IOException
+	 */
+	protected byte[] fetch(final URL url) throws IOException {
+		if (_httpCache != null) return _httpCache.get(url).getBody();
+
+		HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+		conn.setConnectTimeout(_connectTimeoutMillis);
+		conn.setReadTimeout(_readTimeoutMillis);
+		try {
+			int status = conn.getResponseCode();
+			if (status != HttpURLConnection.HTTP_OK) throw new IOException("HTTP " + status + " fetching " + url);
+			@Cleanup InputStream is = conn.getInputStream();
+			return ByteStreams.toByteArray(is);
+		} catch (IOException ioEx) {
+			conn.disconnect();		// the connection state is unknown: do NOT reuse it
+			throw ioEx;
+		}
+	}
+	private static <I> SearchSessionPage<I> _get(final Future<SearchSessionPage<I>> page) throws IOException {
+		try {
+			return page.get();
+		} catch (ExecutionException exEx) {
+			Throwable cause = exEx.getCause();
+			if (cause instanceof IOException) throw (IOException)cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			throw new IOException(cause);
+		} catch (InterruptedException intEx) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while crawling the search pages");
+		}
+	}
+	private static <I> int _handle(final SearchSessionPageHandler<I> handler,
+								   final SearchSessionPage<I> page) throws IOException {
+		try {
+			handler.onPage(page);
+		} catch (IOException ioEx) {
+			throw ioEx;
+		} catch (RuntimeException rtEx) {
+			throw rtEx;
+		} catch (Exception ex) {
+			throw new IOException("The search page " + page.getPageNumber() + " handler failed: " + ex.getMessage(),
+								  ex);
+		}
+		return page.getItems() != null ? page.getItems().size() : 0;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  SUMMARY
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Accessors(prefix="_")
+	public static class CrawlSummary {
+		@Getter private final int _pages;
+		@Getter private final int _numberOfResults;
+		/**
+		 * The items actually handed to the handler
+		 */
+		@Getter private final int _items;
+		@Getter private final long _elapsedMillis;
+
+		CrawlSummary(final int pages,final int numberOfResults,
+					 final int items,
+					 final long elapsedMillis) {
+			_pages = pages;
+			_numberOfResults = numberOfResults;
+			_items = items;
+			_elapsedMillis = elapsedMillis;
+		}
+	}
+}
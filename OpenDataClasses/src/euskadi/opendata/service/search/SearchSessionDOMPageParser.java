@@ -0,0 +1,85 @@
+package euskadi.opendata.service.search;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Parses a search session page into DOM: the items are the result item elements
+ * (/searchSession/searchResultsBySource/searchSourceResults/results/item) so the clients
+ * can keep on using XPaths relative to the item
+ * <pre>
+ * IMPORTANT!	The DocumentBuilder is NOT thread-safe: every thread uses its own one
+ * </pre>
+ */
+public class SearchSessionDOMPageParser
+  implements SearchSessionPageParser<Element> {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final ThreadLocal<DocumentBuilder> DOC_BUILDER = new ThreadLocal<DocumentBuilder>() {
+																			@Override
+																			protected DocumentBuilder initialValue() {
+																				try {
+																					return DocumentBuilderFactory.newInstance()
+																												 .newDocumentBuilder();
+																				} catch (ParserConfigurationException confEx) {
+																					throw new IllegalStateException(confEx);
+																				}
+																			}
+																	};
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public SearchSessionPage<Element> parse(final int pageNumber,
+											final byte[] xml) throws IOException {
+		Document doc = null;
+		try {
+			DocumentBuilder docBuilder = DOC_BUILDER.get();
+			docBuilder.reset();
+			doc = docBuilder.parse(new ByteArrayInputStream(xml));
+		} catch (SAXException saxEx) {
+			throw new IOException("The search session page " + pageNumber + " is NOT a valid xml: " + saxEx.getMessage(),
+								  saxEx);
+		}
+		// searchSession / searchResultsBySource / searchSourceResults
+		Element sourceResults = _child(_child(doc.getDocumentElement(),"searchResultsBySource"),"searchSourceResults");
+		if (sourceResults == null) throw new IOException("The search session page " + pageNumber + " has NO searchSourceResults");
+		List<Element> items = new ArrayList<Element>();
+		Element results = _child(sourceResults,"results");
+		if (results != null) {
+			for (Node node = results.getFirstChild(); node != null; node = node.getNextSibling()) {
+				if (node.getNodeType() == Node.ELEMENT_NODE && "item".equals(node.getNodeName())) items.add((Element)node);
+			}
+		}
+		return new SearchSessionPage<Element>(pageNumber,
+											  _intAttribute(sourceResults,"numberOfPages"),_intAttribute(sourceResults,"numberOfResults"),
+											  items);
+	}
+	private static Element _child(final Element parent,final String name) {
+		if (parent == null) return null;
+		for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+			if (node.getNodeType() == Node.ELEMENT_NODE && name.equals(node.getNodeName())) return (Element)node;
+		}
+		return null;
+	}
+	private static int _intAttribute(final Element element,final String name) throws IOException {
+		String value = element.getAttribute(name).trim();
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException numEx) {
+			throw new IOException("The search session " + name + " is NOT a number: " + value);
+		}
+	}
+}
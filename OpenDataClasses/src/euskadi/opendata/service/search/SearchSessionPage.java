@@ -0,0 +1,38 @@
+package euskadi.opendata.service.search;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * A page of a search session: the search totals and the page items
+ * @param <I> the item type (depends on the {@link SearchSessionPageParser})
+ */
+@Accessors(prefix="_")
+public class SearchSessionPage<I> {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The page number (the first page is 1)
+	 */
+	@Getter private final int _pageNumber;
+	/**
+	 * The search totals (searchSourceResults numberOfPages / numberOfResults)
+	 */
+	@Getter private final int _numberOfPages;
+	@Getter private final int _numberOfResults;
+	@Getter private final List<I> _items;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public SearchSessionPage(final int pageNumber,
+							 final int numberOfPages,final int numberOfResults,
+							 final List<I> items) {
+		_pageNumber = pageNumber;
+		_numberOfPages = numberOfPages;
+		_numberOfResults = numberOfResults;
+		_items = items;
+	}
+}
@@ -0,0 +1,19 @@
+package euskadi.opendata.service.search;
+
+/**
+ * Receives the pages crawled by the {@link SearchSessionCrawler}
+ * <pre>
+ * IMPORTANT!	The pages are handed in page order and one at a time (at the crawling thread)
+ * 				so the handler does NOT need to be thread-safe; while it runs the next pages are
+ * 				being fetched so a slow handler does NOT slow the downloads (up to the crawler window)
+ * </pre>
+ * @param <I> the item type
+ */
+public interface SearchSessionPageHandler<I> {
+	/**
+	 * Called for every page in page order
+	 * @param page
+	 * @throws Exception if the crawl must be stopped
+	 */
+	public void onPage(final SearchSessionPage<I> page) throws Exception;
+}
@@ -0,0 +1,22 @@
+package euskadi.opendata.service.search;
+
+import java.io.IOException;
+
+/**
+ * Parses a search session page xml (r01hPresentationXML.jsp)
+ * <pre>
+ * IMPORTANT!	The {@link SearchSessionCrawler} parses the pages concurrently: the parsers MUST be thread-safe
+ * </pre>
+ * @param <I> the item type
+ */
+public interface SearchSessionPageParser<I> {
+	/**
+	 * Parses a page
+	 * @param pageNumber
+	 * @param xml
+	 * @return
+	 * @throws IOException if the xml is NOT a valid search session
+	 */
+	public SearchSessionPage<I> parse(final int pageNumber,
+									  final byte[] xml) throws IOException;
+}
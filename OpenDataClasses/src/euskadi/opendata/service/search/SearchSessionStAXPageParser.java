@@ -0,0 +1,211 @@
+package euskadi.opendata.service.search;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Single pass StAX (pull-parser) parser of a search session page into {@link SearchResultItem}s:
+ * <pre>
+ * 		<searchSession>
+ * 			<searchResultsBySource>
+ * 				<searchSourceResults numberOfPages='13' numberOfResults='125'>
+ * 					<navBar>...</navBar>
+ * 					<results>
+ * 						<item>
+ * 							<contentName>...</contentName>
+ * 							<documentLanguage>...</documentLanguage>
+ * 							<documentWorkAreaRelativePath>...</documentWorkAreaRelativePath>
+ * 							<documentDataFilesGeneratedFilesDocumentRelativePaths>...</documentDataFilesGeneratedFilesDocumentRelativePaths>
+ * 							<documentMetaData>...</documentMetaData>
+ * 							<contentRispDocumentsInfo>...</contentRispDocumentsInfo>
+ * 							...
+ * 						</item>
+ * 					</results>
+ * 				</searchSourceResults>
+ * 			</searchResultsBySource>
+ * 		</searchSession>
+ * </pre>
+ * Neither a DOM nor XPaths are used: every element is visited once and the not used ones are skipped
+ * (it's thread safe: every page is read by its own stream reader)
+ */
+public class SearchSessionStAXPageParser
+  implements SearchSessionPageParser<SearchResultItem> {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final XMLInputFactory XML_INPUT_FACTORY;
+	static {
+		XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING,Boolean.TRUE);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD,Boolean.FALSE);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,Boolean.FALSE);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public SearchSessionPage<SearchResultItem> parse(final int pageNumber,
+													 final byte[] xml) throws IOException {
+		XMLStreamReader reader = null;
+		try {
+			reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+			return new PageReader(reader).read(pageNumber);
+		} catch (XMLStreamException xmlEx) {
+			throw new IOException("The search session page " + pageNumber + " is NOT a valid xml: " + xmlEx.getMessage(),
+								  xmlEx);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException xmlEx) {
+					// ignored
+				}
+			}
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  READER
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Reads a single page (NOT thread safe)
+	 */
+	private static class PageReader {
+		private final XMLStreamReader _xml;
+
+		PageReader(final XMLStreamReader xml) {
+			_xml = xml;
+		}
+		SearchSessionPage<SearchResultItem> read(final int pageNumber) throws XMLStreamException {
+			if (_xml.nextTag() != XMLStreamConstants.START_ELEMENT
+			 || !"searchSession".equals(_xml.getLocalName())) throw new XMLStreamException("The document root is NOT a searchSession element",_xml.getLocation());
+			while (_nextChild()) {
+				if (!"searchResultsBySource".equals(_xml.getLocalName())) {
+					_skip();
+					continue;
+				}
+				while (_nextChild()) {
+					if ("searchSourceResults".equals(_xml.getLocalName())) return _readSourceResults(pageNumber);	// only the first source
+					_skip();
+				}
+			}
+			throw new XMLStreamException("The search session has NO searchSourceResults",_xml.getLocation());
+		}
+		private SearchSessionPage<SearchResultItem> _readSourceResults(final int pageNumber) throws XMLStreamException {
+			int numberOfPages = _intAttribute("numberOfPages");
+			int numberOfResults = _intAttribute("numberOfResults");
+			List<SearchResultItem> items = new ArrayList<SearchResultItem>();
+			while (_nextChild()) {
+				if (!"results".equals(_xml.getLocalName())) {
+					_skip();		// navBar, sourceDetails...
+					continue;
+				}
+				while (_nextChild()) {
+					if ("item".equals(_xml.getLocalName())) {
+						items.add(_readItem());
+					} else {
+						_skip();
+					}
+				}
+			}
+			return new SearchSessionPage<SearchResultItem>(pageNumber,
+														   numberOfPages,numberOfResults,
+														   items);
+		}
+		private SearchResultItem _readItem() throws XMLStreamException {
+			String contentName = null;
+			String documentName = null;
+			String documentLanguage = null;
+			String documentWorkAreaRelativePath = null;
+			String documentCreateDate = null;
+			Map<String,String> dataFiles = null;
+			Map<String,String> rispDocuments = null;
+			Map<String,String> metaData = null;
+			while (_nextChild()) {
+				String name = _xml.getLocalName();
+				if ("contentName".equals(name)) {
+					contentName = _text();
+				} else if ("documentName".equals(name)) {
+					documentName = _text();
+				} else if ("documentLanguage".equals(name)) {
+					documentLanguage = _text();
+				} else if ("documentWorkAreaRelativePath".equals(name)) {
+					documentWorkAreaRelativePath = _text();
+				} else if ("documentCreateDate".equals(name)) {
+					documentCreateDate = _text();
+				} else if ("documentDataFilesGeneratedFilesDocumentRelativePaths".equals(name)) {
+					dataFiles = _readChildTexts();
+				} else if ("contentRispDocumentsInfo".equals(name)) {
+					rispDocuments = _readChildTexts();
+				} else if ("documentMetaData".equals(name)) {
+					metaData = _readChildTexts();
+				} else {
+					_skip();
+				}
+			}
+			return new SearchResultItem(contentName,documentName,
+										documentLanguage,
+										documentWorkAreaRelativePath,
+										documentCreateDate,
+										dataFiles != null ? dataFiles : new LinkedHashMap<String,String>(0),
+										rispDocuments != null ? rispDocuments : new LinkedHashMap<String,String>(0),
+										metaData != null ? metaData : new LinkedHashMap<String,String>(0));
+		}
+		/**
+		 * Reads <a>text</a><b>text</b>... as a map (in document order)
+		 */
+		private Map<String,String> _readChildTexts() throws XMLStreamException {
+			Map<String,String> outTexts = new LinkedHashMap<String,String>();
+			while (_nextChild()) {
+				String name = _xml.getLocalName();
+				outTexts.put(name,_text());
+			}
+			return outTexts;
+		}
+		private String _text() throws XMLStreamException {
+			return _xml.getElementText().trim();
+		}
+		private int _intAttribute(final String name) throws XMLStreamException {
+			String value = _xml.getAttributeValue(null,name);
+			try {
+				return Integer.parseInt(value != null ? value.trim() : "");
+			} catch (NumberFormatException numEx) {
+				throw new XMLStreamException("The searchSourceResults " + name + " is NOT a number: " + value,_xml.getLocation());
+			}
+		}
+		/**
+		 * Moves the cursor to the next child element of the current element
+		 * @return false if the END_ELEMENT of the current element was reached
+		 */
+		private boolean _nextChild() throws XMLStreamException {
+			while (_xml.hasNext()) {
+				int event = _xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT) return true;
+				if (event == XMLStreamConstants.END_ELEMENT) return false;
+			}
+			return false;
+		}
+		/**
+		 * Skips the current element (and all it's children)
+		 */
+		private void _skip() throws XMLStreamException {
+			int depth = 1;
+			while (depth > 0 && _xml.hasNext()) {
+				int event = _xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					depth++;
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					depth--;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package euskadi.opendata.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes a file atomically: the content is written (and synced to disk) to a temp file in the same folder
+ * that replaces the file when complete, so a reader (or a crash) never sees a half-written file
+ * <ul>
+ * 		<li>if the content could NOT be written the temp file is deleted and the previous file is kept</li>
+ * 		<li>the temp files are named {file name}{random}.tmp so a crash leftover can be identified by the
+ * 			{@link #TMP_EXT} extension</li>
+ * </ul>
+ * Usage:
+ * <pre class='brush:java'>
+ * 		AtomicFiles.write(file,new AtomicFiles.ContentWriter() {
+ * 										@Override
+ * 										public void writeTo(final OutputStream os) throws IOException {
+ * 											props.store(os,null);
+ * 										}
+ * 							   });
+ * </pre>
+ */
+@Slf4j
+public class AtomicFiles {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static final String TMP_EXT = ".tmp";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	private AtomicFiles() {
+		// just static methods
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Replaces the file with the data
+	 * @param file
+	 * @param data
+	 * @throws IOException
+	 */
+	public static void write(final File file,final byte[] data) throws IOException {
+		AtomicFiles.write(file,new ContentWriter() {
+										@Override
+										public void writeTo(final OutputStream os) throws IOException {
+											os.write(data);
+										}
+							   });
+	}
+	/**
+	 * Replaces the file with the content written by the writer
+	 * @param file
+	 * @param writer
+	 * @throws IOException if the content could NOT be written or the file could NOT be replaced
+	 * 					   (the previous file is kept and the temp file is deleted)
+	 */
+	public static void write(final File file,final ContentWriter writer) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could NOT create the " + dir + " folder");
+		File tmp = File.createTempFile(file.getName(),TMP_EXT,dir);
+		boolean written = false;
+		try {
+			FileOutputStream fos = new FileOutputStream(tmp);
+			try {
+				writer.writeTo(fos);
+				fos.flush();
+				fos.getFD().sync();		// the data MUST be on disk before the file is renamed
+			} finally {
+				fos.close();
+			}
+			// rename: atomic on the same file system
+			if (!tmp.renameTo(file)
+			 && !(file.delete() && tmp.renameTo(file))) {		// some platforms (ie: windows) cannot rename over an existing file
+				throw new IOException("Could NOT rename " + tmp + " to " + file);
+			}
+			written = true;
+		} finally {
+			if (!written && !tmp.delete()) log.debug("Could NOT delete {}",tmp);
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Writes the file content
+	 */
+	public static interface ContentWriter {
+		/**
+		 * Writes the content (the stream is closed by the caller)
+		 * @param os
+		 * @throws IOException
+		 */
+		public void writeTo(final OutputStream os) throws IOException;
+	}
+}
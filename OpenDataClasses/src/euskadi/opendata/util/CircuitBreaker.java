@@ -0,0 +1,117 @@
+package euskadi.opendata.util;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * Stops calling a failing upstream:
+ * <ul>
+ * 		<li>CLOSED: the calls are allowed; after {@link #getFailureThreshold()} consecutive failures the circuit opens</li>
+ * 		<li>OPEN: the calls are NOT allowed until {@link #getOpenMillis()} have elapsed</li>
+ * 		<li>HALF_OPEN: a single trial call is allowed (the other callers fail fast until it ends); if it succeeds
+ * 			the circuit closes, otherwise it opens again</li>
+ * </ul>
+ * Usage:
+ * <pre class='brush:java'>
+ * 		if (!circuit.allowRequest()) return;		// fail fast
+ * 		// onSuccess() or onFailure() MUST be called after every allowed call (the trial call ends with them)
+ * 		try {
+ * 			... call the upstream ...
+ * 			circuit.onSuccess();
+ * 		} catch (IOException ioEx) {
+ * 			circuit.onFailure();
+ * 		}
+ * </pre>
+ */
+@Accessors(prefix="_")
+public class CircuitBreaker {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final int _failureThreshold;
+	@Getter private final long _openMillis;
+	/**
+	 * Read without locking (ie: by the metrics); changed holding the lock
+	 */
+	private volatile CircuitState _state = CircuitState.CLOSED;
+	private int _consecutiveFailures;
+	private long _openedTimeStamp;
+	/**
+	 * The trial call allowed while HALF_OPEN has NOT ended yet
+	 */
+	private boolean _trialInFlight;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public CircuitBreaker(final int failureThreshold,
+						  final long openMillis) {
+		if (failureThreshold <= 0) throw new IllegalArgumentException("The circuit breaker failure threshold MUST be greater than zero");
+		if (openMillis < 0) throw new IllegalArgumentException("The circuit breaker open time CANNOT be negative");
+		_failureThreshold = failureThreshold;
+		_openMillis = openMillis;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return true if the call can be done; false if the circuit is open (the caller should fail fast)
+	 */
+	public synchronized boolean allowRequest() {
+		if (_state == CircuitState.OPEN && this.millisUntilHalfOpen() == 0) {
+			_state = CircuitState.HALF_OPEN;
+			_trialInFlight = false;
+		}
+		if (_state == CircuitState.OPEN) return false;
+		if (_state == CircuitState.HALF_OPEN) {
+			if (_trialInFlight) return false;		// a single trial call
+			_trialInFlight = true;
+		}
+		return true;
+	}
+	/**
+	 * The call succeeded: the circuit closes
+	 */
+	public synchronized void onSuccess() {
+		_consecutiveFailures = 0;
+		_trialInFlight = false;
+		_state = CircuitState.CLOSED;
+	}
+	/**
+	 * The call failed: the circuit opens if the failure threshold is reached or the trial call failed
+	 */
+	public synchronized void onFailure() {
+		_consecutiveFailures++;
+		_trialInFlight = false;
+		if (_state == CircuitState.HALF_OPEN || _consecutiveFailures >= _failureThreshold) {
+			_state = CircuitState.OPEN;
+			_openedTimeStamp = System.currentTimeMillis();
+		}
+	}
+	/**
+	 * @return the circuit state
+	 */
+	public CircuitState getState() {
+		return _state;
+	}
+	/**
+	 * @return the failures since the last success
+	 */
+	public synchronized int getConsecutiveFailures() {
+		return _consecutiveFailures;
+	}
+	/**
+	 * @return the time until a trial call is allowed (0 if the circuit is NOT open)
+	 */
+	public synchronized long millisUntilHalfOpen() {
+		if (_state != CircuitState.OPEN) return 0;
+		return Math.max(0,_openedTimeStamp + _openMillis - System.currentTimeMillis());
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static enum CircuitState {
+		CLOSED,
+		HALF_OPEN,
+		OPEN;
+	}
+}
@@ -0,0 +1,191 @@
+package euskadi.opendata.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import r01f.util.types.Strings;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Fetches an url using conditional GETs (If-None-Match / If-Modified-Since) so an unchanged
+ * resource is NOT downloaded again.
+ * If the server ignores the validators, the downloaded bytes are hashed and compared with the
+ * last processed content so the caller can skip the parsing
+ * <pre>
+ * IMPORTANT!	The validators are only remembered when the caller confirms that the content
+ * 				was processed (see {@link #markAsProcessed(FetchResult)}); otherwise a failed
+ * 				parse would be answered with a 304 and never retried
+ *
+ * IMPORTANT!	The connection is NOT disconnected: the response is fully read so the
+ * 				connection goes back to the jdk keep-alive cache and it's reused by the next
+ * 				fetch to the same host (ie: all the meteo feeds are fetched from opendata.euskadi.eus)
+ *
+ * IMPORTANT!	The connect and read timeouts are mandatory: a hung server would otherwise block
+ * 				the caller forever
+ * </pre>
+ */
+@Accessors(prefix="_")
+public class ConditionalHttpFetcher {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final URL _url;
+	@Getter private final int _connectTimeoutMillis;
+	@Getter private final int _readTimeoutMillis;
+
+	private String _etag;
+	private String _lastModified;
+	private HashCode _contentHash;
+
+	private final AtomicLong _notModifiedCount = new AtomicLong();
+	private final AtomicLong _unchangedHashCount = new AtomicLong();
+	private final AtomicLong _modifiedCount = new AtomicLong();
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public ConditionalHttpFetcher(final URL url,
+								  final long connectTimeoutMillis,final long readTimeoutMillis) {
+		if (connectTimeoutMillis <= 0 || readTimeoutMillis <= 0) throw new IllegalArgumentException("The connect and read timeouts MUST be greater than zero");
+		_url = url;
+		_connectTimeoutMillis = (int)Math.min(connectTimeoutMillis,Integer.MAX_VALUE);
+		_readTimeoutMillis = (int)Math.min(readTimeoutMillis,Integer.MAX_VALUE);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Fetches the url sending the validators of the last processed content
+	 * @return the fetch result
+	 * @throws IOException
+	 */
+	@SuppressWarnings("resource")
+	public synchronized FetchResult fetch() throws IOException {
+		HttpURLConnection conn = (HttpURLConnection)_url.openConnection();
+		conn.setConnectTimeout(_connectTimeoutMillis);
+		conn.setReadTimeout(_readTimeoutMillis);
+		try {
+			if (_etag != null) conn.setRequestProperty("If-None-Match",_etag);
+			if (_lastModified != null) conn.setRequestProperty("If-Modified-Since",_lastModified);
+
+			int status = conn.getResponseCode();
+			if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				_notModifiedCount.incrementAndGet();
+				_release(conn);
+				return new FetchResult(FetchStatus.NOT_MODIFIED,
+									   null,_etag,_lastModified,_contentHash);
+			}
+			if (status != HttpURLConnection.HTTP_OK) throw new IOException(Strings.customized("HTTP {} fetching {}",
+																							   status,_url));
+			@Cleanup InputStream is = conn.getInputStream();
+			byte[] content = ByteStreams.toByteArray(is);
+			HashCode hash = Hashing.sha1().hashBytes(content);
+			String etag = conn.getHeaderField("ETag");
+			String lastModified = conn.getHeaderField("Last-Modified");
+
+			if (hash.equals(_contentHash)) {
+				_unchangedHashCount.incrementAndGet();
+				return new FetchResult(FetchStatus.UNCHANGED,
+									   null,etag,lastModified,hash);
+			}
+			_modifiedCount.incrementAndGet();
+			return new FetchResult(FetchStatus.MODIFIED,
+								   content,etag,lastModified,hash);
+		} catch (IOException ioEx) {
+			conn.disconnect();		// the connection state is unknown: do NOT reuse it
+			throw ioEx;
+		}
+	}
+	/**
+	 * Reads the (empty) body of a 304 response so the connection can be reused
+	 * @param conn
+	 */
+	private static void _release(final HttpURLConnection conn) throws IOException {
+		InputStream is = conn.getInputStream();
+		ByteStreams.copy(is,ByteStreams.nullOutputStream());
+		is.close();
+	}
+	/**
+	 * Remembers the validators & hash of a fetch result once the content has been processed
+	 * @param result
+	 */
+	public synchronized void markAsProcessed(final FetchResult result) {
+		_etag = result.getETag();
+		_lastModified = result.getLastModified();
+		_contentHash = result.getContentHash();
+	}
+	/**
+	 * Restores the validators & hash of a content processed before (ie: by a previous run)
+	 * @param eTag
+	 * @param lastModified
+	 * @param contentHash
+	 */
+	public synchronized void restoreProcessed(final String eTag,final String lastModified,
+											  final HashCode contentHash) {
+		_etag = eTag;
+		_lastModified = lastModified;
+		_contentHash = contentHash;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  COUNTERS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return the number of fetches answered with a 304 Not Modified
+	 */
+	public long getNotModifiedCount() {
+		return _notModifiedCount.get();
+	}
+	/**
+	 * @return the number of fetches that downloaded the same content than the last processed one
+	 */
+	public long getUnchangedHashCount() {
+		return _unchangedHashCount.get();
+	}
+	/**
+	 * @return the number of fetches that downloaded a new content (that must be parsed)
+	 */
+	public long getModifiedCount() {
+		return _modifiedCount.get();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  RESULT
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static enum FetchStatus {
+		NOT_MODIFIED,		// the server answered 304
+		UNCHANGED,			// the server sent the content but it's the same than the last processed one
+		MODIFIED;			// new content
+	}
+	@Accessors(prefix="_")
+	public static class FetchResult {
+		@Getter private final FetchStatus _status;
+		/**
+		 * The downloaded content (only if MODIFIED)
+		 */
+		@Getter private final byte[] _content;
+		@Getter private final String _eTag;
+		@Getter private final String _lastModified;
+		@Getter private final HashCode _contentHash;
+
+		FetchResult(final FetchStatus status,
+					final byte[] content,
+					final String eTag,final String lastModified,
+					final HashCode contentHash) {
+			_status = status;
+			_content = content;
+			_eTag = eTag;
+			_lastModified = lastModified;
+			_contentHash = contentHash;
+		}
+		public boolean isModified() {
+			return _status == FetchStatus.MODIFIED;
+		}
+	}
+}
@@ -0,0 +1,466 @@
+package euskadi.opendata.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+/**
+ * A disk backed http cache for the opendata files (data files, search pages, feeds...) so a re-crawl
+ * only transfers what changed:
+ * <ul>
+ * 		<li>the response bodies are stored as content addressed blobs (blobs/{sha1 of the body}): the same
+ * 			body returned by several urls is stored once</li>
+ * 		<li>every url has an entry (entries/{sha1 of the url}.properties) with the blob and the ETag / Last-Modified
+ * 			validators</li>
+ * 		<li>a cached url is revalidated with a conditional GET (If-None-Match / If-Modified-Since): a 304
+ * 			answer is served from the blob</li>
+ * 		<li>the blobs size is limited: the least recently used entries are evicted (the entry file modification
+ * 			time is the last use so the order survives a restart)</li>
+ * 		<li>offline mode: the cached bodies are served without any request; a NOT cached url fails</li>
+ * </ul>
+ * The default cache is configured with system properties:
+ * <pre>
+ * 		opendata.httpCache.dir			the cache directory (default {java.io.tmpdir}/opendata-http-cache)
+ * 		opendata.httpCache.maxBytes		the blobs size limit (default 256MB)
+ * 		opendata.httpCache.offline		true to serve only from the cache (default false)
+ * </pre>
+ * <pre>
+ * IMPORTANT!	It's thread safe: the requests are done outside the index lock so many urls can be
+ * 				fetched at the same time (see {@link euskadi.opendata.service.search.SearchSessionCrawler})
+ * </pre>
+ */
+@Slf4j
+@Accessors(prefix="_")
+public class DiskHttpCache {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final long DEFAULT_MAX_BYTES = 256L * 1024L * 1024L;
+	private static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+	private static final long DEFAULT_READ_TIMEOUT_MILLIS = 30000;
+	private static final Pattern CHARSET_PATTERN = Pattern.compile("(?i)charset=\"?([^\";\\s]+)");
+	private static final String ENTRY_EXT = ".properties";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final File _dir;
+	@Getter private final long _maxBytes;
+	@Getter private final int _connectTimeoutMillis;
+	@Getter private final int _readTimeoutMillis;
+	@Getter private final boolean _offline;
+
+	private final File _entriesDir;
+	private final File _blobsDir;
+	/**
+	 * url key > entry in least recently used order
+	 */
+	private final LinkedHashMap<String,CacheEntry> _entries = new LinkedHashMap<String,CacheEntry>(16,0.75f,true);
+	/**
+	 * blob > number of entries using it
+	 */
+	private final Map<String,Integer> _blobRefs = new HashMap<String,Integer>();
+	private long _blobBytes;
+
+	private final AtomicLong _downloadedCount = new AtomicLong();
+	private final AtomicLong _downloadedBytes = new AtomicLong();
+	private final AtomicLong _notModifiedCount = new AtomicLong();
+	private final AtomicLong _offlineHitCount = new AtomicLong();
+	private final AtomicLong _evictionCount = new AtomicLong();
+
+	private static DiskHttpCache DEFAULT;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public DiskHttpCache(final File dir,
+						 final long maxBytes,
+						 final long connectTimeoutMillis,final long readTimeoutMillis,
+						 final boolean offline) {
+		if (dir == null) throw new IllegalArgumentException("The cache directory is mandatory");
+		if (maxBytes <= 0) throw new IllegalArgumentException("The cache max bytes MUST be greater than zero");
+		if (connectTimeoutMillis <= 0 || readTimeoutMillis <= 0) throw new IllegalArgumentException("The connect and read timeouts MUST be greater than zero");
+		_dir = dir;
+		_maxBytes = maxBytes;
+		_connectTimeoutMillis = (int)Math.min(connectTimeoutMillis,Integer.MAX_VALUE);
+		_readTimeoutMillis = (int)Math.min(readTimeoutMillis,Integer.MAX_VALUE);
+		_offline = offline;
+		_entriesDir = new File(dir,"entries");
+		_blobsDir = new File(dir,"blobs");
+		if (!_entriesDir.isDirectory() && !_entriesDir.mkdirs()) throw new IllegalStateException("Could NOT create the http cache directory " + _entriesDir.getAbsolutePath());
+		if (!_blobsDir.isDirectory() && !_blobsDir.mkdirs()) throw new IllegalStateException("Could NOT create the http cache directory " + _blobsDir.getAbsolutePath());
+		_loadIndex();
+	}
+	/**
+	 * @return the cache configured with the opendata.httpCache.* system properties
+	 */
+	public static synchronized DiskHttpCache getDefault() {
+		if (DEFAULT == null) {
+			File dir = new File(System.getProperty("opendata.httpCache.dir",
+												   new File(System.getProperty("java.io.tmpdir"),"opendata-http-cache").getAbsolutePath()));
+			DEFAULT = new DiskHttpCache(dir,
+										Long.getLong("opendata.httpCache.maxBytes",DEFAULT_MAX_BYTES),
+										DEFAULT_CONNECT_TIMEOUT_MILLIS,DEFAULT_READ_TIMEOUT_MILLIS,
+										Boolean.getBoolean("opendata.httpCache.offline"));
+		}
+		return DEFAULT;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  GET
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Gets an url body: from the cache if it's NOT modified (or offline) or downloading it
+	 * @param url
+	 * @return the response
+	 * @throws IOException if the url could NOT be fetched (or it's NOT cached when offline)
+	 */
+	public CachedResponse get(final URL url) throws IOException {
+		String key = _keyOf(url);
+		CacheEntry entry = _entry(key);
+
+		// [1] - Offline: only the cache
+		if (_offline) {
+			byte[] body = entry != null ? _readBlob(entry) : null;
+			if (body == null) throw new IOException("The http cache is offline and " + url + " is NOT cached");
+			_offlineHitCount.incrementAndGet();
+			_touch(key);
+			return new CachedResponse(CacheStatus.OFFLINE,body,entry.getBlob(),entry.getContentType());
+		}
+
+		// [2] - Conditional GET
+		HttpURLConnection conn = (HttpURLConnection)url.openConnection();
+		conn.setConnectTimeout(_connectTimeoutMillis);
+		conn.setReadTimeout(_readTimeoutMillis);
+		try {
+			if (entry != null && entry.getETag() != null) conn.setRequestProperty("If-None-Match",entry.getETag());
+			if (entry != null && entry.getLastModified() != null) conn.setRequestProperty("If-Modified-Since",entry.getLastModified());
+			int status = conn.getResponseCode();
+			if (status == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+				_release(conn);
+				byte[] body = _readBlob(entry);
+				if (body != null) {
+					_notModifiedCount.incrementAndGet();
+					_touch(key);
+					return new CachedResponse(CacheStatus.NOT_MODIFIED,body,entry.getBlob(),entry.getContentType());
+				}
+				// the blob is gone (ie: deleted by hand): download it again without validators
+				_remove(key);
+				return this.get(url);
+			}
+			if (status != HttpURLConnection.HTTP_OK) throw new IOException("HTTP " + status + " fetching " + url);
+			@Cleanup InputStream is = conn.getInputStream();
+			byte[] body = ByteStreams.toByteArray(is);
+			_downloadedCount.incrementAndGet();
+			_downloadedBytes.addAndGet(body.length);
+
+			// [3] - Store the new body
+			String blob = Hashing.sha1().hashBytes(body).toString();
+			CacheEntry newEntry = new CacheEntry(url.toString(),blob,body.length,
+												 conn.getHeaderField("ETag"),conn.getHeaderField("Last-Modified"),
+												 conn.getContentType());
+			_store(key,newEntry,body);
+			return new CachedResponse(CacheStatus.DOWNLOADED,body,blob,newEntry.getContentType());
+		} catch (IOException ioEx) {
+			conn.disconnect();		// the connection state is unknown: do NOT reuse it
+			throw ioEx;
+		}
+	}
+	/**
+	 * Gets an url body
+	 * @param url
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] load(final String url) throws IOException {
+		return this.get(new URL(url)).getBody();
+	}
+	/**
+	 * Gets an url body as a string (see {@link CachedResponse#asString()})
+	 * @param url
+	 * @return
+	 * @throws IOException
+	 */
+	public String loadAsString(final String url) throws IOException {
+		return this.get(new URL(url)).asString();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  INDEX
+/////////////////////////////////////////////////////////////////////////////////////////
+	private synchronized CacheEntry _entry(final String key) {
+		return _entries.get(key);		// access ordered: it's now the most recently used
+	}
+	private void _touch(final String key) {
+		File entryFile = new File(_entriesDir,key + ENTRY_EXT);
+		if (!entryFile.setLastModified(System.currentTimeMillis())) log.debug("Could NOT touch the http cache entry {}",entryFile);
+	}
+	/**
+	 * Stores a body (under the index lock: the blob may be shared with an entry being evicted)
+	 */
+	private synchronized void _store(final String key,final CacheEntry entry,
+									 final byte[] body) throws IOException {
+		if (body.length > _maxBytes) {
+			log.warn("{} ({} bytes) is bigger than the http cache ({} bytes): it's NOT cached",entry.getUrl(),body.length,_maxBytes);
+			this._remove(key);
+			return;
+		}
+		File blobFile = new File(_blobsDir,entry.getBlob());
+		if (!blobFile.exists()) AtomicFiles.write(blobFile,body);		// the same body may be already stored by another url
+		_writeEntry(key,entry);
+		CacheEntry old = _entries.put(key,entry);
+		_addRef(entry);
+		if (old != null) _removeRef(old);
+		_evict(key);
+	}
+	private synchronized void _remove(final String key) {
+		CacheEntry old = _entries.remove(key);
+		if (old == null) return;
+		if (!new File(_entriesDir,key + ENTRY_EXT).delete()) log.debug("Could NOT delete the http cache entry {}",key);
+		_removeRef(old);
+	}
+	/**
+	 * Evicts the least recently used entries until the blobs fit (the just stored entry is kept)
+	 */
+	private void _evict(final String keptKey) {
+		Iterator<Map.Entry<String,CacheEntry>> it = _entries.entrySet().iterator();
+		while (_blobBytes > _maxBytes && it.hasNext()) {
+			Map.Entry<String,CacheEntry> eldest = it.next();
+			if (eldest.getKey().equals(keptKey)) continue;
+			it.remove();
+			if (!new File(_entriesDir,eldest.getKey() + ENTRY_EXT).delete()) log.debug("Could NOT delete the http cache entry {}",eldest.getKey());
+			_removeRef(eldest.getValue());
+			_evictionCount.incrementAndGet();
+		}
+	}
+	private void _addRef(final CacheEntry entry) {
+		Integer refs = _blobRefs.get(entry.getBlob());
+		if (refs == null) {
+			_blobRefs.put(entry.getBlob(),1);
+			_blobBytes += entry.getSize();
+		} else {
+			_blobRefs.put(entry.getBlob(),refs + 1);
+		}
+	}
+	private void _removeRef(final CacheEntry entry) {
+		Integer refs = _blobRefs.get(entry.getBlob());
+		if (refs == null) return;
+		if (refs > 1) {
+			_blobRefs.put(entry.getBlob(),refs - 1);
+			return;
+		}
+		_blobRefs.remove(entry.getBlob());
+		_blobBytes -= entry.getSize();
+		if (!new File(_blobsDir,entry.getBlob()).delete()) log.debug("Could NOT delete the http cache blob {}",entry.getBlob());
+	}
+	/**
+	 * Loads the entries (oldest used first) and deletes the blobs NOT used by any entry (ie: after a crash)
+	 */
+	private synchronized void _loadIndex() {
+		File[] entryFiles = _entriesDir.listFiles();
+		if (entryFiles != null) {
+			List<File> sorted = new ArrayList<File>(entryFiles.length);
+			for (File entryFile : entryFiles) {
+				if (entryFile.getName().endsWith(AtomicFiles.TMP_EXT)) {
+					if (!entryFile.delete()) log.debug("Could NOT delete {}",entryFile);
+				} else if (entryFile.getName().endsWith(ENTRY_EXT)) {
+					sorted.add(entryFile);
+				}
+			}
+			Collections.sort(sorted,new Comparator<File>() {
+											@Override
+											public int compare(final File f1,final File f2) {
+												long t1 = f1.lastModified();
+												long t2 = f2.lastModified();
+												return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+											}
+								    });
+			for (File entryFile : sorted) {
+				CacheEntry entry = _readEntry(entryFile);
+				if (entry == null || !new File(_blobsDir,entry.getBlob()).isFile()) {
+					if (!entryFile.delete()) log.debug("Could NOT delete {}",entryFile);
+					continue;
+				}
+				String key = entryFile.getName().substring(0,entryFile.getName().length() - ENTRY_EXT.length());
+				_entries.put(key,entry);
+				_addRef(entry);
+			}
+		}
+		File[] blobFiles = _blobsDir.listFiles();
+		if (blobFiles != null) {
+			for (File blobFile : blobFiles) {
+				if (!_blobRefs.containsKey(blobFile.getName()) && !blobFile.delete()) log.debug("Could NOT delete {}",blobFile);
+			}
+		}
+		_evict(null);
+		log.info("Http cache at {}: {} entries, {} bytes",_dir.getAbsolutePath(),_entries.size(),_blobBytes);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FILES
+/////////////////////////////////////////////////////////////////////////////////////////
+	private byte[] _readBlob(final CacheEntry entry) throws IOException {
+		File blobFile = new File(_blobsDir,entry.getBlob());
+		if (!blobFile.isFile()) return null;
+		@Cleanup InputStream is = new FileInputStream(blobFile);
+		return ByteStreams.toByteArray(is);
+	}
+	private void _writeEntry(final String key,final CacheEntry entry) throws IOException {
+		final Properties props = new Properties();
+		props.setProperty("url",entry.getUrl());
+		props.setProperty("blob",entry.getBlob());
+		props.setProperty("size",Long.toString(entry.getSize()));
+		if (entry.getETag() != null) props.setProperty("etag",entry.getETag());
+		if (entry.getLastModified() != null) props.setProperty("lastModified",entry.getLastModified());
+		if (entry.getContentType() != null) props.setProperty("contentType",entry.getContentType());
+		AtomicFiles.write(new File(_entriesDir,key + ENTRY_EXT),
+						  new AtomicFiles.ContentWriter() {
+									@Override
+									public void writeTo(final OutputStream os) throws IOException {
+										props.store(os,null);
+									}
+						  });
+	}
+	private static CacheEntry _readEntry(final File entryFile) {
+		try {
+			Properties props = new Properties();
+			@Cleanup InputStream is = new FileInputStream(entryFile);
+			props.load(is);
+			if (props.getProperty("url") == null || props.getProperty("blob") == null) return null;
+			return new CacheEntry(props.getProperty("url"),props.getProperty("blob"),
+								  Long.parseLong(props.getProperty("size","0")),
+								  props.getProperty("etag"),props.getProperty("lastModified"),
+								  props.getProperty("contentType"));
+		} catch (Exception ex) {
+			log.warn("Invalid http cache entry {}: {}",entryFile,ex.getMessage());
+			return null;
+		}
+	}
+	private static String _keyOf(final URL url) {
+		return Hashing.sha1().hashString(url.toString(),Charsets.UTF_8).toString();
+	}
+	/**
+	 * Reads the (empty) body of a 304 response so the connection can be reused
+	 */
+	private static void _release(final HttpURLConnection conn) throws IOException {
+		InputStream is = conn.getInputStream();
+		ByteStreams.copy(is,ByteStreams.nullOutputStream());
+		is.close();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  COUNTERS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return the number of bodies downloaded (200 responses)
+	 */
+	public long getDownloadedCount() {
+		return _downloadedCount.get();
+	}
+	public long getDownloadedBytes() {
+		return _downloadedBytes.get();
+	}
+	/**
+	 * @return the number of bodies served from the cache after a 304 Not Modified
+	 */
+	public long getNotModifiedCount() {
+		return _notModifiedCount.get();
+	}
+	/**
+	 * @return the number of bodies served from the cache in offline mode
+	 */
+	public long getOfflineHitCount() {
+		return _offlineHitCount.get();
+	}
+	public long getEvictionCount() {
+		return _evictionCount.get();
+	}
+	public synchronized int getEntryCount() {
+		return _entries.size();
+	}
+	public synchronized long getBlobBytes() {
+		return _blobBytes;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  ENTRY & RESPONSE
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Accessors(prefix="_")
+	private static class CacheEntry {
+		@Getter private final String _url;
+		@Getter private final String _blob;
+		@Getter private final long _size;
+		@Getter private final String _eTag;
+		@Getter private final String _lastModified;
+		@Getter private final String _contentType;
+
+		CacheEntry(final String url,final String blob,final long size,
+				   final String eTag,final String lastModified,
+				   final String contentType) {
+			_url = url;
+			_blob = blob;
+			_size = size;
+			_eTag = eTag;
+			_lastModified = lastModified;
+			_contentType = contentType;
+		}
+	}
+	public static enum CacheStatus {
+		DOWNLOADED,			// the server sent the body (new or modified)
+		NOT_MODIFIED,		// the server answered 304: the body is the cached one
+		OFFLINE;			// served from the cache without any request
+	}
+	@Accessors(prefix="_")
+	public static class CachedResponse {
+		@Getter private final CacheStatus _status;
+		@Getter private final byte[] _body;
+		/**
+		 * The sha1 of the body
+		 */
+		@Getter private final String _contentHash;
+		@Getter private final String _contentType;
+
+		CachedResponse(final CacheStatus status,
+					   final byte[] body,final String contentHash,
+					   final String contentType) {
+			_status = status;
+			_body = body;
+			_contentHash = contentHash;
+			_contentType = contentType;
+		}
+		/**
+		 * @return the body decoded with the content type charset (ISO-8859-1 if there's none: the opendata files encoding)
+		 */
+		public String asString() {
+			Charset charset = Charsets.ISO_8859_1;
+			Matcher m = _contentType != null ? CHARSET_PATTERN.matcher(_contentType) : null;
+			if (m != null && m.find()) {
+				try {
+					charset = Charset.forName(m.group(1));
+				} catch (IllegalArgumentException illArgEx) {
+					// unknown charset: the default one
+				}
+			}
+			return new String(_body,charset);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package euskadi.opendata.util;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A minimal streaming JSON writer: the JSON is written straight to the underlying {@link Writer}
+ * as the methods are called (there's NO intermediate tree nor String)
+ * <pre class='brush:java'>
+ *		JSONStreamWriter json = new JSONStreamWriter(writer);
+ *		json.beginObject()
+ *				.name("city").value("Bilbao")
+ *				.name("tempMax").value(27)
+ *			.endObject()
+ *			.flush();
+ * </pre>
+ * <pre>
+ * IMPORTANT!	The writer does NOT check that the calls build a valid JSON document (it just
+ * 				inserts the commas and colons); it's NOT thread safe
+ * </pre>
+ */
+public class JSONStreamWriter
+  implements Flushable {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final int MAX_DEPTH = 32;
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private final Writer _writer;
+	/**
+	 * For every nesting level: true if a value was already written (a comma is needed before the next one)
+	 */
+	private final boolean[] _hasValue = new boolean[MAX_DEPTH];
+	private int _depth = 0;
+	/**
+	 * true if a name was just written (the next value must NOT be preceded by a comma)
+	 */
+	private boolean _afterName = false;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public JSONStreamWriter(final Writer writer) {
+		_writer = writer;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  STRUCTURE
+/////////////////////////////////////////////////////////////////////////////////////////
+	public JSONStreamWriter beginObject() throws IOException {
+		return _begin('{');
+	}
+	public JSONStreamWriter endObject() throws IOException {
+		return _end('}');
+	}
+	public JSONStreamWriter beginArray() throws IOException {
+		return _begin('[');
+	}
+	public JSONStreamWriter endArray() throws IOException {
+		return _end(']');
+	}
+	public JSONStreamWriter name(final String name) throws IOException {
+		_beforeValue();
+		_string(name);
+		_writer.write(':');
+		_afterName = true;
+		return this;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  VALUES
+/////////////////////////////////////////////////////////////////////////////////////////
+	public JSONStreamWriter value(final String value) throws IOException {
+		if (value == null) return this.nullValue();
+		_beforeValue();
+		_string(value);
+		return this;
+	}
+	public JSONStreamWriter value(final long value) throws IOException {
+		_beforeValue();
+		_writer.write(Long.toString(value));
+		return this;
+	}
+	public JSONStreamWriter value(final double value) throws IOException {
+		if (Double.isNaN(value) || Double.isInfinite(value)) return this.nullValue();
+		_beforeValue();
+		_writer.write(Double.toString(value));
+		return this;
+	}
+	public JSONStreamWriter value(final boolean value) throws IOException {
+		_beforeValue();
+		_writer.write(value ? "true" : "false");
+		return this;
+	}
+	public JSONStreamWriter nullValue() throws IOException {
+		_beforeValue();
+		_writer.write("null");
+		return this;
+	}
+	@Override
+	public void flush() throws IOException {
+		_writer.flush();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	private JSONStreamWriter _begin(final char c) throws IOException {
+		if (_depth == MAX_DEPTH - 1) throw new IllegalStateException("JSON nesting deeper than " + MAX_DEPTH);
+		_beforeValue();
+		_writer.write(c);
+		_depth++;
+		_hasValue[_depth] = false;
+		return this;
+	}
+	private JSONStreamWriter _end(final char c) throws IOException {
+		if (_depth == 0) throw new IllegalStateException("There's NO open JSON object or array");
+		_writer.write(c);
+		_depth--;
+		return this;
+	}
+	private void _beforeValue() throws IOException {
+		if (_afterName) {
+			_afterName = false;
+			return;
+		}
+		if (_hasValue[_depth]) _writer.write(',');
+		_hasValue[_depth] = true;
+	}
+	private void _string(final String str) throws IOException {
+		_writer.write('"');
+		int last = 0;
+		int length = str.length();
+		for (int i=0; i < length; i++) {
+			char c = str.charAt(i);
+			String escaped = null;
+			if (c == '"') {
+				escaped = "\\\"";
+			} else if (c == '\\') {
+				escaped = "\\\\";
+			} else if (c == '\n') {
+				escaped = "\\n";
+			} else if (c == '\r') {
+				escaped = "\\r";
+			} else if (c == '\t') {
+				escaped = "\\t";
+			} else if (c < 0x20 || c == 0x2028 || c == 0x2029) {	// control chars and the js line separators
+				escaped = new String(new char[] {'\\','u',HEX[(c >> 12) & 0xf],HEX[(c >> 8) & 0xf],HEX[(c >> 4) & 0xf],HEX[c & 0xf]});
+			}
+			if (escaped == null) continue;
+			if (last < i) _writer.write(str,last,i - last);
+			_writer.write(escaped);
+			last = i + 1;
+		}
+		if (last < length) _writer.write(str,last,length - last);
+		_writer.write('"');
+	}
+}
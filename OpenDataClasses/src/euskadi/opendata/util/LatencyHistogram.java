@@ -0,0 +1,134 @@
+package euskadi.opendata.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * A lock-free latency histogram with log-linear (HDR-like) buckets:
+ * every power of two range is split into {@link #SUB_BUCKETS} linear buckets so any recorded
+ * latency is reported with a relative error below 1/{@link #SUB_BUCKETS} (~6%)
+ * from 1 nanosecond up to {@link #MAX_TRACKABLE_NANOS}
+ * <ul>
+ * 		<li>recording is a couple of atomic increments: NO locks, NO allocation</li>
+ * 		<li>the percentiles are computed from a {@link Snapshot} (ie: when the metrics are scraped)</li>
+ * </ul>
+ * <pre>
+ * IMPORTANT!	A snapshot taken while other threads are recording is NOT an atomic view of the buckets:
+ * 				it's consistent enough for monitoring (the count is computed from the copied buckets)
+ * </pre>
+ */
+public class LatencyHistogram {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final int SUB_BUCKET_BITS = 4;
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/**
+	 * Longer latencies are counted at the last bucket (the max is tracked exactly)
+	 */
+	public static final long MAX_TRACKABLE_NANOS = TimeUnit.HOURS.toNanos(1);
+	private static final int BUCKETS = _bucketIndex(MAX_TRACKABLE_NANOS) + 1;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong _sumNanos = new AtomicLong();
+	private final AtomicLong _maxNanos = new AtomicLong();
+/////////////////////////////////////////////////////////////////////////////////////////
+//  RECORD
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Records a latency
+	 * @param nanos
+	 */
+	public void record(final long nanos) {
+		long value = nanos > 0 ? nanos : 0;		// System.nanoTime() is NOT guaranteed to be monotonic on every platform
+		_buckets.incrementAndGet(_bucketIndex(Math.min(value,MAX_TRACKABLE_NANOS)));
+		_sumNanos.addAndGet(value);
+		long max = _maxNanos.get();
+		while (value > max && !_maxNanos.compareAndSet(max,value)) {
+			max = _maxNanos.get();
+		}
+	}
+	/**
+	 * Records the time elapsed since the given {@link System#nanoTime()}
+	 * @param startNanos
+	 */
+	public void recordSince(final long startNanos) {
+		this.record(System.nanoTime() - startNanos);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  SNAPSHOT
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return a copy of the recorded values
+	 */
+	public Snapshot snapshot() {
+		long[] buckets = new long[BUCKETS];
+		long count = 0;
+		for (int i=0; i < BUCKETS; i++) {
+			buckets[i] = _buckets.get(i);
+			count += buckets[i];
+		}
+		return new Snapshot(buckets,count,
+							_sumNanos.get(),_maxNanos.get());
+	}
+	/**
+	 * The values recorded by a {@link LatencyHistogram} at some point in time
+	 */
+	@Accessors(prefix="_")
+	public static class Snapshot {
+		private final long[] _buckets;
+		@Getter private final long _count;
+		@Getter private final long _sumNanos;
+		@Getter private final long _maxNanos;
+
+		Snapshot(final long[] buckets,final long count,
+				 final long sumNanos,final long maxNanos) {
+			_buckets = buckets;
+			_count = count;
+			_sumNanos = sumNanos;
+			_maxNanos = maxNanos;
+		}
+		/**
+		 * Returns the latency below which the given percentage of the recorded latencies fall
+		 * (the highest value of the bucket where the percentile is, but never above the max)
+		 * @param percentile 0..100
+		 * @return the latency in nanos (0 if nothing was recorded)
+		 */
+		public long valueAtPercentile(final double percentile) {
+			if (percentile < 0 || percentile > 100) throw new IllegalArgumentException("The percentile MUST be between 0 and 100");
+			if (_count == 0) return 0;
+			long rank = Math.max(1,(long)Math.ceil(_count * percentile / 100.0));
+			long seen = 0;
+			for (int i=0; i < _buckets.length; i++) {
+				seen += _buckets[i];
+				if (seen >= rank) return Math.min(_bucketHighestValue(i),_maxNanos);
+			}
+			return _maxNanos;
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  BUCKETS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Values below {@link #SUB_BUCKETS} have their own bucket; any other value v in [2^n,2^(n+1))
+	 * goes to one of the {@link #SUB_BUCKETS} linear buckets of width 2^(n-SUB_BUCKET_BITS)
+	 */
+	private static int _bucketIndex(final long value) {
+		if (value < SUB_BUCKETS) return (int)value;
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		int subBucket = (int)(value >>> shift) - SUB_BUCKETS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + subBucket;
+	}
+	private static long _bucketHighestValue(final int index) {
+		if (index < SUB_BUCKETS) return index;
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		long subBucket = index & (SUB_BUCKETS - 1);
+		return ((SUB_BUCKETS + subBucket) << shift) + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,246 @@
+package euskadi.opendata.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * Reads the entries of a zip file WITHOUT extracting them: the zip is memory-mapped and every
+ * entry is inflated straight from the mapped bytes as it's read
+ * <pre>
+ * IMPORTANT!	{@link java.util.zip.ZipInputStream} / {@link java.util.zip.ZipFile} decode the entry names as UTF-8
+ * 				and fail with the opendata archives (ie: data_forecast_ds_2013.zip) whose names are
+ * 				ISO-8859-1 (San Sebastin, Berln...); here the names are decoded as ISO-8859-1 unless
+ * 				the entry is flagged as UTF-8
+ * </pre>
+ * Only the stored and deflated entries are supported (no zip64, no encryption)
+ */
+public class ZipArchiveReader {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIR_SIGNATURE = 0x06054b50;
+	private static final int END_OF_CENTRAL_DIR_SIZE = 22;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+	private static final int METHOD_STORED = 0;
+	private static final int METHOD_DEFLATED = 8;
+	private static final int FLAG_ENCRYPTED = 0x1;
+	private static final int FLAG_UTF8 = 0x800;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final File _file;
+	private final MappedByteBuffer _mapped;
+	/**
+	 * The zip entries in the central directory order
+	 */
+	private final List<ZipArchiveEntry> _entries;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Maps the zip file and reads it's central directory
+	 * @param file
+	 * @throws IOException if the file is NOT a valid zip
+	 */
+	public ZipArchiveReader(final File file) throws IOException {
+		_file = file;
+		@Cleanup RandomAccessFile raf = new RandomAccessFile(file,"r");
+		FileChannel channel = raf.getChannel();
+		if (channel.size() > Integer.MAX_VALUE) throw new IOException(file + " is too big");
+		_mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+							  0,channel.size());	// the mapping remains valid after the channel is closed
+		_entries = Collections.unmodifiableList(_readCentralDirectory(_littleEndian()));
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METHODS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return the zip entries (files and directories) in the zip order
+	 */
+	public List<ZipArchiveEntry> entries() {
+		return _entries;
+	}
+	/**
+	 * Opens a stream that inflates the entry as it's read
+	 * (every call returns a new independent stream, so several entries can be read at the same time)
+	 * @param entry
+	 * @return
+	 * @throws IOException
+	 */
+	public InputStream openStream(final ZipArchiveEntry entry) throws IOException {
+		ByteBuffer buf = _littleEndian();
+		int localHeader = entry.getLocalHeaderOffset();
+		if (buf.getInt(localHeader) != LOCAL_HEADER_SIGNATURE) throw new IOException("Invalid local header for " + entry.getName() + " at " + _file);
+		int dataStart = localHeader + 30
+					  + (buf.getShort(localHeader + 26) & 0xFFFF)		// the local name & extra lengths might differ from the central directory ones
+					  + (buf.getShort(localHeader + 28) & 0xFFFF);
+		buf.position(dataStart);
+		buf.limit(dataStart + entry.getCompressedSize());
+		InputStream raw = new ByteBufferInputStream(buf.slice());
+		if (entry.getMethod() == METHOD_STORED) return raw;
+		return new EntryInflaterInputStream(raw);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CENTRAL DIRECTORY
+/////////////////////////////////////////////////////////////////////////////////////////
+	private ByteBuffer _littleEndian() {
+		return _mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	}
+	private List<ZipArchiveEntry> _readCentralDirectory(final ByteBuffer buf) throws IOException {
+		int eocd = _findEndOfCentralDirectory(buf);
+		int entryCount = buf.getShort(eocd + 10) & 0xFFFF;
+		long dirOffset = buf.getInt(eocd + 16) & 0xFFFFFFFFL;
+		if (dirOffset >= buf.capacity()) throw new IOException("Zip64 or invalid central directory at " + _file);
+
+		List<ZipArchiveEntry> outEntries = new ArrayList<ZipArchiveEntry>(entryCount);
+		int pos = (int)dirOffset;
+		for (int i=0; i < entryCount; i++) {
+			if (buf.getInt(pos) != CENTRAL_HEADER_SIGNATURE) throw new IOException("Invalid central directory entry #" + i + " at " + _file);
+			int flags = buf.getShort(pos + 8) & 0xFFFF;
+			int method = buf.getShort(pos + 10) & 0xFFFF;
+			long compressedSize = buf.getInt(pos + 20) & 0xFFFFFFFFL;
+			long size = buf.getInt(pos + 24) & 0xFFFFFFFFL;
+			int nameLength = buf.getShort(pos + 28) & 0xFFFF;
+			int extraLength = buf.getShort(pos + 30) & 0xFFFF;
+			int commentLength = buf.getShort(pos + 32) & 0xFFFF;
+			long localHeaderOffset = buf.getInt(pos + 42) & 0xFFFFFFFFL;
+
+			byte[] nameBytes = new byte[nameLength];
+			ByteBuffer nameBuf = buf.duplicate();
+			nameBuf.position(pos + 46);
+			nameBuf.get(nameBytes);
+			String name = new String(nameBytes,(flags & FLAG_UTF8) != 0 ? UTF8 : ISO_8859_1);
+
+			if ((flags & FLAG_ENCRYPTED) != 0) throw new IOException("Encrypted entry " + name + " at " + _file + " is NOT supported");
+			if (method != METHOD_STORED && method != METHOD_DEFLATED) throw new IOException("Compression method " + method + " of " + name + " at " + _file + " is NOT supported");
+			if (compressedSize + localHeaderOffset >= buf.capacity()) throw new IOException("Zip64 or invalid entry " + name + " at " + _file);
+
+			outEntries.add(new ZipArchiveEntry(name,method,
+											   (int)compressedSize,size,
+											   (int)localHeaderOffset));
+			pos += 46 + nameLength + extraLength + commentLength;
+		}
+		return outEntries;
+	}
+	private int _findEndOfCentralDirectory(final ByteBuffer buf) throws IOException {
+		int last = buf.capacity() - END_OF_CENTRAL_DIR_SIZE;
+		int first = Math.max(0,last - MAX_COMMENT_SIZE);
+		for (int pos = last; pos >= first; pos--) {
+			if (buf.getInt(pos) == END_OF_CENTRAL_DIR_SIGNATURE) return pos;
+		}
+		throw new IOException(_file + " is NOT a zip file");
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  ENTRY
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Accessors(prefix="_")
+	public static class ZipArchiveEntry {
+		@Getter private final String _name;
+		@Getter private final int _method;
+		@Getter private final int _compressedSize;
+		/**
+		 * The uncompressed size
+		 */
+		@Getter private final long _size;
+		@Getter private final int _localHeaderOffset;
+
+		ZipArchiveEntry(final String name,final int method,
+						final int compressedSize,final long size,
+						final int localHeaderOffset) {
+			_name = name;
+			_method = method;
+			_compressedSize = compressedSize;
+			_size = size;
+			_localHeaderOffset = localHeaderOffset;
+		}
+		public boolean isDirectory() {
+			return _name.endsWith("/");
+		}
+		@Override
+		public String toString() {
+			return _name;
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  STREAMS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Reads a {@link ByteBuffer} (from it's position to it's limit)
+	 */
+	private static class ByteBufferInputStream
+				 extends InputStream {
+		private final ByteBuffer _buf;
+
+		ByteBufferInputStream(final ByteBuffer buf) {
+			_buf = buf;
+		}
+		@Override
+		public int read() {
+			return _buf.hasRemaining() ? _buf.get() & 0xFF
+									   : -1;
+		}
+		@Override
+		public int read(final byte[] b,final int off,final int len) {
+			if (len == 0) return 0;
+			if (!_buf.hasRemaining()) return -1;
+			int count = Math.min(len,_buf.remaining());
+			_buf.get(b,off,count);
+			return count;
+		}
+		@Override
+		public int available() {
+			return _buf.remaining();
+		}
+	}
+	/**
+	 * Inflates a raw deflate stream (no zlib header) releasing the native inflater when closed
+	 * (as {@link java.util.zip.ZipFile} does, an extra dummy byte is fed once the input is exhausted:
+	 * the "nowrap" inflater might need it to detect the end of the stream)
+	 */
+	private static class EntryInflaterInputStream
+				 extends InflaterInputStream {
+		private boolean _eof;
+
+		EntryInflaterInputStream(final InputStream raw) {
+			super(raw,new Inflater(true),8192);
+		}
+		@Override
+		protected void fill() throws IOException {
+			if (_eof) throw new IOException("Unexpected end of the zip entry");
+			len = in.read(buf,0,buf.length);
+			if (len == -1) {
+				buf[0] = 0;
+				len = 1;
+				_eof = true;
+			}
+			inf.setInput(buf,0,len);
+		}
+		@Override
+		public void close() throws IOException {
+			inf.end();
+			super.close();
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package euskadi.opendata.meteo.internal;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import euskadi.opendata.service.meteo.WeatherForecastService;
+import euskadi.opendata.service.meteo.WeatherForecastSnapshot;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * While the node is cold (no forecast loaded yet) the requests are suspended using servlet 3 async
+ * so the container threads are released while the (single) forecast load runs
+ * When the load finishes every suspended request is dispatched again to the REST resources
+ * <pre>
+ * NOTE:	Jersey 1.x does NOT support JAX-RS 2 AsyncResponse so the requests are suspended here
+ * 			before they reach the resources
+ * 			If async is NOT supported (ie: a filter / servlet in the chain is not async-supported)
+ * 			the request is just passed on and blocks until the forecast is loaded: web.xml MUST map
+ * 			an async-supported servlet to /weatherforecasts/* (a warning is logged otherwise)
+ * </pre>
+ * Only the forecast requests ({@link #FORECAST_PATHS_REGEX}) are suspended: the images and the admin
+ * endpoints do NOT need the forecast so they're served while the node is cold (ie: an operator can force
+ * a refresh or read the load stats of a node stuck in the cold load)
+ * The max time a request waits for the cold load can be set using -Dopendata.meteo.coldLoadTimeoutSeconds=30
+ */
+@Slf4j
+@Singleton
+public class MeteoOpenDataColdStartFilter
+  implements Filter {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The (context relative) paths of the requests that need the forecast: every /weatherforecasts one
+	 * but the images, the admin endpoints and the changes stream
+	 */
+	public static final String FORECAST_PATHS_REGEX = "^/weatherforecasts/(?!images/|admin/|stream(/|$)).*";
+	public static final String COLD_LOAD_TIMEOUT_PROPERTY = "opendata.meteo.coldLoadTimeoutSeconds";
+	private static final long DEFAULT_COLD_LOAD_TIMEOUT_SECONDS = 30;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  INJECTED STATUS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private final WeatherForecastService _weatherService;
+	private final long _coldLoadTimeoutMillis;
+	private final AtomicBoolean _asyncNotSupportedLogged = new AtomicBoolean();
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	public MeteoOpenDataColdStartFilter(final WeatherForecastService weatherService) {
+		_weatherService = weatherService;
+		_coldLoadTimeoutMillis = TimeUnit.SECONDS.toMillis(Long.getLong(COLD_LOAD_TIMEOUT_PROPERTY,DEFAULT_COLD_LOAD_TIMEOUT_SECONDS));
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public void init(final FilterConfig filterConfig) throws ServletException {
+		// nothing
+	}
+	@Override
+	public void destroy() {
+		// nothing
+	}
+	@Override
+	public void doFilter(final ServletRequest request,final ServletResponse response,
+						 final FilterChain chain) throws IOException,
+						 								 ServletException {
+		// Warm node (the usual case), an already suspended request or async not supported: just go on
+		final ListenableFuture<WeatherForecastSnapshot> loaded = _weatherService.currentSnapshotAsync();
+		if (loaded.isDone()
+		 || request.getDispatcherType() == DispatcherType.ASYNC) {
+			chain.doFilter(request,response);
+			return;
+		}
+		if (!request.isAsyncSupported()) {
+			if (_asyncNotSupportedLogged.compareAndSet(false,true)) log.warn("Async is NOT supported for the forecast requests (is an async-supported servlet mapped to /weatherforecasts/* at web.xml?): " +
+																			 "the requests block a container thread while the node is cold");
+			chain.doFilter(request,response);
+			return;
+		}
+
+		// Cold node: suspend the request until the forecast is loaded
+		log.info("The weather forecast is NOT loaded yet: the request is suspended until it's loaded");
+		final AsyncContext async = request.startAsync(request,response);
+		async.setTimeout(_coldLoadTimeoutMillis);
+		async.addListener(new AsyncListener() {
+								@Override
+								public void onTimeout(final AsyncEvent event) throws IOException {
+									log.warn("Timeout waiting for the weather forecast to be loaded");
+									((HttpServletResponse)event.getAsyncContext().getResponse()).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+																										   "The weather forecast is NOT available yet");
+									event.getAsyncContext().complete();
+								}
+								@Override
+								public void onComplete(final AsyncEvent event) throws IOException {
+									// nothing
+								}
+								@Override
+								public void onError(final AsyncEvent event) throws IOException {
+									// nothing
+								}
+								@Override
+								public void onStartAsync(final AsyncEvent event) throws IOException {
+									// nothing
+								}
+						  });
+		loaded.addListener(new Runnable() {
+								@Override
+								public void run() {
+									try {
+										if (_loadFailed(loaded)) {
+											// do NOT dispatch: the resource would block trying to load the forecast again
+											((HttpServletResponse)async.getResponse()).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+																								 "The weather forecast could NOT be loaded");
+											async.complete();
+										} else {
+											async.dispatch();	// the request goes through the filter chain again (now it's warm)
+										}
+									} catch (IllegalStateException illStEx) {
+										log.debug("The suspended request was already completed (timeout?): {}",illStEx.getMessage());
+									} catch (IOException ioEx) {
+										log.warn("Could NOT send the error response: {}",ioEx.getMessage());
+									}
+								}
+						   },
+						   MoreExecutors.directExecutor());
+	}
+	private static boolean _loadFailed(final ListenableFuture<WeatherForecastSnapshot> loaded) {
+		try {
+			loaded.get();		// it's done: it does NOT block
+			return false;
+		} catch (ExecutionException exEx) {
+			return true;
+		} catch (InterruptedException intEx) {
+			Thread.currentThread().interrupt();
+			return true;
+		}
+	}
+}
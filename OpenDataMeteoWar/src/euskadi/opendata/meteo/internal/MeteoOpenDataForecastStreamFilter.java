@@ -0,0 +1,113 @@
+package euskadi.opendata.meteo.internal;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.AsyncContext;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataForecastChangesStream;
+import euskadi.opendata.model.meteo.City;
+import lombok.extern.slf4j.Slf4j;
+import r01f.locale.Language;
+import r01f.locale.Languages;
+
+/**
+ * Serves the forecast changes Server-Sent Events stream: the request is suspended (servlet 3 async)
+ * and subscribed to the {@link MeteoOpenDataForecastChangesStream}
+ * <pre>
+ * 		Ej: curl -N http://localhost:8080/OpenDataMeteoWar/weatherforecasts/stream				(all the cities)
+ * 			curl -N http://localhost:8080/OpenDataMeteoWar/weatherforecasts/stream/2?lang=BASQUE	(a city)
+ * </pre>
+ * <pre>
+ * NOTE:	Jersey 1.x does NOT support JAX-RS 2 AsyncResponse / SSE so the stream is served here
+ * 			before the request reaches the REST resources (the same as the {@link MeteoOpenDataColdStartFilter})
+ * 			It MUST be before the other filters: a stream is NOT a forecast request (it's NOT suspended
+ * 			while cold and its duration is NOT recorded as a request latency)
+ * </pre>
+ */
+@Slf4j
+@Singleton
+public class MeteoOpenDataForecastStreamFilter
+  implements Filter {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static final String STREAM_PATH = "/weatherforecasts/stream";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  INJECTED STATUS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private final MeteoOpenDataForecastChangesStream _stream;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	public MeteoOpenDataForecastStreamFilter(final MeteoOpenDataForecastChangesStream stream) {
+		_stream = stream;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public void init(final FilterConfig filterConfig) throws ServletException {
+		// nothing
+	}
+	@Override
+	public void destroy() {
+		// nothing
+	}
+	@Override
+	public void doFilter(final ServletRequest request,final ServletResponse response,
+						 final FilterChain chain) throws IOException,
+						 								 ServletException {
+		HttpServletRequest httpReq = (HttpServletRequest)request;
+		HttpServletResponse httpResp = (HttpServletResponse)response;
+		if (!"GET".equals(httpReq.getMethod())) {
+			httpResp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+			return;
+		}
+		if (!request.isAsyncSupported()) {
+			// the stream would hold a container thread for ever
+			log.error("The forecast changes stream needs servlet 3 async support: check the web.xml async-supported");
+			httpResp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,"The forecast changes stream is NOT available");
+			return;
+		}
+
+		// the city (none for all the cities) and the language
+		String uri = httpReq.getRequestURI().substring(httpReq.getContextPath().length());
+		String cityCode = uri.length() > STREAM_PATH.length() + 1 ? uri.substring(STREAM_PATH.length() + 1) : null;
+		String lang = request.getParameter("lang");
+		City city = null;
+		Language theLang = null;
+		try {
+			city = cityCode != null ? City.fromCode(cityCode) : null;
+			if (cityCode != null && city == null) throw new IllegalArgumentException("The city code " + cityCode + " is NOT a valid city");
+			if (lang != null && !Languages.canBe(lang)) throw new IllegalArgumentException("The language " + lang + " is NOT a valid language");
+			theLang = lang == null ? Language.DEFAULT
+								   : Language.fromName(lang);
+			if (!MeteoOpenDataForecastChangesStream.isPublished(theLang)) throw new IllegalArgumentException("The forecast changes are NOT published in " + theLang);
+		} catch (IllegalArgumentException illArgEx) {
+			httpResp.sendError(HttpServletResponse.SC_BAD_REQUEST,illArgEx.getMessage());
+			return;
+		}
+
+		// send the headers right away and suspend the request for ever (the heartbeat detects the gone clients)
+		httpResp.setContentType("text/event-stream;charset=UTF-8");
+		httpResp.setHeader("Cache-Control","no-cache");
+		httpResp.setHeader("X-Accel-Buffering","no");		// proxies must NOT buffer the stream
+		httpResp.flushBuffer();
+		AsyncContext async = request.startAsync(request,response);
+		async.setTimeout(0);
+		_stream.subscribe(async,
+						  city,theLang,
+						  httpReq.getHeader("Last-Event-ID"));
+	}
+}
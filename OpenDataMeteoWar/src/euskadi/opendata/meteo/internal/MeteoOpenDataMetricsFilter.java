@@ -0,0 +1,108 @@
+package euskadi.opendata.meteo.internal;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+import euskadi.opendata.service.meteo.MeteoMetrics;
+import euskadi.opendata.util.LatencyHistogram;
+
+/**
+ * Records the forecast requests latency by status class (2xx, 3xx...) at the {@link MeteoMetrics}
+ * <pre>
+ * IMPORTANT!	It MUST be the first filter: a request suspended by the {@link MeteoOpenDataColdStartFilter}
+ * 				is recorded when it's completed, so the time waiting for the cold load is included
+ * </pre>
+ */
+@Singleton
+public class MeteoOpenDataMetricsFilter
+  implements Filter {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The latency by status class: [0] unknown, [1] 1xx, [2] 2xx... [5] 5xx
+	 */
+	private final LatencyHistogram[] _requestLatency = new LatencyHistogram[6];
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	public MeteoOpenDataMetricsFilter(final MeteoMetrics metrics) {
+		for (int i=0; i < _requestLatency.length; i++) {
+			_requestLatency[i] = metrics.latency("meteo_http_request_seconds","Time to answer a forecast request",
+												 "status",i > 0 ? i + "xx" : "unknown");
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public void init(final FilterConfig filterConfig) throws ServletException {
+		// nothing
+	}
+	@Override
+	public void destroy() {
+		// nothing
+	}
+	@Override
+	public void doFilter(final ServletRequest request,final ServletResponse response,
+						 final FilterChain chain) throws IOException,
+						 								 ServletException {
+		// a re-dispatched suspended request is recorded by the listener added when it was suspended
+		if (request.getDispatcherType() == DispatcherType.ASYNC) {
+			chain.doFilter(request,response);
+			return;
+		}
+		final long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			chain.doFilter(request,response);
+			failed = false;
+		} finally {
+			if (failed) {
+				_requestLatency[5].recordSince(start);		// the container answers a 500
+			} else if (request.isAsyncStarted()) {
+				request.getAsyncContext()
+					   .addListener(new AsyncListener() {
+											@Override
+											public void onComplete(final AsyncEvent event) throws IOException {
+												_record(event.getSuppliedResponse(),start);
+											}
+											@Override
+											public void onTimeout(final AsyncEvent event) throws IOException {
+												// the cold start filter sends the error and completes
+											}
+											@Override
+											public void onError(final AsyncEvent event) throws IOException {
+												// onComplete is called afterwards
+											}
+											@Override
+											public void onStartAsync(final AsyncEvent event) throws IOException {
+												// nothing
+											}
+									});
+			} else {
+				_record(response,start);
+			}
+		}
+	}
+	private void _record(final ServletResponse response,
+						 final long start) {
+		int status = response instanceof HttpServletResponse ? ((HttpServletResponse)response).getStatus()
+															 : 0;
+		int statusClass = status / 100;
+		_requestLatency[statusClass > 0 && statusClass < _requestLatency.length ? statusClass : 0].recordSince(start);
+	}
+}
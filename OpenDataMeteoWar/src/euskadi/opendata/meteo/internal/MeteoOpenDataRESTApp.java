@@ -7,6 +7,8 @@ import javax.inject.Singleton;
 import javax.ws.rs.core.Application;
 
 import lombok.NoArgsConstructor;
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataImagesRESTResource;
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataMetricsRESTResource;
 import euskadi.opendata.meteo.rest.resources.MeteoOpenDataRESTResource;
 import euskadi.opendata.meteo.rest.resources.MeteoOpenDataResponseMappers.MeteoOpendataModelObjectResponseTypeMapper;
 import euskadi.opendata.meteo.rest.resources.MeteoOpenDataResponseMappers.MeteoOpendataUncaughtExceptionMapper;
@@ -38,6 +40,8 @@ public class MeteoOpenDataRESTApp
 		
 		// rest Resources 
 		s.add(MeteoOpenDataRESTResource.class);
+		s.add(MeteoOpenDataMetricsRESTResource.class);
+		s.add(MeteoOpenDataImagesRESTResource.class);
 		
 		// Request type mappers: transforms Java->XML for REST methods returned types
 		s.add(MeteoOpendataModelObjectResponseTypeMapper.class);
@@ -29,6 +29,17 @@ public class MeteoOpenDataRESTBootstrapGuiceModule
 		params.put("javax.ws.rs.Application",
 				   MeteoOpenDataRESTApp.class.getName());
 		
+		// Serve the forecast changes stream (suspended for ever so it's NOT a forecast request for the other filters)
+		filter(MeteoOpenDataForecastStreamFilter.STREAM_PATH,
+			   MeteoOpenDataForecastStreamFilter.STREAM_PATH + "/*").through(MeteoOpenDataForecastStreamFilter.class);
+		
+		// Record the forecast requests latency (the first filter so the time suspended while cold is included)
+		filter("/weatherforecasts/*").through(MeteoOpenDataMetricsFilter.class);
+		
+		// Suspend the forecast requests (releasing the container threads) while the node is cold
+		// (NOT the /metrics, images or admin ones: they're available while the node is cold)
+		filterRegex(MeteoOpenDataColdStartFilter.FORECAST_PATHS_REGEX).through(MeteoOpenDataColdStartFilter.class);
+		
 		serve("/*").with(GuiceContainer.class,
 						 params);
 		
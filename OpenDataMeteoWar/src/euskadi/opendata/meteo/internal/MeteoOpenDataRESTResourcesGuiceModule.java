@@ -5,7 +5,13 @@ import javax.inject.Singleton;
 import com.google.inject.Binder;
 import com.google.inject.Module;
 
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataForecastChangesStream;
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataForecastRenderer;
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataImageProxy;
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataImagesRESTResource;
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataMetricsRESTResource;
 import euskadi.opendata.meteo.rest.resources.MeteoOpenDataRESTResource;
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataRenderedForecastCache;
 
 public class MeteoOpenDataRESTResourcesGuiceModule 
   implements Module {
@@ -17,6 +23,21 @@ public class MeteoOpenDataRESTResourcesGuiceModule
 			  .in(Singleton.class);
 		binder.bind(MeteoOpenDataRESTResource.class)
 			  .in(Singleton.class);
+		binder.bind(MeteoOpenDataMetricsRESTResource.class)
+			  .in(Singleton.class);
+		binder.bind(MeteoOpenDataImagesRESTResource.class)
+			  .in(Singleton.class);
+		// the opendata images cached at the war (the html forecasts point to them)
+		binder.bind(MeteoOpenDataImageProxy.class)
+			  .in(Singleton.class);
+		// forecast responses pre-rendered every time a new forecast is loaded
+		binder.bind(MeteoOpenDataForecastRenderer.class)
+			  .in(Singleton.class);
+		binder.bind(MeteoOpenDataRenderedForecastCache.class)
+			  .asEagerSingleton();
+		// forecast changes pushed to the stream clients (it MUST see every published forecast)
+		binder.bind(MeteoOpenDataForecastChangesStream.class)
+			  .asEagerSingleton();
 		
 	}
 
@@ -1,5 +1,6 @@
 package euskadi.opendata.meteo.internal;
 
+import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
 import com.google.inject.Guice;
@@ -7,22 +8,47 @@ import com.google.inject.Injector;
 import com.google.inject.servlet.GuiceServletContextListener;
 
 import euskadi.opendata.internal.meteo.MeteoOpenDataBootstrapGuiceModule;
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataForecastChangesStream;
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataImageProxy;
+import euskadi.opendata.service.meteo.MeteoFeedEngine;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * {@link ServletContextListener} in charge of:
+ * 		- creating the guice injector
+ * 		- stopping the background jobs (ie: the meteo feeds refresher) and closing the forecast
+ * 		  changes streams and the image fetches when the war is undeployed
  */
 @Slf4j
 public class MeteoOpenDataServletContextListener
 	 extends GuiceServletContextListener {
 /////////////////////////////////////////////////////////////////////////////////////////
 //  
+/////////////////////////////////////////////////////////////////////////////////////////
+	private Injector _injector;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  
 /////////////////////////////////////////////////////////////////////////////////////////
 	@Override
 	protected Injector getInjector() {
 		log.warn("CREATING GUICE Injector.............");
-		return Guice.createInjector(new MeteoOpenDataBootstrapGuiceModule(),
-									new MeteoOpenDataRESTResourcesGuiceModule(),
-									new MeteoOpenDataRESTBootstrapGuiceModule());	
+		_injector = Guice.createInjector(new MeteoOpenDataBootstrapGuiceModule(),
+										 new MeteoOpenDataRESTResourcesGuiceModule(),
+										 new MeteoOpenDataRESTBootstrapGuiceModule());
+		return _injector;
+	}
+	@Override
+	public void contextDestroyed(final ServletContextEvent servletContextEvent) {
+		if (_injector != null) {
+			log.warn("STOPPING the meteo feeds refresher.............");
+			_injector.getInstance(MeteoFeedEngine.class)
+					 .stop();
+			log.warn("CLOSING the forecast changes streams.............");
+			_injector.getInstance(MeteoOpenDataForecastChangesStream.class)
+					 .stop();
+			_injector.getInstance(MeteoOpenDataImageProxy.class)
+					 .stop();
+		}
+		super.contextDestroyed(servletContextEvent);
 	}
 }
@@ -0,0 +1,94 @@
+package euskadi.opendata.meteo.rest.resources;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * The content encodings the pre-rendered forecasts are available in
+ * The compressed variants are built ONCE when the forecast is loaded, so the compression
+ * is NOT paid on every request
+ */
+@Accessors(prefix="_")
+public enum MeteoOpenDataContentEncoding {
+	IDENTITY(null),
+	GZIP("gzip"),
+	DEFLATE("deflate");
+
+	/**
+	 * The Content-Encoding header value (null for identity)
+	 */
+	@Getter private final String _headerValue;
+
+	private MeteoOpenDataContentEncoding(final String headerValue) {
+		_headerValue = headerValue;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Encodes the given bytes
+	 * @param bytes
+	 * @return
+	 */
+	public byte[] encode(final byte[] bytes) {
+		if (this == IDENTITY) return bytes;
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length);
+			OutputStream os = this == GZIP ? new GZIPOutputStream(bos)
+										   : new DeflaterOutputStream(bos);	// http deflate is the zlib format
+			os.write(bytes);
+			os.close();
+			return bos.toByteArray();
+		} catch (IOException ioEx) {
+			throw new IllegalStateException(ioEx);		// cannot happen writing to memory
+		}
+	}
+	/**
+	 * Returns the preferred encoding from the Accept-Encoding header (gzip over deflate)
+	 * @param acceptEncoding the Accept-Encoding header value
+	 * @return
+	 */
+	public static MeteoOpenDataContentEncoding negotiate(final String acceptEncoding) {
+		if (acceptEncoding == null || acceptEncoding.isEmpty()) return IDENTITY;
+		boolean gzip = false;
+		boolean deflate = false;
+		boolean any = false;
+		boolean gzipRefused = false;
+		boolean deflateRefused = false;
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.split(";");
+			String name = parts[0].trim().toLowerCase();
+			boolean accepted = _quality(parts) > 0;
+			if (name.equals("gzip") || name.equals("x-gzip")) {
+				gzip = accepted;
+				gzipRefused = !accepted;
+			} else if (name.equals("deflate")) {
+				deflate = accepted;
+				deflateRefused = !accepted;
+			} else if (name.equals("*")) {
+				any = accepted;
+			}
+		}
+		if (gzip || (any && !gzipRefused)) return GZIP;
+		if (deflate || (any && !deflateRefused)) return DEFLATE;
+		return IDENTITY;
+	}
+	private static float _quality(final String[] parts) {
+		for (int i=1; i < parts.length; i++) {
+			String param = parts[i].trim();
+			if (!param.startsWith("q=")) continue;
+			try {
+				return Float.parseFloat(param.substring(2).trim());
+			} catch (NumberFormatException numEx) {
+				return 0;
+			}
+		}
+		return 1;
+	}
+}
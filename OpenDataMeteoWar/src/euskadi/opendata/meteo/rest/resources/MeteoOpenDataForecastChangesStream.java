@@ -0,0 +1,464 @@
+package euskadi.opendata.meteo.rest.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import euskadi.opendata.model.meteo.City;
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.service.meteo.MeteoMetrics;
+import euskadi.opendata.service.meteo.WeatherForecastService;
+import euskadi.opendata.service.meteo.WeatherForecastSnapshot;
+import euskadi.opendata.service.meteo.WeatherForecastSnapshotListener;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import r01f.locale.Language;
+
+/**
+ * Pushes the city forecasts changes to the subscribed clients as Server-Sent Events
+ * <ul>
+ * 		<li>every time a new forecast snapshot is published each city forecast is compared with the previous one:
+ * 			an event is pushed ONLY to the clients subscribed to the cities which forecast actually changed</li>
+ * 		<li>the connections are suspended (servlet 3 async): NO thread is held by an idle connection</li>
+ * 		<li>the events are queued at every connection and written by a small shared pool so the
+ * 			publisher never blocks; a client that does NOT keep up (too many queued events) is disconnected</li>
+ * 		<li>the events are tiny so a write rarely blocks but servlet 3.0 has NO non-blocking writes: every write has
+ * 			a deadline and a client which write does NOT finish in time is disconnected (its async context is completed)
+ * 			so a stalled client does NOT hold a writer thread until the container socket write timeout</li>
+ * 		<li>a heartbeat comment is sent periodically so the proxies keep the connection open and the
+ * 			gone clients are detected</li>
+ * 		<li>the heartbeats and the write deadlines are handled by their own thread that NEVER writes: the
+ * 			stalled writes can NOT delay them</li>
+ * </ul>
+ * Every event is a JSON object with the city and its forecast for every day (the same JSON as the REST resource):
+ * <pre>
+ * 		id: 1466412000000
+ * 		event: forecast
+ * 		data: {"city":"BILBAO","forecasts":[{"city":"BILBAO","cityCode":"2","day":"TODAY",...},...]}
+ * </pre>
+ * The event id is the snapshot load time stamp: a client reconnecting with a Last-Event-ID
+ * equal to the current one is NOT sent the current forecasts again
+ * The writer threads, the heartbeat and the write timeout can be set using -Dopendata.meteo.streamWriterThreads=2,
+ * -Dopendata.meteo.streamHeartbeatSeconds=30 and -Dopendata.meteo.streamWriteTimeoutSeconds=10
+ */
+@Slf4j
+@Singleton
+public class MeteoOpenDataForecastChangesStream
+  implements WeatherForecastSnapshotListener {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static final String WRITER_THREADS_PROPERTY = "opendata.meteo.streamWriterThreads";
+	public static final String HEARTBEAT_PROPERTY = "opendata.meteo.streamHeartbeatSeconds";
+	public static final String WRITE_TIMEOUT_PROPERTY = "opendata.meteo.streamWriteTimeoutSeconds";
+	private static final int DEFAULT_WRITER_THREADS = 2;
+	private static final long DEFAULT_HEARTBEAT_SECONDS = 30;
+	private static final long DEFAULT_WRITE_TIMEOUT_SECONDS = 10;
+	/**
+	 * The languages the forecast is published in (the only ones that can be subscribed)
+	 */
+	private static final Language[] LANGUAGES = new Language[] {Language.SPANISH,Language.BASQUE};
+	/**
+	 * The queued events (not yet written) over which a client is considered too slow and disconnected
+	 */
+	private static final int MAX_QUEUED_EVENTS = 32;
+	private static final byte[] HEARTBEAT = ":\n\n".getBytes(Charsets.UTF_8);
+	/**
+	 * Sent when the client connects: how long should the client wait before reconnecting
+	 */
+	private static final byte[] RETRY = "retry: 10000\n\n".getBytes(Charsets.UTF_8);
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private final MeteoOpenDataForecastRenderer _renderer;
+	/**
+	 * The last pushed events indexed by [lang][city]: a new event is pushed ONLY if it's different
+	 * Written ONLY at the refresher thread (onSnapshotPublished is synchronized)
+	 */
+	private volatile CityEvents _current;
+	/**
+	 * The subscribed connections: the all cities ones and the ones subscribed to a city (indexed by [lang][city])
+	 */
+	private final Set<StreamConnection>[] _allCitiesConnections;
+	private final Set<StreamConnection>[][] _cityConnections;
+	private final AtomicInteger _connectionCount = new AtomicInteger();
+	/**
+	 * Writes the queued events (the writes may block)
+	 */
+	private final ExecutorService _writers;
+	/**
+	 * Sends the heartbeats and drops the connections which write is over the deadline (it NEVER blocks)
+	 */
+	private final ScheduledExecutorService _watchdog;
+	private final long _writeTimeoutMillis;
+	/**
+	 * Metrics
+	 */
+	private final AtomicLong _pushedEvents;
+	private final AtomicLong _slowClients;
+	private final AtomicLong _stalledClients;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	@SuppressWarnings("unchecked")
+	public MeteoOpenDataForecastChangesStream(final WeatherForecastService weatherService,
+											  final MeteoOpenDataForecastRenderer renderer,
+											  final MeteoMetrics metrics) {
+		_renderer = renderer;
+		City[] cities = City.values();
+		_allCitiesConnections = new Set[LANGUAGES.length];
+		_cityConnections = new Set[LANGUAGES.length][cities.length];
+		for (int l=0; l < LANGUAGES.length; l++) {
+			_allCitiesConnections[l] = Collections.newSetFromMap(new ConcurrentHashMap<StreamConnection,Boolean>());
+			for (City city : cities) {
+				_cityConnections[l][city.ordinal()] = Collections.newSetFromMap(new ConcurrentHashMap<StreamConnection,Boolean>());
+			}
+		}
+		_writers = Executors.newFixedThreadPool(Integer.getInteger(WRITER_THREADS_PROPERTY,DEFAULT_WRITER_THREADS),
+												new ThreadFactoryBuilder().setNameFormat("meteo-stream-writer-%d")
+																		  .setDaemon(true)
+																		  .build());
+		_watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("meteo-stream-watchdog")
+																						 .setDaemon(true)
+																						 .build());
+		_writeTimeoutMillis = TimeUnit.SECONDS.toMillis(Long.getLong(WRITE_TIMEOUT_PROPERTY,DEFAULT_WRITE_TIMEOUT_SECONDS));
+		long heartbeatSeconds = Long.getLong(HEARTBEAT_PROPERTY,DEFAULT_HEARTBEAT_SECONDS);
+		_watchdog.scheduleWithFixedDelay(new Runnable() {
+												@Override
+												public void run() {
+													_heartbeat();
+												}
+									     },
+									     heartbeatSeconds,heartbeatSeconds,TimeUnit.SECONDS);
+		long deadlineCheckMillis = Math.max(100,_writeTimeoutMillis / 2);
+		_watchdog.scheduleWithFixedDelay(new Runnable() {
+												@Override
+												public void run() {
+													_dropStalledWrites();
+												}
+									     },
+									     deadlineCheckMillis,deadlineCheckMillis,TimeUnit.MILLISECONDS);
+		_pushedEvents = metrics.counter("meteo_stream_events_total","Forecast change events queued to the stream clients");
+		_slowClients = metrics.counter("meteo_stream_slow_clients_total","Stream clients disconnected because they did NOT keep up with the events");
+		_stalledClients = metrics.counter("meteo_stream_stalled_clients_total","Stream clients disconnected because a write did NOT finish in time");
+		metrics.gauge("meteo_stream_connections","Open forecast changes stream connections",
+					  new MeteoMetrics.Gauge() {
+							@Override
+							public double value() {
+								return _connectionCount.get();
+							}
+					  });
+		weatherService.addSnapshotListener(this);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  SUBSCRIPTION
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @param lang
+	 * @return true if the forecast changes can be subscribed in the given language
+	 */
+	public static boolean isPublished(final Language lang) {
+		return _langIndex(lang) >= 0;
+	}
+	/**
+	 * Subscribes a suspended request to the forecast changes
+	 * (the current forecast is sent right away unless the client already has it)
+	 * <pre>
+	 * IMPORTANT!	the response headers MUST be already set and the async timeout disabled
+	 * </pre>
+	 * @param async the suspended request
+	 * @param city the city or null for all the cities
+	 * @param lang the language (a published one)
+	 * @param lastEventId the Last-Event-ID sent by a reconnecting client (or null)
+	 */
+	public void subscribe(final AsyncContext async,
+						  final City city,final Language lang,
+						  final String lastEventId) {
+		final int langIdx = _langIndex(lang);
+		if (langIdx < 0) throw new IllegalArgumentException("The forecast changes are NOT published in " + lang);
+		final StreamConnection connection = new StreamConnection(async,city,langIdx);
+		async.addListener(new AsyncListener() {
+								@Override
+								public void onComplete(final AsyncEvent event) throws IOException {
+									_unsubscribe(connection);
+								}
+								@Override
+								public void onTimeout(final AsyncEvent event) throws IOException {
+									_close(connection);
+								}
+								@Override
+								public void onError(final AsyncEvent event) throws IOException {
+									_close(connection);
+								}
+								@Override
+								public void onStartAsync(final AsyncEvent event) throws IOException {
+									// nothing
+								}
+						  });
+		// subscribe BEFORE reading the current events: a change published meanwhile is NOT lost (at most it's sent twice)
+		(city != null ? _cityConnections[langIdx][city.ordinal()] : _allCitiesConnections[langIdx]).add(connection);
+		_connectionCount.incrementAndGet();
+		_enqueue(connection,RETRY);
+
+		CityEvents current = _current;
+		if (current != null && !String.valueOf(current.getVersion()).equals(lastEventId)) {
+			if (city != null) {
+				_enqueue(connection,current.eventFor(langIdx,city));
+			} else {
+				for (City each : City.values()) _enqueue(connection,current.eventFor(langIdx,each));
+			}
+		}
+	}
+	/**
+	 * Closes every connection and stops the writers (when the war is undeployed)
+	 */
+	public void stop() {
+		_watchdog.shutdownNow();
+		_writers.shutdownNow();
+		for (StreamConnection connection : _connections()) _close(connection);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CHANGES
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public synchronized void onSnapshotPublished(final WeatherForecastSnapshot snapshot) {
+		CityEvents previous = _current;
+		if (previous != null && snapshot.getLoadTimeStamp() <= previous.getVersion()) return;
+
+		CityEvents events = _eventsFor(snapshot);
+		_current = events;
+		int changed = 0;
+		for (int l=0; l < LANGUAGES.length; l++) {
+			for (City city : City.values()) {
+				byte[] event = events.eventFor(l,city);
+				if (event == null || (previous != null && Arrays.equals(previous.dataFor(l,city),events.dataFor(l,city)))) continue;
+				changed++;
+				for (StreamConnection connection : _cityConnections[l][city.ordinal()]) _enqueue(connection,event);
+				for (StreamConnection connection : _allCitiesConnections[l]) _enqueue(connection,event);
+			}
+		}
+		log.info("{} city forecasts changed: pushed to {} stream connections",changed,_connectionCount.get());
+	}
+	private CityEvents _eventsFor(final WeatherForecastSnapshot snapshot) {
+		City[] cities = City.values();
+		byte[][][] data = new byte[LANGUAGES.length][cities.length][];
+		byte[][][] events = new byte[LANGUAGES.length][cities.length][];
+		for (int l=0; l < LANGUAGES.length; l++) {
+			for (City city : cities) {
+				StringBuilder json = new StringBuilder(512);
+				json.append("{\"city\":\"").append(city.name()).append("\",\"forecasts\":[");
+				boolean first = true;
+				for (Day day : Day.values()) {
+					if (!snapshot.hasForecastFor(city,day)) continue;
+					if (!first) json.append(',');
+					json.append(new String(_renderer.render(snapshot.forecastSumaryFor(city,day,LANGUAGES[l]),
+															MeteoOpenDataForecastFormat.JSON),
+										   Charsets.UTF_8));
+					first = false;
+				}
+				if (first) continue;		// no forecast for the city: no event
+				json.append("]}");
+				data[l][city.ordinal()] = json.toString().getBytes(Charsets.UTF_8);
+				events[l][city.ordinal()] = ("id: " + snapshot.getLoadTimeStamp() + "\n" +
+											 "event: forecast\n" +
+											 "data: " + json + "\n\n").getBytes(Charsets.UTF_8);
+			}
+		}
+		return new CityEvents(snapshot.getLoadTimeStamp(),
+							  data,events);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FAN-OUT
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Queues an event at the connection and schedules a writer if it's NOT already scheduled
+	 * (it never blocks)
+	 */
+	private void _enqueue(final StreamConnection connection,
+						  final byte[] event) {
+		if (event == null || connection.isClosed()) return;
+		if (connection.getQueuedCount().incrementAndGet() > MAX_QUEUED_EVENTS) {
+			log.warn("A forecast changes stream client does NOT keep up: it's disconnected");
+			_slowClients.incrementAndGet();
+			_close(connection);
+			return;
+		}
+		connection.getQueue().offer(event);
+		if (event != HEARTBEAT && event != RETRY) _pushedEvents.incrementAndGet();
+		_scheduleWrite(connection);
+	}
+	private void _scheduleWrite(final StreamConnection connection) {
+		if (!connection.getWriteScheduled().compareAndSet(false,true)) return;	// the scheduled writer will write it
+		try {
+			_writers.execute(new Runnable() {
+									@Override
+									public void run() {
+										_write(connection);
+									}
+							 });
+		} catch (RejectedExecutionException rejEx) {
+			_close(connection);		// stopped
+		}
+	}
+	/**
+	 * Writes every queued event (only one writer per connection at a time)
+	 */
+	private void _write(final StreamConnection connection) {
+		connection.getWriteStartTimeStamp().set(System.currentTimeMillis());	// the write deadline is checked by the watchdog
+		try {
+			OutputStream os = connection.getAsync().getResponse().getOutputStream();
+			byte[] event = null;
+			while ((event = connection.getQueue().poll()) != null) {
+				connection.getQueuedCount().decrementAndGet();
+				os.write(event);
+			}
+			os.flush();
+		} catch (Throwable th) {
+			log.debug("The forecast changes stream client is gone: {}",th.getMessage());
+			_close(connection);
+			return;
+		} finally {
+			connection.getWriteStartTimeStamp().set(0);
+			connection.getWriteScheduled().set(false);
+		}
+		// an event queued while the writer was finishing
+		if (!connection.getQueue().isEmpty()) _scheduleWrite(connection);
+	}
+	private void _heartbeat() {
+		for (StreamConnection connection : _connections()) _enqueue(connection,HEARTBEAT);
+	}
+	/**
+	 * Disconnects the clients which write is in progress for longer than the write timeout
+	 * (completing the async context closes the connection so the blocked write fails and its writer thread is released)
+	 */
+	private void _dropStalledWrites() {
+		long now = System.currentTimeMillis();
+		for (StreamConnection connection : _connections()) {
+			long writeStart = connection.getWriteStartTimeStamp().get();
+			if (writeStart == 0 || now - writeStart < _writeTimeoutMillis) continue;
+			log.warn("A forecast changes stream write did NOT finish in {} millis: the client is disconnected",_writeTimeoutMillis);
+			_stalledClients.incrementAndGet();
+			_close(connection);
+		}
+	}
+	private Collection<StreamConnection> _connections() {
+		Collection<StreamConnection> outConnections = new ArrayList<StreamConnection>(_connectionCount.get());
+		for (int l=0; l < LANGUAGES.length; l++) {
+			outConnections.addAll(_allCitiesConnections[l]);
+			for (Set<StreamConnection> connections : _cityConnections[l]) outConnections.addAll(connections);
+		}
+		return outConnections;
+	}
+	private void _close(final StreamConnection connection) {
+		if (!connection.getClosed().compareAndSet(false,true)) return;
+		_unsubscribe(connection);
+		try {
+			connection.getAsync().complete();
+		} catch (IllegalStateException illStEx) {
+			log.debug("The forecast changes stream connection was already completed: {}",illStEx.getMessage());
+		}
+	}
+	private void _unsubscribe(final StreamConnection connection) {
+		connection.getClosed().set(true);
+		Set<StreamConnection> connections = connection.getCity() != null ? _cityConnections[connection.getLangIdx()][connection.getCity().ordinal()]
+																		 : _allCitiesConnections[connection.getLangIdx()];
+		if (connections.remove(connection)) _connectionCount.decrementAndGet();
+	}
+	private static int _langIndex(final Language lang) {
+		for (int l=0; l < LANGUAGES.length; l++) {
+			if (LANGUAGES[l] == lang) return l;
+		}
+		return -1;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The city events of a snapshot indexed by [lang][city]
+	 * <pre>
+	 * IMPORTANT!	the bytes arrays MUST NOT be modified
+	 * </pre>
+	 */
+	@Accessors(prefix="_")
+	private static class CityEvents {
+		/**
+		 * The snapshot load time stamp (used as event id)
+		 */
+		@Getter private final long _version;
+		/**
+		 * The events data (compared to detect the changes)
+		 */
+		private final byte[][][] _data;
+		/**
+		 * The whole events (id + event + data)
+		 */
+		private final byte[][][] _events;
+
+		CityEvents(final long version,
+				   final byte[][][] data,final byte[][][] events) {
+			_version = version;
+			_data = data;
+			_events = events;
+		}
+		byte[] dataFor(final int langIdx,final City city) {
+			return _data[langIdx][city.ordinal()];
+		}
+		byte[] eventFor(final int langIdx,final City city) {
+			return _events[langIdx][city.ordinal()];
+		}
+	}
+	/**
+	 * A subscribed connection
+	 */
+	@Accessors(prefix="_")
+	@Getter
+	private static class StreamConnection {
+		private final AsyncContext _async;
+		private final City _city;
+		private final int _langIdx;
+		private final Queue<byte[]> _queue = new ConcurrentLinkedQueue<byte[]>();
+		private final AtomicInteger _queuedCount = new AtomicInteger();
+		private final AtomicBoolean _writeScheduled = new AtomicBoolean();
+		/**
+		 * When the in progress write started (0 if NO write is in progress)
+		 */
+		private final AtomicLong _writeStartTimeStamp = new AtomicLong();
+		private final AtomicBoolean _closed = new AtomicBoolean();
+
+		StreamConnection(final AsyncContext async,
+						 final City city,final int langIdx) {
+			_async = async;
+			_city = city;
+			_langIdx = langIdx;
+		}
+		boolean isClosed() {
+			return _closed.get();
+		}
+	}
+}
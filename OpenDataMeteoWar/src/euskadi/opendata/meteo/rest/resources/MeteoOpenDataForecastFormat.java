@@ -0,0 +1,76 @@
+package euskadi.opendata.meteo.rest.resources;
+
+import java.util.List;
+
+import javax.ws.rs.core.MediaType;
+
+import com.google.common.base.Charsets;
+
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * The formats a forecast can be returned in
+ */
+@Accessors(prefix="_")
+public enum MeteoOpenDataForecastFormat {
+	XML(MediaType.valueOf(MediaType.APPLICATION_XML + ";charset=UTF-8"),
+		"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<forecastsForLocations>\n","\n","\n</forecastsForLocations>"),
+	HTML(MediaType.valueOf(MediaType.APPLICATION_XHTML_XML + ";charset=UTF-8"),
+		 "<div class='forecasts'>\n","\n","\n</div>"),
+	JSON(MediaType.valueOf(MediaType.APPLICATION_JSON + ";charset=UTF-8"),
+		 "[",",\n","]");
+
+	@Getter private final MediaType _mediaType;
+	/**
+	 * How a response with many forecasts starts, separates the forecasts and ends
+	 */
+	@Getter private final byte[] _bulkStart;
+	@Getter private final byte[] _bulkSeparator;
+	@Getter private final byte[] _bulkEnd;
+
+	private MeteoOpenDataForecastFormat(final MediaType mediaType,
+										final String bulkStart,final String bulkSeparator,final String bulkEnd) {
+		_mediaType = mediaType;
+		_bulkStart = bulkStart.getBytes(Charsets.UTF_8);
+		_bulkSeparator = bulkSeparator.getBytes(Charsets.UTF_8);
+		_bulkEnd = bulkEnd.getBytes(Charsets.UTF_8);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Returns the format from the format query param: xml, json or anything else (html)
+	 * @param format
+	 * @return
+	 */
+	public static MeteoOpenDataForecastFormat fromFormatParam(final String format) {
+		if (format != null && format.equals("xml")) return XML;
+		if (format != null && format.equals("json")) return JSON;
+		return HTML;
+	}
+	/**
+	 * Returns the format to be used:
+	 * <ul>
+	 * 		<li>if the format query param is given, it wins</li>
+	 * 		<li>otherwise the first accepted media type (they're sorted by quality) that's one of the formats</li>
+	 * 		<li>otherwise (ie: Accept: *&#47;*) html</li>
+	 * </ul>
+	 * @param format the format query param
+	 * @param acceptedMediaTypes the Accept header media types sorted by quality
+	 * @return
+	 */
+	public static MeteoOpenDataForecastFormat negotiate(final String format,
+														final List<MediaType> acceptedMediaTypes) {
+		if (format != null) return MeteoOpenDataForecastFormat.fromFormatParam(format);
+		if (acceptedMediaTypes != null) {
+			for (MediaType accepted : acceptedMediaTypes) {
+				if (accepted.isWildcardType() || accepted.isWildcardSubtype()) continue;
+				for (MeteoOpenDataForecastFormat outFormat : MeteoOpenDataForecastFormat.values()) {
+					if (outFormat.getMediaType().isCompatible(accepted)) return outFormat;
+				}
+			}
+		}
+		return HTML;
+	}
+}
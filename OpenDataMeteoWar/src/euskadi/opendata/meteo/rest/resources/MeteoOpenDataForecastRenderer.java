@@ -0,0 +1,195 @@
+package euskadi.opendata.meteo.rest.resources;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.base.Charsets;
+
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.model.meteo.ForecastForDay;
+import euskadi.opendata.model.meteo.ForecastForDayMapSymbol;
+import euskadi.opendata.model.meteo.ForecastForLocationSummary;
+import euskadi.opendata.service.meteo.MeteoMetrics;
+import euskadi.opendata.service.meteo.MeteoModelXmlWriter;
+import euskadi.opendata.util.JSONStreamWriter;
+import euskadi.opendata.util.LatencyHistogram;
+
+/**
+ * Renders a {@link ForecastForLocationSummary} in every {@link MeteoOpenDataForecastFormat}
+ * and a day forecast map ({@link ForecastForDay}) in html or json
+ */
+@Singleton
+public class MeteoOpenDataForecastRenderer {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The render latency by format (indexed by ordinal)
+	 */
+	private final LatencyHistogram[] _renderLatency;
+	/**
+	 * The html images point to the local (cached) copy of the opendata images
+	 */
+	private final MeteoOpenDataImageProxy _images;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	public MeteoOpenDataForecastRenderer(final MeteoMetrics metrics,
+										 final MeteoOpenDataImageProxy images) {
+		_images = images;
+		// the xml is written by the generated MeteoModelXmlWriter: no marshaller is needed
+		MeteoOpenDataForecastFormat[] formats = MeteoOpenDataForecastFormat.values();
+		_renderLatency = new LatencyHistogram[formats.length];
+		for (MeteoOpenDataForecastFormat format : formats) {
+			_renderLatency[format.ordinal()] = metrics.latency("meteo_render_seconds","Time to render a city forecast",
+															   "format",format.name());
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Renders the forecast in the given format
+	 * @param forecast
+	 * @param format
+	 * @return the UTF-8 encoded forecast
+	 */
+	public byte[] render(final ForecastForLocationSummary forecast,
+						 final MeteoOpenDataForecastFormat format) {
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+			this.renderTo(forecast,format,
+						  bos);
+			return bos.toByteArray();
+		} catch (IOException ioEx) {
+			throw new IllegalStateException(ioEx);		// cannot happen writing to memory
+		}
+	}
+	/**
+	 * Writes the forecast in the given format to a stream
+	 * @param forecast
+	 * @param format
+	 * @param os
+	 * @throws IOException
+	 */
+	public void renderTo(final ForecastForLocationSummary forecast,
+						 final MeteoOpenDataForecastFormat format,
+						 final OutputStream os) throws IOException {
+		long start = System.nanoTime();
+		Writer writer = new OutputStreamWriter(os,Charsets.UTF_8);
+		switch(format) {
+		case XML:
+			writer.write(MeteoModelXmlWriter.xmlFromBean(forecast));
+			break;
+		case HTML:
+			writer.write(_forecastToHTML(forecast));
+			break;
+		case JSON:
+			_forecastToJSON(forecast,
+							new JSONStreamWriter(writer));
+			break;
+		default:
+			throw new IllegalArgumentException("Unsupported format " + format);
+		}
+		writer.flush();
+		_renderLatency[format.ordinal()].recordSince(start);
+	}
+	/**
+	 * Renders the forecast map of a day: the map image and the symbols placed over it
+	 * (there's NO xml format: the {@link MeteoOpenDataForecastFormat#XML} format is rendered as html)
+	 * @param day
+	 * @param dayForecast
+	 * @param format
+	 * @return the UTF-8 encoded map
+	 */
+	public byte[] renderMap(final Day day,final ForecastForDay dayForecast,
+							final MeteoOpenDataForecastFormat format) {
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+			Writer writer = new OutputStreamWriter(bos,Charsets.UTF_8);
+			if (format == MeteoOpenDataForecastFormat.JSON) {
+				_mapToJSON(day,dayForecast,
+						   new JSONStreamWriter(writer));
+			} else {
+				writer.write(_mapToHTML(dayForecast));
+			}
+			writer.flush();
+			return bos.toByteArray();
+		} catch (IOException ioEx) {
+			throw new IllegalStateException(ioEx);		// cannot happen writing to memory
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static void _forecastToJSON(final ForecastForLocationSummary forecast,
+										final JSONStreamWriter json) throws IOException {
+		json.beginObject()
+				.name("city").value(forecast.getCity() != null ? forecast.getCity().name() : null)
+				.name("cityCode").value(forecast.getCity() != null ? forecast.getCity().getCode() : null)
+				.name("day").value(forecast.getDay() != null ? forecast.getDay().name() : null)
+				.name("date").value(forecast.getDate() != null ? new SimpleDateFormat("dd/MM/yyyy").format(forecast.getDate()) : null)
+				.name("summary").value(forecast.getSummary())
+				.name("tempMin").value(forecast.getTempMin())
+				.name("tempMax").value(forecast.getTempMax())
+				.name("symbolPath").value(forecast.getSymbolPath() != null ? forecast.getSymbolPath().asAbsoluteString() : null)
+				.name("symbolDescription").value(forecast.getSymbolDescription())
+			.endObject();
+	}
+	private void _mapToJSON(final Day day,final ForecastForDay dayForecast,
+							final JSONStreamWriter json) throws IOException {
+		json.beginObject()
+				.name("day").value(day.name())
+				.name("date").value(dayForecast.getDate() != null ? new SimpleDateFormat("dd/MM/yyyy").format(dayForecast.getDate()) : null)
+				.name("mapImage").value(_images.localUrlFor(dayForecast.getMapImage()))
+				.name("symbols").beginArray();
+		if (dayForecast.getMapSymbols() != null) {
+			for (ForecastForDayMapSymbol symbol : dayForecast.getMapSymbols()) {
+				json.beginObject()
+						.name("positionX").value(symbol.getPositionX())
+						.name("positionY").value(symbol.getPositionY())
+						.name("width").value(symbol.getWidth())
+						.name("height").value(symbol.getHeight())
+						.name("image").value(_images.localUrlFor(symbol.getImagePath()))
+					.endObject();
+			}
+		}
+		json.endArray()
+			.endObject();
+	}
+	private String _mapToHTML(final ForecastForDay dayForecast) {
+		StringBuilder outHTML = new StringBuilder(1000);
+		outHTML.append("<div class='forecastMap' style='position:relative'>\n");
+		if (dayForecast.getMapImage() != null) {
+			outHTML.append("\t<img src='").append(_images.localUrlFor(dayForecast.getMapImage())).append("' alt='").append(dayForecast.getForeCastDateText()).append("'/>\n");
+		}
+		if (dayForecast.getMapSymbols() != null) {
+			for (ForecastForDayMapSymbol symbol : dayForecast.getMapSymbols()) {
+				outHTML.append("\t<img class='mapSymbol' src='").append(_images.localUrlFor(symbol.getImagePath())).append("'")
+					   .append(" style='position:absolute;left:").append(symbol.getPositionX()).append("px;top:").append(symbol.getPositionY()).append("px;")
+					   					   .append("width:").append(symbol.getWidth()).append("px;height:").append(symbol.getHeight()).append("px'/>\n");
+			}
+		}
+		outHTML.append("</div>");
+		return outHTML.toString();
+	}
+	private String _forecastToHTML(final ForecastForLocationSummary forecast) {
+		String symbolPath = _images.localUrlFor(forecast.getSymbolPath());
+		
+		StringBuilder outHTML = new StringBuilder(1000);
+		outHTML.append("<div class='forecast'>\n")
+			   .append("\t<p class='lead'>").append(forecast.getSummary()).append("</p>\n")
+			   .append("\t<img src='").append(symbolPath).append("' alt='").append(forecast.getSymbolDescription()).append("'/>\n")
+			   .append("\t<span class='temp'>").append(forecast.getTempMin()).append(" - ").append(forecast.getTempMax()).append("</span>\n")
+			   .append("</div>");
+		return outHTML.toString();
+	}
+}
@@ -0,0 +1,92 @@
+package euskadi.opendata.meteo.rest.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataRenderedForecastCache.RenderedForecast;
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataRenderedForecastCache.RenderedForecasts;
+import euskadi.opendata.model.meteo.City;
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.service.meteo.WeatherForecastSnapshot;
+import r01f.locale.Language;
+
+/**
+ * Streams the forecasts for many cities / days in a single response
+ * The forecasts are written one by one as they're got (the response is NOT built in memory):
+ * <ul>
+ * 		<li>the pre-rendered forecasts are written as they are</li>
+ * 		<li>the forecasts that are NOT pre-rendered are rendered from the SAME snapshot</li>
+ * </ul>
+ * The cities / days without forecast are skipped
+ */
+public class MeteoOpenDataForecastsStreamingOutput
+  implements StreamingOutput {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private final Collection<City> _cities;
+	private final Collection<Day> _days;
+	private final Language _lang;
+	private final MeteoOpenDataForecastFormat _format;
+	/**
+	 * The pre-rendered forecasts (might be null if nothing was rendered yet)
+	 */
+	private final RenderedForecasts _prerendered;
+	/**
+	 * The snapshot the not pre-rendered forecasts are rendered from
+	 */
+	private final WeatherForecastSnapshot _snapshot;
+	private final MeteoOpenDataForecastRenderer _renderer;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	public MeteoOpenDataForecastsStreamingOutput(final Collection<City> cities,final Collection<Day> days,
+												 final Language lang,final MeteoOpenDataForecastFormat format,
+												 final RenderedForecasts prerendered,
+												 final WeatherForecastSnapshot snapshot,
+												 final MeteoOpenDataForecastRenderer renderer) {
+		if (prerendered != null && prerendered.getSnapshot() != snapshot) throw new IllegalArgumentException("The pre-rendered forecasts were NOT rendered from the given snapshot");
+		_cities = cities;
+		_days = days;
+		_lang = lang;
+		_format = format;
+		_prerendered = prerendered;
+		_snapshot = snapshot;
+		_renderer = renderer;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public void write(final OutputStream os) throws IOException,
+													WebApplicationException {
+		os.write(_format.getBulkStart());
+		boolean first = true;
+		for (City city : _cities) {
+			for (Day day : _days) {
+				RenderedForecast rendered = _renderedFor(city,day);
+				if (rendered == null) continue;
+				if (!first) os.write(_format.getBulkSeparator());
+				rendered.writeFragmentTo(os);
+				first = false;
+			}
+		}
+		os.write(_format.getBulkEnd());
+		os.flush();
+	}
+	private RenderedForecast _renderedFor(final City city,final Day day) {
+		if (!_snapshot.hasForecastFor(city,day)) return null;
+
+		RenderedForecast outRendered = _prerendered != null ? _prerendered.renderedFor(city,day,_lang,_format)
+															: null;
+		if (outRendered == null) {
+			outRendered = new RenderedForecast(_renderer.render(_snapshot.forecastSumaryFor(city,day,_lang),_format),
+											   _format.getMediaType());
+		}
+		return outRendered;
+	}
+}
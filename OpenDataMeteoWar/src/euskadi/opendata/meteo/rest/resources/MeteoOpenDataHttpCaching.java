@@ -0,0 +1,82 @@
+package euskadi.opendata.meteo.rest.resources;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import euskadi.opendata.service.meteo.WeatherForecastSnapshot;
+
+/**
+ * HTTP caching for the forecast responses:
+ * <ul>
+ * 		<li>a strong ETag built from the snapshot content hash and the response variant (city, day, language, format...)</li>
+ * 		<li>Last-Modified: when the snapshot forecast was last modified</li>
+ * 		<li>Cache-Control max-age: the time left until the next scheduled refresh (the forecast won't change before)</li>
+ * 		<li>Warning: 110 if the forecast is stale (the opendata server is failing and the last loaded forecast is served)</li>
+ * </ul>
+ * The conditional requests are evaluated BEFORE anything is rendered
+ */
+public class MeteoOpenDataHttpCaching {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private final EntityTag _entityTag;
+	private final Date _lastModified;
+	private final CacheControl _cacheControl;
+	private final boolean _stale;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @param snapshot the snapshot the response is built from
+	 * @param variant identifies the response among all the responses built from the same snapshot
+	 * @param nextRefreshTimeStamp when the next forecast refresh is scheduled
+	 * @param stale true if the last forecast refresh failed
+	 */
+	public MeteoOpenDataHttpCaching(final WeatherForecastSnapshot snapshot,
+									final String variant,
+									final long nextRefreshTimeStamp,
+									final boolean stale) {
+		String contentHash = snapshot.getContentHash();
+		_entityTag = new EntityTag(contentHash.substring(0,Math.min(16,contentHash.length())) + "-" +
+								   Hashing.murmur3_32().hashString(variant,Charsets.UTF_8));
+		_lastModified = new Date(snapshot.getLastModified() / 1000 * 1000);	// http dates have no millis
+		_cacheControl = new CacheControl();
+		_cacheControl.setMaxAge((int)Math.max(0,TimeUnit.MILLISECONDS.toSeconds(nextRefreshTimeStamp - System.currentTimeMillis())));
+		_cacheControl.setMustRevalidate(true);
+		_stale = stale;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Evaluates the request preconditions (If-None-Match, If-Modified-Since...)
+	 * @param request
+	 * @return a 304 Not Modified response if the client has an up to date copy or null if the response must be built
+	 */
+	public ResponseBuilder evaluatePreconditions(final Request request) {
+		ResponseBuilder notModified = request.evaluatePreconditions(_lastModified,_entityTag);
+		return notModified != null ? this.withValidators(notModified)
+								   : null;
+	}
+	/**
+	 * Sets the validators and the caching headers
+	 * @param response
+	 * @return
+	 */
+	public ResponseBuilder withValidators(final ResponseBuilder response) {
+		return response.tag(_entityTag)
+					   .lastModified(_lastModified)
+					   .cacheControl(_cacheControl)
+					   .header("Vary",HttpHeaders.ACCEPT + "," + HttpHeaders.ACCEPT_ENCODING)	// the format and the encoding are negotiated
+					   .header("Warning",_stale ? "110 - \"Response is Stale\"" : null);			// a null value means no header
+	}
+}
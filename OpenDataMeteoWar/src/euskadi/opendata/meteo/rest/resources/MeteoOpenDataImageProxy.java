@@ -0,0 +1,304 @@
+package euskadi.opendata.meteo.rest.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.ServletContext;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import euskadi.opendata.service.meteo.MeteoMetrics;
+import euskadi.opendata.service.meteo.WeatherForecastServiceConfig;
+import euskadi.opendata.util.LatencyHistogram;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import r01f.types.Path;
+
+/**
+ * Fetches the forecast images (symbols, maps...) from the opendata server ONCE and keeps them
+ * in a bounded in-memory cache so the browsers get them from the war instead of the opendata server
+ * <ul>
+ * 		<li>the cache is bounded by the images size: the least recently used images are evicted</li>
+ * 		<li>the entries expire so an image that changes keeping its path (ie: the forecast maps) is fetched again</li>
+ * 		<li>concurrent requests for the same image share a single fetch</li>
+ * 		<li>the local url includes the image content version so it can be cached by the browsers forever</li>
+ * 		<li>a failed fetch is remembered for a short time so an unavailable opendata server is NOT asked again
+ * 			by every request</li>
+ * </ul>
+ * <pre>
+ * IMPORTANT!	ONLY the opendata images (/contenidos/...gif|jpg|png) are proxied: it's NOT an open proxy
+ * IMPORTANT!	The html renders (see {@link #localUrlFor(Path)}) NEVER wait for an image: while an image is NOT cached
+ * 				an unversioned local url is used (the images endpoint fetches it on demand) and the image is fetched
+ * 				in the background
+ * </pre>
+ * The local images base url (by default {war context path}/weatherforecasts/images), the cache size and the server the images
+ * are fetched from can be set using
+ * -Dopendata.meteo.imagesBaseUrl=/meteo/weatherforecasts/images -Dopendata.meteo.imageCacheMaxBytes=8388608
+ * -Dopendata.meteo.imagesUpstreamUrl=http://opendata.euskadi.eus
+ */
+@Slf4j
+@Singleton
+@Accessors(prefix="_")
+public class MeteoOpenDataImageProxy {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static final String IMAGES_BASE_URL_PROPERTY = "opendata.meteo.imagesBaseUrl";
+	public static final String CACHE_MAX_BYTES_PROPERTY = "opendata.meteo.imageCacheMaxBytes";
+	public static final String UPSTREAM_URL_PROPERTY = "opendata.meteo.imagesUpstreamUrl";
+	private static final String IMAGES_PATH = "/weatherforecasts/images";
+	private static final long DEFAULT_CACHE_MAX_BYTES = 8 * 1024 * 1024;
+	private static final long EXPIRE_MINUTES = 15;
+	/**
+	 * The time a failed fetch is remembered (the image is NOT fetched again meanwhile)
+	 */
+	private static final long FAILURE_EXPIRE_SECONDS = 60;
+	private static final int WARMER_THREADS = 2;
+
+	private static final String DEFAULT_UPSTREAM_URL = "http://opendata.euskadi.eus";
+	private static final Pattern ALLOWED_PATH = Pattern.compile("/contenidos/[A-Za-z0-9_\\-/.]+\\.(gif|jpg|jpeg|png)",
+																Pattern.CASE_INSENSITIVE);
+	/**
+	 * The weight of a not found image (so the not found paths do NOT fill the cache)
+	 */
+	private static final int NOT_FOUND_WEIGHT = 128;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Getter private final String _imagesBaseUrl;
+	@Getter private final String _upstreamUrl;
+	private final int _connectTimeoutMillis;
+	private final int _readTimeoutMillis;
+	/**
+	 * The images by path (absent if the opendata server answered 404)
+	 */
+	private final LoadingCache<String,Optional<ProxiedImage>> _images;
+	/**
+	 * The images that could NOT be fetched recently
+	 */
+	private final Cache<String,IOException> _failures;
+	/**
+	 * Fetches the images NOT cached when a html is rendered (see {@link #localUrlFor(Path)})
+	 */
+	private final ExecutorService _warmer;
+	private final Set<String> _warming = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+	private final LatencyHistogram _fetchLatency;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	public MeteoOpenDataImageProxy(final WeatherForecastServiceConfig config,
+								   final MeteoMetrics metrics,
+								   final ServletContext servletContext) {
+		_imagesBaseUrl = System.getProperty(IMAGES_BASE_URL_PROPERTY,servletContext.getContextPath() + IMAGES_PATH).replaceAll("/+$","");
+		_upstreamUrl = System.getProperty(UPSTREAM_URL_PROPERTY,DEFAULT_UPSTREAM_URL).replaceAll("/+$","");
+		_connectTimeoutMillis = (int)config.getConnectTimeoutMillis();
+		_readTimeoutMillis = (int)config.getReadTimeoutMillis();
+		_images = CacheBuilder.newBuilder()
+							  .maximumWeight(Long.getLong(CACHE_MAX_BYTES_PROPERTY,DEFAULT_CACHE_MAX_BYTES))
+							  .weigher(new Weigher<String,Optional<ProxiedImage>>() {
+												@Override
+												public int weigh(final String path,final Optional<ProxiedImage> image) {
+													return image.isPresent() ? image.get().getBytes().length
+																			 : NOT_FOUND_WEIGHT;
+												}
+							  		   })
+							  .expireAfterWrite(EXPIRE_MINUTES,TimeUnit.MINUTES)
+							  .recordStats()
+							  .build(new CacheLoader<String,Optional<ProxiedImage>>() {
+												@Override
+												public Optional<ProxiedImage> load(final String path) throws IOException {
+													return _fetch(path);
+												}
+							  		 });
+		_failures = CacheBuilder.newBuilder()
+								.maximumSize(1000)
+								.expireAfterWrite(FAILURE_EXPIRE_SECONDS,TimeUnit.SECONDS)
+								.build();
+		_warmer = Executors.newFixedThreadPool(WARMER_THREADS,
+											   new ThreadFactoryBuilder().setNameFormat("meteo-image-warmer-%d")
+											   							 .setDaemon(true)
+											   							 .build());
+		_fetchLatency = metrics.latency("meteo_image_fetch_seconds","Time to fetch an image from the opendata server");
+		metrics.gauge("meteo_image_cache_hit_ratio","Proxied images served from the cache / all the proxied images requests",
+					  new MeteoMetrics.Gauge() {
+							@Override
+							public double value() {
+								return _images.stats().requestCount() > 0 ? _images.stats().hitRate()
+																		  : Double.NaN;
+							}
+					  });
+		metrics.gauge("meteo_image_cache_evictions","Proxied images evicted from the cache",
+					  new MeteoMetrics.Gauge() {
+							@Override
+							public double value() {
+								return _images.stats().evictionCount();
+							}
+					  });
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @param path the image path at the opendata server (ie: /contenidos/recurso_tecnico/tdtrtc/es_web/images/03.gif)
+	 * @return true if the image can be proxied
+	 */
+	public static boolean isProxied(final String path) {
+		return path != null && !path.contains("..") && ALLOWED_PATH.matcher(path).matches();
+	}
+	/**
+	 * Returns the image (it's fetched if it's NOT cached)
+	 * @param path the image path at the opendata server
+	 * @return the image or null if the opendata server does NOT have it
+	 * @throws IOException if the image could NOT be fetched
+	 * @throws IllegalArgumentException if the path is NOT a proxied image path
+	 */
+	public ProxiedImage imageAt(final String path) throws IOException {
+		if (!isProxied(path)) throw new IllegalArgumentException("The path " + path + " is NOT an opendata image");
+		IOException failure = _failures.getIfPresent(path);
+		if (failure != null) throw failure;
+		try {
+			return _images.get(path).orNull();
+		} catch (ExecutionException exEx) {
+			IOException ioEx = exEx.getCause() instanceof IOException ? (IOException)exEx.getCause()
+																	  : new IOException(exEx.getCause());
+			_failures.put(path,ioEx);
+			throw ioEx;
+		}
+	}
+	/**
+	 * Returns the local url of an opendata image: if the image is cached the url includes its version
+	 * (so it can be cached by the browsers forever); otherwise the unversioned local url is returned
+	 * (the images endpoint fetches the image on demand) and the image is fetched in the background
+	 * <pre>
+	 * IMPORTANT!	It NEVER blocks: it's called while rendering (ie: by the feed refresher while pre-rendering)
+	 * 				so the pre-rendered responses usually have unversioned urls: they're rendered once per changed
+	 * 				snapshot, likely before the images are cached
+	 * </pre>
+	 * @param path the image path at the opendata server
+	 * @return
+	 */
+	public String localUrlFor(final Path path) {
+		if (path == null) return null;
+		String thePath = path.asAbsoluteString();
+		if (!isProxied(thePath)) return _upstreamUrl + thePath;
+		Optional<ProxiedImage> image = _images.getIfPresent(thePath);
+		if (image != null && image.isPresent()) return _imagesBaseUrl + thePath + "?v=" + image.get().getVersion();
+		if (image == null && _failures.getIfPresent(thePath) == null) _warm(thePath);
+		return _imagesBaseUrl + thePath;
+	}
+	/**
+	 * @param path the image path at the opendata server
+	 * @return the opendata server url of the image
+	 */
+	public String upstreamUrlFor(final String path) {
+		return _upstreamUrl + path;
+	}
+	/**
+	 * Stops the background image fetches
+	 */
+	public void stop() {
+		_warmer.shutdownNow();
+	}
+	private void _warm(final String path) {
+		if (!_warming.add(path)) return;		// already being fetched
+		try {
+			_warmer.execute(new Runnable() {
+									@Override
+									public void run() {
+										try {
+											MeteoOpenDataImageProxy.this.imageAt(path);
+										} catch (IOException ioEx) {
+											log.warn("Could NOT fetch the image {}: {}",path,ioEx.getMessage());
+										} finally {
+											_warming.remove(path);
+										}
+									}
+							});
+		} catch (RejectedExecutionException rejEx) {
+			_warming.remove(path);				// stopped
+		}
+	}
+	private Optional<ProxiedImage> _fetch(final String path) throws IOException {
+		long start = System.nanoTime();
+		HttpURLConnection conn = (HttpURLConnection)new URL(_upstreamUrl + path).openConnection();
+		conn.setConnectTimeout(_connectTimeoutMillis);
+		conn.setReadTimeout(_readTimeoutMillis);
+		try {
+			int status = conn.getResponseCode();
+			if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+				log.warn("The image {} was NOT found at {}",path,_upstreamUrl);
+				return Optional.absent();
+			}
+			if (status != HttpURLConnection.HTTP_OK) throw new IOException("HTTP " + status + " fetching the image " + path);
+			InputStream is = conn.getInputStream();
+			try {
+				byte[] bytes = ByteStreams.toByteArray(is);
+				String contentType = conn.getContentType() != null && conn.getContentType().startsWith("image/") ? conn.getContentType()
+																													: _contentTypeOf(path);
+				return Optional.of(new ProxiedImage(bytes,contentType,
+													Hashing.sha1().hashBytes(bytes).toString().substring(0,16)));
+			} finally {
+				is.close();
+			}
+		} catch (IOException ioEx) {
+			conn.disconnect();
+			throw ioEx;
+		} finally {
+			_fetchLatency.recordSince(start);
+		}
+	}
+	private static String _contentTypeOf(final String path) {
+		String lowerPath = path.toLowerCase();
+		if (lowerPath.endsWith(".gif")) return "image/gif";
+		if (lowerPath.endsWith(".png")) return "image/png";
+		return "image/jpeg";
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * An immutable proxied image
+	 * <pre>
+	 * IMPORTANT!	the bytes array MUST NOT be modified
+	 * </pre>
+	 */
+	@Accessors(prefix="_")
+	public static class ProxiedImage {
+		@Getter private final byte[] _bytes;
+		@Getter private final String _contentType;
+		/**
+		 * A hash of the image content
+		 */
+		@Getter private final String _version;
+
+		ProxiedImage(final byte[] bytes,final String contentType,
+					 final String version) {
+			_bytes = bytes;
+			_contentType = contentType;
+			_version = version;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package euskadi.opendata.meteo.rest.resources;
+
+import java.io.IOException;
+import java.net.URI;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
+
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataImageProxy.ProxiedImage;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves the opendata images (forecast symbols, maps...) from the {@link MeteoOpenDataImageProxy} cache
+ * <ul>
+ * 		<li>if the url version (?v=) is the cached image version the image never changes: it's cached by the browsers for a year</li>
+ * 		<li>otherwise (no version or an old one) the image is cached for a short time</li>
+ * 		<li>if the image could NOT be fetched the browser is redirected to the opendata server</li>
+ * </ul>
+ */
+@Slf4j
+@Path("weatherforecasts/images")
+@Singleton
+@Accessors(prefix="_")
+public class MeteoOpenDataImagesRESTResource {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+	private static final String UNVERSIONED_CACHE_CONTROL = "public, max-age=900";		// the proxy cache expiry (the maps change keeping their path)
+	private static final String OUTDATED_CACHE_CONTROL = "public, max-age=60";
+/////////////////////////////////////////////////////////////////////////////////////////
+//  INJECTED STATUS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	private MeteoOpenDataImageProxy _images;
+
+/////////////////////////////////////////////////////////////////////////////////////////
+//  INJECTED STATUS PER REQUEST
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Context
+	private Request _request;
+
+/////////////////////////////////////////////////////////////////////////////////////////
+//  IMAGE
+// 	Ej: http://localhost:8080/OpenDataMeteoWar/weatherforecasts/images/contenidos/recurso_tecnico/tdtrtc/es_web/images/03.gif
+/////////////////////////////////////////////////////////////////////////////////////////
+	@GET @Path("{path: .+}")
+	public Response image(@PathParam("path") final String path,
+						  @QueryParam("v")	 final String version) {
+		String thePath = "/" + path;
+		if (!MeteoOpenDataImageProxy.isProxied(thePath)) return Response.status(Status.NOT_FOUND).build();
+
+		ProxiedImage image = null;
+		try {
+			image = _images.imageAt(thePath);
+		} catch (IOException ioEx) {
+			log.warn("Could NOT fetch the image {}: the browser is redirected to the opendata server ({})",thePath,ioEx.getMessage());
+			return Response.temporaryRedirect(URI.create(_images.upstreamUrlFor(thePath)))
+						   .header("Cache-Control","no-store")
+						   .build();
+		}
+		if (image == null) return Response.status(Status.NOT_FOUND).build();
+
+		String cacheControl = version == null ? UNVERSIONED_CACHE_CONTROL
+											  : version.equals(image.getVersion()) ? IMMUTABLE_CACHE_CONTROL
+													  							   : OUTDATED_CACHE_CONTROL;
+		EntityTag entityTag = new EntityTag(image.getVersion());
+		ResponseBuilder notModified = _request.evaluatePreconditions(entityTag);
+		ResponseBuilder response = notModified != null ? notModified
+													   : Response.ok(image.getBytes(),image.getContentType());
+		return response.tag(entityTag)
+					   .header("Cache-Control",cacheControl)
+					   .build();
+	}
+}
@@ -0,0 +1,41 @@
+package euskadi.opendata.meteo.rest.resources;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import euskadi.opendata.service.meteo.MeteoMetrics;
+import lombok.experimental.Accessors;
+
+/**
+ * Exposes the {@link MeteoMetrics} in the prometheus text format so a scraper can poll them
+ * (it's NOT suspended while the node is cold: the metrics are available before the first forecast is loaded)
+ */
+@Path("metrics")
+@Singleton
+@Accessors(prefix="_")
+public class MeteoOpenDataMetricsRESTResource {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  INJECTED STATUS
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	private MeteoMetrics _metrics;
+
+/////////////////////////////////////////////////////////////////////////////////////////
+//  METRICS
+// 	Ej: curl http://localhost:8080/OpenDataMeteoWar/metrics
+/////////////////////////////////////////////////////////////////////////////////////////
+	@GET
+	@Produces(MediaType.TEXT_PLAIN)
+	public Response metrics() {
+		return Response.ok()
+					   .entity(_metrics.asText())
+					   .type(MeteoMetrics.CONTENT_TYPE)
+					   .header("Cache-Control","no-store")
+					   .build();
+	}
+}
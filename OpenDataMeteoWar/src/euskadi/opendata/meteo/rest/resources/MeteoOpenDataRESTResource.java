@@ -1,21 +1,40 @@
 package euskadi.opendata.meteo.rest.resources;
 
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
+
+import com.google.common.base.Charsets;
 
 import euskadi.opendata.model.meteo.City;
 import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataRenderedForecastCache.RenderedForecast;
+import euskadi.opendata.meteo.rest.resources.MeteoOpenDataRenderedForecastCache.RenderedForecasts;
 import euskadi.opendata.model.meteo.ForecastForLocationSummary;
 import euskadi.opendata.service.meteo.WeatherForecastService;
+import euskadi.opendata.service.meteo.WeatherForecastSnapshot;
 import lombok.experimental.Accessors;
 import r01f.locale.Language;
 import r01f.locale.Languages;
@@ -25,10 +44,22 @@ import r01f.locale.Languages;
 @Accessors(prefix="_")
 public class MeteoOpenDataRESTResource {
 /////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The token required by the admin endpoints (they're disabled if it's NOT set)
+	 */
+	public static final String ADMIN_TOKEN_PROPERTY = "opendata.meteo.adminToken";
+	public static final String ADMIN_TOKEN_HEADER = "X-OpenData-Admin-Token";
+/////////////////////////////////////////////////////////////////////////////////////////
 //  INJECTED STATUS
 /////////////////////////////////////////////////////////////////////////////////////////
 	@Inject
 	private WeatherForecastService _weatherService;
+	@Inject
+	private MeteoOpenDataRenderedForecastCache _renderedForecasts;
+	@Inject
+	private MeteoOpenDataForecastRenderer _renderer;
 	
 //	@Inject @ModelObjectsMarshaller
 //	private Marshaller _marshaller;
@@ -38,59 +69,263 @@ public class MeteoOpenDataRESTResource {
 /////////////////////////////////////////////////////////////////////////////////////////
 	@Context
 	private HttpServletRequest _req;
+	@Context
+	private HttpHeaders _headers;
+	@Context
+	private Request _request;
 	
 /////////////////////////////////////////////////////////////////////////////////////////
 //  WEATHER FORECAST FOR A CITY
 // 	Ej: http://localhost:8080/OpenDataMeteoWar/weatherforecasts/2/today?lang=SPANISH
+// 	    curl -H "Accept: application/json" http://localhost:8080/OpenDataMeteoWar/weatherforecasts/2/today (or ?format=json)
 /////////////////////////////////////////////////////////////////////////////////////////
 	@GET @Path("{cityCode}/{when}") 
-	@Produces({MediaType.APPLICATION_XML,MediaType.APPLICATION_XHTML_XML})	
+	@Produces({MediaType.APPLICATION_XML,MediaType.APPLICATION_XHTML_XML,MediaType.APPLICATION_JSON})
 	public Response forecastForCityInXML(@PathParam("cityCode") final String cityCode,
 										 @PathParam("when") 	final String when,
 										 @QueryParam("lang")    final String lang,
 										 @QueryParam("format")	final String format) {
 		if (cityCode == null || when == null) throw new IllegalArgumentException("Either the city code or the day are NOT valid");
 		if (lang != null && !Languages.canBe(lang)) throw new IllegalArgumentException("The language " + lang + " is NOT a valid language");
-		
+
 
 		// Get the city and day
 		City city = City.fromCode(cityCode);
 		Day day = Day.fromCode(when);
 		Language theLang = lang == null ? Language.DEFAULT
 										: Language.fromName(lang);
-		MediaType mediaType = (format != null && format.equals("xml")) ? MediaType.APPLICATION_XML_TYPE
-																	   : MediaType.APPLICATION_XHTML_XML_TYPE;
+		MeteoOpenDataForecastFormat theFormat = MeteoOpenDataForecastFormat.negotiate(format,
+																					 _headers.getAcceptableMediaTypes());
+
+		// a single snapshot read: the pre-rendered forecasts and the snapshot they were rendered from
+		RenderedForecasts prerendered = _renderedForecasts.current();
+		WeatherForecastSnapshot snapshot = prerendered != null ? prerendered.getSnapshot()
+															   : _weatherService.currentSnapshot();
+		RenderedForecast rendered = prerendered != null ? prerendered.renderedFor(city,day,theLang,
+																				  theFormat)
+														: null;
 		
-		// Get the forecast
-		ForecastForLocationSummary locSummary = _weatherService.forecastSumaryFor(city,
-																				  day,
-																				  theLang);
+		// Only the pre-rendered forecasts are available compressed
+		MeteoOpenDataContentEncoding encoding = rendered != null ? MeteoOpenDataContentEncoding.negotiate(_headers.getRequestHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING))
+																 : MeteoOpenDataContentEncoding.IDENTITY;
+		if (rendered != null && rendered.getBytes(encoding) == null) encoding = MeteoOpenDataContentEncoding.IDENTITY;
 		
-		// Build a response
-		Object entity = null;
-		if (mediaType == MediaType.APPLICATION_XML_TYPE) {
-			entity = locSummary;					// the entity will be converted to XML at the ResponseTypeMapper
+		// Answer the conditional requests before rendering anything
+		MeteoOpenDataHttpCaching caching = new MeteoOpenDataHttpCaching(snapshot,
+																		city.getCode() + "/" + day.getCode() + "/" + theLang + "/" + theFormat + "/" + encoding,
+																		_weatherService.nextRefreshTimeStamp(),
+																		_weatherService.isStale());
+		ResponseBuilder notModified = caching.evaluatePreconditions(_request);
+		if (notModified != null) return notModified.build();
+
+		// Get the pre-rendered forecast
+		byte[] entity = null;
+		if (rendered != null) {
+			entity = rendered.getBytes(encoding);
 		} else {
-			entity = _forecastToHTML(locSummary);	// the entity is converted to HTML here
+			// not pre-rendered (ie: the forecast is not loaded yet or the language is not a published one)
+			ForecastForLocationSummary locSummary = snapshot.forecastSumaryFor(city,
+																			   day,
+																			   theLang);
+			entity = _renderer.render(locSummary,theFormat);
 		}
-		Response outResponse = Response.ok()
-									   .entity(entity)
-									   .type(mediaType)
-									   .build();
+
+		// Build a response
+		Response outResponse = caching.withValidators(Response.ok())
+									  .entity(entity)
+									  .type(theFormat.getMediaType())
+									  .header(HttpHeaders.CONTENT_ENCODING,encoding.getHeaderValue())	// a null value means no header
+									  .build();
 		return outResponse;
 	}
 /////////////////////////////////////////////////////////////////////////////////////////
-//  
+//  WEATHER FORECAST MAP FOR A DAY
+// 	Ej: http://localhost:8080/OpenDataMeteoWar/weatherforecasts/maps/today (or ?format=json)
+//	(the map & symbol images point to the local images proxy)
+/////////////////////////////////////////////////////////////////////////////////////////
+	@GET @Path("maps/{when}")
+	@Produces({MediaType.APPLICATION_XHTML_XML,MediaType.APPLICATION_JSON})
+	public Response forecastMap(@PathParam("when") 	 final String when,
+								@QueryParam("format") final String format) {
+		if (when == null) throw new IllegalArgumentException("The day is NOT valid");
+
+		Day day = Day.fromCode(when);
+		MeteoOpenDataForecastFormat theFormat = MeteoOpenDataForecastFormat.negotiate(format,
+																					 _headers.getAcceptableMediaTypes());
+		if (theFormat == MeteoOpenDataForecastFormat.XML) theFormat = MeteoOpenDataForecastFormat.HTML;	// there's NO xml map
+
+		WeatherForecastSnapshot snapshot = _weatherService.currentSnapshot();
+		MeteoOpenDataHttpCaching caching = new MeteoOpenDataHttpCaching(snapshot,
+																		"maps/" + day.getCode() + "/" + theFormat,
+																		_weatherService.nextRefreshTimeStamp(),
+																		_weatherService.isStale());
+		ResponseBuilder notModified = caching.evaluatePreconditions(_request);
+		if (notModified != null) return notModified.build();
+
+		byte[] entity = _renderer.renderMap(day,snapshot.forecastAt(day),
+											theFormat);
+		return caching.withValidators(Response.ok())
+					  .entity(entity)
+					  .type(theFormat.getMediaType())
+					  .build();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  WEATHER FORECAST FOR EVERY CITY AT EVERY DAY
+// 	Ej: http://localhost:8080/OpenDataMeteoWar/weatherforecasts/all/all?lang=SPANISH
+//	(all/all matches both all/{when} and {cityCode}/all with the same number of literal characters
+//	 so JAX-RS would pick any of them: this route has more literal characters so it always wins)
+/////////////////////////////////////////////////////////////////////////////////////////
+	@GET @Path("all/all")
+	@Produces({MediaType.APPLICATION_XML,MediaType.APPLICATION_XHTML_XML,MediaType.APPLICATION_JSON})
+	public Response forecastForAllCitiesAndDays(@QueryParam("lang")    final String lang,
+												@QueryParam("format")  final String format) {
+		return _forecastsFor(Arrays.asList(City.values()),Arrays.asList(Day.values()),
+							 lang,format);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  WEATHER FORECAST FOR EVERY CITY AT A DAY
+// 	Ej: http://localhost:8080/OpenDataMeteoWar/weatherforecasts/all/today?lang=SPANISH
+/////////////////////////////////////////////////////////////////////////////////////////
+	@GET @Path("all/{when}")
+	@Produces({MediaType.APPLICATION_XML,MediaType.APPLICATION_XHTML_XML,MediaType.APPLICATION_JSON})
+	public Response forecastForAllCities(@PathParam("when") 	final String when,
+										 @QueryParam("lang")    final String lang,
+										 @QueryParam("format")	final String format) {
+		if (when == null) throw new IllegalArgumentException("The day is NOT valid");
+		return _forecastsFor(Arrays.asList(City.values()),Arrays.asList(Day.fromCode(when)),
+							 lang,format);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  WEATHER FORECAST FOR A CITY AT EVERY DAY
+// 	Ej: http://localhost:8080/OpenDataMeteoWar/weatherforecasts/2/all?lang=SPANISH
+/////////////////////////////////////////////////////////////////////////////////////////
+	@GET @Path("{cityCode}/all")
+	@Produces({MediaType.APPLICATION_XML,MediaType.APPLICATION_XHTML_XML,MediaType.APPLICATION_JSON})
+	public Response forecastForAllDays(@PathParam("cityCode") final String cityCode,
+									   @QueryParam("lang")    final String lang,
+									   @QueryParam("format")  final String format) {
+		if (cityCode == null) throw new IllegalArgumentException("The city code is NOT valid");
+		return _forecastsFor(Arrays.asList(City.fromCode(cityCode)),Arrays.asList(Day.values()),
+							 lang,format);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  WEATHER FORECAST FOR MANY CITIES AND DAYS
+// 	Ej: http://localhost:8080/OpenDataMeteoWar/weatherforecasts?city=2,18&day=today&day=tomorrow&lang=SPANISH
+//		(if no city or no day is given, every city or every day is returned)
 /////////////////////////////////////////////////////////////////////////////////////////
-	private static String _forecastToHTML(final ForecastForLocationSummary forecast) {
-		String symbolPath = "http://opendata.euskadi.net" + forecast.getSymbolPath().asAbsoluteString();
+	@GET
+	@Produces({MediaType.APPLICATION_XML,MediaType.APPLICATION_XHTML_XML,MediaType.APPLICATION_JSON})
+	public Response forecastFor(@QueryParam("city")   final List<String> cityCodes,
+								@QueryParam("day")    final List<String> whens,
+								@QueryParam("lang")   final String lang,
+								@QueryParam("format") final String format) {
+		Set<City> cities = EnumSet.noneOf(City.class);
+		for (String code : _splitParams(cityCodes)) cities.add(City.fromCode(code));
+		Set<Day> days = EnumSet.noneOf(Day.class);
+		for (String code : _splitParams(whens)) days.add(Day.fromCode(code));
+
+		return _forecastsFor(cities.isEmpty() ? EnumSet.allOf(City.class) : cities,
+							 days.isEmpty() ? EnumSet.allOf(Day.class) : days,
+							 lang,format);
+	}
+	/**
+	 * Streams the forecasts for the given cities and days: all of them are got from the same snapshot
+	 * @param cities
+	 * @param days
+	 * @param lang
+	 * @param format
+	 * @return
+	 */
+	private Response _forecastsFor(final Collection<City> cities,final Collection<Day> days,
+								   final String lang,final String format) {
+		if (lang != null && !Languages.canBe(lang)) throw new IllegalArgumentException("The language " + lang + " is NOT a valid language");
+		Language theLang = lang == null ? Language.DEFAULT
+										: Language.fromName(lang);
+		MeteoOpenDataForecastFormat theFormat = MeteoOpenDataForecastFormat.negotiate(format,
+																					 _headers.getAcceptableMediaTypes());
+
+		// a single snapshot read: the pre-rendered forecasts and the snapshot they were rendered from
+		RenderedForecasts prerendered = _renderedForecasts.current();
+		WeatherForecastSnapshot snapshot = prerendered != null ? prerendered.getSnapshot()
+															   : _weatherService.currentSnapshot();
 		
-		StringBuilder outHTML = new StringBuilder(1000);
-		outHTML.append("<div class='forecast'>\n")
-			   .append("\t<p class='lead'>").append(forecast.getSummary()).append("</p>\n")
-			   .append("\t<img src='").append(symbolPath).append("' alt='").append(forecast.getSymbolDescription()).append("'/>\n")
-			   .append("\t<span class='temp'>").append(forecast.getTempMin()).append(" - ").append(forecast.getTempMax()).append("</span>\n")
-			   .append("</div>");
-		return outHTML.toString();
+		// Answer the conditional requests before streaming anything
+		MeteoOpenDataHttpCaching caching = new MeteoOpenDataHttpCaching(snapshot,
+																		cities + "/" + days + "/" + theLang + "/" + theFormat,
+																		_weatherService.nextRefreshTimeStamp(),
+																		_weatherService.isStale());
+		ResponseBuilder notModified = caching.evaluatePreconditions(_request);
+		if (notModified != null) return notModified.build();
+		
+		return caching.withValidators(Response.ok())
+					  .entity(new MeteoOpenDataForecastsStreamingOutput(cities,days,
+							   											theLang,theFormat,
+							   											prerendered,snapshot,
+							   											_renderer))
+					  .type(theFormat.getMediaType())
+					  .build();
+	}
+	/**
+	 * Splits the (possibly comma separated) param values
+	 * @param params
+	 * @return
+	 */
+	private static List<String> _splitParams(final List<String> params) {
+		if (params == null) return Collections.emptyList();
+		List<String> outParams = new ArrayList<String>();
+		for (String param : params) {
+			for (String value : param.split(",")) {
+				if (!value.trim().isEmpty()) outParams.add(value.trim());
+			}
+		}
+		return outParams;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  ADMIN: FORCE A FORECAST REFRESH
+// 	Ej: curl -X POST -H "X-OpenData-Admin-Token: {token}" http://localhost:8080/OpenDataMeteoWar/weatherforecasts/admin/refresh
+/////////////////////////////////////////////////////////////////////////////////////////
+	@POST @Path("admin/refresh")
+	@Produces(MediaType.TEXT_PLAIN)
+	public Response refreshForecast() {
+		Status notAllowed = _adminNotAllowed();
+		if (notAllowed != null) return Response.status(notAllowed).build();
+
+		boolean refreshed = _weatherService.refresh();
+		return Response.ok()
+					   .entity(refreshed ? "Weather forecast up to date"
+							   			 : "Could NOT refresh the weather forecast: the previous one is kept")
+					   .type(MediaType.TEXT_PLAIN_TYPE)
+					   .build();
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  ADMIN: FORECAST LOAD COUNTERS
+// 	Ej: curl -H "X-OpenData-Admin-Token: {token}" http://localhost:8080/OpenDataMeteoWar/weatherforecasts/admin/stats
+/////////////////////////////////////////////////////////////////////////////////////////
+	@GET @Path("admin/stats")
+	@Produces(MediaType.TEXT_PLAIN)
+	public Response forecastLoadStats() {
+		Status notAllowed = _adminNotAllowed();
+		if (notAllowed != null) return Response.status(notAllowed).build();
+
+		return Response.ok()
+					   .entity(_weatherService.loadStats().debugInfo())
+					   .type(MediaType.TEXT_PLAIN_TYPE)
+					   .build();
+	}
+	/**
+	 * The admin endpoints are public-facing so they require the token configured with the
+	 * {@link #ADMIN_TOKEN_PROPERTY} system property in the {@link #ADMIN_TOKEN_HEADER} header
+	 * @return null if the request is allowed; NOT_FOUND if no token is configured (the admin endpoints are disabled)
+	 * 		   or FORBIDDEN if the request token is NOT the configured one
+	 */
+	private Status _adminNotAllowed() {
+		String token = System.getProperty(ADMIN_TOKEN_PROPERTY);
+		if (token == null || token.trim().isEmpty()) return Status.NOT_FOUND;
+		String reqToken = _req.getHeader(ADMIN_TOKEN_HEADER);
+		if (reqToken == null
+		 || !MessageDigest.isEqual(reqToken.getBytes(Charsets.UTF_8),token.trim().getBytes(Charsets.UTF_8))) {		// constant time
+			return Status.FORBIDDEN;
+		}
+		return null;
 	}
 }
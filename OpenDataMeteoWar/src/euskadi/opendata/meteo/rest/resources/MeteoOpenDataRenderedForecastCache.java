@@ -0,0 +1,268 @@
+package euskadi.opendata.meteo.rest.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.core.MediaType;
+
+import euskadi.opendata.model.meteo.City;
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.model.meteo.ForecastForLocationSummary;
+import euskadi.opendata.service.meteo.MeteoMetrics;
+import euskadi.opendata.service.meteo.WeatherForecastService;
+import euskadi.opendata.service.meteo.WeatherForecastSnapshot;
+import euskadi.opendata.service.meteo.WeatherForecastSnapshotListener;
+import euskadi.opendata.util.LatencyHistogram;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+import r01f.locale.Language;
+
+/**
+ * Every City x Day x Language x Format forecast response pre-rendered when a new forecast
+ * snapshot is published, so the REST resource just writes the pre-encoded bytes
+ * (no marshalling, no string building and no model objects at the request path)
+ */
+@Slf4j
+@Singleton
+public class MeteoOpenDataRenderedForecastCache
+  implements WeatherForecastSnapshotListener {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTANTS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The languages the forecast is published in: any other language is rendered at request time
+	 */
+	private static final Language[] LANGUAGES = new Language[] {Language.SPANISH,Language.BASQUE};
+	private static final int[] LANGUAGE_INDEX;
+	static {
+		LANGUAGE_INDEX = new int[Language.values().length];
+		Arrays.fill(LANGUAGE_INDEX,-1);
+		for (int i=0; i < LANGUAGES.length; i++) LANGUAGE_INDEX[LANGUAGES[i].ordinal()] = i;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FIELDS
+/////////////////////////////////////////////////////////////////////////////////////////
+	private final MeteoOpenDataForecastRenderer _renderer;
+	/**
+	 * The responses rendered for the last published snapshot
+	 */
+	private final AtomicReference<RenderedForecasts> _rendered = new AtomicReference<RenderedForecasts>();
+	/**
+	 * Metrics: the pre-render time and the pre-rendered forecasts lookups
+	 */
+	private final LatencyHistogram _prerenderLatency;
+	private final AtomicLong _hits;
+	private final AtomicLong _misses;
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CONSTRUCTOR
+/////////////////////////////////////////////////////////////////////////////////////////
+	@Inject
+	public MeteoOpenDataRenderedForecastCache(final WeatherForecastService weatherService,
+											  final MeteoOpenDataForecastRenderer renderer,
+											  final MeteoMetrics metrics) {
+		_renderer = renderer;
+		_prerenderLatency = metrics.latency("meteo_prerender_seconds","Time to pre-render every forecast response of a new snapshot");
+		_hits = metrics.counter("meteo_rendered_cache_lookups_total","Pre-rendered forecasts lookups (a miss is rendered at request time)",
+								"result","hit");
+		_misses = metrics.counter("meteo_rendered_cache_lookups_total","Pre-rendered forecasts lookups (a miss is rendered at request time)",
+								  "result","miss");
+		metrics.gauge("meteo_rendered_cache_hit_ratio","Pre-rendered forecasts lookups hits / all the lookups",
+					  new MeteoMetrics.Gauge() {
+							@Override
+							public double value() {
+								long hits = _hits.get();
+								long all = hits + _misses.get();
+								return all > 0 ? (double)hits / all
+											   : Double.NaN;
+							}
+					  });
+		weatherService.addSnapshotListener(this);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Returns the pre-rendered forecast
+	 * @param city
+	 * @param day
+	 * @param lang
+	 * @param format
+	 * @return the rendered forecast or null if it's NOT available (no forecast loaded yet or not a pre-rendered language)
+	 */
+	public RenderedForecast renderedFor(final City city,final Day day,final Language lang,
+										final MeteoOpenDataForecastFormat format) {
+		RenderedForecasts rendered = _rendered.get();
+		return rendered != null ? rendered.renderedFor(city,day,lang,format)
+								: null;
+	}
+	/**
+	 * Returns all the responses rendered for the same snapshot: use it when more than a forecast
+	 * is needed so all of them come from the same snapshot
+	 * @return the rendered forecasts or null if no forecast was rendered yet
+	 */
+	public RenderedForecasts current() {
+		return _rendered.get();
+	}
+	@Override
+	public synchronized void onSnapshotPublished(final WeatherForecastSnapshot snapshot) {
+		RenderedForecasts current = _rendered.get();
+		if (current != null && snapshot.getLoadTimeStamp() <= current.getSnapshot().getLoadTimeStamp()) return;
+		long start = System.currentTimeMillis();
+		long startNanos = System.nanoTime();
+
+		City[] cities = City.values();
+		Day[] days = Day.values();
+		MeteoOpenDataForecastFormat[] formats = MeteoOpenDataForecastFormat.values();
+		RenderedForecast[][][][] rendered = new RenderedForecast[cities.length][days.length][LANGUAGES.length][formats.length];
+		for (City city : cities) {
+			for (Day day : days) {
+				for (int l=0; l < LANGUAGES.length; l++) {
+					ForecastForLocationSummary summary = null;
+					try {
+						summary = snapshot.forecastSumaryFor(city,day,LANGUAGES[l]);
+					} catch (IllegalArgumentException illArgEx) {
+						// there's no forecast for the city / day: it's NOT pre-rendered
+						log.warn("Could NOT pre-render the {} forecast for {}: {}",day,city,illArgEx.getMessage());
+						continue;
+					}
+					for (MeteoOpenDataForecastFormat format : formats) {
+						byte[] bytes = _renderer.render(summary,format);
+						rendered[city.ordinal()][day.ordinal()][l][format.ordinal()] = RenderedForecast.precompressed(bytes,format.getMediaType());
+					}
+				}
+			}
+		}
+		_rendered.set(new RenderedForecasts(snapshot,rendered,
+											_hits,_misses));
+		_prerenderLatency.recordSince(startNanos);
+		log.info("Weather forecast responses pre-rendered in {} millis",System.currentTimeMillis() - start);
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The responses rendered for a snapshot
+	 */
+	@Accessors(prefix="_")
+	public static class RenderedForecasts {
+		/**
+		 * The snapshot the responses were rendered from
+		 */
+		@Getter private final WeatherForecastSnapshot _snapshot;
+		/**
+		 * Indexed by [city][day][lang][format]
+		 */
+		private final RenderedForecast[][][][] _rendered;
+		/**
+		 * The cache hits / misses counters
+		 */
+		private final AtomicLong _hits;
+		private final AtomicLong _misses;
+
+		RenderedForecasts(final WeatherForecastSnapshot snapshot,
+						  final RenderedForecast[][][][] rendered,
+						  final AtomicLong hits,final AtomicLong misses) {
+			_snapshot = snapshot;
+			_rendered = rendered;
+			_hits = hits;
+			_misses = misses;
+		}
+		/**
+		 * @param city
+		 * @param day
+		 * @param lang
+		 * @param format
+		 * @return the rendered forecast or null if it's NOT available
+		 */
+		public RenderedForecast renderedFor(final City city,final Day day,final Language lang,
+											final MeteoOpenDataForecastFormat format) {
+			int langIdx = LANGUAGE_INDEX[lang.ordinal()];
+			RenderedForecast outRendered = langIdx >= 0 ? _rendered[city.ordinal()][day.ordinal()][langIdx][format.ordinal()]
+														: null;
+			(outRendered != null ? _hits : _misses).incrementAndGet();
+			return outRendered;
+		}
+	}
+	/**
+	 * An immutable pre-rendered response (optionally with its compressed variants)
+	 * <pre>
+	 * IMPORTANT!	the bytes arrays MUST NOT be modified
+	 * </pre>
+	 */
+	@Accessors(prefix="_")
+	public static class RenderedForecast {
+		@Getter private final byte[] _bytes;
+		@Getter private final MediaType _mediaType;
+		/**
+		 * Where the content starts after the xml declaration (if any)
+		 */
+		private final int _fragmentOffset;
+		/**
+		 * The bytes in every {@link MeteoOpenDataContentEncoding} (indexed by ordinal) or null if NOT pre-compressed
+		 */
+		private final byte[][] _encoded;
+
+		RenderedForecast(final byte[] bytes,final MediaType mediaType) {
+			this(bytes,mediaType,
+				 null);
+		}
+		private RenderedForecast(final byte[] bytes,final MediaType mediaType,
+								 final byte[][] encoded) {
+			_bytes = bytes;
+			_mediaType = mediaType;
+			_fragmentOffset = _fragmentOffset(bytes);
+			_encoded = encoded;
+		}
+		/**
+		 * Creates a rendered forecast also compressing the bytes in every {@link MeteoOpenDataContentEncoding}
+		 * @param bytes
+		 * @param mediaType
+		 * @return
+		 */
+		static RenderedForecast precompressed(final byte[] bytes,final MediaType mediaType) {
+			MeteoOpenDataContentEncoding[] encodings = MeteoOpenDataContentEncoding.values();
+			byte[][] encoded = new byte[encodings.length][];
+			for (MeteoOpenDataContentEncoding encoding : encodings) {
+				byte[] encodedBytes = encoding.encode(bytes);
+				encoded[encoding.ordinal()] = encodedBytes.length < bytes.length ? encodedBytes
+																				 : null;	// not worth: served uncompressed
+			}
+			return new RenderedForecast(bytes,mediaType,
+										encoded);
+		}
+		/**
+		 * Returns the bytes in the given encoding
+		 * @param encoding
+		 * @return the encoded bytes or null if the forecast was NOT pre-compressed in the given encoding
+		 * 		   (or the compressed bytes were NOT smaller)
+		 */
+		public byte[] getBytes(final MeteoOpenDataContentEncoding encoding) {
+			if (encoding == MeteoOpenDataContentEncoding.IDENTITY) return _bytes;
+			return _encoded != null ? _encoded[encoding.ordinal()]
+									: null;
+		}
+		/**
+		 * Writes the rendered forecast without the xml declaration so it can be embedded into
+		 * another document (ie: the bulk responses)
+		 * @param os
+		 * @throws IOException
+		 */
+		public void writeFragmentTo(final OutputStream os) throws IOException {
+			os.write(_bytes,_fragmentOffset,_bytes.length - _fragmentOffset);
+		}
+		private static int _fragmentOffset(final byte[] bytes) {
+			if (bytes.length < 5 || bytes[0] != '<' || bytes[1] != '?') return 0;
+			int outOffset = 2;
+			while (outOffset < bytes.length - 1 && !(bytes[outOffset] == '?' && bytes[outOffset+1] == '>')) outOffset++;
+			outOffset += 2;
+			while (outOffset < bytes.length && (bytes[outOffset] == '\n' || bytes[outOffset] == '\r')) outOffset++;
+			return Math.min(outOffset,bytes.length);
+		}
+	}
+}
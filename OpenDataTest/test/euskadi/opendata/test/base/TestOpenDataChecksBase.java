@@ -0,0 +1,124 @@
+package euskadi.opendata.test.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import com.google.common.base.Objects;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The checks & fixtures shared by the tests run as main methods:
+ * <ul>
+ * 		<li>the checks are collected in a list of errors and reported at the end as [OK] or [KO]</li>
+ * 		<li>a local http server (127.0.0.1 at a free port) standing for the opendata server</li>
+ * </ul>
+ * Usage:
+ * <pre class='brush:java'>
+ * 		HttpServer server = _createLocalServer();
+ * 		server.createContext("/file.xml",new HttpHandler() {
+ * 												@Override
+ * 												public void handle(final HttpExchange exchange) throws IOException {
+ * 													_respond(exchange,200,xml);
+ * 												}
+ * 								  });
+ * 		server.start();
+ * 		List<String> errors = new ArrayList<String>();
+ * 		_check(fetch(_localUrl(server,"/file.xml")),xml,"fetched file",errors);
+ * 		_report("The file is fetched",errors);
+ * </pre>
+ */
+public abstract class TestOpenDataChecksBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//  CHECKS
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Adds an error if the actual value is NOT the expected one
+	 * @param actual
+	 * @param expected
+	 * @param what the checked value description
+	 * @param errors
+	 */
+	protected static void _check(final Object actual,final Object expected,
+								 final String what,
+								 final List<String> errors) {
+		if (!Objects.equal(actual,expected)) errors.add(what + ": " + actual + " != " + expected);
+	}
+	/**
+	 * Prints [OK] and the message if there're no errors or [KO] and the errors
+	 * @param okMessage
+	 * @param errors
+	 * @return true if there're no errors
+	 */
+	protected static boolean _report(final String okMessage,
+									 final List<String> errors) {
+		if (errors.isEmpty()) {
+			System.out.println("[OK] " + okMessage);
+			return true;
+		}
+		System.out.println("[KO] " + errors.size() + " errors:");
+		for (String error : errors) System.out.println("\t-" + error);
+		return false;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  LOCAL HTTP SERVER
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Creates (NOT starts) a local http server at a free port: the contexts are created before starting it
+	 * IMPORTANT!	The server executor threads are NOT daemon: the test must stop the server or call System.exit
+	 * @return
+	 * @throws IOException
+	 */
+	protected static HttpServer _createLocalServer() throws IOException {
+		HttpServer outServer = HttpServer.create(new InetSocketAddress("127.0.0.1",0),0);
+		outServer.setExecutor(Executors.newCachedThreadPool());
+		return outServer;
+	}
+	/**
+	 * @param server
+	 * @param path the path (and query) starting with /
+	 * @return the url of a path of the local server
+	 */
+	protected static String _localUrl(final HttpServer server,
+									  final String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+	/**
+	 * Sends the response and closes the exchange
+	 * @param exchange
+	 * @param status
+	 * @param body the response body (null if there's none)
+	 * @throws IOException
+	 */
+	protected static void _respond(final HttpExchange exchange,
+								   final int status,final byte[] body) throws IOException {
+		try {
+			exchange.sendResponseHeaders(status,body != null ? body.length : -1);
+			if (body != null) {
+				OutputStream os = exchange.getResponseBody();
+				os.write(body);
+				os.close();
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  FILES
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Deletes a file or a folder with all it's contents
+	 * @param file
+	 */
+	protected static void _delete(final File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) _delete(child);
+		}
+		file.delete();
+	}
+}
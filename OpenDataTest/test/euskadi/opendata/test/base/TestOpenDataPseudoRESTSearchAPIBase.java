@@ -7,6 +7,7 @@ import javax.xml.xpath.XPathExpressionException;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import euskadi.opendata.service.search.SearchResultItem;
 import euskadi.opendata.test.base.TestOpenDataPseudoRESTSearchAPIBase.SessionData;
 import lombok.Getter;
 import lombok.Setter;
@@ -15,7 +16,8 @@ import r01f.debug.Debuggable;
 import r01f.util.types.Strings;
 import r01f.xml.XMLUtils;
 
-public abstract class TestOpenDataPseudoRESTSearchAPIBase {
+public abstract class TestOpenDataPseudoRESTSearchAPIBase
+			  extends TestOpenDataChecksBase {
 ///////////////////////////////////////////////////////////////////////////////////////////////////
 //	
 ///////////////////////////////////////////////////////////////////////////////////////////////////
@@ -90,4 +92,13 @@ public abstract class TestOpenDataPseudoRESTSearchAPIBase {
 		}
 		return dataFileURL;
 	}
+	/**
+	 * Same as {@link #getContentTypeDependentMetaDataFileUrl(Node)} for an item already read
+	 * by the {@link euskadi.opendata.service.search.SearchSessionStAXPageParser}
+	 * @param item
+	 * @return
+	 */
+	public static String getContentTypeDependentMetaDataFileUrl(final SearchResultItem item) {
+		return item.mainDataFileUrl("http://www.euskadi.net/contenidos");
+	}
 }
@@ -3,13 +3,13 @@ package euskadi.opendata.test.base;
 import java.io.IOException;
 import java.io.Writer;
 
-import r01f.httpclient.HttpClient;
 import r01f.types.Path;
 
 import com.ejie.r01m.objects.searchengine.results.R01MSearchResultItem;
 import com.google.common.base.Throwables;
 
 import euskadi.opendata.CSVRepresentable;
+import euskadi.opendata.util.DiskHttpCache;
 
 public abstract class TestOpenDataSearchAPIBase
 			  extends TestOpenDataBase {
@@ -34,9 +34,8 @@ public abstract class TestOpenDataSearchAPIBase
 		String dataFileXML = null;
 		if (dataFilePath != null) {
 			String dataFileURL = "http://opendata.euskadi.eus/contenidos/" + item.getDocumentWorkAreaRelativePath() + dataFilePath.asAbsoluteString();
-			dataFileXML = HttpClient.forUrl(dataFileURL)
-									.GET()
-					                .loadAsString();
+			dataFileXML = DiskHttpCache.getDefault()		// most data files did NOT change since the last run
+									   .loadAsString(dataFileURL);
 			dataFileXML = dataFileXML.trim();
 		}
 		return dataFileXML;
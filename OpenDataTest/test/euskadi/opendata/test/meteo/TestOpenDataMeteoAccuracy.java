@@ -0,0 +1,53 @@
+package euskadi.opendata.test.meteo;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.service.meteo.ForecastAccuracy;
+import euskadi.opendata.service.meteo.ForecastAccuracyAnalyzer;
+import euskadi.opendata.service.meteo.ForecastAccuracyReport;
+import euskadi.opendata.service.meteo.ForecastArchive;
+
+/**
+ * Analyzes the accuracy of the historical forecasts (OpenDataTest/resources/data_forecast_ds_2013.zip)
+ * and checks that the parallel analysis gives the same result as a single thread one
+ */
+public class TestOpenDataMeteoAccuracy
+	 extends TestOpenDataMeteoBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		try {
+			ForecastArchive archive = _ingestForecastArchive();
+			ForecastAccuracyAnalyzer analyzer = new ForecastAccuracyAnalyzer(archive);
+
+			ForecastAccuracyReport parallel = analyzer.analyze();
+			ExecutorService singleThread = Executors.newSingleThreadExecutor();
+			ForecastAccuracyReport sequential = null;
+			try {
+				sequential = analyzer.analyze(singleThread);
+			} finally {
+				singleThread.shutdown();
+			}
+			System.out.println(parallel);
+			System.out.println("Parallel: " + parallel.getElapsedMillis() + " ms / single thread: " + sequential.getElapsedMillis() + " ms");
+
+			if (parallel.getComparedDateCount() == 0) {
+				System.out.println("[KO] NO forecast was compared");
+			} else if (!parallel.toString().substring(parallel.toString().indexOf('\n'))
+									.equals(sequential.toString().substring(sequential.toString().indexOf('\n')))) {
+				System.out.println("[KO] The parallel and the single thread analysis differ");
+			} else {
+				ForecastAccuracy tomorrow = parallel.overall(Day.TOMORROW);
+				ForecastAccuracy next = parallel.overall(Day.NEXT);
+				System.out.println("[OK] " + parallel.getComparedDateCount() + " dates of " + parallel.cityCodes().size() + " cities compared: "
+								 + "max temp error " + String.format("%.2f",tomorrow.getTempMax().getMeanAbsoluteError()) + " one day before "
+								 + "and " + String.format("%.2f",next.getTempMax().getMeanAbsoluteError()) + " two days before");
+			}
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		}
+	}
+}
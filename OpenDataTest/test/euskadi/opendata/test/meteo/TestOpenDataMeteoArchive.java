@@ -0,0 +1,70 @@
+package euskadi.opendata.test.meteo;
+
+import euskadi.opendata.model.meteo.City;
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.service.meteo.ForecastArchive;
+import r01f.locale.Language;
+
+/**
+ * Ingests the historical forecasts (OpenDataTest/resources/data_forecast_ds_2013.zip) into
+ * a {@link ForecastArchive} and scans it
+ */
+public class TestOpenDataMeteoArchive
+	 extends TestOpenDataMeteoBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		try {
+			ForecastArchive archive = _ingestForecastArchive();
+
+			// scan bilbao's april
+			int from = ForecastArchive.dateKey(2013,4,1);
+			int to = ForecastArchive.dateKey(2013,4,30);
+			long start = System.nanoTime();
+			ForecastArchive.Scan scan = archive.scan(Integer.parseInt(City.BILBAO.getCode()),from,to);
+			int rows = 0;
+			int lastDate = 0;
+			int withMax = 0;
+			long sumMax = 0;
+			boolean sorted = true;
+			while (scan.next()) {
+				rows++;
+				if (scan.getDate() < from || scan.getDate() > to || scan.getDate() < lastDate) sorted = false;
+				lastDate = scan.getDate();
+				if (scan.getTempMax() != ForecastArchive.NO_VALUE) {
+					withMax++;
+					sumMax += scan.getTempMax();
+				}
+			}
+			long scanNanos = System.nanoTime() - start;
+
+			if (rows == 0 || rows != scan.size()) {
+				System.out.println("[KO] The scan returned " + rows + " rows but it's size is " + scan.size());
+			} else if (!sorted) {
+				System.out.println("[KO] The scan returned forecasts out of the [" + from + "," + to + "] range or NOT sorted");
+			} else if (archive.scan(Integer.parseInt(City.BILBAO.getCode()),20130431,20130501).size() != 0
+					|| archive.scan(-1,from,to).size() != 0) {
+				System.out.println("[KO] Empty scans returned rows");
+			} else {
+				System.out.println("[OK] " + rows + " forecasts for Bilbao in April 2013 scanned in " + scanNanos / 1000 + " micros "
+								 + "(avg max temp " + (withMax > 0 ? sumMax / withMax : 0) + ")");
+				scan.rewind();
+				if (scan.next()) {
+					System.out.println("\tFirst: " + scan.getDate() + " " + scan.getDay() + " icon=" + scan.getIcon()
+									 + " max=" + scan.getTempMax() + " min=" + scan.getTempMin()
+									 + " " + scan.getSymbolDescription() + " / " + scan.getDescriptionIn(Language.SPANISH));
+				}
+				// today's forecasts only
+				int today = 0;
+				scan.rewind();
+				while (scan.next()) {
+					if (scan.getDay() == Day.TODAY) today++;
+				}
+				System.out.println("\t" + today + " of them were made the same day");
+			}
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		}
+	}
+}
@@ -1,12 +1,31 @@
 package euskadi.opendata.test.meteo;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.io.ByteStreams;
+
 import euskadi.opendata.model.meteo.City;
 import euskadi.opendata.model.meteo.Day;
 import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.model.meteo.ForecastForDay;
+import euskadi.opendata.model.meteo.ForecastForDayMapSymbol;
+import euskadi.opendata.model.meteo.ForecastForLocation;
+import euskadi.opendata.service.meteo.ForecastArchive;
+import euskadi.opendata.service.meteo.ForecastArchiveIngester;
+import euskadi.opendata.test.base.TestOpenDataChecksBase;
+import lombok.Cleanup;
 import r01f.locale.Language;
+import r01f.resources.ResourcesLoaderBuilder;
 import r01f.util.types.Strings;
 
-abstract class TestOpenDataMeteoBase {
+abstract class TestOpenDataMeteoBase
+	 extends TestOpenDataChecksBase {
 	/**
 	 * Simply prints some debug info
 	 * @param forecast
@@ -24,4 +43,89 @@ abstract class TestOpenDataMeteoBase {
 							 .asString();
 		System.out.println(dbg);		
 	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  COMPARE
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Compares two forecasts field by field
+	 * @param one
+	 * @param other
+	 * @param diffs the differences found
+	 */
+	protected static void _compare(final Forecast one,final Forecast other,
+								   final List<String> diffs) {
+		_check(one.getDate(),other.getDate(),"doneDate",diffs);
+		_check(one.getForecasts().keySet(),other.getForecasts().keySet(),"forecast days",diffs);
+		for (String dayId : one.getForecasts().keySet()) {
+			ForecastForDay oneDay = one.getDayForecasts(dayId);
+			ForecastForDay otherDay = other.getDayForecasts(dayId);
+			if (otherDay == null) continue;
+
+			_check(oneDay.getDate(),otherDay.getDate(),dayId + " date",diffs);
+			_check(oneDay.getForeCastDateText(),otherDay.getForeCastDateText(),dayId + " text",diffs);
+			_check(oneDay.getMapImage(),otherDay.getMapImage(),dayId + " map",diffs);
+			_check(oneDay.getDescriptions(),otherDay.getDescriptions(),dayId + " descriptions",diffs);
+			_compareMapSymbols(dayId,oneDay.getMapSymbols(),otherDay.getMapSymbols(),
+							   diffs);
+			_check(oneDay.getLocations().keySet(),otherDay.getLocations().keySet(),dayId + " cities",diffs);
+			for (String cityCode : oneDay.getLocations().keySet()) {
+				ForecastForLocation oneLoc = oneDay.getForecastForCityCode(cityCode);
+				ForecastForLocation otherLoc = otherDay.getForecastForCityCode(cityCode);
+				if (otherLoc == null) continue;
+
+				String prefix = dayId + "/" + cityCode;
+				_check(oneLoc.getLocName(),otherLoc.getLocName(),prefix + " name",diffs);
+				_check(oneLoc.getTempMax(),otherLoc.getTempMax(),prefix + " tempMax",diffs);
+				_check(oneLoc.getTempMin(),otherLoc.getTempMin(),prefix + " tempMin",diffs);
+				_check(oneLoc.getSymbol().getImagePath(),otherLoc.getSymbol().getImagePath(),prefix + " symbol",diffs);
+				_check(oneLoc.getSymbol().getDescriptions(),otherLoc.getSymbol().getDescriptions(),prefix + " symbol descriptions",diffs);
+			}
+		}
+	}
+	private static void _compareMapSymbols(final String dayId,
+										   final Collection<ForecastForDayMapSymbol> one,final Collection<ForecastForDayMapSymbol> other,
+										   final List<String> diffs) {
+		_check(one.size(),other.size(),dayId + " map symbols",diffs);
+		List<ForecastForDayMapSymbol> otherList = new ArrayList<ForecastForDayMapSymbol>(other);
+		int i = 0;
+		for (ForecastForDayMapSymbol oneSymbol : one) {
+			if (i >= otherList.size()) break;
+			ForecastForDayMapSymbol otherSymbol = otherList.get(i);
+			String prefix = dayId + " map symbol " + i;
+			_check(oneSymbol.getPositionX(),otherSymbol.getPositionX(),prefix + " x",diffs);
+			_check(oneSymbol.getPositionY(),otherSymbol.getPositionY(),prefix + " y",diffs);
+			_check(oneSymbol.getWidth(),otherSymbol.getWidth(),prefix + " width",diffs);
+			_check(oneSymbol.getHeight(),otherSymbol.getHeight(),prefix + " height",diffs);
+			_check(oneSymbol.getImagePath(),otherSymbol.getImagePath(),prefix + " image",diffs);
+			i++;
+		}
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//  ARCHIVE
+/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Ingests the historical forecasts (OpenDataTest/resources/data_forecast_ds_2013.zip)
+	 * into a temp {@link ForecastArchive}
+	 * @return
+	 * @throws IOException
+	 */
+	protected static ForecastArchive _ingestForecastArchive() throws IOException {
+		// the ingester reads the zip file itself (it's memory-mapped)
+		File zip = File.createTempFile("opendata-meteo-forecasts",".zip");
+		zip.deleteOnExit();
+		@Cleanup InputStream is = ResourcesLoaderBuilder.createDefaultResourcesLoader()
+														.getInputStream("data_forecast_ds_2013.zip");
+		@Cleanup FileOutputStream fos = new FileOutputStream(zip);
+		ByteStreams.copy(is,fos);
+		fos.close();
+
+		File file = File.createTempFile("opendata-meteo-forecasts",".ofca");
+		file.deleteOnExit();
+		long start = System.nanoTime();
+		ForecastArchive outArchive = new ForecastArchiveIngester().ingestZip(zip)
+																  .writeTo(file);
+		System.out.println("Ingested " + outArchive.getRowCount() + " forecasts of " + outArchive.cityCodes().length + " cities "
+						 + "in " + (System.nanoTime() - start) / 1000000 + " ms: " + zip.length() + " zip bytes > " + file.length() + " archive bytes");
+		return outArchive;
+	}
 }
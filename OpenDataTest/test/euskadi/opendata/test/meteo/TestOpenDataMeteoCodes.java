@@ -0,0 +1,33 @@
+package euskadi.opendata.test.meteo;
+
+import euskadi.opendata.model.meteo.City;
+import euskadi.opendata.model.meteo.Day;
+
+/**
+ * Checks that the city and day codes are resolved by their canonical code only
+ * (ie: "02" or "0002" are NOT the code of the city "2")
+ */
+public class TestOpenDataMeteoCodes {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		boolean allOK = true;
+		for (City city : City.values()) {
+			allOK &= City.fromCode(city.getCode()) == city;
+		}
+		for (Day day : Day.values()) {
+			allOK &= Day.fromCode(day.getCode()) == day;
+		}
+		for (String notCanonical : new String[] {"02","0002","018",""}) {
+			try {
+				City city = City.fromCode(notCanonical);
+				System.out.println("\t-" + notCanonical + " resolved to " + city);
+				allOK = false;
+			} catch(IllegalArgumentException illArgEx) {
+				/* ok: not a city code */
+			}
+		}
+		System.out.println((allOK ? "[OK]" : "[KO]") + " only the canonical city & day codes are resolved");
+	}
+}
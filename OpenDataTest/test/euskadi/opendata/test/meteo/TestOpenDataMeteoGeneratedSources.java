@@ -0,0 +1,59 @@
+package euskadi.opendata.test.meteo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import euskadi.opendata.internal.meteo.MeteoModelXmlCodeGenerator;
+import euskadi.opendata.service.meteo.MeteoModelXmlReader;
+import euskadi.opendata.service.meteo.MeteoModelXmlWriter;
+
+/**
+ * Checks that the checked in {@link MeteoModelXmlReader} / {@link MeteoModelXmlWriter} sources are the ones
+ * {@link MeteoModelXmlCodeGenerator} generates from the current model xml annotations
+ * (so an annotation change NOT followed by a generator run does NOT go unnoticed)
+ * The OpenDataClasses source folder can be given as argument (by default ../OpenDataClasses/src or OpenDataClasses/src)
+ */
+public class TestOpenDataMeteoGeneratedSources
+	 extends TestOpenDataMeteoBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		try {
+			File srcDir = args.length > 0 ? new File(args[0])
+										  : new File("../OpenDataClasses/src").isDirectory() ? new File("../OpenDataClasses/src")
+												  											 : new File("OpenDataClasses/src");
+			List<String> diffs = new ArrayList<String>();
+			for (Map.Entry<String,String> generated : MeteoModelXmlCodeGenerator.generateSources().entrySet()) {
+				File srcFile = new File(srcDir,generated.getKey().replace('.','/') + ".java");
+				if (!srcFile.isFile()) {
+					diffs.add(srcFile + " does NOT exists (is " + srcDir + " the OpenDataClasses source folder?)");
+					continue;
+				}
+				String checkedIn = Files.toString(srcFile,Charsets.UTF_8);
+				int line = _firstDifferentLine(checkedIn,generated.getValue());
+				if (line > 0) diffs.add(generated.getKey() + " is NOT the generated source (first difference at line " + line + "): " +
+										"run MeteoModelXmlCodeGenerator again");
+			}
+			_report("The checked in MeteoModelXmlReader / MeteoModelXmlWriter are the generated ones",diffs);
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		}
+	}
+	/**
+	 * @return the first different line (1 based) or 0 if both sources are the same
+	 */
+	private static int _firstDifferentLine(final String src,final String otherSrc) {
+		if (src.equals(otherSrc)) return 0;
+		String[] lines = src.split("\n",-1);
+		String[] otherLines = otherSrc.split("\n",-1);
+		int l = 0;
+		while (l < lines.length && l < otherLines.length && lines[l].equals(otherLines[l])) l++;
+		return l + 1;
+	}
+}
@@ -0,0 +1,92 @@
+package euskadi.opendata.test.meteo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+
+import euskadi.opendata.model.meteo.City;
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.model.meteo.ForecastForLocationSummary;
+import euskadi.opendata.service.meteo.MeteoModelXmlReader;
+import euskadi.opendata.service.meteo.MeteoModelXmlWriter;
+import euskadi.opendata.service.meteo.WeatherForecastParser;
+import lombok.Cleanup;
+import r01f.resources.ResourcesLoaderBuilder;
+import r01f.types.Path;
+
+/**
+ * Checks the generated {@link MeteoModelXmlReader} / {@link MeteoModelXmlWriter}:
+ * the forecast read from the met_forecast.xml fixture (OpenDataTest/resources/met_forecast.xml)
+ * is written and read back unchanged (and it's read the same from bytes and from chars)
+ */
+public class TestOpenDataMeteoGeneratedXml
+	 extends TestOpenDataMeteoBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String FIXTURE = "met_forecast.xml";
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		try {
+			@Cleanup InputStream is = ResourcesLoaderBuilder.createDefaultResourcesLoader()
+															.getInputStream(FIXTURE);
+			byte[] xml = ByteStreams.toByteArray(is);
+
+			// read with the generated reader and compare with the hand written reader
+			List<String> diffs = new ArrayList<String>();
+			Forecast generated = MeteoModelXmlReader.readForecast(new ByteArrayInputStream(xml));
+			_compare(WeatherForecastParser.STAX.parse(xml),generated,
+					 diffs);
+
+			// write & read back
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(xml.length);
+			MeteoModelXmlWriter.write(generated,bos);
+			Forecast readBack = (Forecast)MeteoModelXmlReader.read(new ByteArrayInputStream(bos.toByteArray()));
+			_compare(generated,readBack,
+					 diffs);
+
+			// read from chars: the xml declared encoding (the opendata feed declares ISO-8859-1) does NOT apply
+			// so the accents are NOT garbled
+			String chars = new String(xml,Charsets.UTF_8).replace("encoding=\"UTF-8\"","encoding=\"ISO-8859-1\"");
+			Forecast fromChars = (Forecast)MeteoModelXmlReader.read(new StringReader(chars));
+			_compare(generated,fromChars,
+					 diffs);
+			System.out.println("The fixture is " + xml.length + " bytes; the written forecast is " + bos.size() + " bytes");
+
+			// a summary
+			ForecastForLocationSummary summary = new ForecastForLocationSummary();
+			summary.setCity(City.BILBAO);
+			summary.setDay(Day.TOMORROW);
+			summary.setDate(generated.getDate());
+			summary.setTempMin(12);
+			summary.setTempMax(21);
+			summary.setSummary("Intervalos nubosos <b>&</b> chubascos");
+			summary.setSymbolPath(Path.of("/contenidos/prevision_tiempo/met_forecast/images/12.png"));
+			summary.setSymbolDescription("Lluvia");
+			String summaryXml = MeteoModelXmlWriter.xmlFromBean(summary);
+			ForecastForLocationSummary summaryBack = MeteoModelXmlReader.readForecastForLocationSummary(new ByteArrayInputStream(summaryXml.getBytes(Charsets.UTF_8)));
+			_check(summaryBack.getCity(),summary.getCity(),"summary city",diffs);
+			_check(summaryBack.getDay(),summary.getDay(),"summary day",diffs);
+			_check(summaryBack.getDate(),summary.getDate(),"summary date",diffs);
+			_check(summaryBack.getTempMin(),summary.getTempMin(),"summary tempMin",diffs);
+			_check(summaryBack.getTempMax(),summary.getTempMax(),"summary tempMax",diffs);
+			_check(summaryBack.getSummary(),summary.getSummary(),"summary text",diffs);
+			_check(summaryBack.getSymbolPath(),summary.getSymbolPath(),"summary symbol",diffs);
+			_check(summaryBack.getSymbolDescription(),summary.getSymbolDescription(),"summary symbol description",diffs);
+			System.out.println(summaryXml);
+
+			_report("The generated reader / writer round trip the forecast and the summary",diffs);
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		}
+	}
+}
@@ -1,9 +1,10 @@
 package euskadi.opendata.test.meteo;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 import euskadi.opendata.model.meteo.Forecast;
-import r01f.httpclient.HttpClient;
+import euskadi.opendata.util.DiskHttpCache;
 import r01f.marshalling.Marshaller;
 import r01f.marshalling.simple.SimpleMarshallerBuilder;
 
@@ -28,10 +29,8 @@ public class TestOpenDataMeteoMarshalling
 	public static void main(String[] args) {
 		try {
 			// load the data xml using an http connection
-			InputStream xmlIs = HttpClient.forUrl(DATA_URL)
-					  					  .GET()
-					  					  .getResponse()
-					  					  .loadAsStream();
+			InputStream xmlIs = new ByteArrayInputStream(DiskHttpCache.getDefault()
+																	  .load(DATA_URL));
 			// marshall the xml to java objects
 			Marshaller marshaller = SimpleMarshallerBuilder.createForPackages(Forecast.class.getPackage().getName())
 														   .getForSingleUse();
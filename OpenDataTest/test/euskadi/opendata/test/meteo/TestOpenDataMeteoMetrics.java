@@ -0,0 +1,112 @@
+package euskadi.opendata.test.meteo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import euskadi.opendata.service.meteo.MeteoMetrics;
+import euskadi.opendata.util.LatencyHistogram;
+
+/**
+ * Checks the {@link LatencyHistogram} percentiles and lock-free recording and the {@link MeteoMetrics} text format
+ */
+public class TestOpenDataMeteoMetrics
+	 extends TestOpenDataMeteoBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final int THREADS = 8;
+	private static final int RECORDS_PER_THREAD = 250000;
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		try {
+			List<String> errors = new ArrayList<String>();
+
+			// [1] percentiles of 1..100000 micros: the error MUST be below 1/SUB_BUCKETS
+			LatencyHistogram histogram = new LatencyHistogram();
+			for (long micros=1; micros <= 100000; micros++) histogram.record(micros * 1000);
+			LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+			_checkCount(snapshot.getCount(),100000,"sequential count",errors);
+			for (double percentile : new double[] {50,90,99,99.9,100}) {
+				long expected = (long)(percentile * 1000) * 1000;
+				long actual = snapshot.valueAtPercentile(percentile);
+				double error = Math.abs(actual - expected) / (double)expected;
+				System.out.println("p" + percentile + ": " + actual + " nanos (expected " + expected + ", error " + String.format("%.2f%%",error * 100) + ")");
+				if (error > 1.0 / LatencyHistogram.SUB_BUCKETS) errors.add("p" + percentile + " error is " + error);
+			}
+			_checkCount(snapshot.getMaxNanos(),100000L * 1000,"max",errors);
+
+			// [2] concurrent recording: NO record is lost
+			final LatencyHistogram concurrent = new LatencyHistogram();
+			final CountDownLatch startLatch = new CountDownLatch(1);
+			final CountDownLatch endLatch = new CountDownLatch(THREADS);
+			for (int t=0; t < THREADS; t++) {
+				final long seed = t;
+				new Thread(new Runnable() {
+									@Override
+									public void run() {
+										Random random = new Random(seed);
+										try {
+											startLatch.await();
+											for (int i=0; i < RECORDS_PER_THREAD; i++) concurrent.record(random.nextInt(10000000));
+										} catch (InterruptedException intEx) {
+											Thread.currentThread().interrupt();
+										} finally {
+											endLatch.countDown();
+										}
+									}
+						   }).start();
+			}
+			long start = System.nanoTime();
+			startLatch.countDown();
+			endLatch.await();
+			System.out.println(THREADS + " threads recorded " + (THREADS * RECORDS_PER_THREAD) + " latencies in " + ((System.nanoTime() - start) / 1000000) + " millis");
+			_checkCount(concurrent.snapshot().getCount(),THREADS * RECORDS_PER_THREAD,"concurrent count",errors);
+
+			// [3] text format
+			MeteoMetrics metrics = new MeteoMetrics();
+			metrics.latency("meteo_test_seconds","A test latency","feed","weather forecast")
+				   .record(1500000);
+			AtomicLong counter = metrics.counter("meteo_test_total","A test counter","result","hit");
+			counter.addAndGet(3);
+			metrics.gauge("meteo_test_age_seconds","A test gauge",
+						  new MeteoMetrics.Gauge() {
+								@Override
+								public double value() {
+									return Double.NaN;
+								}
+						  });
+			if (metrics.counter("meteo_test_total","A test counter","result","hit") != counter) errors.add("The counter was NOT reused");
+			String text = metrics.asText();
+			System.out.println(text);
+			for (String expected : new String[] {"# TYPE meteo_test_seconds summary",
+												 "meteo_test_seconds{feed=\"weather forecast\",quantile=\"0.5\"} ",
+												 "meteo_test_seconds_count{feed=\"weather forecast\"} 1",
+												 "meteo_test_seconds_max{feed=\"weather forecast\"} 0.0015",
+												 "# TYPE meteo_test_total counter",
+												 "meteo_test_total{result=\"hit\"} 3",
+												 "meteo_test_age_seconds NaN"}) {
+				if (!text.contains(expected)) errors.add("The metrics text does NOT contain " + expected);
+			}
+			try {
+				metrics.counter("meteo_test_seconds","Not a counter");
+				errors.add("A summary was registered as a counter");
+			} catch (IllegalStateException illStEx) {
+				// expected
+			}
+
+			_report("The latency histograms and the metrics text are right",errors);
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		}
+	}
+	private static void _checkCount(final long actual,final long expected,
+									final String what,
+									final List<String> errors) {
+		if (actual != expected) errors.add(what + ": " + actual + " != " + expected);
+	}
+}
@@ -0,0 +1,55 @@
+package euskadi.opendata.test.meteo;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.io.ByteStreams;
+
+import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.service.meteo.WeatherForecastParser;
+import lombok.Cleanup;
+import r01f.resources.ResourcesLoaderBuilder;
+
+/**
+ * Checks that every {@link WeatherForecastParser} builds the same {@link Forecast}
+ * from the bundled met_forecast.xml fixture (OpenDataTest/resources/met_forecast.xml)
+ */
+public class TestOpenDataMeteoParsers
+	 extends TestOpenDataMeteoBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String FIXTURE = "met_forecast.xml";
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		try {
+			@Cleanup InputStream is = ResourcesLoaderBuilder.createDefaultResourcesLoader()
+															.getInputStream(FIXTURE);
+			byte[] xml = ByteStreams.toByteArray(is);
+
+			// parse the fixture with every parser and compare with the reflective marshaller
+			Forecast marshalled = WeatherForecastParser.MARSHALLER.parse(xml);
+			for (WeatherForecastParser parser : WeatherForecastParser.values()) {
+				if (parser == WeatherForecastParser.MARSHALLER) continue;
+				Forecast parsed = parser.parse(xml);
+
+				// compare
+				List<String> diffs = new ArrayList<String>();
+				_compare(marshalled,parsed,
+						 diffs);
+				if (diffs.isEmpty()) {
+					System.out.println("[OK] The " + WeatherForecastParser.MARSHALLER + " and " + parser + " parsers built the same forecast");
+					_printDebugInfo(parsed);
+				} else {
+					System.out.println("[KO] " + parser + ": " + diffs.size() + " differences:");
+					for (String diff : diffs) System.out.println("\t-" + diff);
+				}
+			}
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		}
+	}
+}
@@ -15,8 +15,8 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import euskadi.opendata.util.DiskHttpCache;
 import r01f.debug.Debuggable;
-import r01f.httpclient.HttpClient;
 import r01f.util.types.Strings;
 import r01f.util.types.collections.CollectionUtils;
 import r01f.xml.XMLUtils;
@@ -48,9 +48,8 @@ public class TestOpenDataMeteoRaw {
 			// [1] - Descargar el XML con el DataSet
 			String todayForeCastXML = "http://opendata.euskadi.eus/contenidos/prevision_tiempo/met_forecast/opendata/met_forecast.xml";
 			System.out.println("[1] DataURL: " + todayForeCastXML);
-			String xmlData = HttpClient.forUrl(todayForeCastXML)
-									   .GET()
-									   .loadAsString();
+			String xmlData = DiskHttpCache.getDefault()
+										  .loadAsString(todayForeCastXML);
 			System.out.println("[2] Data XML: " + xmlData);			
 			
 			// [2] - Parsear el XML y obtener los datos 
@@ -0,0 +1,174 @@
+package euskadi.opendata.test.meteo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import euskadi.opendata.service.meteo.MeteoFeed;
+import euskadi.opendata.service.meteo.MeteoFeedEngine;
+import euskadi.opendata.service.meteo.MeteoMetrics;
+import euskadi.opendata.service.meteo.WeatherForecastParser;
+import euskadi.opendata.service.meteo.WeatherForecastServiceConfig;
+import euskadi.opendata.service.meteo.WeatherForecastSnapshot;
+import euskadi.opendata.util.CircuitBreaker;
+import euskadi.opendata.util.CircuitBreaker.CircuitState;
+import lombok.Cleanup;
+import r01f.resources.ResourcesLoaderBuilder;
+
+/**
+ * Checks the feed resilience against a local http server serving the met_forecast.xml fixture:
+ * <ul>
+ * 		<li>a failing or hung server does NOT block the refresh beyond the read timeout</li>
+ * 		<li>the last good snapshot is served (as stale) while the server is failing</li>
+ * 		<li>after the consecutive failures threshold the circuit opens and the server is NOT called</li>
+ * 		<li>once the circuit open time has elapsed a trial refresh closes the circuit</li>
+ * 		<li>while the circuit is half open a single trial call is allowed</li>
+ * </ul>
+ */
+public class TestOpenDataMeteoResilience
+	 extends TestOpenDataMeteoBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String FIXTURE = "met_forecast.xml";
+	private static enum ServerBehavior {
+		OK,
+		ERROR,
+		HUNG;
+	}
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		HttpServer server = null;
+		MeteoFeedEngine engine = null;
+		try {
+			@Cleanup InputStream is = ResourcesLoaderBuilder.createDefaultResourcesLoader()
+															.getInputStream(FIXTURE);
+			final byte[] xml = ByteStreams.toByteArray(is);
+
+			// a local server which behavior can be changed
+			final AtomicReference<ServerBehavior> behavior = new AtomicReference<ServerBehavior>(ServerBehavior.OK);
+			final AtomicInteger requests = new AtomicInteger();
+			server = _createLocalServer();
+			server.createContext("/met_forecast.xml",new HttpHandler() {
+															@Override
+															public void handle(final HttpExchange exchange) throws IOException {
+																requests.incrementAndGet();
+																switch(behavior.get()) {
+																case OK:
+																	_respond(exchange,200,xml);
+																	break;
+																case ERROR:
+																	_respond(exchange,500,null);
+																	break;
+																case HUNG:
+																	try {
+																		Thread.sleep(3000);
+																	} catch (InterruptedException intEx) {
+																		Thread.currentThread().interrupt();
+																	}
+																	_respond(exchange,500,null);
+																	break;
+																default:
+																	throw new IllegalStateException();
+																}
+															}
+													 });
+			server.start();
+			String url = _localUrl(server,"/met_forecast.xml");
+
+			// 1s connect / read timeouts, the circuit opens after 2 failures for 2 seconds
+			WeatherForecastServiceConfig config = new WeatherForecastServiceConfig(900,0,
+																				   TimeUnit.SECONDS,
+																				   WeatherForecastParser.STAX,
+																				   null,
+																				   1,
+																				   1,1,
+																				   1,
+																				   2,2);
+			MeteoMetrics metrics = new MeteoMetrics();
+			engine = new MeteoFeedEngine(config,metrics);
+			MeteoFeed<WeatherForecastSnapshot> feed = new MeteoFeed<WeatherForecastSnapshot>("test forecast",url,
+																							 engine,config) {
+																@Override
+																protected WeatherForecastSnapshot parse(final byte[] content,
+																										final long loadTimeStamp,final String contentHash) throws Exception {
+																	return new WeatherForecastSnapshot(WeatherForecastParser.STAX.parse(content),
+																									   loadTimeStamp,contentHash);
+																}
+													 };
+			List<String> errors = new ArrayList<String>();
+
+			// [1] a good load
+			_check(feed.refresh(),true,"first load",errors);
+			_check(feed.isStale(),false,"stale after the first load",errors);
+			WeatherForecastSnapshot loaded = feed.currentSnapshot();
+
+			// [2] server error: the previous snapshot is served as stale
+			behavior.set(ServerBehavior.ERROR);
+			_check(feed.refresh(),false,"refresh with a server error",errors);
+			_check(feed.isStale(),true,"stale after a server error",errors);
+			_check(feed.currentSnapshot() == loaded,true,"the previous snapshot is served",errors);
+
+			// [3] hung server: the refresh does NOT wait longer than the read timeout and the circuit opens
+			behavior.set(ServerBehavior.HUNG);
+			long start = System.currentTimeMillis();
+			_check(feed.refresh(),false,"refresh with a hung server",errors);
+			long elapsed = System.currentTimeMillis() - start;
+			System.out.println("The refresh with a hung server took " + elapsed + " millis");
+			if (elapsed > 2500) errors.add("The refresh waited for the hung server: " + elapsed + " millis");
+
+			// [4] the circuit is open: the server is NOT called and the snapshot is served at once
+			int requestsBefore = requests.get();
+			start = System.nanoTime();
+			for (int i=0; i < 100; i++) {
+				feed.refresh();
+				if (feed.currentSnapshot() != loaded) errors.add("The previous snapshot is NOT served while the circuit is open");
+			}
+			System.out.println("100 refreshes with the circuit open took " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " millis");
+			_check(requests.get(),requestsBefore,"server requests while the circuit is open",errors);
+
+			// [5] the server recovers: after the open time a trial refresh closes the circuit
+			behavior.set(ServerBehavior.OK);
+			Thread.sleep(2100);
+			_check(feed.refresh(),true,"trial refresh",errors);
+			_check(feed.isStale(),false,"stale after the trial refresh",errors);
+
+			// [6] half open: a single trial call is allowed
+			CircuitBreaker circuit = new CircuitBreaker(1,0);
+			circuit.onFailure();
+			_check(circuit.allowRequest(),true,"half open trial call",errors);
+			_check(circuit.allowRequest(),false,"half open call while the trial is in flight",errors);
+			circuit.onFailure();
+			_check(circuit.allowRequest(),true,"half open trial call after the failed trial",errors);
+			circuit.onSuccess();
+			_check(circuit.getState(),CircuitState.CLOSED,"circuit state after the trial call succeeded",errors);
+			_check(circuit.allowRequest() && circuit.allowRequest(),true,"closed circuit calls",errors);
+
+			String text = metrics.asText();
+			for (String expected : new String[] {"meteo_feed_circuit_state{feed=\"test forecast\"} 0",
+												 "meteo_feed_refresh_failures_total{feed=\"test forecast\"} 2",
+												 "meteo_feed_short_circuited_total{feed=\"test forecast\"} 100"}) {
+				if (!text.contains(expected)) errors.add("The metrics do NOT contain " + expected);
+			}
+
+			_report("Timeouts, circuit breaker and serve-stale work as expected",errors);
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		} finally {
+			if (engine != null) engine.stop();
+			if (server != null) server.stop(0);
+			System.exit(0);		// the server executor threads are NOT daemon
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package euskadi.opendata.test.meteo;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.io.ByteStreams;
+
+import euskadi.opendata.model.meteo.Forecast;
+import euskadi.opendata.service.meteo.WeatherForecastParser;
+import euskadi.opendata.service.meteo.WeatherForecastSnapshot;
+import euskadi.opendata.service.meteo.WeatherForecastSnapshotFile;
+import euskadi.opendata.service.meteo.WeatherForecastSnapshotFile.StoredSnapshot;
+import lombok.Cleanup;
+import r01f.resources.ResourcesLoaderBuilder;
+
+/**
+ * Checks that a {@link WeatherForecastSnapshot} saved with {@link WeatherForecastSnapshotFile}
+ * is read back unchanged and a file written with another format version is NOT read
+ * (uses the OpenDataTest/resources/met_forecast.xml fixture)
+ */
+public class TestOpenDataMeteoSnapshotFile
+	 extends TestOpenDataMeteoBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String FIXTURE = "met_forecast.xml";
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		try {
+			@Cleanup InputStream is = ResourcesLoaderBuilder.createDefaultResourcesLoader()
+															.getInputStream(FIXTURE);
+			Forecast forecast = WeatherForecastParser.STAX.parse(ByteStreams.toByteArray(is));
+			WeatherForecastSnapshot snapshot = new WeatherForecastSnapshot(forecast,
+																		   System.currentTimeMillis(),
+																		   "0123456789abcdef0123456789abcdef01234567");
+			// write & read
+			File file = File.createTempFile("opendata-meteo-forecast",".bin");
+			file.deleteOnExit();
+			WeatherForecastSnapshotFile snapshotFile = new WeatherForecastSnapshotFile(file);
+			snapshotFile.write(snapshot,
+							   "\"an-etag\"","Thu, 07 Jun 2012 10:00:00 GMT");
+			StoredSnapshot stored = snapshotFile.read();
+			if (stored == null) {
+				System.out.println("[KO] The snapshot file could NOT be read");
+				return;
+			}
+			System.out.println("The snapshot file size is " + file.length() + " bytes");
+
+			// compare
+			List<String> diffs = new ArrayList<String>();
+			_compare(forecast,stored.getSnapshot().getForecast(),
+					 diffs);
+			if (stored.getSnapshot().getLoadTimeStamp() != snapshot.getLoadTimeStamp()) diffs.add("load timestamp");
+			if (!stored.getSnapshot().getContentHash().equals(snapshot.getContentHash())) diffs.add("content hash");
+			if (!"\"an-etag\"".equals(stored.getETag())) diffs.add("etag");
+
+			// a file written with another format version is NOT read
+			RandomAccessFile raf = new RandomAccessFile(file,"rw");
+			try {
+				raf.seek(4);		// after the magic
+				raf.writeInt(2);
+			} finally {
+				raf.close();
+			}
+			if (snapshotFile.read() != null) diffs.add("a version 2 file was read");
+			if (_report("The snapshot read from " + file + " is the saved one",diffs)) _printDebugInfo(stored.getSnapshot().getForecast());
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package euskadi.opendata.test.meteo;
+
+import java.io.InputStream;
+
+import euskadi.opendata.model.meteo.Day;
+import euskadi.opendata.model.meteo.ForecastForZone;
+import euskadi.opendata.model.meteo.TendencyForDay;
+import euskadi.opendata.model.meteo.WeatherTendency;
+import euskadi.opendata.model.meteo.ZoneForecast;
+import euskadi.opendata.service.meteo.TendencyStAXReader;
+import euskadi.opendata.service.meteo.WeatherTendencySnapshot;
+import euskadi.opendata.service.meteo.ZoneForecastSnapshot;
+import euskadi.opendata.service.meteo.ZoneForecastStAXReader;
+import lombok.Cleanup;
+import r01f.locale.Language;
+import r01f.resources.ResourcesLoaderBuilder;
+
+/**
+ * Reads the bundled met_forecast_zone.xml and met_tendency.xml fixtures
+ * (OpenDataTest/resources) and prints the zone forecast & the tendency
+ * IMPORTANT!	The fixtures follow the readers' layout: they're NOT copies of real documents so this
+ * 				test does NOT prove the readers can parse the live feeds (which are opt-in until they do)
+ */
+public class TestOpenDataMeteoZoneAndTendency
+	 extends TestOpenDataMeteoBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String ZONE_FIXTURE = "met_forecast_zone.xml";
+	private static final String TENDENCY_FIXTURE = "met_tendency.xml";
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		try {
+			// [1] - Zone forecast
+			@Cleanup InputStream zoneIs = ResourcesLoaderBuilder.createDefaultResourcesLoader()
+																.getInputStream(ZONE_FIXTURE);
+			ZoneForecast zoneForecast = ZoneForecastStAXReader.read(zoneIs);
+			ZoneForecastSnapshot zoneSnapshot = new ZoneForecastSnapshot(zoneForecast,
+																		 System.currentTimeMillis(),"zone");
+			for (Day day : Day.values()) {
+				if (zoneForecast.getDayForecasts(day) == null) continue;
+				System.out.println(day + ": " + zoneSnapshot.forecastAt(day).getDescriptionIn(Language.SPANISH));
+				for (ForecastForZone zone : zoneSnapshot.forecastAt(day).getZones().values()) {
+					System.out.println("\t-" + zone.getZoneName() + " (" + zone.getZoneCode() + "): " + zone.getTemperatureRange() + " " + zone.getDescriptionIn(Language.SPANISH));
+				}
+			}
+			boolean zoneOK = zoneSnapshot.forecastFor("2",Day.TODAY).getTempMax() == 27
+						  && zoneSnapshot.forecastFor("1",Day.TOMORROW).getTempMin() == 16;
+			System.out.println((zoneOK ? "[OK]" : "[KO]") + " zone forecast");
+
+			// [2] - Tendency
+			@Cleanup InputStream tendencyIs = ResourcesLoaderBuilder.createDefaultResourcesLoader()
+																	.getInputStream(TENDENCY_FIXTURE);
+			WeatherTendency tendency = TendencyStAXReader.read(tendencyIs);
+			WeatherTendencySnapshot tendencySnapshot = new WeatherTendencySnapshot(tendency,
+																				   System.currentTimeMillis(),"tendency");
+			for (TendencyForDay day : tendencySnapshot.tendencies()) {
+				System.out.println(day.getTendencyDateText() + ": " + day.getTemperatureRange() + " " + day.getDescriptionIn(Language.BASQUE));
+			}
+			TendencyForDay last = tendencySnapshot.tendencies().get(tendencySnapshot.tendencies().size() - 1);
+			boolean tendencyOK = tendencySnapshot.tendencies().size() == 2
+							  && tendencySnapshot.tendencyFor(last.getDate()) == last;
+			System.out.println((tendencyOK ? "[OK]" : "[KO]") + " tendency");
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package euskadi.opendata.test.procurements;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import euskadi.opendata.model.ProcurementData;
+import euskadi.opendata.service.procurements.ProcurementDataFileReader;
+import euskadi.opendata.service.procurements.ProcurementDataFilesPipeline;
+import euskadi.opendata.service.procurements.ProcurementDataFilesPipeline.PipelineSummary;
+import euskadi.opendata.service.procurements.ProcurementsAggregator;
+import euskadi.opendata.test.base.TestOpenDataChecksBase;
+
+/**
+ * Checks the {@link ProcurementDataFilesPipeline} against a local http server serving generated
+ * procurement data files (every file takes some time to be answered):
+ * <ul>
+ * 		<li>the title and budget are extracted from the data files</li>
+ * 		<li>the min / max / total are aggregated from the concurrent parser threads</li>
+ * 		<li>the data files are downloaded concurrently but never more than the concurrency limit</li>
+ * 		<li>a failed data file does NOT stop the pipeline</li>
+ * </ul>
+ */
+public class TestProcurementDataFilesPipeline
+	 extends TestOpenDataChecksBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final int DATA_FILES = 60;
+	private static final int MAX_CONCURRENT_DOWNLOADS = 8;
+	private static final long DOWNLOAD_DELAY_MILLIS = 50;
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		HttpServer server = null;
+		try {
+			// a slow local server: the procurement number i has a budget of i * 1.000,50; the 13th does NOT exist
+			final AtomicInteger inFlight = new AtomicInteger();
+			final AtomicInteger maxInFlight = new AtomicInteger();
+			server = _createLocalServer();
+			server.createContext("/contenidos/anuncio_contratacion",new HttpHandler() {
+																			@Override
+																			public void handle(final HttpExchange exchange) throws IOException {
+																				int now = inFlight.incrementAndGet();
+																				int max = maxInFlight.get();
+																				while (now > max && !maxInFlight.compareAndSet(max,now)) max = maxInFlight.get();
+																				try {
+																					int i = Integer.parseInt(exchange.getRequestURI().getPath().replaceAll(".*/exp([0-9]+)/.*","$1"));
+																					Thread.sleep(DOWNLOAD_DELAY_MILLIS);
+																					if (i == 13) {
+																						_respond(exchange,404,null);
+																						return;
+																					}
+																					byte[] xml = _dataFile(i).getBytes(Charsets.ISO_8859_1);
+																					_respond(exchange,200,xml);
+																				} catch (InterruptedException intEx) {
+																					Thread.currentThread().interrupt();
+																				} finally {
+																					inFlight.decrementAndGet();
+																					exchange.close();
+																				}
+																			}
+																 });
+			server.start();
+			String baseUrl = _localUrl(server,"/contenidos/anuncio_contratacion");
+			Map<String,String> dataFileUrls = new LinkedHashMap<String,String>();
+			for (int i=1; i <= DATA_FILES; i++) dataFileUrls.put("exp" + i,baseUrl + "/exp" + i + "/es_doc/data/es_r01dpd" + i);
+			List<String> errors = new ArrayList<String>();
+
+			// [1] The data file reader
+			ProcurementData data = new ProcurementDataFileReader().read("exp2","url",
+																		_dataFile(2).getBytes(Charsets.ISO_8859_1));
+			_check(data.getTituloContrato(),"Contratacin nmero 2","title",errors);
+			_check(data.getValue(),2001.0,"budget",errors);
+			_check(ProcurementDataFileReader.parseValue("1.234.567,89"),1234567.89,"parsed budget",errors);
+
+			// [2] The pipeline
+			ProcurementsAggregator aggregator = new ProcurementsAggregator();
+			PipelineSummary summary = new ProcurementDataFilesPipeline(MAX_CONCURRENT_DOWNLOADS,2,
+																	   1000,5000).run(dataFileUrls,
+																	   				  aggregator);
+			long sequentialMillis = DATA_FILES * DOWNLOAD_DELAY_MILLIS;
+			System.out.println("Read " + summary.getHandled() + " of " + summary.getDataFiles() + " data files in " + summary.getElapsedMillis() + " millis " +
+							   "(sequentially it would take more than " + sequentialMillis + " millis); max concurrent downloads: " + maxInFlight.get());
+
+			_check(summary.getHandled(),DATA_FILES - 1,"handled data files",errors);
+			_check(summary.getFailures().keySet().toString(),"[exp13]","failed data files",errors);
+			_check(aggregator.getCount(),DATA_FILES - 1,"aggregated procurements",errors);
+			_check(aggregator.getMin().getContentName(),"exp1","min procurement",errors);
+			_check(aggregator.getMax().getContentName(),"exp" + DATA_FILES,"max procurement",errors);
+			double expectedTotal = 0;
+			for (int i=1; i <= DATA_FILES; i++) if (i != 13) expectedTotal += i * 1000.5;
+			if (Math.abs(aggregator.getTotal() - expectedTotal) > 0.001) errors.add("total: " + aggregator.getTotal() + " != " + expectedTotal);
+			if (maxInFlight.get() > MAX_CONCURRENT_DOWNLOADS) errors.add("More than " + MAX_CONCURRENT_DOWNLOADS + " concurrent downloads: " + maxInFlight.get());
+			if (maxInFlight.get() < 2) errors.add("The data files were NOT downloaded concurrently");
+			if (summary.getElapsedMillis() >= sequentialMillis) errors.add("The pipeline was NOT faster than a sequential download");
+
+			_report("The procurement data files are downloaded, parsed and aggregated concurrently",errors);
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		} finally {
+			if (server != null) server.stop(0);
+			System.exit(0);		// the server executor threads are NOT daemon
+		}
+	}
+	/**
+	 * A procurement data file: the same item names are used outside the contratacion item to check
+	 * that only the contratacion ones are extracted
+	 */
+	private static String _dataFile(final int i) {
+		return "<?xml version='1.0' encoding='ISO-8859-1'?>" +
+			   "<record>" +
+			   		"<item name='anuncio'><value><item name='contratacion_presupuesto_contrato_cab'><value>999.999,00</value></item></value></item>" +
+			   		"<item name='contratacion'>" +
+			   			"<value>" +
+			   				"<item name='contratacion_tipo_contrato'><value><![CDATA[Servicios]]></value></item>" +
+			   				"<item name='contratacion_titulo_contrato'><value><![CDATA[Contratacin nmero " + i + "]]>\n\t</value></item>" +
+			   				"<item name='contratacion_presupuesto_contrato_cab'><value>" + String.format(Locale.ENGLISH,"%,.2f",i * 1000.5).replace(",","#").replace(".",",").replace("#",".") + "</value></item>" +
+			   			"</value>" +
+			   		"</item>" +
+			   "</record>";
+	}
+}
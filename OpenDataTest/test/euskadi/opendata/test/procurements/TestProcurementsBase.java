@@ -1,43 +1,25 @@
 package euskadi.opendata.test.procurements;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.Accessors;
 
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
-
+import euskadi.opendata.model.ProcurementData;
+import euskadi.opendata.service.procurements.ProcurementDataFileReader;
 import euskadi.opendata.test.base.TestOpenDataBase;
-import r01f.util.types.Strings;
+import euskadi.opendata.util.DiskHttpCache;
 
 abstract class TestProcurementsBase
 	   extends TestOpenDataBase{
 /////////////////////////////////////////////////////////////////////////////////////////
 //  
 /////////////////////////////////////////////////////////////////////////////////////////
-	private static final DocumentBuilder _docBuilder;
-	static {
-		try {
-			_docBuilder = DocumentBuilderFactory.newInstance()
-												.newDocumentBuilder();
-		} catch(ParserConfigurationException parserEx) {
-			throw new IllegalStateException(parserEx);
-		}
-	}
+	private static final ProcurementDataFileReader _dataFileReader = new ProcurementDataFileReader();		// thread safe
 /////////////////////////////////////////////////////////////////////////////////////////
 //  
 /////////////////////////////////////////////////////////////////////////////////////////
@@ -46,23 +28,15 @@ abstract class TestProcurementsBase
 	 * @param contentName
 	 * @param dataFileUrl
 	 * @return
-	 * @throws MalformedURLException
 	 * @throws IOException
-	 * @throws SAXException
-	 * @throws XPathExpressionException
 	 */
 	protected static Procurement _procurementDataFor(final String contentName,
-											  		 final String dataFileUrl) throws MalformedURLException,IOException,
-											  								   		  SAXException,XPathExpressionException {
-		Document xmlDocument = _docBuilder.parse(new URL(dataFileUrl).openStream());
-		XPath xpath = XPathFactory.newInstance().newXPath();
-		String title = xpath.compile("/record/item[@name='contratacion']/value/item[@name='contratacion_titulo_contrato']/value").evaluate(xmlDocument);
-		String value = xpath.compile("/record/item[@name='contratacion']/value/item[@name='contratacion_presupuesto_contrato_cab']/value").evaluate(xmlDocument);
-					
+											  		 final String dataFileUrl) throws IOException {
+		ProcurementData data = _dataFileReader.read(contentName,dataFileUrl,
+													DiskHttpCache.getDefault().load(dataFileUrl));
 		return new Procurement(contentName,
-							   title,
-							   Double.valueOf(_normalizeValue(value))
-											  .doubleValue()); 			
+							   data.getTituloContrato(),
+							   data.getValue());
 	}
 /////////////////////////////////////////////////////////////////////////////////////////
 //  
@@ -77,11 +51,6 @@ abstract class TestProcurementsBase
 /////////////////////////////////////////////////////////////////////////////////////////
 //  
 /////////////////////////////////////////////////////////////////////////////////////////
-	protected static String _normalizeValue(final String value) {
-		if (Strings.isNullOrEmpty(value)) return "0";
-		return value.replace(".","")
-					.replace(",",".");
-	}
 	protected static String _formatValue(final double value) {
 	    // Conversor
 	    DecimalFormat df = new DecimalFormat("###,###.##");
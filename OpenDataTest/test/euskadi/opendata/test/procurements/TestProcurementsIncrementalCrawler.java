@@ -0,0 +1,223 @@
+package euskadi.opendata.test.procurements;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import euskadi.opendata.service.procurements.ProcurementsAggregator;
+import euskadi.opendata.service.procurements.ProcurementsIncrementalCrawler;
+import euskadi.opendata.service.procurements.ProcurementsIncrementalCrawler.IncrementalCrawlSummary;
+import euskadi.opendata.service.search.SearchCrawlState;
+import euskadi.opendata.service.search.SearchCrawlStateStore;
+import euskadi.opendata.test.base.TestOpenDataChecksBase;
+import euskadi.opendata.util.DiskHttpCache;
+
+/**
+ * Checks the {@link ProcurementsIncrementalCrawler} against a local http server that answers the procurements
+ * search (filtered by the documentCreateDate window, two items per page) and serves the procurement data files:
+ * <ul>
+ * 		<li>a crawl that fails is resumed after the last completed page (the completed pages are NOT fetched again)</li>
+ * 		<li>the next crawl only reads the procurements new or changed since the last one</li>
+ * 		<li>a data file that did NOT change is NOT parsed again</li>
+ * 		<li>the data file hashes are appended as the pages are read (NOT rewritten with every page)</li>
+ * </ul>
+ */
+public class TestProcurementsIncrementalCrawler
+	 extends TestOpenDataChecksBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final int PAGE_SIZE = 2;
+	private static final Pattern WINDOW_PATTERN = Pattern.compile("documentCreateDate\\.BETWEEN\\.([0-9/]+),([0-9/]+)");
+	private static final Pattern PAGE_PATTERN = Pattern.compile("r01kTgtPg=([0-9]+)");
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		HttpServer server = null;
+		File dir = Files.createTempDir();
+		try {
+			// the procurements: expN is created the N day of february 2015; the data file changes with the version
+			final Map<Integer,Integer> versions = new ConcurrentHashMap<Integer,Integer>();
+			for (int i=1; i <= 5; i++) versions.put(i,1);
+			final Map<String,AtomicInteger> requestsByPage = new ConcurrentHashMap<String,AtomicInteger>();
+			final AtomicInteger failingPage = new AtomicInteger();
+			server = _createLocalServer();
+			server.createContext("/r01hPresentationXML.jsp",new HttpHandler() {
+																		@Override
+																		public void handle(final HttpExchange exchange) throws IOException {
+																			String query = exchange.getRequestURI().getQuery();
+																			Matcher window = WINDOW_PATTERN.matcher(query);
+																			Matcher page = PAGE_PATTERN.matcher(query);
+																			if (!window.find()) {
+																				_respond(exchange,400,null);
+																				return;
+																			}
+																			int pageNumber = page.find() ? Integer.parseInt(page.group(1)) : 1;
+																			String key = window.group(1) + " page " + pageNumber;
+																			if (!requestsByPage.containsKey(key)) requestsByPage.put(key,new AtomicInteger());
+																			requestsByPage.get(key).incrementAndGet();
+																			if (pageNumber == failingPage.get()) {
+																				_respond(exchange,500,null);
+																				return;
+																			}
+																			_respond(exchange,200,_searchPage(versions,
+																											  window.group(1),window.group(2),
+																											  pageNumber).getBytes(Charsets.ISO_8859_1));
+																		}
+															 });
+			server.createContext("/contenidos/anuncio_contratacion",new HttpHandler() {
+																			@Override
+																			public void handle(final HttpExchange exchange) throws IOException {
+																				int i = Integer.parseInt(exchange.getRequestURI().getPath().replaceAll(".*/exp([0-9]+)/.*","$1"));
+																				_respond(exchange,200,_dataFile(i,versions.get(i)).getBytes(Charsets.ISO_8859_1));
+																			}
+																 });
+			server.start();
+			String base = _localUrl(server,"");
+			DiskHttpCache cache = new DiskHttpCache(new File(dir,"cache"),1024 * 1024,
+													1000,5000,
+													false);
+			File stateDir = new File(dir,"state");
+			List<String> errors = new ArrayList<String>();
+
+			// [1] The first crawl fails at the second page (of 3)
+			failingPage.set(2);
+			ProcurementsAggregator aggregator = new ProcurementsAggregator();
+			try {
+				_crawler(base,cache,new SearchCrawlStateStore(stateDir)).crawl(aggregator);
+				errors.add("The crawl did NOT fail");
+			} catch (IOException ioEx) {
+				// expected
+			}
+			_check(aggregator.getCount(),2,"procurements read by the failed crawl",errors);
+
+			// [2] The crawl is resumed (ie: by a new process) after the first page
+			failingPage.set(0);
+			aggregator = new ProcurementsAggregator();
+			IncrementalCrawlSummary resumed = _crawler(base,cache,new SearchCrawlStateStore(stateDir)).crawl(aggregator);
+			_check(resumed.getFromPage(),2,"resumed crawl first page",errors);
+			_check(resumed.getHandled(),3,"procurements read by the resumed crawl",errors);
+			_check(requestsByPage.get("01/01/2015 page 1").get(),1,"first page requests",errors);
+			_check(aggregator.getMax().getContentName(),"exp5","newest procurement",errors);
+			SearchCrawlState state = new SearchCrawlStateStore(stateDir).load(_crawler(base,cache,new SearchCrawlStateStore(stateDir)).getQueryId());
+			_check(state.getNewestDate(),"05/02/2015","newest date",errors);
+			_check(state.isCrawlInProgress(),false,"crawl in progress",errors);
+			_check(state.getDataFileHashes().size(),5,"data file hashes",errors);
+
+			// [3] Nothing changed: only the newest day is searched again and it's data file is NOT parsed
+			aggregator = new ProcurementsAggregator();
+			IncrementalCrawlSummary unchanged = _crawler(base,cache,new SearchCrawlStateStore(stateDir)).crawl(aggregator);
+			_check(unchanged.getFromDate(),"05/02/2015","unchanged crawl window",errors);
+			_check(unchanged.getItems(),1,"unchanged crawl items",errors);
+			_check(unchanged.getUnchanged(),1,"unchanged data files",errors);
+			_check(aggregator.getCount(),0,"procurements read by the unchanged crawl",errors);
+
+			// [4] A new procurement and a changed one: only those are read
+			versions.put(6,1);
+			versions.put(5,2);
+			aggregator = new ProcurementsAggregator();
+			IncrementalCrawlSummary changed = _crawler(base,cache,new SearchCrawlStateStore(stateDir)).crawl(aggregator);
+			_check(changed.getHandled(),2,"procurements read by the changed crawl",errors);
+			_check(changed.getUnchanged(),0,"unchanged data files of the changed crawl",errors);
+			_check(aggregator.getMin().getValue(),502.0,"changed procurement budget",errors);
+			_check(new SearchCrawlStateStore(stateDir).load(_crawler(base,cache,new SearchCrawlStateStore(stateDir)).getQueryId()).getNewestDate(),"06/02/2015","newest date after the changed crawl",errors);
+
+			// [5] The hashes are appended (only the read data files) and NOT saved with the state
+			for (File stateFile : stateDir.listFiles()) {
+				if (stateFile.getName().endsWith(".hashes")) {
+					_check(Files.readLines(stateFile,Charsets.UTF_8).size(),7,"appended data file hashes",errors);
+				} else if (Files.toString(stateFile,Charsets.UTF_8).contains("exp")) {
+					errors.add("The data file hashes are saved with the crawl state");
+				}
+			}
+
+			System.out.println("Resumed crawl: " + resumed.getHandled() + " procurements in " + resumed.getElapsedMillis() + " millis; " +
+							   "unchanged crawl: " + unchanged.getUnchanged() + " data files NOT parsed; " +
+							   "changed crawl: " + changed.getHandled() + " procurements read");
+			_report("The procurements are crawled incrementally and a failed crawl is resumed",errors);
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		} finally {
+			if (server != null) server.stop(0);
+			_delete(dir);
+			System.exit(0);		// the server executor threads are NOT daemon
+		}
+	}
+	private static ProcurementsIncrementalCrawler _crawler(final String base,
+														   final DiskHttpCache cache,final SearchCrawlStateStore store) {
+		return new ProcurementsIncrementalCrawler(base + "/r01hPresentationXML.jsp",base + "/contenidos",
+												  "01/01/2015",
+												  2,4,
+												  cache,store);
+	}
+	/**
+	 * A search page with the procurements created in the window sorted by documentCreateDate ASC
+	 */
+	private static String _searchPage(final Map<Integer,Integer> versions,
+									  final String fromDate,final String toDate,
+									  final int pageNumber) {
+		List<Integer> inWindow = new ArrayList<Integer>();
+		for (int i=1; i <= versions.size(); i++) {
+			if (_date(_createDate(i)) >= _date(fromDate) && _date(_createDate(i)) <= _date(toDate)) inWindow.add(i);
+		}
+		int numberOfPages = Math.max(1,(inWindow.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version='1.0' encoding='ISO-8859-1'?>")
+		   .append("<searchSession lang='es'><searchResultsBySource>")
+		   .append("<searchSourceResults numberOfPages='").append(numberOfPages).append("' numberOfResults='").append(inWindow.size()).append("'>")
+		   .append("<results>");
+		for (int j=(pageNumber - 1) * PAGE_SIZE; j < Math.min(pageNumber * PAGE_SIZE,inWindow.size()); j++) {
+			int i = inWindow.get(j);
+			xml.append("<item>")
+			   		.append("<contentName>exp").append(i).append("</contentName>")
+			   		.append("<documentLanguage>es</documentLanguage>")
+			   		.append("<documentWorkAreaRelativePath>anuncio_contratacion/exp").append(i).append("/es_doc</documentWorkAreaRelativePath>")
+			   		.append("<documentCreateDate>").append(_createDate(i)).append("</documentCreateDate>")
+			   		.append("<documentDataFilesGeneratedFilesDocumentRelativePaths>")
+			   			.append("<datafileOid.r01dpd").append(i).append(">anuncio_contratacion;main:exp").append(i).append(".html</datafileOid.r01dpd").append(i).append(">")
+			   		.append("</documentDataFilesGeneratedFilesDocumentRelativePaths>")
+			   .append("</item>");
+		}
+		xml.append("</results></searchSourceResults></searchResultsBySource></searchSession>");
+		return xml.toString();
+	}
+	/**
+	 * A procurement data file: the budget is the procurement number * 100 + it's version
+	 */
+	private static String _dataFile(final int i,final int version) {
+		return "<?xml version='1.0' encoding='ISO-8859-1'?>" +
+			   "<record>" +
+			   		"<item name='contratacion'>" +
+			   			"<value>" +
+			   				"<item name='contratacion_titulo_contrato'><value><![CDATA[Contratacion " + i + " version " + version + "]]></value></item>" +
+			   				"<item name='contratacion_presupuesto_contrato_cab'><value>" + (i * 100 + version) + ",00</value></item>" +
+			   			"</value>" +
+			   		"</item>" +
+			   "</record>";
+	}
+	private static String _createDate(final int i) {
+		return (i < 10 ? "0" : "") + i + "/02/2015";
+	}
+	private static long _date(final String date) {
+		try {
+			return new SimpleDateFormat("dd/MM/yyyy").parse(date).getTime();
+		} catch (ParseException parseEx) {
+			throw new IllegalArgumentException(parseEx);
+		}
+	}
+}
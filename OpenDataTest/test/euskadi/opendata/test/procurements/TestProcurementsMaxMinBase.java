@@ -1,13 +1,13 @@
 package euskadi.opendata.test.procurements;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
-import javax.xml.xpath.XPathExpressionException;
-
-import org.xml.sax.SAXException;
+import euskadi.opendata.model.ProcurementData;
+import euskadi.opendata.service.procurements.ProcurementDataFilesPipeline;
+import euskadi.opendata.service.procurements.ProcurementDataFilesPipeline.PipelineSummary;
+import euskadi.opendata.service.procurements.ProcurementsAggregator;
+import euskadi.opendata.util.DiskHttpCache;
 
 abstract class TestProcurementsMaxMinBase 
 	   extends TestProcurementsBase {
@@ -22,45 +22,40 @@ abstract class TestProcurementsMaxMinBase
 /////////////////////////////////////////////////////////////////////////////////////////
 	/**
 	 * Loads every procurement data and computes the min & max procurement
+	 * (the data files are downloaded and parsed concurrently: see {@link ProcurementDataFilesPipeline})
 	 * @param procurementDataUrls
 	 */
 	protected static void _computeMinAndMax(final Map<String,String> procurementDataUrls) {
 		try {
 			if (procurementDataUrls != null) {
-				// [1]: Use a map indexed by procurement name to avoid possible duplicate entries
-				Map<String,Double> values = new HashMap<String,Double>();
-				double total = 0; 
-				for (Map.Entry<String,String> procurement : procurementDataUrls.entrySet()) {
-					String procContent = procurement.getKey();
-					String procDataFileUrl = procurement.getValue();
-					
-					// Download the data file and get some data
-					Procurement procData = _procurementDataFor(procContent,procDataFileUrl);
-					
-					System.out.println("--->" + procData.getValue() + " > " + procData.getTitle());
-					
-					total = total + procData.getValue();
-					
-					
-					values.put(procData.getTitle(),procData.getValue());
+				// [1]: Download and parse every data file (several at the same time); the aggregator
+				//		uses the procurement name to avoid possible duplicate entries
+				ProcurementsAggregator aggregator = new ProcurementsAggregator();
+				ProcurementDataFilesPipeline pipeline = new ProcurementDataFilesPipeline(16,		// data files downloaded at the same time
+																						 DiskHttpCache.getDefault());
+				PipelineSummary summary = pipeline.run(procurementDataUrls,
+													   aggregator);
+				for (ProcurementData procData : aggregator.getProcurements()) {
+					System.out.println("--->" + procData.getValue() + " > " + procData.getTituloContrato());
+				}
+				for (Map.Entry<String,String> failure : summary.getFailures().entrySet()) {
+					System.out.println("---> ERROR " + failure.getKey() + ": " + failure.getValue());
 				}
+				System.out.println(">>> " + summary.getHandled() + " of " + summary.getDataFiles() + " procurement data files read in " + summary.getElapsedMillis() + " millis");
+				if (aggregator.getCount() == 0) return;
 			    
-				// [2]: Find the min & max procurement
-			    double minValue = Collections.min(values.values());
-				double maxValue = Collections.max(values.values());
+				// [2]: The min & max procurement
+			    ProcurementData min = aggregator.getMin();
+				ProcurementData max = aggregator.getMax();
 				
 				// Debug
 				System.out.println("\n\n\n\n\n\n\n\n\n\n");
-				System.out.println("El presupuesto menor de todas las contraciones administrativas de Euskadi.eus es de \"" + minValue + "\"  para la contratacin \"" + values.get(minValue) + "\"");
-			    System.out.println("El presupuesto mayor de todas las contraciones administrativas de Euskadi.eus es de \"" + maxValue + "\"  para la contratacin \"" + values.get(maxValue) + "\"");
-			    System.out.println("El presupuesto TOTAL de todas las contraciones administrativas de Euskadi.eus es de \"" + _formatValue(total) + "\" ");				
+				System.out.println("El presupuesto menor de todas las contraciones administrativas de Euskadi.eus es de \"" + min.getValue() + "\"  para la contratacin \"" + min.getTituloContrato() + "\"");
+			    System.out.println("El presupuesto mayor de todas las contraciones administrativas de Euskadi.eus es de \"" + max.getValue() + "\"  para la contratacin \"" + max.getTituloContrato() + "\"");
+			    System.out.println("El presupuesto TOTAL de todas las contraciones administrativas de Euskadi.eus es de \"" + _formatValue(aggregator.getTotal()) + "\" ");				
 			}
 		} catch (IOException e) {
 			e.printStackTrace(System.out);
-		} catch (SAXException e) {
-			e.printStackTrace(System.out);
-		} catch (XPathExpressionException e) {
-			e.printStackTrace(System.out);
 		}
 	}
 }
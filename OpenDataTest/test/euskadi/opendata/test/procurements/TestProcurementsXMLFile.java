@@ -2,11 +2,11 @@ package euskadi.opendata.test.procurements;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
+import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Map;
 
+import euskadi.opendata.util.DiskHttpCache;
 import r01f.util.types.Strings;
 
 /**
@@ -21,8 +21,9 @@ public class TestProcurementsXMLFile
 			Map<String,String> procurementDataUrls = null;
 			
 			// [1]: Download the procurements dataset and get a list of every procurement data
-			URL url = new URL("http://opendata.euskadi.eus/contenidos/ds_contrataciones/contrataciones_admin_2015/opendata/contratos.xml");			
-			BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream()));
+			String contratosXml = DiskHttpCache.getDefault()
+											   .loadAsString("http://opendata.euskadi.eus/contenidos/ds_contrataciones/contrataciones_admin_2015/opendata/contratos.xml");			
+			BufferedReader in = new BufferedReader(new StringReader(contratosXml));
 			
 			// Process file retaining only the <dataxml>...</dataxml> lines
 			String inputLine;
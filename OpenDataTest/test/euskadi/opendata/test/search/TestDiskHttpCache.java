@@ -0,0 +1,183 @@
+package euskadi.opendata.test.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import euskadi.opendata.test.base.TestOpenDataChecksBase;
+import euskadi.opendata.util.AtomicFiles;
+import euskadi.opendata.util.DiskHttpCache;
+import euskadi.opendata.util.DiskHttpCache.CacheStatus;
+import euskadi.opendata.util.DiskHttpCache.CachedResponse;
+
+/**
+ * Checks the {@link DiskHttpCache} against a local http server that answers conditional GETs:
+ * <ul>
+ * 		<li>a cached url is revalidated (ETag or Last-Modified) and a 304 is served from the cache</li>
+ * 		<li>the same body returned by several urls is stored once</li>
+ * 		<li>the cache survives a restart</li>
+ * 		<li>the least recently used entries are evicted when the size limit is reached</li>
+ * 		<li>offline mode serves the cached bodies without any request</li>
+ * 		<li>a failed write keeps the previous file and deletes the temp file</li>
+ * </ul>
+ */
+public class TestDiskHttpCache
+	 extends TestOpenDataChecksBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String LAST_MODIFIED = "Wed, 01 Jul 2015 10:00:00 GMT";
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		HttpServer server = null;
+		File dir = Files.createTempDir();
+		try {
+			// the server: /etag/{name} answers with an ETag, /lastModified/{name} with a Last-Modified;
+			// the body of a file is its name and version (the body of /etag/same* is always the same)
+			final Map<String,Integer> versions = new ConcurrentHashMap<String,Integer>();
+			final AtomicInteger requests = new AtomicInteger();
+			final AtomicInteger notModified = new AtomicInteger();
+			server = _createLocalServer();
+			server.createContext("/",new HttpHandler() {
+											@Override
+											public void handle(final HttpExchange exchange) throws IOException {
+												requests.incrementAndGet();
+												String path = exchange.getRequestURI().getPath();
+												String name = path.substring(path.lastIndexOf('/') + 1);
+												Integer version = versions.get(name);
+												if (version == null) version = 1;
+												String body = name.startsWith("same") ? "the same body"
+																					  : name + " version " + version + " " + _padding(100);
+												String etag = "\"" + body.hashCode() + "\"";
+												boolean withETag = path.startsWith("/etag/");
+												boolean unchanged = withETag ? etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))
+																			 : version == 1 && LAST_MODIFIED.equals(exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+												if (unchanged) {
+													notModified.incrementAndGet();
+													_respond(exchange,304,null);
+													return;
+												}
+												if (withETag) {
+													exchange.getResponseHeaders().set("ETag",etag);
+												} else if (version == 1) {
+													exchange.getResponseHeaders().set("Last-Modified",LAST_MODIFIED);
+												}
+												exchange.getResponseHeaders().set("Content-Type","text/xml; charset=ISO-8859-1");
+												_respond(exchange,200,body.getBytes(Charsets.ISO_8859_1));
+											}
+								 });
+			server.start();
+			String base = _localUrl(server,"");
+			List<String> errors = new ArrayList<String>();
+
+			// [1] Revalidation
+			DiskHttpCache cache = new DiskHttpCache(dir,1024 * 1024,
+													1000,5000,
+													false);
+			CachedResponse first = cache.get(new URL(base + "/etag/a"));
+			CachedResponse second = cache.get(new URL(base + "/etag/a"));
+			_check(first.getStatus(),CacheStatus.DOWNLOADED,"first get",errors);
+			_check(second.getStatus(),CacheStatus.NOT_MODIFIED,"etag revalidated get",errors);
+			_check(second.asString(),first.asString(),"etag revalidated body",errors);
+			cache.get(new URL(base + "/lastModified/b"));
+			_check(cache.get(new URL(base + "/lastModified/b")).getStatus(),CacheStatus.NOT_MODIFIED,"last-modified revalidated get",errors);
+			versions.put("a",2);
+			CachedResponse modified = cache.get(new URL(base + "/etag/a"));
+			_check(modified.getStatus(),CacheStatus.DOWNLOADED,"modified get",errors);
+			_check(modified.asString().startsWith("a version 2"),true,"modified body",errors);
+			_check(notModified.get(),2,"304 answers",errors);
+
+			// [2] Content addressed: the same body is stored once
+			long blobBytes = cache.getBlobBytes();
+			cache.get(new URL(base + "/etag/same1"));
+			cache.get(new URL(base + "/etag/same2"));
+			_check(cache.getBlobBytes() - blobBytes,(long)"the same body".length(),"the same body blobs bytes",errors);
+			_check(cache.getEntryCount(),4,"entries",errors);
+
+			// [3] Restart: the entries are loaded from disk
+			DiskHttpCache restarted = new DiskHttpCache(dir,1024 * 1024,
+														1000,5000,
+														false);
+			_check(restarted.getEntryCount(),4,"entries after a restart",errors);
+			_check(restarted.get(new URL(base + "/etag/a")).getStatus(),CacheStatus.NOT_MODIFIED,"get after a restart",errors);
+
+			// [4] Offline: no requests
+			DiskHttpCache offline = new DiskHttpCache(dir,1024 * 1024,
+													  1000,5000,
+													  true);
+			int requestsBefore = requests.get();
+			CachedResponse offlineResponse = offline.get(new URL(base + "/etag/a"));
+			_check(offlineResponse.getStatus(),CacheStatus.OFFLINE,"offline get",errors);
+			_check(offlineResponse.asString().startsWith("a version 2"),true,"offline body",errors);
+			try {
+				offline.get(new URL(base + "/etag/notCached"));
+				errors.add("A NOT cached url was served offline");
+			} catch (IOException ioEx) {
+				// expected
+			}
+			_check(requests.get(),requestsBefore,"offline requests",errors);
+
+			// [5] LRU eviction: room for two bodies; c is used after d so d is the least recently used one
+			File lruDir = new File(dir,"lru");
+			DiskHttpCache small = new DiskHttpCache(lruDir,250,
+													1000,5000,
+													false);
+			small.get(new URL(base + "/etag/c"));
+			small.get(new URL(base + "/etag/d"));
+			small.get(new URL(base + "/etag/c"));
+			small.get(new URL(base + "/etag/e"));
+			_check(small.getEntryCount(),2,"entries after eviction",errors);
+			_check(small.getEvictionCount(),1L,"evictions",errors);
+			_check(small.get(new URL(base + "/etag/c")).getStatus(),CacheStatus.NOT_MODIFIED,"recently used entry",errors);
+			_check(new File(lruDir,"blobs").list().length,2,"blobs after eviction",errors);
+			if (small.getBlobBytes() > 250) errors.add("The cache is bigger than the limit: " + small.getBlobBytes());
+
+			// [6] A failed write keeps the previous file and does NOT leave the temp file behind
+			File atomicDir = new File(dir,"atomic");
+			File atomicFile = new File(atomicDir,"file.txt");
+			AtomicFiles.write(atomicFile,"previous".getBytes(Charsets.UTF_8));
+			try {
+				AtomicFiles.write(atomicFile,new AtomicFiles.ContentWriter() {
+														@Override
+														public void writeTo(final OutputStream os) throws IOException {
+															os.write("half".getBytes(Charsets.UTF_8));
+															throw new IOException("write failure");
+														}
+									  });
+				errors.add("A failed write did NOT fail");
+			} catch (IOException ioEx) {
+				// expected
+			}
+			_check(Files.toString(atomicFile,Charsets.UTF_8),"previous","file after a failed write",errors);
+			_check(atomicDir.list().length,1,"files after a failed write",errors);
+
+			System.out.println("Downloaded " + cache.getDownloadedCount() + " bodies (" + cache.getDownloadedBytes() + " bytes); " + cache.getNotModifiedCount() + " served from the cache after a 304");
+			_report("The http cache revalidates, evicts and works offline",errors);
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		} finally {
+			if (server != null) server.stop(0);
+			_delete(dir);
+			System.exit(0);		// the server executor threads are NOT daemon
+		}
+	}
+	private static String _padding(final int length) {
+		StringBuilder sb = new StringBuilder(length);
+		for (int i=0; i < length; i++) sb.append('.');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,130 @@
+package euskadi.opendata.test.search;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.w3c.dom.Element;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import euskadi.opendata.service.search.SearchSessionCrawler;
+import euskadi.opendata.service.search.SearchSessionCrawler.CrawlSummary;
+import euskadi.opendata.service.search.SearchSessionDOMPageParser;
+import euskadi.opendata.service.search.SearchSessionPage;
+import euskadi.opendata.service.search.SearchSessionPageHandler;
+import euskadi.opendata.test.base.TestOpenDataPseudoRESTSearchAPIBase;
+import lombok.Cleanup;
+import r01f.resources.ResourcesLoaderBuilder;
+
+/**
+ * Checks the {@link SearchSessionCrawler} against a local http server serving the testSearchSession.xml
+ * fixture as every page of a search (every page takes some time to be answered):
+ * <ul>
+ * 		<li>every page is handed in page order</li>
+ * 		<li>the pages are fetched concurrently but never more than the concurrency limit</li>
+ * 		<li>a failed page fetch is retried</li>
+ * </ul>
+ */
+public class TestSearchSessionCrawler
+	 extends TestOpenDataPseudoRESTSearchAPIBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String FIXTURE = "testSearchSession.xml";
+	private static final int PAGES = 40;
+	private static final int MAX_CONCURRENT_PAGES = 4;
+	private static final long PAGE_DELAY_MILLIS = 100;
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		HttpServer server = null;
+		try {
+			@Cleanup InputStream is = ResourcesLoaderBuilder.createDefaultResourcesLoader()
+															.getInputStream(FIXTURE);
+			final byte[] xml = new String(ByteStreams.toByteArray(is),Charsets.ISO_8859_1).replace("numberOfPages='13'","numberOfPages='" + PAGES + "'")
+																						  .getBytes(Charsets.ISO_8859_1);
+
+			// a slow local server: the 7th page fails the first time
+			final AtomicInteger inFlight = new AtomicInteger();
+			final AtomicInteger maxInFlight = new AtomicInteger();
+			final ConcurrentHashMap<String,AtomicInteger> requestsByPage = new ConcurrentHashMap<String,AtomicInteger>();
+			server = _createLocalServer();
+			server.createContext("/r01hPresentationXML.jsp",new HttpHandler() {
+																		@Override
+																		public void handle(final HttpExchange exchange) throws IOException {
+																			int now = inFlight.incrementAndGet();
+																			int max = maxInFlight.get();
+																			while (now > max && !maxInFlight.compareAndSet(max,now)) max = maxInFlight.get();
+																			try {
+																				String page = exchange.getRequestURI().getQuery().replaceAll(".*r01kTgtPg=([0-9]+).*","$1");
+																				requestsByPage.putIfAbsent(page,new AtomicInteger());
+																				int requests = requestsByPage.get(page).incrementAndGet();
+																				Thread.sleep(PAGE_DELAY_MILLIS);
+																				if (page.equals("7") && requests == 1) {
+																					_respond(exchange,500,null);
+																					return;
+																				}
+																				_respond(exchange,200,xml);
+																			} catch (InterruptedException intEx) {
+																				Thread.currentThread().interrupt();
+																			} finally {
+																				inFlight.decrementAndGet();
+																				exchange.close();
+																			}
+																		}
+															 });
+			server.start();
+			String queryUrl = _localUrl(server,"/r01hPresentationXML.jsp?r01kQry=tC:euskadi;tF:opendata&r01kTgtPg=1");
+			List<String> errors = new ArrayList<String>();
+
+			// [1] the page url
+			_check(SearchSessionCrawler.pageUrl(queryUrl,12),queryUrl.replace("r01kTgtPg=1","r01kTgtPg=12"),"page url",errors);
+			_check(SearchSessionCrawler.pageUrl("http://host/r01hPresentationXML.jsp?r01kQry=x",3),"http://host/r01hPresentationXML.jsp?r01kQry=x&r01kTgtPg=3","appended page url",errors);
+
+			// [2] crawl
+			final List<Integer> handledPages = new ArrayList<Integer>();
+			SearchSessionCrawler crawler = new SearchSessionCrawler(queryUrl,
+																	MAX_CONCURRENT_PAGES,
+																	1000,5000);
+			CrawlSummary summary = crawler.crawl(new SearchSessionDOMPageParser(),
+												 new SearchSessionPageHandler<Element>() {
+														@Override
+														public void onPage(final SearchSessionPage<Element> page) {
+															handledPages.add(page.getPageNumber());
+														}
+												 });
+			long sequentialMillis = PAGES * PAGE_DELAY_MILLIS;
+			System.out.println("Crawled " + summary.getItems() + " items in " + summary.getPages() + " pages in " + summary.getElapsedMillis() + " millis " +
+							   "(sequentially it would take more than " + sequentialMillis + " millis); max concurrent requests: " + maxInFlight.get());
+
+			for (int i=0; i < handledPages.size(); i++) {
+				if (handledPages.get(i) != i + 1) {
+					errors.add("The pages were NOT handled in order: " + handledPages);
+					break;
+				}
+			}
+			_check(handledPages.size(),PAGES,"handled pages",errors);
+			_check(summary.getItems(),PAGES * 10,"crawled items",errors);
+			_check(requestsByPage.get("7").get(),2,"failed page requests",errors);
+			if (maxInFlight.get() > MAX_CONCURRENT_PAGES) errors.add("More than " + MAX_CONCURRENT_PAGES + " concurrent requests: " + maxInFlight.get());
+			if (maxInFlight.get() < 2) errors.add("The pages were NOT fetched concurrently");
+			if (summary.getElapsedMillis() >= sequentialMillis) errors.add("The crawl was NOT faster than a sequential one");
+
+			_report("The search pages are crawled concurrently and handled in order",errors);
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		} finally {
+			if (server != null) server.stop(0);
+			System.exit(0);		// the server executor threads are NOT daemon
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package euskadi.opendata.test.search;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Element;
+
+import com.google.common.io.ByteStreams;
+
+import euskadi.opendata.service.search.SearchResultItem;
+import euskadi.opendata.service.search.SearchSessionDOMPageParser;
+import euskadi.opendata.service.search.SearchSessionPage;
+import euskadi.opendata.service.search.SearchSessionStAXPageParser;
+import euskadi.opendata.test.base.TestOpenDataChecksBase;
+import lombok.Cleanup;
+import r01f.resources.ResourcesLoaderBuilder;
+
+/**
+ * Checks the {@link SearchSessionStAXPageParser} against the testSearchSession.xml fixture:
+ * <ul>
+ * 		<li>it reads the same page and items as the DOM + XPath parsing</li>
+ * 		<li>the typed item records have the expected values</li>
+ * 		<li>it's faster than the DOM + XPath parsing</li>
+ * </ul>
+ */
+public class TestSearchSessionStAXPageParser
+	 extends TestOpenDataChecksBase {
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	private static final String FIXTURE = "testSearchSession.xml";
+	private static final int ROUNDS = 500;
+/////////////////////////////////////////////////////////////////////////////////////////
+//
+/////////////////////////////////////////////////////////////////////////////////////////
+	public static void main(String[] args) {
+		try {
+			@Cleanup InputStream is = ResourcesLoaderBuilder.createDefaultResourcesLoader()
+															.getInputStream(FIXTURE);
+			byte[] xml = ByteStreams.toByteArray(is);
+			List<String> errors = new ArrayList<String>();
+
+			SearchSessionStAXPageParser staxParser = new SearchSessionStAXPageParser();
+			SearchSessionDOMPageParser domParser = new SearchSessionDOMPageParser();
+			SearchSessionPage<SearchResultItem> page = staxParser.parse(1,xml);
+			SearchSessionPage<Element> domPage = domParser.parse(1,xml);
+
+			// [1] The page
+			_check(page.getNumberOfPages(),13,"number of pages",errors);
+			_check(page.getNumberOfResults(),125,"number of results",errors);
+			_check(page.getItems().size(),domPage.getItems().size(),"items",errors);
+
+			// [2] The same items as the DOM + XPath parsing
+			XPath xpath = XPathFactory.newInstance().newXPath();
+			for (int i=0; i < Math.min(page.getItems().size(),domPage.getItems().size()); i++) {
+				SearchResultItem item = page.getItems().get(i);
+				Element itemNode = domPage.getItems().get(i);
+				_check(item.getContentName(),xpath.evaluate("contentName",itemNode).trim(),"item " + i + " contentName",errors);
+				_check(item.getDocumentLanguage(),xpath.evaluate("documentLanguage",itemNode).trim(),"item " + i + " documentLanguage",errors);
+				_check(item.getDocumentWorkAreaRelativePath(),xpath.evaluate("documentWorkAreaRelativePath",itemNode).trim(),"item " + i + " documentWorkAreaRelativePath",errors);
+				_check(item.getDocumentCreateDate(),xpath.evaluate("documentCreateDate",itemNode).trim(),"item " + i + " documentCreateDate",errors);
+				_check(item.getMainDataFileOid(),xpath.evaluate("name(documentDataFilesGeneratedFilesDocumentRelativePaths/*[1])",itemNode).replace("datafileOid.",""),"item " + i + " data file",errors);
+				_check(item.getRispDocuments().size(),Integer.valueOf(xpath.evaluate("count(contentRispDocumentsInfo/*)",itemNode).replace(".0","")),"item " + i + " risp documents",errors);
+				_check(item.getMetaData().size(),Integer.valueOf(xpath.evaluate("count(documentMetaData/*)",itemNode).replace(".0","")),"item " + i + " metaData",errors);
+			}
+
+			// [3] The typed record
+			SearchResultItem gabon = page.getItems().get(0);
+			_check(gabon.getContentName(),"ayudas_gabon","contentName",errors);
+			_check(gabon.getDocumentLanguage(),"es","documentLanguage",errors);
+			_check(gabon.getDocumentWorkAreaRelativePath(),"ayuda_subvencion/ayudas_gabon/es_ifm","documentWorkAreaRelativePath",errors);
+			_check(gabon.getMainDataFileOid(),"r01dpd013df33e2a9d2297f8b31cce8e306c43a96","data file oid",errors);
+			_check(gabon.mainDataFileUrl("http://opendata.euskadi.eus/contenidos"),
+				   "http://opendata.euskadi.eus/contenidos/ayuda_subvencion/ayudas_gabon/es_ifm/data/es_r01dpd013df33e2a9d2297f8b31cce8e306c43a96","data file url",errors);
+			_check(gabon.getRispDocuments().get("zip"),"/opendata/ayudas_gabon.zip,0,","zip risp document",errors);
+			_check(gabon.getMetaData().get("procedureStatus"),"16","procedureStatus metaData",errors);
+
+			// [4] Timing: single pass vs DOM + XPath
+			long staxNanos = 0;
+			long domNanos = 0;
+			for (int round = 0; round < ROUNDS * 2; round++) {
+				boolean warm = round >= ROUNDS;
+				long start = System.nanoTime();
+				for (SearchResultItem item : staxParser.parse(1,xml).getItems()) item.getMainDataFileOid();
+				if (warm) staxNanos += System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (Element itemNode : domParser.parse(1,xml).getItems()) {
+					xpath.evaluate("contentName",itemNode);
+					xpath.evaluate("documentLanguage",itemNode);
+					xpath.evaluate("documentWorkAreaRelativePath",itemNode);
+					xpath.evaluate("name(documentDataFilesGeneratedFilesDocumentRelativePaths/*[1])",itemNode);
+				}
+				if (warm) domNanos += System.nanoTime() - start;
+			}
+			System.out.println("Parsing " + ROUNDS + " pages: StAX " + (staxNanos / 1000000) + " millis / DOM + XPath " + (domNanos / 1000000) + " millis");
+			if (staxNanos >= domNanos) errors.add("The StAX parsing was NOT faster than the DOM + XPath one");
+
+			_report("The search session pages are read in a single pass",errors);
+		} catch(Throwable th) {
+			th.printStackTrace(System.out);
+		}
+	}
+}
@@ -1,27 +1,22 @@
 package euskadi.opendata.test.servicios;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
-
-import javax.xml.xpath.XPathExpressionException;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
+import euskadi.opendata.service.search.SearchResultItem;
+import euskadi.opendata.service.search.SearchSessionCrawler;
+import euskadi.opendata.service.search.SearchSessionCrawler.CrawlSummary;
+import euskadi.opendata.service.search.SearchSessionPage;
+import euskadi.opendata.service.search.SearchSessionPageHandler;
+import euskadi.opendata.service.search.SearchSessionStAXPageParser;
 import euskadi.opendata.test.base.TestOpenDataPseudoRESTSearchAPIBase;
+import euskadi.opendata.util.DiskHttpCache;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
 import r01f.debug.Debuggable;
-import r01f.httpclient.HttpClient;
 import r01f.types.Path;
 import r01f.util.types.Strings;
-import r01f.util.types.collections.CollectionUtils;
-import r01f.xml.XMLUtils;
 
 
 
@@ -44,43 +39,29 @@ public class TestPseudoRESTSearchAPIForServicios
 ///////////////////////////////////////////////////////////////////////////////////////////////////	
 	public static void main(String[] args) {
 		try {
-			int currPage = 1;
-			int totalPages = -1; 
+			// [1] Construir la URL con la query PSEUDO-REST (el crawler pone la pagina)
+			String qry = _buildQuery("contenidos.inter",
+									 1,
+									 "euskadi","procedimientos_administrativos","ayuda_subvencion");
+			System.out.println("[1] Query: " + qry);
 			
-			do {	
-				System.out.println("\n\n\n[Pagina: " + currPage + "]=======================================================================");
-				
-				// [1] Construir la URL con la query PSEUDO-REST
-	//			String qry = _buildQuery("contenidos.inter",
-	//									 1,
-	//									 "euskadi","procedimientos_administrativos","ayuda_subvencion", 
-	//									 "16",
-	//									 "cA:label1");
-				String qry = _buildQuery("contenidos.inter",
-										 1,
-										 "euskadi","procedimientos_administrativos","ayuda_subvencion");
-				System.out.println("[1] Query: " + qry);
-				
-				// [2] Obtener el XML de la sesin de bsqueda
-				String sessionXML = HttpClient.forUrl(qry)
-										      .GET()
-										      .loadAsString();
-				System.out.println("[2] SearchEngineSession: " + sessionXML);
-				
-				// [3] Parsear el XML de la sessin de bsqueda para obtener los items
-				SessionData<ServiceData> sessionData = _parseSearchSessionXML(sessionXML);
-				if (sessionData != null) {
-					System.out.println("[3] ParsedSeachEngineSession: " + sessionData.debugInfo());
-					if (CollectionUtils.hasData(sessionData.getItems())) {
-						for (ServiceData item : sessionData.getItems()) {
-							System.out.println(Strings.of("\n\n\n________________________________________________________________________________________________\n{}\n\n\n")	
-													  .customizeWith(item.debugInfo()));
-						}
-					}
-				}
-				totalPages = sessionData.getNumberOfResults();
-				currPage = currPage + 1;
-			} while(currPage <= totalPages);
+			// [2] Obtener las paginas de la sesion de busqueda (varias a la vez) y procesar sus items en orden
+			SearchSessionCrawler crawler = new SearchSessionCrawler(qry,
+																	4,			// pages fetched at the same time
+																	DiskHttpCache.getDefault());
+			CrawlSummary summary = crawler.crawl(new SearchSessionStAXPageParser(),
+												 new SearchSessionPageHandler<SearchResultItem>() {
+														@Override
+														public void onPage(final SearchSessionPage<SearchResultItem> page) {
+															System.out.println("\n\n\n[Pagina: " + page.getPageNumber() + " de " + page.getNumberOfPages() + "]=======================================================================");
+															for (SearchResultItem resultItem : page.getItems()) {
+																ServiceData item = _parseSearchSessionResultItem(resultItem);
+																System.out.println(Strings.of("\n\n\n________________________________________________________________________________________________\n{}\n\n\n")	
+																						  .customizeWith(item.debugInfo()));
+															}
+														}
+												 });
+			System.out.println("[3] " + summary.getItems() + " items en " + summary.getPages() + " paginas (" + summary.getElapsedMillis() + " millis)");
 			
 		} catch (Exception ex) {
 			ex.printStackTrace(System.out);
@@ -131,63 +112,30 @@ public class TestPseudoRESTSearchAPIForServicios
 		return outQry;
 				
 	}
-	/**
-	 * Procesar el XML de la sesin de bsqueda
-	 * @param sessionXML el xml de la sessin 
-	 */
-	private static SessionData<ServiceData> _parseSearchSessionXML(final String sessionXML) throws SAXException,
-																				   	  			   XPathExpressionException {
-		// [1] - Parsear el XML devuelto
-		Document xml = XMLUtils.parse(sessionXML);
-		
-		// [2] - Create a session object 
-		SessionData<ServiceData> outSessionData = TestOpenDataPseudoRESTSearchAPIBase.createSessionData(xml.getDocumentElement());
-		
-		// [3] - download the file that contains the data-set specific meta-data
-		//		 and parse it
-		NodeList itemNodes = XMLUtils.nodeListByXPath(xml.getDocumentElement(),
-													  "/searchSession/searchResultsBySource/searchSourceResults/results/item");
-		Set<ServiceData> items = null;
-		if (itemNodes != null && itemNodes.getLength() > 0) {
-			items = new HashSet<ServiceData>(itemNodes.getLength());
-			for (int i=0; i<itemNodes.getLength(); i++) {
-				items.add(_parseSearchSessionResultItem(itemNodes.item(i)));
-			}
-		}
-		outSessionData.setItems(items);
-		
-		// [4] - Devolver
-		return outSessionData;
-	}
 	/**
 	 * Procesar un item de resultado de la sesin de bsqueda
-	 * @param itemNode
+	 * @param resultItem
 	 * @return los datos del item
 	 */
-	private static ServiceData _parseSearchSessionResultItem(final Node itemNode) throws XPathExpressionException {
+	private static ServiceData _parseSearchSessionResultItem(final SearchResultItem resultItem) {
 		ServiceData outItem = new ServiceData();
 		
 		// Algunos metaDatos comunes
 		// -------------------------
-		String contentName = XMLUtils.stringByXPath(itemNode,
-													"contentName/text()");
-		String langVersionLanguage = XMLUtils.stringByXPath(itemNode,
-														    "documentLanguage");
-		String langVersionName = XMLUtils.stringByXPath(itemNode,
-														"documentName");
+		String contentName = resultItem.getContentName();
+		String langVersionLanguage = resultItem.getDocumentLanguage();
+		String langVersionName = resultItem.getDocumentName();
 		// Algunos meta-datos relevantes dependientes del tipo de contenido
 		// pero que son devueltos por el buscador
 		// ----------------------------------------------------------------
-		String procStatus = XMLUtils.stringByXPath(itemNode,
-												   "documentMetaData/procedureStatus/text()");		
+		String procStatus = resultItem.getMetaData().get("procedureStatus");		
 		// MetaDatos especficos disponibles en un XML que hay que descargar de euskadi.net
 		// --------------------------------------------------------------------------------
-		String dataFileUrl = TestOpenDataPseudoRESTSearchAPIBase.getContentTypeDependentMetaDataFileUrl(itemNode);
+		String dataFileUrl = TestOpenDataPseudoRESTSearchAPIBase.getContentTypeDependentMetaDataFileUrl(resultItem);
 		String dataFileXML = null;
 		try {
-			dataFileXML = HttpClient.forUrl(dataFileUrl)
-						  		 	    .GET()
-						                .loadAsString();
+			dataFileXML = DiskHttpCache.getDefault()		// most data files did NOT change since the last run
+									   .loadAsString(dataFileUrl);
 			dataFileXML = dataFileXML.trim();
 		} catch (Exception ex) {
 			ex.printStackTrace(System.out);
@@ -202,15 +150,10 @@ public class TestPseudoRESTSearchAPIForServicios
 		//	</contentRispDocumentsInfo>
 		// ---------------------------------------
 		Map<String,Path> assets = null;
-		NodeList assetsNodes = XMLUtils.nodeListByXPath(itemNode,
-														"contentRispDocumentsInfo/*");
-		if (assetsNodes != null && assetsNodes.getLength() > 0) {
-			assets = new HashMap<String,Path>(assetsNodes.getLength());
-			for (int i=0; i<assetsNodes.getLength(); i++) {
-				Node assetNode = assetsNodes.item(i);
-				String assetId = assetNode.getNodeName();
-				String assetPath = assetNode.getTextContent();
-				assets.put(assetId,Path.of(assetPath));
+		if (!resultItem.getRispDocuments().isEmpty()) {
+			assets = new HashMap<String,Path>(resultItem.getRispDocuments().size());
+			for (Map.Entry<String,String> asset : resultItem.getRispDocuments().entrySet()) {
+				assets.put(asset.getKey(),Path.of(asset.getValue()));
 			}
 		}
 		